@@ -2,6 +2,7 @@ package bio.fkaiser.mmm.classify;
 
 import bio.fkaiser.mmm.ItemsetMiner;
 import bio.fkaiser.mmm.ItemsetMinerRunner;
+import bio.fkaiser.mmm.io.StructureCache;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
 import de.bioforscher.singa.mathematics.graphs.trees.BinaryTree;
@@ -15,6 +16,7 @@ import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.Fit3DMatc
 import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
 import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.interfaces.Structure;
 import de.bioforscher.singa.structure.model.oak.OakAminoAcid;
 import de.bioforscher.singa.structure.model.oak.StructuralEntityFilter;
 import de.bioforscher.singa.structure.model.oak.StructuralMotif;
@@ -33,6 +35,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -58,6 +65,7 @@ public class FingerprintMiner {
     private ItemsetMiner<String> itemsetMiner;
     private List<Itemset<String>> topScoringItemsets;
     private StructureParserOptions structureParserOptions;
+    private StructureCache structureCache;
 
     public FingerprintMiner(FingerprintMinerConfiguration fingerprintMinerConfiguration) throws IOException, URISyntaxException, FingerprintMinerException {
         this.itemsetMinerConfiguration = fingerprintMinerConfiguration.getItemsetMinerConfiguration();
@@ -78,6 +86,12 @@ public class FingerprintMiner {
         structureParserOptions.retrieveLigandInformation(false);
         structureParserOptions.createEdges(false);
 
+        // decoy structures are restored from the structure cache of the itemset miner if configured
+        if (itemsetMinerConfiguration.getStructureCacheLocation() != null) {
+            structureCache = StructureCache.of(Paths.get(itemsetMinerConfiguration.getStructureCacheLocation()),
+                                               itemsetMinerConfiguration.getMaximalStructureCacheSize() * 1024 * 1024);
+        }
+
         mineFamily();
         selectTopScoringItemsets();
         createDecoy();
@@ -128,10 +142,13 @@ public class FingerprintMiner {
     private void createDecoy() throws IOException {
         logger.info("creating decoy dataset using Fit3D");
         for (Itemset<String> topScoringItemset : topScoringItemsets) {
-            ConsensusAlignment consensusAlignment = itemsetMiner.getTotalClusteredItemsets().get(topScoringItemset);
+            List<BinaryTree<ConsensusContainer>> clusters = new ArrayList<>();
+            for (ConsensusAlignment consensusAlignment : itemsetMiner.getTotalClusteredItemsets().get(topScoringItemset)) {
+                clusters.addAll(consensusAlignment.getClusters());
+            }
             // get consensus motif of largest cluster
-            consensusAlignment.getClusters().sort(Comparator.comparing(binaryTree -> binaryTree.getLeafNodes().size()));
-            BinaryTree<ConsensusContainer> largestCluster = consensusAlignment.getClusters().get(consensusAlignment.getClusters().size() - 1);
+            clusters.sort(Comparator.comparing(binaryTree -> binaryTree.getLeafNodes().size()));
+            BinaryTree<ConsensusContainer> largestCluster = clusters.get(clusters.size() - 1);
 
             // store largest cluster
             topScoringClusters.put(topScoringItemset, largestCluster);
@@ -142,21 +159,27 @@ public class FingerprintMiner {
             StructuralMotif artificialSearchMotif = convertConsensusMotif(consensusMotif);
 
             logger.info("running Fit3D search for {} in decoy dataset", topScoringItemset);
-            // create multi-parser for decoy data set
-            MultiParser multiParser = StructureParser.local()
-                                                     .localPDB(LOCAL_PDB)
-                                                     .chainList(decoyChainListPath)
-                                                     .setOptions(structureParserOptions);
-            // run Fit3D search
-            Fit3D fit3d = Fit3DBuilder.create()
-                                      .query(artificialSearchMotif)
-                                      .targets(multiParser)
-                                      .maximalParallelism()
-                                      .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
-                                      .rmsdCutoff(RMSD_CUTOFF)
-                                      .run();
-
-            List<List<LeafSubstructure<?>>> decoyDataset = fit3d.getMatches().stream()
+            List<Fit3DMatch> decoyMatches;
+            if (structureCache != null) {
+                decoyMatches = searchCachedDecoyStructures(artificialSearchMotif);
+            } else {
+                // create multi-parser for decoy data set
+                MultiParser multiParser = StructureParser.local()
+                                                         .localPDB(LOCAL_PDB)
+                                                         .chainList(decoyChainListPath)
+                                                         .setOptions(structureParserOptions);
+                // run Fit3D search
+                Fit3D fit3d = Fit3DBuilder.create()
+                                          .query(artificialSearchMotif)
+                                          .targets(multiParser)
+                                          .maximalParallelism()
+                                          .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                          .rmsdCutoff(RMSD_CUTOFF)
+                                          .run();
+                decoyMatches = fit3d.getMatches();
+            }
+
+            List<List<LeafSubstructure<?>>> decoyDataset = decoyMatches.stream()
                                                                 .map(Fit3DMatch::getSubstructureSuperimposition)
                                                                 .map(SubstructureSuperimposition::getMappedFullCandidate)
                                                                 .collect(Collectors.toList());
@@ -187,6 +210,39 @@ public class FingerprintMiner {
         }
     }
 
+    /**
+     * Runs the Fit3D search for the given motif in all chains of the decoy chain list, whose structures are restored from the {@link StructureCache}. Each chain is searched as a
+     * single target in parallel.
+     *
+     * @param searchMotif The {@link StructuralMotif} to search for.
+     * @return The {@link Fit3DMatch}es in the order of the decoy chain list.
+     * @throws IOException If the decoy chain list cannot be read.
+     */
+    private List<Fit3DMatch> searchCachedDecoyStructures(StructuralMotif searchMotif) throws IOException {
+        List<String> decoyChains = Files.readAllLines(decoyChainListPath).stream()
+                                        .filter(line -> !line.trim().isEmpty())
+                                        .collect(Collectors.toList());
+        ExecutorService executorService = Executors.newWorkStealingPool();
+        List<Future<List<Fit3DMatch>>> futures = new ArrayList<>();
+        for (String decoyChain : decoyChains) {
+            futures.add(executorService.submit(new DecoySearch(searchMotif, decoyChain)));
+        }
+        executorService.shutdown();
+        List<Fit3DMatch> decoyMatches = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                decoyMatches.addAll(futures.get(i).get());
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.warn("failed to search decoy chain {}", decoyChains.get(i), e.getCause());
+            }
+        }
+        return decoyMatches;
+    }
+
     /**
      * Converts the given consensus motif, which is composed of {@link LeafSubstructure}s, to a {@link StructuralMotif} composed of {@link AminoAcid}s.
      *
@@ -208,4 +264,38 @@ public class FingerprintMiner {
     private void mineFamily() throws IOException, URISyntaxException {
         itemsetMiner = new ItemsetMinerRunner(itemsetMinerConfiguration).getItemsetMiner();
     }
+
+    /**
+     * Searches a single chain of the decoy chain list, which is restored from the {@link StructureCache} or parsed from the local PDB.
+     */
+    private class DecoySearch implements Callable<List<Fit3DMatch>> {
+
+        private final StructuralMotif searchMotif;
+        private final String decoyChain;
+
+        private DecoySearch(StructuralMotif searchMotif, String decoyChain) {
+            this.searchMotif = searchMotif;
+            this.decoyChain = decoyChain;
+        }
+
+        @Override
+        public List<Fit3DMatch> call() throws Exception {
+            String[] split = decoyChain.trim().split("\t");
+            String pdbIdentifier = split[0];
+            String chainIdentifier = split[1];
+            Structure structure = structureCache.getStructure(LOCAL_PDB.getPathForPdbIdentifier(pdbIdentifier), chainIdentifier, structureParserOptions,
+                                                              () -> StructureParser.local()
+                                                                                   .localPDB(LOCAL_PDB, pdbIdentifier)
+                                                                                   .chainIdentifier(chainIdentifier)
+                                                                                   .setOptions(structureParserOptions)
+                                                                                   .parse());
+            return Fit3DBuilder.create()
+                               .query(searchMotif)
+                               .target(structure)
+                               .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                               .rmsdCutoff(RMSD_CUTOFF)
+                               .run()
+                               .getMatches();
+        }
+    }
 }
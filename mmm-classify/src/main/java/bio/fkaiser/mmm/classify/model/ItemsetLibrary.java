@@ -69,27 +69,30 @@ public class ItemsetLibrary {
     }
 
     /**
-     * Creates an {@link ItemsetLibrary} out of clustered {@link Itemset} observations. The largest cluster is determined by their consensus observation.
+     * Creates an {@link ItemsetLibrary} out of clustered {@link Itemset} observations. The largest cluster is determined by their consensus observation over all
+     * {@link ConsensusAlignment}s of an {@link Itemset}.
      *
      * @param clusteredItemsets   The clustered {@link Itemset}s for which an {@link ItemsetLibrary} should be created.
      * @param minimalClusterRatio The minimal ratio of which a cluster must exist for the consensus {@link Itemset} to be included in the library.
      * @param minimalItemsetSize  The minimal size of an {@link Itemset} to be considered for the {@link ItemsetLibrary}.
      * @return A new {@link ItemsetLibrary}.
      */
-    public static ItemsetLibrary of(Map<Itemset<String>, ConsensusAlignment> clusteredItemsets, int minimalItemsetSize, double minimalClusterRatio) {
+    public static ItemsetLibrary of(Map<Itemset<String>, List<ConsensusAlignment>> clusteredItemsets, int minimalItemsetSize, double minimalClusterRatio) {
         logger.info("creating library for {} itemsets", clusteredItemsets.size());
         List<ItemsetLibraryEntry> entries = new ArrayList<>();
-        for (Map.Entry<Itemset<String>, ConsensusAlignment> entry : clusteredItemsets.entrySet()) {
+        for (Map.Entry<Itemset<String>, List<ConsensusAlignment>> entry : clusteredItemsets.entrySet()) {
             Itemset<String> itemset = entry.getKey();
             if (itemset.getItems().size() < minimalItemsetSize) {
                 continue;
             }
             // determine largest cluster
             TreeSet<BinaryTree<ConsensusContainer>> clusters = new TreeSet<>(Comparator.comparing(BinaryTree::size));
-            ConsensusAlignment consensusAlignment = entry.getValue();
-            clusters.addAll(consensusAlignment.getClusters());
-            // determine total observation count
-            int observationCount = consensusAlignment.getTopConsensusTree().getLeafNodes().size();
+            int observationCount = 0;
+            for (ConsensusAlignment consensusAlignment : entry.getValue()) {
+                clusters.addAll(consensusAlignment.getClusters());
+                // determine total observation count
+                observationCount += consensusAlignment.getTopConsensusTree().getLeafNodes().size();
+            }
             BinaryTree<ConsensusContainer> largestCluster = clusters.last();
             int largestClusterCount = largestCluster.getLeafNodes().size();
             if ((largestClusterCount / (double) observationCount) < minimalClusterRatio) {
@@ -82,7 +82,7 @@ public class T01_LibraryCreator extends WorkflowTask {
             ItemsetLibrary itemsetLibrary = null;
             if (consensusMetricUsed) {
                 // only consider significant itemsets
-                TreeMap<Itemset<String>, ConsensusAlignment> totalClusteredItemsets = itemsetMinerRunner.getItemsetMiner().getTotalClusteredItemsets();
+                TreeMap<Itemset<String>, List<ConsensusAlignment>> totalClusteredItemsets = itemsetMinerRunner.getItemsetMiner().getTotalClusteredItemsets();
                 totalClusteredItemsets.keySet().removeIf(itemset -> !itemsetMinerRunner.getSignificantItemsets().values().contains(itemset));
                 itemsetLibrary = ItemsetLibrary.of(totalClusteredItemsets, MINIMAL_ITEMSET_SIZE, MINIMAL_CLUSTER_RATIO);
             } else if (affinityMetricUsed) {
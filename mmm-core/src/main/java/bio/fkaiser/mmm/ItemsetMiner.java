@@ -5,6 +5,7 @@ import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
 import bio.fkaiser.mmm.model.metrics.*;
+import bio.fkaiser.mmm.model.metrics.affinity.SparseAffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusAlignment;
 import org.slf4j.Logger;
@@ -28,13 +29,19 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
     private final int maximalEpochs;
     private final Comparator<Itemset<?>> itemsetComparator;
     private final ItemsetMinerConfiguration<LabelType> itemsetMinerConfiguration;
+    private final int maximalObservations;
+    private final long observationSamplingSeed;
+    private final boolean adaptiveMetricOrdering;
+    private final Map<EvaluationMetric<LabelType>, MetricStatistics> metricStatistics;
     private Set<Itemset<LabelType>> candidates;
     private Set<Itemset<LabelType>> previousCandidates;
     private Set<Itemset<LabelType>> removedPreviousCandidates;
     private List<Itemset<LabelType>> totalItemsets;
     private TreeMap<Itemset<LabelType>, List<Itemset<LabelType>>> totalExtractedItemsets;
-    private TreeMap<Itemset<LabelType>, ConsensusAlignment> totalClusteredItemsets;
+    private TreeMap<Itemset<LabelType>, List<ConsensusAlignment>> totalClusteredItemsets;
     private TreeMap<Itemset<LabelType>, AffinityAlignment> totalAffinityItemsets;
+    private TreeMap<Itemset<LabelType>, SparseAffinityAlignment> totalSparseAffinityItemsets;
+    private Map<Itemset<LabelType>, Integer> totalObservationCounts;
     private int previousItemsetSize;
 
     public ItemsetMiner(List<DataPoint<LabelType>> dataPoints, List<EvaluationMetric<LabelType>> evaluationMetrics, ItemsetMinerConfiguration<LabelType> itemsetMinerConfiguration) {
@@ -43,9 +50,14 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
         this.itemsetMinerConfiguration = itemsetMinerConfiguration;
 
         maximalEpochs = itemsetMinerConfiguration.getMaximalEpochs();
+        maximalObservations = itemsetMinerConfiguration.getMaximalObservations();
+        observationSamplingSeed = itemsetMinerConfiguration.getObservationSamplingSeed();
+        adaptiveMetricOrdering = itemsetMinerConfiguration.isAdaptiveMetricOrdering();
+        metricStatistics = new HashMap<>();
         itemsetComparator = itemsetMinerConfiguration.getItemsetComparatorType().getComparator();
 
         logger.info("initialized with {} data points", dataPoints.size());
+        fuseObservationMetrics();
         initialize();
     }
 
@@ -53,6 +65,10 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
         return totalAffinityItemsets;
     }
 
+    public TreeMap<Itemset<LabelType>, SparseAffinityAlignment> getTotalSparseAffinityItemsets() {
+        return totalSparseAffinityItemsets;
+    }
+
     public List<DataPoint<LabelType>> getDataPoints() {
         return dataPoints;
     }
@@ -69,10 +85,39 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
         return totalExtractedItemsets;
     }
 
-    public TreeMap<Itemset<LabelType>, ConsensusAlignment> getTotalClusteredItemsets() {
+    public TreeMap<Itemset<LabelType>, List<ConsensusAlignment>> getTotalClusteredItemsets() {
         return totalClusteredItemsets;
     }
 
+    /**
+     * Returns the number of available observations for all {@link Itemset}s whose extracted observations were reduced by sampling.
+     *
+     * @return The number of available observations before sampling.
+     */
+    public Map<Itemset<LabelType>, Integer> getTotalObservationCounts() {
+        return totalObservationCounts;
+    }
+
+    /**
+     * Fuses all {@link ObservationMetric}s into the {@link ExtractionMetric}s, such that observations are scored directly during extraction.
+     */
+    private void fuseObservationMetrics() {
+        List<ExtractionMetric<LabelType>> extractionMetrics = evaluationMetrics.stream()
+                                                                               .filter(ExtractionMetric.EXTRACTION_METRIC_FILTER)
+                                                                               .map(evaluationMetric -> (ExtractionMetric<LabelType>) evaluationMetric)
+                                                                               .collect(Collectors.toList());
+        if (extractionMetrics.isEmpty()) {
+            return;
+        }
+        evaluationMetrics.stream()
+                         .filter(ObservationMetric.OBSERVATION_METRIC_FILTER)
+                         .map(evaluationMetric -> (ObservationMetric<LabelType>) evaluationMetric)
+                         // observations have to be extracted whenever the metric is evaluated
+                         .filter(observationMetric -> extractionMetrics.stream()
+                                                                       .allMatch(extractionMetric -> extractionMetric.getMinimalItemsetSize() <= observationMetric.getMinimalItemsetSize()))
+                         .forEach(observationMetric -> extractionMetrics.forEach(extractionMetric -> extractionMetric.addObservationMetric(observationMetric)));
+    }
+
     private void initialize() {
 
         // initialize storage for all itemsets
@@ -83,6 +128,9 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
         totalClusteredItemsets = new TreeMap<>(itemsetComparator);
         // initialize storage for affinity itemsets
         totalAffinityItemsets = new TreeMap<>(itemsetComparator);
+        totalSparseAffinityItemsets = new TreeMap<>(itemsetComparator);
+        // initialize storage for observation counts of sampled itemsets
+        totalObservationCounts = new HashMap<>();
 
         logger.info("creating initial 1-itemsets");
         previousCandidates = dataPoints.stream()
@@ -164,15 +212,19 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
         Predicate<EvaluationMetric<LabelType>> minimalItemsetSizeFilter = evaluationMetric -> evaluationMetric.getMinimalItemsetSize() <= previousItemsetSize;
 
         // evaluate standard metrics
-        evaluationMetrics.stream()
-                         .filter(SimpleEvaluationMetric.SIMPLE_METRIC_FILTER)
-                         .filter(minimalItemsetSizeFilter)
-                         .map(evaluationMetric -> (SimpleEvaluationMetric<LabelType>) evaluationMetric)
-                         .forEach(evaluationMetric -> {
-                             logger.info("evaluating simple evaluation metric {}", evaluationMetric);
-                             Set<Itemset<LabelType>> filteredCandidates = evaluationMetric.filterItemsets(previousCandidates);
-                             removeFromPreviousCandidates(evaluationMetric, filteredCandidates);
-                         });
+        orderMetrics(evaluationMetrics.stream()
+                                      .filter(SimpleEvaluationMetric.SIMPLE_METRIC_FILTER)
+                                      .filter(minimalItemsetSizeFilter)
+                                      .map(evaluationMetric -> (SimpleEvaluationMetric<LabelType>) evaluationMetric)
+                                      .collect(Collectors.toList()))
+                .forEach(evaluationMetric -> {
+                    logger.info("evaluating simple evaluation metric {}", evaluationMetric);
+                    int evaluatedCandidateCount = previousCandidates.size();
+                    long startTime = System.nanoTime();
+                    Set<Itemset<LabelType>> filteredCandidates = evaluationMetric.filterItemsets(previousCandidates);
+                    removeFromPreviousCandidates(evaluationMetric, filteredCandidates);
+                    recordMetricStatistics(evaluationMetric, evaluatedCandidateCount, System.nanoTime() - startTime);
+                });
 
         // evaluate extraction metrics
         Map<Itemset<LabelType>, List<Itemset<LabelType>>> extractedItemsets = new HashMap<>();
@@ -187,30 +239,42 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
                              extractedItemsets.putAll(extractionMetric.getExtractedItemsets());
                          });
 
+        // bound the number of observations considered by extraction-dependent metrics
+        if (maximalObservations > 0) {
+            sampleExtractedItemsets(extractedItemsets);
+        }
+
         // evaluate extraction-dependent metrics
-        Map<Itemset<LabelType>, ConsensusAlignment> clusteredItemsets = new HashMap<>();
+        Map<Itemset<LabelType>, List<ConsensusAlignment>> clusteredItemsets = new HashMap<>();
         Map<Itemset<LabelType>, AffinityAlignment> affinityItemsets = new HashMap<>();
-        evaluationMetrics.stream()
-                         .filter(ExtractionDependentMetric.EXTRACTION_DEPENDENT_METRIC_FILTER)
-                         .filter(minimalItemsetSizeFilter)
-                         .map(evaluationMetric -> (ExtractionDependentMetric<LabelType>) evaluationMetric)
-                         .forEach(extractionDependentMetric -> {
-                             logger.info("evaluating extraction-dependent metric {}", extractionDependentMetric);
-                             Set<Itemset<LabelType>> filteredCandidates = extractionDependentMetric.filterItemsets(previousCandidates, extractedItemsets);
-                             removeFromPreviousCandidates(extractionDependentMetric, filteredCandidates);
-                             extractionDependentMetric.filterExtractedItemsets();
-                             // store clustered itemsets if consensus metric is used
-                             if (extractionDependentMetric instanceof ConsensusMetric) {
-                                 clusteredItemsets.putAll(((ConsensusMetric<LabelType>) extractionDependentMetric).getClusteredItemsets());
-                             }
-                             if (extractionDependentMetric instanceof AffinityMetric) {
-                                 affinityItemsets.putAll(((AffinityMetric<LabelType>) extractionDependentMetric).getAffinityItemsets());
-                             }
-                         });
+        Map<Itemset<LabelType>, SparseAffinityAlignment> sparseAffinityItemsets = new HashMap<>();
+        orderMetrics(evaluationMetrics.stream()
+                                      .filter(ExtractionDependentMetric.EXTRACTION_DEPENDENT_METRIC_FILTER)
+                                      .filter(minimalItemsetSizeFilter)
+                                      .map(evaluationMetric -> (ExtractionDependentMetric<LabelType>) evaluationMetric)
+                                      .collect(Collectors.toList()))
+                .forEach(extractionDependentMetric -> {
+                    logger.info("evaluating extraction-dependent metric {}", extractionDependentMetric);
+                    int evaluatedCandidateCount = previousCandidates.size();
+                    long startTime = System.nanoTime();
+                    Set<Itemset<LabelType>> filteredCandidates = extractionDependentMetric.filterItemsets(previousCandidates, extractedItemsets);
+                    removeFromPreviousCandidates(extractionDependentMetric, filteredCandidates);
+                    extractionDependentMetric.filterExtractedItemsets();
+                    recordMetricStatistics(extractionDependentMetric, evaluatedCandidateCount, System.nanoTime() - startTime);
+                    // store clustered itemsets if consensus metric is used
+                    if (extractionDependentMetric instanceof ConsensusMetric) {
+                        clusteredItemsets.putAll(((ConsensusMetric<LabelType>) extractionDependentMetric).getClusteredItemsets());
+                    }
+                    if (extractionDependentMetric instanceof AffinityMetric) {
+                        affinityItemsets.putAll(((AffinityMetric<LabelType>) extractionDependentMetric).getAffinityItemsets());
+                        sparseAffinityItemsets.putAll(((AffinityMetric<LabelType>) extractionDependentMetric).getSparseAffinityItemsets());
+                    }
+                });
 
         // synchronize clustered and extracted itemsets
         clusteredItemsets.keySet().removeIf(itemset -> !extractedItemsets.containsKey(itemset));
         affinityItemsets.keySet().removeIf(itemset -> !extractedItemsets.containsKey(itemset));
+        sparseAffinityItemsets.keySet().removeIf(itemset -> !extractedItemsets.containsKey(itemset));
 
         if (previousItemsetSize > 1) {
             // globally store itemsets which passed all metrics
@@ -221,11 +285,56 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
             totalClusteredItemsets.putAll(clusteredItemsets);
             // globally store clustered itemsets
             totalAffinityItemsets.putAll(affinityItemsets);
+            totalSparseAffinityItemsets.putAll(sparseAffinityItemsets);
         }
 
         logger.info("pruned previous candidates after evaluation of all metrics are (size: {})\n\t{}", previousCandidates.size(), previousCandidates);
     }
 
+    /**
+     * Reduces the observations of each extracted {@link Itemset} to at most the maximal number of observations by reservoir sampling. Each {@link Itemset} is sampled with its own seeded
+     * {@link Random} instance, such that results are reproducible independent of the evaluation order.
+     *
+     * @param extractedItemsets The extracted {@link Itemset}s to be sampled.
+     */
+    private void sampleExtractedItemsets(Map<Itemset<LabelType>, List<Itemset<LabelType>>> extractedItemsets) {
+        for (Map.Entry<Itemset<LabelType>, List<Itemset<LabelType>>> entry : extractedItemsets.entrySet()) {
+            int availableObservations = entry.getValue().size();
+            if (availableObservations > maximalObservations) {
+                Random random = new Random(31 * observationSamplingSeed + entry.getKey().hashCode());
+                entry.setValue(Itemsets.sampleObservations(entry.getValue(), maximalObservations, random));
+                totalObservationCounts.put(entry.getKey(), availableObservations);
+                logger.debug("sampled {} of {} observations for itemset {}", maximalObservations, availableObservations, entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Orders the given metrics of the same class by their expected cost to reject a candidate, i.e. the mean cost per evaluated candidate divided by the rejection rate. The configured order
+     * is retained until statistics are available for all metrics.
+     *
+     * @param metrics The metrics to be ordered.
+     * @return The ordered metrics.
+     */
+    private <MetricType extends EvaluationMetric<LabelType>> List<MetricType> orderMetrics(List<MetricType> metrics) {
+        if (!adaptiveMetricOrdering || metrics.size() < 2 || !metricStatistics.keySet().containsAll(metrics)) {
+            return metrics;
+        }
+        List<MetricType> orderedMetrics = new ArrayList<>(metrics);
+        orderedMetrics.sort(Comparator.comparingDouble(metric -> metricStatistics.get(metric).getRank()));
+        if (!orderedMetrics.equals(metrics)) {
+            logger.info("reordered metrics according to cost and rejection rate {}", orderedMetrics);
+        }
+        return orderedMetrics;
+    }
+
+    private void recordMetricStatistics(EvaluationMetric<LabelType> evaluationMetric, int evaluatedCandidateCount, long elapsedTime) {
+        if (adaptiveMetricOrdering) {
+            metricStatistics.computeIfAbsent(evaluationMetric, key -> new MetricStatistics())
+                            .record(evaluatedCandidateCount, evaluatedCandidateCount - previousCandidates.size(), elapsedTime);
+        }
+    }
+
     private void removeFromPreviousCandidates(EvaluationMetric<LabelType> evaluationMetric, Set<Itemset<LabelType>> filteredCandidates) {
         Set<Itemset<LabelType>> currentRemovedPreviousCandidates = previousCandidates.stream()
                                                                                      .filter(previousCandidate -> !filteredCandidates.contains(previousCandidate))
@@ -279,4 +388,31 @@ public class ItemsetMiner<LabelType extends Comparable<LabelType>> {
     public ItemsetMinerConfiguration<LabelType> getItemsetMinerConfiguration() {
         return itemsetMinerConfiguration;
     }
+
+    /**
+     * The cost and rejection rate of an {@link EvaluationMetric} accumulated over all epochs.
+     */
+    private static class MetricStatistics {
+
+        private long evaluatedCandidateCount;
+        private long rejectedCandidateCount;
+        private long elapsedTime;
+
+        private void record(int evaluatedCandidateCount, int rejectedCandidateCount, long elapsedTime) {
+            this.evaluatedCandidateCount += evaluatedCandidateCount;
+            this.rejectedCandidateCount += rejectedCandidateCount;
+            this.elapsedTime += elapsedTime;
+        }
+
+        /**
+         * Returns the expected cost to reject a single candidate. The rejection rate is smoothed to rank metrics that never rejected a candidate last.
+         *
+         * @return The rank of the metric (smaller is better).
+         */
+        private double getRank() {
+            double costPerCandidate = (double) elapsedTime / Math.max(1, evaluatedCandidateCount);
+            double rejectionRate = (rejectedCandidateCount + 1.0) / (evaluatedCandidateCount + 2.0);
+            return costPerCandidate / rejectionRate;
+        }
+    }
 }
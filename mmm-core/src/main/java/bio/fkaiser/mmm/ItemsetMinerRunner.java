@@ -1,20 +1,28 @@
 package bio.fkaiser.mmm;
 
 import bio.fkaiser.mmm.io.DataPointReader;
+import bio.fkaiser.mmm.io.DataPointSnapshot;
 import bio.fkaiser.mmm.io.ResultWriter;
+import bio.fkaiser.mmm.io.StructureCache;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.analysis.statistics.SignificanceEstimator;
+import bio.fkaiser.mmm.model.analysis.statistics.SignificanceEstimatorType;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
 import bio.fkaiser.mmm.model.configurations.analysis.statistics.SignificanceEstimatorConfiguration;
 import bio.fkaiser.mmm.model.configurations.metrics.ExtractionDependentMetricConfiguration;
 import bio.fkaiser.mmm.model.configurations.metrics.ExtractionMetricConfiguration;
 import bio.fkaiser.mmm.model.configurations.metrics.SimpleMetricConfiguration;
+import bio.fkaiser.mmm.model.enrichment.AbstractInteractionEnricher;
 import bio.fkaiser.mmm.model.enrichment.DataPointEnricher;
+import bio.fkaiser.mmm.model.enrichment.DataPointEnrichmentStage;
+import bio.fkaiser.mmm.model.enrichment.DataPointEnrichmentStage.EnrichmentFailure;
 import bio.fkaiser.mmm.model.enrichment.IntraChainInteractionEnricher;
 import bio.fkaiser.mmm.model.mapping.DataPointLabelMapper;
 import bio.fkaiser.mmm.model.mapping.MappingRule;
+import bio.fkaiser.mmm.model.mapping.rules.InteractionShellMappingRule;
 import bio.fkaiser.mmm.model.metrics.EvaluationMetric;
+import bio.fkaiser.mmm.model.plip.PlipInteractionCache;
 import de.bioforscher.singa.structure.parser.pdb.structures.StructureParserOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +36,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -40,17 +49,19 @@ public class ItemsetMinerRunner {
     private static final Logger logger = LoggerFactory.getLogger(ItemsetMinerRunner.class);
 
     private final ItemsetMinerConfiguration<String> itemsetMinerConfiguration;
+    private StructureCache structureCache;
+    private PlipInteractionCache plipInteractionCache;
+    private List<EnrichmentFailure> enrichmentFailures;
     private List<DataPoint<String>> dataPoints;
     private List<EvaluationMetric<String>> evaluationMetrics;
     private ItemsetMiner<String> itemsetMiner;
     private TreeMap<SignificanceEstimator.Significance, Itemset<String>> significantItemsets;
+    private Map<SignificanceEstimatorType, TreeMap<SignificanceEstimator.Significance, Itemset<String>>> significantItemsetsByType;
 
     public ItemsetMinerRunner(ItemsetMinerConfiguration<String> itemsetMinerConfiguration) throws IOException, URISyntaxException {
         this.itemsetMinerConfiguration = itemsetMinerConfiguration;
         logger.info("configuration created on {} by {}", itemsetMinerConfiguration.getCreationDate(), itemsetMinerConfiguration.getCreationUser());
-        readDataPoints();
-        enrichDataPoints();
-        mapDataPoints();
+        prepareDataPoints();
         createMetrics();
         mineDataPoints();
         calculateSignificance();
@@ -88,6 +99,43 @@ public class ItemsetMinerRunner {
         new ItemsetMinerRunner(itemsetMinerConfiguration);
     }
 
+    /**
+     * Reads, enriches and maps the {@link DataPoint}s. If a data point snapshot is configured, the {@link DataPoint}s are loaded from it if possible and it is written otherwise.
+     */
+    private void prepareDataPoints() throws URISyntaxException, IOException {
+        String structureCacheLocation = itemsetMinerConfiguration.getStructureCacheLocation();
+        if (structureCacheLocation != null) {
+            structureCache = StructureCache.of(Paths.get(structureCacheLocation), itemsetMinerConfiguration.getMaximalStructureCacheSize() * 1024 * 1024);
+        }
+        String plipCacheLocation = itemsetMinerConfiguration.getPlipCacheLocation();
+        if (plipCacheLocation != null) {
+            plipInteractionCache = new PlipInteractionCache(Paths.get(plipCacheLocation));
+        }
+        String dataPointSnapshotLocation = itemsetMinerConfiguration.getDataPointSnapshotLocation();
+        if (dataPointSnapshotLocation == null) {
+            readDataPoints();
+            enrichDataPoints();
+            mapDataPoints();
+            return;
+        }
+        DataPointSnapshot dataPointSnapshot = DataPointSnapshot.of(Paths.get(dataPointSnapshotLocation), itemsetMinerConfiguration);
+        Optional<List<DataPoint<String>>> snapshotDataPoints = dataPointSnapshot.load(itemsetMinerConfiguration.getDataPointReaderConfiguration().isCoordinatesOnly()
+                                                                                      ? createDataPointReader() : null);
+        if (snapshotDataPoints.isPresent()) {
+            logger.info(">>>STEP 1-3<<< loaded prepared data points from snapshot {}", dataPointSnapshot.getSnapshotPath());
+            dataPoints = snapshotDataPoints.get();
+            return;
+        }
+        readDataPoints();
+        enrichDataPoints();
+        mapDataPoints();
+        try {
+            dataPointSnapshot.write(dataPoints);
+        } catch (IOException e) {
+            logger.warn("failed to write data point snapshot {}", dataPointSnapshot.getSnapshotPath(), e);
+        }
+    }
+
     private void readDataPoints() throws URISyntaxException, IOException {
 
         // create structure parser options
@@ -96,10 +144,6 @@ public class ItemsetMinerRunner {
         structureParserOptions.omitHydrogens(true);
 
         logger.info(">>>STEP 1<<< reading data points");
-        // input path is resource
-        String inputListLocation = itemsetMinerConfiguration.getInputListLocation();
-        String inputChain = itemsetMinerConfiguration.getInputChain();
-        String inputDirectoryLocation = itemsetMinerConfiguration.getInputDirectoryLocation();
 
         // check if MMTF should be used along with intra-chain contacts
         if (itemsetMinerConfiguration.getDataPointReaderConfiguration().isMmtf()) {
@@ -109,12 +153,28 @@ public class ItemsetMinerRunner {
             }
         }
 
+        dataPoints = createDataPointReader().readDataPoints();
+    }
+
+    /**
+     * Creates the {@link DataPointReader} for the configured input. Input directories are listed in a fixed order, such that the input indices of coordinate-only
+     * {@link DataPoint}s restored from a {@link DataPointSnapshot} refer to the same structures.
+     *
+     * @return The {@link DataPointReader}.
+     */
+    private DataPointReader createDataPointReader() throws URISyntaxException, IOException {
+        // input path is resource
+        String inputListLocation = itemsetMinerConfiguration.getInputListLocation();
+        String inputChain = itemsetMinerConfiguration.getInputChain();
+        String inputDirectoryLocation = itemsetMinerConfiguration.getInputDirectoryLocation();
+
         // decide whether to use directory, chain list, or given IDs
         DataPointReader dataPointReader;
         if (inputListLocation == null && inputChain == null && inputDirectoryLocation != null) {
             logger.info("input directory will be used");
             List<Path> structurePaths = Files.list(Paths.get(inputDirectoryLocation))
                                              .filter(path -> path.toFile().isFile())
+                                             .sorted()
                                              .collect(Collectors.toList());
             dataPointReader = new DataPointReader(itemsetMinerConfiguration.getDataPointReaderConfiguration(), structurePaths);
 
@@ -137,7 +197,8 @@ public class ItemsetMinerRunner {
             logger.error("only one of the following input specifications is allowed: 'input-directory-location', 'input-list-location', or 'input-chain'");
             throw new IllegalArgumentException("input specification malformed");
         }
-        dataPoints = dataPointReader.readDataPoints();
+        dataPointReader.setStructureCache(structureCache);
+        return dataPointReader;
     }
 
     private void enrichDataPoints() {
@@ -146,8 +207,24 @@ public class ItemsetMinerRunner {
 
         DataPointEnricher<String> dataPointEnricher = itemsetMinerConfiguration.getDataPointEnricher();
         if (dataPointEnricher != null) {
-            logger.info("applying data point enricher {}", dataPointEnricher);
-            dataPoints.forEach(dataPointEnricher::enrichDataPoint);
+            if (dataPointEnricher instanceof IntraChainInteractionEnricher) {
+                ((IntraChainInteractionEnricher) dataPointEnricher).setStructureCache(structureCache);
+            }
+            if (dataPointEnricher instanceof AbstractInteractionEnricher) {
+                AbstractInteractionEnricher interactionEnricher = (AbstractInteractionEnricher) dataPointEnricher;
+                if (itemsetMinerConfiguration.getPlipRestProviderUrl() != null) {
+                    interactionEnricher.setPlipRestProviderUrl(itemsetMinerConfiguration.getPlipRestProviderUrl());
+                }
+                interactionEnricher.setPlipInteractionCache(plipInteractionCache);
+            }
+            logger.info("applying data point enricher {} with at most {} concurrent requests", dataPointEnricher, itemsetMinerConfiguration.getMaximalEnrichmentRequests());
+            DataPointEnrichmentStage<String> dataPointEnrichmentStage = new DataPointEnrichmentStage<>(dataPointEnricher,
+                                                                                                       itemsetMinerConfiguration.getMaximalEnrichmentRequests(),
+                                                                                                       TimeUnit.SECONDS.toMillis(itemsetMinerConfiguration.getEnrichmentTimeout()),
+                                                                                                       itemsetMinerConfiguration.getEnrichmentRetries(),
+                                                                                                       itemsetMinerConfiguration.getEnrichmentRetryBackoff());
+            dataPoints = dataPointEnrichmentStage.enrichDataPoints(dataPoints);
+            enrichmentFailures = dataPointEnrichmentStage.getEnrichmentFailures();
         }
     }
 
@@ -158,8 +235,20 @@ public class ItemsetMinerRunner {
         List<MappingRule<String>> mappingRules = itemsetMinerConfiguration.getMappingRules();
         if (mappingRules != null && !mappingRules.isEmpty()) {
             logger.info("mapping data points according to mapping rules {}", mappingRules);
+            for (MappingRule<String> mappingRule : mappingRules) {
+                if (mappingRule instanceof InteractionShellMappingRule) {
+                    InteractionShellMappingRule interactionShellMappingRule = (InteractionShellMappingRule) mappingRule;
+                    interactionShellMappingRule.setStructureCache(structureCache);
+                    if (itemsetMinerConfiguration.getPlipRestProviderUrl() != null) {
+                        interactionShellMappingRule.setPlipRestProviderUrl(itemsetMinerConfiguration.getPlipRestProviderUrl());
+                    }
+                    interactionShellMappingRule.setPlipInteractionCache(plipInteractionCache);
+                    // interaction shells are computed once per data point, which is bounded by the allowed number of concurrent requests
+                    interactionShellMappingRule.precomputeInteractionShells(dataPoints, itemsetMinerConfiguration.getMaximalEnrichmentRequests());
+                }
+            }
             DataPointLabelMapper<String> dataPointLabelMapper = new DataPointLabelMapper<>(mappingRules);
-            dataPoints = dataPoints.stream()
+            dataPoints = dataPoints.parallelStream()
                                    .map(dataPointLabelMapper::mapDataPoint)
                                    .collect(Collectors.toList());
         } else {
@@ -217,6 +306,13 @@ public class ItemsetMinerRunner {
                 .append(evaluationMetrics.stream()
                                          .map(EvaluationMetric::toString)
                                          .collect(Collectors.joining("\n\t\t", "\tevaluation metrics:\n\t\t", "\n")));
+        if (itemsetMinerConfiguration.getMaximalObservations() > 0) {
+            report.append("\tmaximal observations\t")
+                  .append(itemsetMinerConfiguration.getMaximalObservations())
+                  .append(" (seed ")
+                  .append(itemsetMinerConfiguration.getObservationSamplingSeed())
+                  .append(")\n");
+        }
         report.append("\tsorting by\t\t\t")
               .append(itemsetMinerConfiguration.getItemsetComparatorType())
               .append("\n");
@@ -238,13 +334,23 @@ public class ItemsetMinerRunner {
             stringJoiner.add(rankFormatter.format(rank) + "/" + totalItemsetCount);
             stringJoiner.add(itemset.toString());
             if (itemsetMiner.getTotalExtractedItemsets() != null && !itemsetMiner.getTotalExtractedItemsets().isEmpty()) {
-                stringJoiner.add("(" + itemsetMiner.getTotalExtractedItemsets().get(itemset).size() + " observations)");
+                int observationCount = itemsetMiner.getTotalExtractedItemsets().get(itemset).size();
+                Integer availableObservationCount = itemsetMiner.getTotalObservationCounts().get(itemset);
+                if (availableObservationCount != null) {
+                    stringJoiner.add("(" + observationCount + " of " + availableObservationCount + " observations sampled)");
+                } else {
+                    stringJoiner.add("(" + observationCount + " observations)");
+                }
             }
             if ((itemsetMiner.getTotalClusteredItemsets() != null && !itemsetMiner.getTotalClusteredItemsets().isEmpty())) {
-                stringJoiner.add("(" + itemsetMiner.getTotalClusteredItemsets().get(itemset).getClusters().size() + " clusters)");
+                stringJoiner.add("(" + itemsetMiner.getTotalClusteredItemsets().get(itemset).stream()
+                                                   .mapToInt(consensusAlignment -> consensusAlignment.getClusters().size())
+                                                   .sum() + " clusters)");
             }
-            if ((itemsetMiner.getTotalAffinityItemsets() != null && !itemsetMiner.getTotalAffinityItemsets().isEmpty())) {
+            if ((itemsetMiner.getTotalAffinityItemsets() != null && itemsetMiner.getTotalAffinityItemsets().containsKey(itemset))) {
                 stringJoiner.add("(" + itemsetMiner.getTotalAffinityItemsets().get(itemset).getClusters().size() + " clusters)");
+            } else if ((itemsetMiner.getTotalSparseAffinityItemsets() != null && itemsetMiner.getTotalSparseAffinityItemsets().containsKey(itemset))) {
+                stringJoiner.add("(" + itemsetMiner.getTotalSparseAffinityItemsets().get(itemset).getClusters().size() + " clusters)");
             }
             report.append(stringJoiner.toString());
         }
@@ -259,22 +365,35 @@ public class ItemsetMinerRunner {
         Files.write(reportOutputPath, report.toString().getBytes());
 
         if (significantItemsets != null && !significantItemsets.isEmpty()) {
+            writeSignificance(significantItemsets, Paths.get(itemsetMinerConfiguration.getOutputLocation()).resolve("significance.csv"));
+        }
 
-            StringJoiner stringJoiner = new StringJoiner("\n", "itemset,p-value,ks\n", "");
-            for (Map.Entry<SignificanceEstimator.Significance, Itemset<String>> entry : significantItemsets.entrySet()) {
-                StringJoiner lineJoiner = new StringJoiner(",");
-                lineJoiner.add(entry.getValue().toSimpleString());
-                lineJoiner.add(String.valueOf(entry.getKey().getPvalue()));
-                lineJoiner.add(String.valueOf(entry.getKey().getKs()));
-                stringJoiner.add(lineJoiner.toString());
+        // p-values of additional significance types are reported separately
+        if (significantItemsetsByType != null && significantItemsetsByType.size() > 1) {
+            for (Map.Entry<SignificanceEstimatorType, TreeMap<SignificanceEstimator.Significance, Itemset<String>>> entry : significantItemsetsByType.entrySet()) {
+                if (entry.getKey() != itemsetMinerConfiguration.getSignificanceEstimatorConfiguration().getSignificanceType() && !entry.getValue().isEmpty()) {
+                    writeSignificance(entry.getValue(), Paths.get(itemsetMinerConfiguration.getOutputLocation())
+                                                             .resolve("significance_" + entry.getKey().name().toLowerCase() + ".csv"));
+                }
             }
+        }
+    }
 
-            Path significanceOutputPath = Paths.get(itemsetMinerConfiguration.getOutputLocation()).resolve("significance.csv");
-            Files.createDirectories(significanceOutputPath.getParent());
+    private void writeSignificance(TreeMap<SignificanceEstimator.Significance, Itemset<String>> significantItemsets, Path significanceOutputPath) throws IOException {
 
-            logger.info("writing significance of results to {}", significanceOutputPath);
-            Files.write(significanceOutputPath, stringJoiner.toString().getBytes());
+        StringJoiner stringJoiner = new StringJoiner("\n", "itemset,p-value,ks\n", "");
+        for (Map.Entry<SignificanceEstimator.Significance, Itemset<String>> entry : significantItemsets.entrySet()) {
+            StringJoiner lineJoiner = new StringJoiner(",");
+            lineJoiner.add(entry.getValue().toSimpleString());
+            lineJoiner.add(String.valueOf(entry.getKey().getPvalue()));
+            lineJoiner.add(String.valueOf(entry.getKey().getKs()));
+            stringJoiner.add(lineJoiner.toString());
         }
+
+        Files.createDirectories(significanceOutputPath.getParent());
+
+        logger.info("writing significance of results to {}", significanceOutputPath);
+        Files.write(significanceOutputPath, stringJoiner.toString().getBytes());
     }
 
     private void calculateSignificance() {
@@ -289,9 +408,13 @@ public class ItemsetMinerRunner {
         }
 
         logger.info("calculating significance for type " + significanceEstimatorConfiguration.getSignificanceType());
+        if (!significanceEstimatorConfiguration.getAdditionalSignificanceTypes().isEmpty()) {
+            logger.info("reporting significance for additional types " + significanceEstimatorConfiguration.getAdditionalSignificanceTypes());
+        }
 
         SignificanceEstimator<String> significanceEstimator = new SignificanceEstimator<>(itemsetMiner, significanceEstimatorConfiguration);
         significantItemsets = significanceEstimator.getSignificantItemsets();
+        significantItemsetsByType = significanceEstimator.getSignificantItemsetsByType();
 
         logger.info("retaining only {} significant out of {} total itemsets", significantItemsets.size(), itemsetMiner.getTotalItemsets().size());
 
@@ -299,6 +422,7 @@ public class ItemsetMinerRunner {
         itemsetMiner.getTotalExtractedItemsets().entrySet().removeIf(entry -> !significantItemsets.values().contains(entry.getKey()));
         itemsetMiner.getTotalClusteredItemsets().entrySet().removeIf(entry -> !significantItemsets.values().contains(entry.getKey()));
         itemsetMiner.getTotalAffinityItemsets().entrySet().removeIf(entry -> !significantItemsets.values().contains(entry.getKey()));
+        itemsetMiner.getTotalSparseAffinityItemsets().entrySet().removeIf(entry -> !significantItemsets.values().contains(entry.getKey()));
     }
 
     private void outputResults() throws IOException {
@@ -311,7 +435,7 @@ public class ItemsetMinerRunner {
         // decide which structures to write
         if (!itemsetMiner.getTotalClusteredItemsets().isEmpty()) {
             resultWriter.writeClusteredItemsets();
-        } else if (!itemsetMiner.getTotalAffinityItemsets().isEmpty()) {
+        } else if (!itemsetMiner.getTotalAffinityItemsets().isEmpty() || !itemsetMiner.getTotalSparseAffinityItemsets().isEmpty()) {
             resultWriter.writeAffinityItemsets();
         } else if (!itemsetMiner.getTotalExtractedItemsets().isEmpty() && itemsetMiner.getTotalClusteredItemsets().isEmpty()) {
             resultWriter.writeExtractedItemsets();
@@ -328,12 +452,25 @@ public class ItemsetMinerRunner {
 
         // write CSV report
         resultWriter.writeCSV();
+
+        if (enrichmentFailures != null && !enrichmentFailures.isEmpty()) {
+            resultWriter.writeEnrichmentFailures(enrichmentFailures);
+        }
     }
 
     public List<DataPoint<String>> getDataPoints() {
         return dataPoints;
     }
 
+    /**
+     * Returns the report of {@link DataPoint}s that could not be enriched.
+     *
+     * @return The {@link EnrichmentFailure}s or null if no enrichment was performed.
+     */
+    public List<EnrichmentFailure> getEnrichmentFailures() {
+        return enrichmentFailures;
+    }
+
     public List<EvaluationMetric<String>> getEvaluationMetrics() {
         return evaluationMetrics;
     }
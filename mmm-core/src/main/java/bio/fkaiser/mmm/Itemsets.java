@@ -10,8 +10,10 @@ import de.bioforscher.singa.mathematics.metrics.model.VectorMetricProvider;
 import de.bioforscher.singa.mathematics.vectors.Vector3D;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Utility methods for {@link Itemset}s.
@@ -39,6 +41,39 @@ public class Itemsets {
         return distanceMatrix.getElement(positionOfMaximalElement.getFirst(), positionOfMaximalElement.getSecond());
     }
 
+    /**
+     * Draws a uniform random sample of the given observations using reservoir sampling. The relative order of the retained observations is preserved, such that the sample is reproducible for
+     * a seeded {@link Random} and a deterministic input order.
+     *
+     * @param observations The observations to sample from.
+     * @param sampleSize   The maximal number of observations to retain.
+     * @param random       The source of randomness.
+     * @param <ObservationType> The type of the observations.
+     * @return The sampled observations or the input if it does not exceed the sample size.
+     */
+    public static <ObservationType> List<ObservationType> sampleObservations(List<ObservationType> observations, int sampleSize, Random random) {
+        if (observations.size() <= sampleSize) {
+            return observations;
+        }
+        // fill reservoir with the first indices and replace them with decreasing probability
+        int[] reservoir = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            reservoir[i] = i;
+        }
+        for (int i = sampleSize; i < observations.size(); i++) {
+            int j = random.nextInt(i + 1);
+            if (j < sampleSize) {
+                reservoir[j] = i;
+            }
+        }
+        Arrays.sort(reservoir);
+        List<ObservationType> sampledObservations = new ArrayList<>(sampleSize);
+        for (int index : reservoir) {
+            sampledObservations.add(observations.get(index));
+        }
+        return sampledObservations;
+    }
+
     public static boolean containsSharedItems(Itemset<?> itemsetOne, Itemset<?> itemsetTwo) {
         return Collections.disjoint(itemsetOne.getItems(), itemsetTwo.getItems());
     }
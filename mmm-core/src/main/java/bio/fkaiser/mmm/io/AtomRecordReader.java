@@ -0,0 +1,431 @@
+package bio.fkaiser.mmm.io;
+
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.families.LigandFamily;
+import de.bioforscher.singa.structure.model.families.NucleotideFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.identifiers.PDBIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
+import de.bioforscher.singa.structure.model.interfaces.Atom;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.oak.LeafSubstructureFactory;
+import de.bioforscher.singa.structure.model.oak.OakAtom;
+import de.bioforscher.singa.structure.model.oak.OakLigand;
+import de.bioforscher.singa.structure.model.oak.StructuralEntityFilter.AtomFilter;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureParserException;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureParserOptions;
+import de.bioforscher.singa.structure.parser.pdb.structures.tokens.AtomToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the {@link LeafSubstructure}s of the first model of a local PDB or mmCIF file, optionally gzipped, by scanning its ATOM and HETATM records. In contrast to the
+ * {@link de.bioforscher.singa.structure.parser.pdb.structures.StructureParser} no {@link de.bioforscher.singa.structure.model.interfaces.Structure} is assembled. Only residues that pass the
+ * filters of the {@link DataPointReaderConfiguration} are kept, the atoms of all other residues are skipped during the scan. Amino acids and nucleotides are created like the
+ * {@link de.bioforscher.singa.structure.parser.pdb.structures.StructureParser} does, all other residues are read as ligands without retrieving ligand information. If an atom has
+ * alternative locations, the first one is used. Like for the {@link de.bioforscher.singa.structure.parser.pdb.structures.StructureParser}, the last residue name given for a residue
+ * determines its family.
+ *
+ * @author fk
+ */
+class AtomRecordReader {
+
+    private static final String WATER_LABEL = "HOH";
+    private static final String MISSING_VALUE = "?";
+    private static final String INAPPLICABLE_VALUE = ".";
+    private static final String ATOM_SITE_PREFIX = "_atom_site.";
+
+    private static final Predicate<Atom> NON_ALPHA_CARBON_ATOM = AtomFilter.isAlphaCarbon().negate().and(AtomFilter.isHydrogen().negate());
+    private static final Predicate<Atom> NON_BACKBONE_ATOM = AtomFilter.isBackbone().negate().and(AtomFilter.isHydrogen().negate()).and(AtomFilter.isBetaCarbon().negate());
+
+    private final DataPointReaderConfiguration dataPointReaderConfiguration;
+    private final StructureParserOptions structureParserOptions;
+
+    AtomRecordReader(DataPointReaderConfiguration dataPointReaderConfiguration, StructureParserOptions structureParserOptions) {
+        this.dataPointReaderConfiguration = dataPointReaderConfiguration;
+        this.structureParserOptions = structureParserOptions;
+    }
+
+    /**
+     * Returns true if the given file can be read by scanning its atom records.
+     *
+     * @param structurePath The path of the file.
+     * @return True if the file is a PDB or mmCIF file.
+     */
+    static boolean isSupported(Path structurePath) {
+        String fileName = stripCompression(structurePath.getFileName().toString().toLowerCase());
+        return fileName.endsWith(".pdb") || fileName.endsWith(".ent") || isMmCif(structurePath);
+    }
+
+    private static boolean isMmCif(Path structurePath) {
+        String fileName = stripCompression(structurePath.getFileName().toString().toLowerCase());
+        return fileName.endsWith(".cif") || fileName.endsWith(".mmcif");
+    }
+
+    private static String stripCompression(String fileName) {
+        return fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+    }
+
+    /**
+     * Splits a row of a mmCIF loop into its values. Values may be enclosed in single or double quotes, which only end if followed by whitespace.
+     *
+     * @param line The row to split.
+     * @return The values of the row.
+     */
+    static List<String> splitMmCifRow(String line) {
+        List<String> values = new ArrayList<>();
+        int length = line.length();
+        int position = 0;
+        while (position < length) {
+            char character = line.charAt(position);
+            if (Character.isWhitespace(character)) {
+                position++;
+                continue;
+            }
+            int end;
+            if (character == '\'' || character == '"') {
+                end = position + 1;
+                while (end < length && !(line.charAt(end) == character && (end + 1 == length || Character.isWhitespace(line.charAt(end + 1))))) {
+                    end++;
+                }
+                values.add(line.substring(position + 1, Math.min(end, length)));
+                position = end + 1;
+            } else {
+                end = position;
+                while (end < length && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                values.add(line.substring(position, end));
+                position = end;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads the given file.
+     *
+     * @param structurePath   The path of the file.
+     * @param chainIdentifier The chain to be read or null if all chains should be read.
+     * @return The {@link AtomRecords} of the first model.
+     * @throws UncheckedIOException     If the file cannot be read.
+     * @throws StructureParserException If the file contains no atom records.
+     */
+    AtomRecords read(Path structurePath, String chainIdentifier) {
+        String pdbIdentifier = PDBIdentifier.extractFirst(structurePath.getFileName().toString());
+        ResidueCollector residueCollector = new ResidueCollector(pdbIdentifier != null ? pdbIdentifier : LeafIdentifier.DEFAULT_PDB_IDENTIFIER, chainIdentifier);
+        try (InputStream inputStream = openStream(structurePath);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.ISO_8859_1))) {
+            if (isMmCif(structurePath)) {
+                scanMmCif(reader, residueCollector);
+            } else {
+                scanPdb(reader, residueCollector);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read atom records of " + structurePath, e);
+        }
+        if (residueCollector.leafIdentifiers.isEmpty()) {
+            throw new StructureParserException("no atom records found in " + structurePath + (chainIdentifier != null ? " for chain " + chainIdentifier : ""));
+        }
+        return residueCollector.collect();
+    }
+
+    private InputStream openStream(Path structurePath) throws IOException {
+        InputStream inputStream = Files.newInputStream(structurePath);
+        if (structurePath.getFileName().toString().toLowerCase().endsWith(".gz")) {
+            return new GZIPInputStream(inputStream);
+        }
+        return inputStream;
+    }
+
+    private void scanPdb(BufferedReader reader, ResidueCollector residueCollector) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("ATOM") || line.startsWith("HETATM")) {
+                int serial = Integer.parseInt(AtomToken.RESIDUE_SERIAL.extract(line));
+                String insertion = AtomToken.RESIDUE_INSERTION.extract(line);
+                char insertionCode = insertion.isEmpty() ? LeafIdentifier.DEFAULT_INSERTION_CODE : insertion.charAt(0);
+                Residue residue = residueCollector.getResidue(AtomToken.CHAIN_IDENTIFIER.extract(line), serial, insertionCode, AtomToken.RESIDUE_NAME.extract(line));
+                if (residue != null && !residue.atoms.containsKey(AtomToken.ATOM_NAME.extract(line))) {
+                    OakAtom atom = AtomToken.assembleAtom(line);
+                    residue.atoms.put(atom.getAtomName(), atom);
+                }
+            } else if (line.startsWith("MODEL")) {
+                residueCollector.setModelIdentifier(Integer.parseInt(line.substring(10, Math.min(14, line.length())).trim()));
+            } else if (line.startsWith("ENDMDL")) {
+                // only consider first model
+                return;
+            }
+        }
+    }
+
+    private void scanMmCif(BufferedReader reader, ResidueCollector residueCollector) throws IOException {
+        List<String> columns = new ArrayList<>();
+        boolean inLoop = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("loop_")) {
+                inLoop = true;
+                columns.clear();
+            } else if (inLoop && line.startsWith(ATOM_SITE_PREFIX)) {
+                columns.add(line.trim().substring(ATOM_SITE_PREFIX.length()));
+            } else if (!columns.isEmpty()) {
+                scanAtomSites(reader, line, columns, residueCollector);
+                return;
+            } else if (!line.startsWith("_")) {
+                inLoop = false;
+            }
+        }
+    }
+
+    private void scanAtomSites(BufferedReader reader, String firstRow, List<String> columns, ResidueCollector residueCollector) throws IOException {
+        int serialColumn = columns.indexOf("id");
+        int elementColumn = columns.indexOf("type_symbol");
+        int atomNameColumn = firstColumn(columns, "auth_atom_id", "label_atom_id");
+        int residueNameColumn = firstColumn(columns, "auth_comp_id", "label_comp_id");
+        int chainColumn = firstColumn(columns, "auth_asym_id", "label_asym_id");
+        int residueSerialColumn = firstColumn(columns, "auth_seq_id", "label_seq_id");
+        int insertionColumn = columns.indexOf("pdbx_PDB_ins_code");
+        int xColumn = columns.indexOf("Cartn_x");
+        int yColumn = columns.indexOf("Cartn_y");
+        int zColumn = columns.indexOf("Cartn_z");
+        int modelColumn = columns.indexOf("pdbx_PDB_model_num");
+        if (atomNameColumn == -1 || residueNameColumn == -1 || chainColumn == -1 || residueSerialColumn == -1 || xColumn == -1 || yColumn == -1 || zColumn == -1) {
+            throw new UncheckedIOException(new IOException("incomplete atom site category, found columns " + columns));
+        }
+        String firstModel = null;
+        for (String line = firstRow; line != null && !line.startsWith("#") && !line.startsWith("_") && !line.startsWith("loop_"); line = reader.readLine()) {
+            List<String> values = splitMmCifRow(line);
+            if (values.size() < columns.size()) {
+                continue;
+            }
+            if (modelColumn != -1) {
+                String model = values.get(modelColumn);
+                if (firstModel == null) {
+                    firstModel = model;
+                    residueCollector.setModelIdentifier(Integer.parseInt(model));
+                } else if (!firstModel.equals(model)) {
+                    // only consider first model
+                    return;
+                }
+            }
+            String residueSerial = values.get(residueSerialColumn);
+            if (residueSerial.equals(MISSING_VALUE) || residueSerial.equals(INAPPLICABLE_VALUE)) {
+                continue;
+            }
+            String insertion = insertionColumn != -1 ? values.get(insertionColumn) : MISSING_VALUE;
+            char insertionCode = insertion.equals(MISSING_VALUE) || insertion.equals(INAPPLICABLE_VALUE) ? LeafIdentifier.DEFAULT_INSERTION_CODE : insertion.charAt(0);
+            Residue residue = residueCollector.getResidue(values.get(chainColumn), Integer.parseInt(residueSerial), insertionCode, values.get(residueNameColumn));
+            String atomName = values.get(atomNameColumn);
+            if (residue != null && !residue.atoms.containsKey(atomName)) {
+                int serial = serialColumn != -1 ? Integer.parseInt(values.get(serialColumn)) : residue.atoms.size() + 1;
+                String elementSymbol = elementColumn != -1 ? values.get(elementColumn) : MISSING_VALUE;
+                Vector3D position = new Vector3D(Double.parseDouble(values.get(xColumn)), Double.parseDouble(values.get(yColumn)), Double.parseDouble(values.get(zColumn)));
+                residue.atoms.put(atomName, new OakAtom(serial, ElementProvider.getElementBySymbol(normalizeElementSymbol(elementSymbol)).orElse(ElementProvider.UNKOWN), atomName,
+                                                        position));
+            }
+        }
+    }
+
+    private static int firstColumn(List<String> columns, String... names) {
+        for (String name : names) {
+            int column = columns.indexOf(name);
+            if (column != -1) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalizeElementSymbol(String elementSymbol) {
+        if (elementSymbol.length() < 2) {
+            return elementSymbol.toUpperCase();
+        }
+        return elementSymbol.substring(0, 1).toUpperCase() + elementSymbol.substring(1).toLowerCase();
+    }
+
+    /**
+     * The atoms of a residue that passed the filters by its name.
+     */
+    private static class Residue {
+
+        private final LeafIdentifier leafIdentifier;
+        private final Map<String, OakAtom> atoms;
+        private String residueName;
+
+        private Residue(LeafIdentifier leafIdentifier, String residueName) {
+            this.leafIdentifier = leafIdentifier;
+            this.residueName = residueName;
+            atoms = new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Collects the residues of the first model while the file is scanned. Every residue is registered to determine consecutive indices, but only atoms of residues that pass the filters
+     * by their name are kept.
+     */
+    private class ResidueCollector {
+
+        private final String pdbIdentifier;
+        private final String chainIdentifier;
+        private final Map<LeafIdentifier, Residue> residues;
+        private final Set<LeafIdentifier> leafIdentifiers;
+        private int modelIdentifier = LeafIdentifier.DEFAULT_MODEL_IDENTIFIER;
+        private LeafIdentifier lastLeafIdentifier;
+        private String lastResidueName;
+        private Residue lastResidue;
+
+        private ResidueCollector(String pdbIdentifier, String chainIdentifier) {
+            this.pdbIdentifier = pdbIdentifier;
+            this.chainIdentifier = chainIdentifier;
+            residues = new HashMap<>();
+            leafIdentifiers = new HashSet<>();
+        }
+
+        private void setModelIdentifier(int modelIdentifier) {
+            this.modelIdentifier = modelIdentifier;
+        }
+
+        /**
+         * Returns the residue the current atom belongs to.
+         *
+         * @return The residue or null if the atoms of the residue are skipped.
+         */
+        private Residue getResidue(String chainIdentifier, int serial, char insertionCode, String residueName) {
+            if (this.chainIdentifier != null && !this.chainIdentifier.equals(chainIdentifier)) {
+                return null;
+            }
+            // atoms of a residue are usually consecutive
+            if (lastLeafIdentifier != null && lastLeafIdentifier.getSerial() == serial && lastLeafIdentifier.getInsertionCode() == insertionCode
+                && lastLeafIdentifier.getChainIdentifier().equals(chainIdentifier) && lastResidueName.equals(residueName)) {
+                return lastResidue;
+            }
+            LeafIdentifier leafIdentifier = new LeafIdentifier(pdbIdentifier, modelIdentifier, chainIdentifier, serial, insertionCode);
+            leafIdentifiers.add(leafIdentifier);
+            Residue residue = residues.get(leafIdentifier);
+            if (residue != null) {
+                residue.residueName = residueName;
+            } else if (isAccepted(residueName)) {
+                residue = new Residue(leafIdentifier, residueName);
+                residues.put(leafIdentifier, residue);
+            }
+            lastLeafIdentifier = leafIdentifier;
+            lastResidueName = residueName;
+            lastResidue = residue;
+            return residue;
+        }
+
+        private boolean isAccepted(String residueName) {
+            if (AminoAcidFamily.getAminoAcidTypeByThreeLetterCode(residueName).isPresent()) {
+                // atoms of all amino acids are required to detect alpha carbon and backbone only structures
+                return true;
+            }
+            if (NucleotideFamily.getNucleotideByThreeLetterCode(residueName).isPresent()) {
+                return dataPointReaderConfiguration.isParseNucleotides();
+            }
+            if (residueName.equals(WATER_LABEL) && !dataPointReaderConfiguration.isParseWater()) {
+                return false;
+            }
+            return dataPointReaderConfiguration.isParseLigands() && dataPointReaderConfiguration.getLigandLabelWhitelist().contains(residueName);
+        }
+
+        private AtomRecords collect() {
+            List<LeafIdentifier> sortedLeafIdentifiers = new ArrayList<>(leafIdentifiers);
+            Collections.sort(sortedLeafIdentifiers);
+            List<LeafSubstructure<?>> leafSubstructures = new ArrayList<>();
+            List<Integer> consecutiveIndices = new ArrayList<>();
+            boolean alphaCarbonStructure = true;
+            boolean backboneStructure = true;
+            for (int i = 0; i < sortedLeafIdentifiers.size(); i++) {
+                Residue residue = residues.get(sortedLeafIdentifiers.get(i));
+                if (residue == null || residue.atoms.isEmpty()) {
+                    continue;
+                }
+                LeafSubstructure<?> leafSubstructure = createLeafSubstructure(residue);
+                if (leafSubstructure instanceof AminoAcid) {
+                    List<Atom> atoms = leafSubstructure.getAllAtoms();
+                    alphaCarbonStructure &= atoms.stream().noneMatch(NON_ALPHA_CARBON_ATOM);
+                    backboneStructure &= atoms.stream().noneMatch(NON_BACKBONE_ATOM);
+                }
+                // ensure alpha carbon exists
+                if (leafSubstructure.getAtomByName("CA").isPresent()) {
+                    leafSubstructures.add(leafSubstructure);
+                    consecutiveIndices.add(i);
+                }
+            }
+            String firstChainIdentifier = sortedLeafIdentifiers.isEmpty() ? null : sortedLeafIdentifiers.get(0).getChainIdentifier();
+            return new AtomRecords(pdbIdentifier, firstChainIdentifier, leafSubstructures, consecutiveIndices, alphaCarbonStructure || backboneStructure);
+        }
+
+        private LeafSubstructure<?> createLeafSubstructure(Residue residue) {
+            Optional<AminoAcidFamily> aminoAcidFamily = AminoAcidFamily.getAminoAcidTypeByThreeLetterCode(residue.residueName);
+            if (aminoAcidFamily.isPresent()) {
+                return LeafSubstructureFactory.createAminoAcidFromAtoms(residue.leafIdentifier, aminoAcidFamily.get(), residue.atoms, structureParserOptions);
+            }
+            Optional<NucleotideFamily> nucleotideFamily = NucleotideFamily.getNucleotideByThreeLetterCode(residue.residueName);
+            if (nucleotideFamily.isPresent()) {
+                return LeafSubstructureFactory.createNucleotideFromAtoms(residue.leafIdentifier, nucleotideFamily.get(), residue.atoms, structureParserOptions);
+            }
+            OakLigand ligand = new OakLigand(residue.leafIdentifier, new LigandFamily("?", residue.residueName));
+            residue.atoms.values().forEach(ligand::addAtom);
+            return ligand;
+        }
+    }
+
+    /**
+     * The {@link LeafSubstructure}s read from the atom records of a single file that passed all filters, along with their consecutive index among all residues of the first model.
+     */
+    static class AtomRecords {
+
+        private final String pdbIdentifier;
+        private final String chainIdentifier;
+        private final List<LeafSubstructure<?>> leafSubstructures;
+        private final List<Integer> consecutiveIndices;
+        private final boolean reducedStructure;
+
+        private AtomRecords(String pdbIdentifier, String chainIdentifier, List<LeafSubstructure<?>> leafSubstructures, List<Integer> consecutiveIndices, boolean reducedStructure) {
+            this.pdbIdentifier = pdbIdentifier;
+            this.chainIdentifier = chainIdentifier;
+            this.leafSubstructures = leafSubstructures;
+            this.consecutiveIndices = consecutiveIndices;
+            this.reducedStructure = reducedStructure;
+        }
+
+        String getPdbIdentifier() {
+            return pdbIdentifier;
+        }
+
+        String getChainIdentifier() {
+            return chainIdentifier;
+        }
+
+        List<LeafSubstructure<?>> getLeafSubstructures() {
+            return leafSubstructures;
+        }
+
+        List<Integer> getConsecutiveIndices() {
+            return consecutiveIndices;
+        }
+
+        /**
+         * Returns true if the amino acids only consist of alpha carbon or backbone atoms.
+         *
+         * @return True if this is an alpha carbon or backbone only structure.
+         */
+        boolean isReducedStructure() {
+            return reducedStructure;
+        }
+    }
+}
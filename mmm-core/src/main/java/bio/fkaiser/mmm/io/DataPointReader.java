@@ -5,9 +5,15 @@ import bio.fkaiser.mmm.ItemsetMinerException;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.DataPointIdentifier;
 import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.LeafSubstructureProvider;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeFactory;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
 import de.bioforscher.singa.structure.model.interfaces.Ligand;
 import de.bioforscher.singa.structure.model.interfaces.Model;
+import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
 import de.bioforscher.singa.structure.model.interfaces.Structure;
 import de.bioforscher.singa.structure.model.oak.StructuralEntityFilter;
 import de.bioforscher.singa.structure.model.oak.Structures;
@@ -26,9 +32,10 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -41,46 +48,88 @@ public class DataPointReader {
 
     private static final Logger logger = LoggerFactory.getLogger(ItemsetMiner.class);
     private static final int MINIMAL_REQUIRED_STRUCTURES = 2;
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    /**
+     * the number of read data points per parser worker that may wait to be collected
+     */
+    private static final int QUEUED_DATA_POINTS_PER_WORKER = 4;
 
     private final DataPointReaderConfiguration dataPointReaderConfiguration;
     private final List<String> labelWhiteList;
+    private final int levelOfParallelism;
 
-    private MultiParser multiParser;
+    private List<MultiParser> multiParsers;
+    private List<List<StructureSource>> structureSources;
+    private List<List<AtomRecordSource>> atomRecordSources;
+    private List<List<Supplier<List<LeafSubstructure<?>>>>> leafSubstructureSources;
+    private AtomRecordReader atomRecordReader;
+    private Map<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> materializedStructures;
+    private StructureCache structureCache;
     private StructureParserOptions structureParserOptions;
     private Predicate<LeafSubstructure> leafSubstructureFilter;
 
     public DataPointReader(DataPointReaderConfiguration dataPointReaderConfiguration, List<Path> structurePaths) {
         createStructureParserOptions();
         this.dataPointReaderConfiguration = dataPointReaderConfiguration;
+        levelOfParallelism = determineLevelOfParallelism(dataPointReaderConfiguration);
         createLeafSubstructureFilter(dataPointReaderConfiguration);
         labelWhiteList = dataPointReaderConfiguration.getLigandLabelWhitelist();
-        multiParser = StructureParser.local()
-                                     .paths(structurePaths)
-                                     .everything()
-                                     .setOptions(structureParserOptions);
-        logger.info("structure reader initialized with {} structures from paths", multiParser.getNumberOfQueuedStructures());
+        if (dataPointReaderConfiguration.isStreamAtomRecords()) {
+            if (structurePaths.stream().allMatch(AtomRecordReader::isSupported)) {
+                initializeAtomRecordSources(structurePaths.stream()
+                                                          .map(path -> new AtomRecordSource(path, null))
+                                                          .collect(Collectors.toList()));
+                logger.info("structure reader initialized with {} structures from paths, streaming atom records", getNumberOfQueuedStructures());
+                return;
+            }
+            logger.warn("atom records can only be streamed from PDB and mmCIF files, parsing complete structures");
+        }
+        multiParsers = new ArrayList<>();
+        structureSources = new ArrayList<>();
+        for (List<Path> partition : partition(structurePaths)) {
+            multiParsers.add(StructureParser.local()
+                                            .paths(partition)
+                                            .everything()
+                                            .setOptions(structureParserOptions));
+            structureSources.add(partition.stream()
+                                          .map(path -> new StructureSource(path, null, null, null, () -> StructureParser.local()
+                                                                                                                        .path(path)
+                                                                                                                        .everything()
+                                                                                                                        .setOptions(structureParserOptions)
+                                                                                                                        .parse()))
+                                          .collect(Collectors.toList()));
+        }
+        initializeLeafSubstructureSources();
+        logger.info("structure reader initialized with {} structures from paths", getNumberOfQueuedStructures());
     }
 
     public DataPointReader(DataPointReaderConfiguration dataPointReaderConfiguration, Path chainListPath) {
         createStructureParserOptions();
         this.dataPointReaderConfiguration = dataPointReaderConfiguration;
+        levelOfParallelism = determineLevelOfParallelism(dataPointReaderConfiguration);
         createLeafSubstructureFilter(dataPointReaderConfiguration);
         labelWhiteList = dataPointReaderConfiguration.getLigandLabelWhitelist();
-        initializeMultiParser(chainListPath);
-        logger.info("structure reader initialized with {} structures from chain list", multiParser.getNumberOfQueuedStructures());
+        initializeMultiParsers(chainListPath);
+        logger.info("structure reader initialized with {} structures from chain list", getNumberOfQueuedStructures());
     }
 
     public DataPointReader(DataPointReaderConfiguration dataPointReaderConfiguration, String inputChain) throws IOException {
         createStructureParserOptions();
         this.dataPointReaderConfiguration = dataPointReaderConfiguration;
+        levelOfParallelism = determineLevelOfParallelism(dataPointReaderConfiguration);
         createLeafSubstructureFilter(dataPointReaderConfiguration);
         labelWhiteList = dataPointReaderConfiguration.getLigandLabelWhitelist();
         Path chainListPath = initializeFromSingleChain(inputChain);
-        initializeMultiParser(chainListPath);
-        logger.info("structure reader initialized with single chain {} as input, found {} representative chains in cluster {}", inputChain, multiParser.getNumberOfQueuedStructures(),
+        initializeMultiParsers(chainListPath);
+        logger.info("structure reader initialized with single chain {} as input, found {} representative chains in cluster {}", inputChain, getNumberOfQueuedStructures(),
                     dataPointReaderConfiguration.getPdbSequenceCluster());
     }
 
+    private static int determineLevelOfParallelism(DataPointReaderConfiguration dataPointReaderConfiguration) {
+        int levelOfParallelism = dataPointReaderConfiguration.getLevelOfParallelism();
+        return (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : Math.max(1, levelOfParallelism);
+    }
+
     /**
      * Checks whether the label of the given {@link LeafSubstructure} is contained in the given white list for labels.
      *
@@ -92,27 +141,173 @@ public class DataPointReader {
         return !(leafSubstructureToCheck instanceof Ligand) || labelWhiteList.contains(leafSubstructureToCheck.getFamily().getThreeLetterCode());
     }
 
-    private void initializeMultiParser(Path chainListPath) {
+    /**
+     * Creates one {@link MultiParser} for each parser worker. The chain list is distributed round-robin to the workers, each of them parsing its own chain list. If atom records should be
+     * streamed from a local PDB, the chains are distributed as {@link AtomRecordSource}s instead.
+     *
+     * @param chainListPath The path of the chain list.
+     */
+    private void initializeMultiParsers(Path chainListPath) {
+        List<String> chains;
+        try {
+            chains = Files.readAllLines(chainListPath).stream()
+                          .filter(line -> !line.trim().isEmpty())
+                          .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read chain list " + chainListPath, e);
+        }
+        if (dataPointReaderConfiguration.isStreamAtomRecords()) {
+            if (dataPointReaderConfiguration.getPdbLocation() != null && !dataPointReaderConfiguration.isMmtf()) {
+                LocalPDB localPDB = getLocalPDB();
+                initializeAtomRecordSources(chains.stream()
+                                                  .map(chain -> toAtomRecordSource(chain, localPDB))
+                                                  .collect(Collectors.toList()));
+                logger.info("distributed {} chains to {} atom record workers", chains.size(), atomRecordSources.size());
+                return;
+            }
+            logger.warn("atom records can only be streamed from a local PDB, parsing complete structures");
+        }
+        multiParsers = new ArrayList<>();
+        structureSources = new ArrayList<>();
+        for (List<String> partition : partition(chains)) {
+            structureSources.add(partition.stream()
+                                          .map(this::createStructureSource)
+                                          .collect(Collectors.toList()));
+            try {
+                Path partitionPath = Files.createTempFile("mmm_", ".txt");
+                partitionPath.toFile().deleteOnExit();
+                Files.write(partitionPath, partition);
+                multiParsers.add(createMultiParser(partitionPath));
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to write chain list partition", e);
+            }
+        }
+        initializeLeafSubstructureSources();
+        logger.info("distributed {} chains to {} parser workers", chains.size(), multiParsers.size());
+    }
+
+    /**
+     * Creates the sources to read the {@link LeafSubstructure}s of each input again from its {@link StructureSource}.
+     */
+    private void initializeLeafSubstructureSources() {
+        leafSubstructureSources = new ArrayList<>();
+        for (List<StructureSource> partition : structureSources) {
+            leafSubstructureSources.add(partition.stream()
+                                                 .map(source -> (Supplier<List<LeafSubstructure<?>>>) () -> readStructure(source).getFirstModel()
+                                                                                                                                 .getAllLeafSubstructures())
+                                                 .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Distributes the given {@link AtomRecordSource}s to the workers, which read them with an {@link AtomRecordReader}.
+     *
+     * @param sources The {@link AtomRecordSource}s to be read.
+     */
+    private void initializeAtomRecordSources(List<AtomRecordSource> sources) {
+        atomRecordReader = new AtomRecordReader(dataPointReaderConfiguration, structureParserOptions);
+        atomRecordSources = partition(sources);
+        leafSubstructureSources = new ArrayList<>();
+        for (List<AtomRecordSource> partition : atomRecordSources) {
+            leafSubstructureSources.add(partition.stream()
+                                                 .map(source -> (Supplier<List<LeafSubstructure<?>>>) () -> atomRecordReader.read(source.structurePath, source.chainIdentifier)
+                                                                                                                            .getLeafSubstructures())
+                                                 .collect(Collectors.toList()));
+        }
+    }
+
+    private AtomRecordSource toAtomRecordSource(String chain, LocalPDB localPDB) {
+        String[] split = chain.trim().split(dataPointReaderConfiguration.getChainListSeparator());
+        return new AtomRecordSource(localPDB.getPathForPdbIdentifier(split[0]), split.length > 1 ? split[1] : null);
+    }
+
+    private LocalPDB getLocalPDB() {
+        if (dataPointReaderConfiguration.getLocalPDB() != null) {
+            return dataPointReaderConfiguration.getLocalPDB();
+        }
+        return new LocalPDB(dataPointReaderConfiguration.getPdbLocation(), dataPointReaderConfiguration.isMmtf() ? SourceLocation.OFFLINE_MMTF : SourceLocation.OFFLINE_PDB);
+    }
+
+    /**
+     * Creates the {@link StructureSource} of a single chain of the chain list, which parses the chain from the same location as the {@link MultiParser}.
+     *
+     * @param chain The line of the chain list.
+     * @return The {@link StructureSource} of the chain.
+     */
+    private StructureSource createStructureSource(String chain) {
+        String[] split = chain.trim().split(dataPointReaderConfiguration.getChainListSeparator());
+        String pdbIdentifier = split[0];
+        String chainIdentifier = split.length > 1 ? split[1] : null;
+        Supplier<Structure> structureParser = () -> {
+            StructureParser.SingleBranchStep singleBranchStep;
+            if (dataPointReaderConfiguration.getPdbLocation() != null) {
+                singleBranchStep = StructureParser.local().localPDB(getLocalPDB(), pdbIdentifier);
+            } else {
+                singleBranchStep = (dataPointReaderConfiguration.isMmtf() ? StructureParser.mmtf() : StructureParser.pdb()).pdbIdentifier(pdbIdentifier);
+            }
+            StructureParser.SingleParser singleParser = chainIdentifier != null ? singleBranchStep.chainIdentifier(chainIdentifier) : singleBranchStep.everything();
+            return singleParser.setOptions(structureParserOptions)
+                               .parse();
+        };
+        if (dataPointReaderConfiguration.getPdbLocation() != null && !dataPointReaderConfiguration.isMmtf()) {
+            return new StructureSource(getLocalPDB().getPathForPdbIdentifier(pdbIdentifier), null, pdbIdentifier, chainIdentifier, structureParser);
+        }
+        SourceLocation sourceLocation;
+        if (dataPointReaderConfiguration.getPdbLocation() != null) {
+            sourceLocation = SourceLocation.OFFLINE_MMTF;
+        } else {
+            sourceLocation = dataPointReaderConfiguration.isMmtf() ? SourceLocation.ONLINE_MMTF : SourceLocation.ONLINE_PDB;
+        }
+        return new StructureSource(null, sourceLocation, pdbIdentifier, chainIdentifier, structureParser);
+    }
+
+    /**
+     * Reads the given {@link StructureSource}, using the {@link StructureCache} if one is set.
+     *
+     * @param source The {@link StructureSource} to be read.
+     * @return The {@link Structure}.
+     */
+    private Structure readStructure(StructureSource source) {
+        if (structureCache == null) {
+            return source.structureParser.get();
+        }
+        if (source.structurePath != null) {
+            return structureCache.getStructure(source.structurePath, source.chainIdentifier, structureParserOptions, source.structureParser);
+        }
+        return structureCache.getStructure(source.sourceLocation, source.pdbIdentifier, source.chainIdentifier, structureParserOptions, source.structureParser);
+    }
+
+    /**
+     * Sets the {@link StructureCache} from which parsed structures are restored and to which they are added. Atom records that are streamed are not cached.
+     *
+     * @param structureCache The {@link StructureCache} or null if no cache should be used.
+     */
+    public void setStructureCache(StructureCache structureCache) {
+        this.structureCache = structureCache;
+    }
+
+    private MultiParser createMultiParser(Path chainListPath) {
+        MultiParser multiParser;
         if (dataPointReaderConfiguration.getPdbLocation() != null) {
             if (dataPointReaderConfiguration.getLocalPDB() != null) {
                 multiParser = StructureParser.local()
                                              .localPDB(dataPointReaderConfiguration.getLocalPDB())
                                              .chainList(chainListPath, dataPointReaderConfiguration.getChainListSeparator())
                                              .setOptions(structureParserOptions);
-                logger.info("using provided instance {} of local PDB for parsing", dataPointReaderConfiguration.getLocalPDB());
+                logger.debug("using provided instance {} of local PDB for parsing", dataPointReaderConfiguration.getLocalPDB());
             } else {
                 if (dataPointReaderConfiguration.isMmtf()) {
                     multiParser = StructureParser.local()
                                                  .localPDB(new LocalPDB(dataPointReaderConfiguration.getPdbLocation(), SourceLocation.OFFLINE_MMTF))
                                                  .chainList(chainListPath, dataPointReaderConfiguration.getChainListSeparator())
                                                  .setOptions(structureParserOptions);
-                    logger.info("using local MMTF {} for parsing", dataPointReaderConfiguration.getPdbLocation());
+                    logger.debug("using local MMTF {} for parsing", dataPointReaderConfiguration.getPdbLocation());
                 } else {
                     multiParser = StructureParser.local()
                                                  .localPDB(new LocalPDB(dataPointReaderConfiguration.getPdbLocation(), SourceLocation.OFFLINE_PDB))
                                                  .chainList(chainListPath, dataPointReaderConfiguration.getChainListSeparator())
                                                  .setOptions(structureParserOptions);
-                    logger.info("using local PDB {} for parsing", dataPointReaderConfiguration.getPdbLocation());
+                    logger.debug("using local PDB {} for parsing", dataPointReaderConfiguration.getPdbLocation());
                 }
             }
         } else {
@@ -120,14 +315,15 @@ public class DataPointReader {
                 multiParser = StructureParser.mmtf()
                                              .chainList(chainListPath, dataPointReaderConfiguration.getChainListSeparator())
                                              .setOptions(structureParserOptions);
-                logger.info("using online MMFT for parsing");
+                logger.debug("using online MMFT for parsing");
             } else {
                 multiParser = StructureParser.pdb()
                                              .chainList(chainListPath, dataPointReaderConfiguration.getChainListSeparator())
                                              .setOptions(structureParserOptions);
-                logger.info("using online PDB for parsing");
+                logger.debug("using online PDB for parsing");
             }
         }
+        return multiParser;
     }
 
     /**
@@ -184,56 +380,166 @@ public class DataPointReader {
     }
 
     /**
-     * Reads the {@link DataPoint}s from the given input list.
+     * Distributes the given inputs round-robin to at most the desired number of parser workers. Thus, the k-th input of worker w is the (k * workers + w)-th input.
+     *
+     * @param inputs The inputs to be distributed.
+     * @return The inputs of each worker.
+     */
+    private <InputType> List<List<InputType>> partition(List<InputType> inputs) {
+        int workers = Math.max(1, Math.min(levelOfParallelism, inputs.size()));
+        List<List<InputType>> partitions = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < inputs.size(); i++) {
+            partitions.get(i % workers).add(inputs.get(i));
+        }
+        return partitions;
+    }
+
+    private int getNumberOfQueuedStructures() {
+        if (multiParsers == null) {
+            return atomRecordSources.stream()
+                                    .mapToInt(List::size)
+                                    .sum();
+        }
+        return multiParsers.stream()
+                           .mapToInt(MultiParser::getNumberOfQueuedStructures)
+                           .sum();
+    }
+
+    /**
+     * Creates the {@link LeafSubstructureProvider} that materializes the {@link LeafSubstructure}s of the given input by reading it again. This allows to restore coordinate-only
+     * {@link DataPoint}s, e.g. from a {@link DataPointSnapshot}, without reading the input.
+     *
+     * @param inputIndex The index of the input.
+     * @return The {@link LeafSubstructureProvider}.
+     */
+    StructureLeafSubstructureProvider createLeafSubstructureProvider(int inputIndex) {
+        int workers = leafSubstructureSources.size();
+        if (inputIndex < 0 || inputIndex / workers >= leafSubstructureSources.get(inputIndex % workers).size()) {
+            throw new IllegalArgumentException("no source to materialize leaf substructures of input " + inputIndex);
+        }
+        if (materializedStructures == null) {
+            materializedStructures = Collections.synchronizedMap(new MaterializedStructures(dataPointReaderConfiguration.getMaterializedStructures()));
+        }
+        return new StructureLeafSubstructureProvider(inputIndex, leafSubstructureSources.get(inputIndex % workers).get(inputIndex / workers), materializedStructures);
+    }
+
+    /**
+     * Reads the {@link DataPoint}s from the given input list. Each parser worker reads its share of the input and hands the converted {@link DataPoint}s to a bounded queue, from which they
+     * are collected. The {@link DataPoint}s are returned in input order.
      *
      * @return The {@link DataPoint}s.
      */
     public List<DataPoint<String>> readDataPoints() {
-        int queuedStructures = multiParser.getNumberOfQueuedStructures();
+        int queuedStructures = getNumberOfQueuedStructures();
         if (queuedStructures < MINIMAL_REQUIRED_STRUCTURES) {
             throw new ItemsetMinerException("at least " + MINIMAL_REQUIRED_STRUCTURES + " structures are required as input");
         }
-        List<DataPoint<String>> dataPoints = new ArrayList<>();
-        while (multiParser.hasNext()) {
-            Structure structure;
-            try {
-                structure = multiParser.next();
-            } catch (StructureParserException | UncheckedIOException e) {
-                logger.warn("failed to parse structure", e);
-                continue;
+        int workers = multiParsers != null ? multiParsers.size() : atomRecordSources.size();
+        if (dataPointReaderConfiguration.isCoordinatesOnly()) {
+            logger.info("reading coordinate-only data points, leaf substructures of up to {} structures are kept when materialized", dataPointReaderConfiguration.getMaterializedStructures());
+            materializedStructures = Collections.synchronizedMap(new MaterializedStructures(dataPointReaderConfiguration.getMaterializedStructures()));
+        }
+        BlockingQueue<ReadDataPoint> readDataPoints = new ArrayBlockingQueue<>(QUEUED_DATA_POINTS_PER_WORKER * workers);
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            ReaderWorker readerWorker;
+            if (multiParsers == null) {
+                readerWorker = new AtomRecordWorker(i, workers, atomRecordSources.get(i), readDataPoints);
+            } else if (structureCache != null) {
+                readerWorker = new CachedStructureWorker(i, workers, structureSources.get(i), readDataPoints);
+            } else {
+                readerWorker = new ParserWorker(i, workers, multiParsers.get(i), readDataPoints);
             }
-            if (Structures.isAlphaCarbonStructure(structure) || Structures.isBackboneStructure(structure)) {
-                logger.warn("detected alpha carbon/backbone only structure, skipping {}", structure);
-                continue;
+            futures.add(executorService.submit(readerWorker));
+        }
+        executorService.shutdown();
+
+        // collect data points until all workers are finished
+        TreeMap<Integer, DataPoint<String>> dataPoints = new TreeMap<>();
+        int finishedWorkers = 0;
+        int readStructures = 0;
+        try {
+            while (finishedWorkers < workers) {
+                ReadDataPoint readDataPoint = readDataPoints.take();
+                if (readDataPoint == ReadDataPoint.END_OF_INPUT) {
+                    finishedWorkers++;
+                    continue;
+                }
+                readStructures++;
+                if (readDataPoint.dataPoint != null) {
+                    dataPoints.put(readDataPoint.inputIndex, readDataPoint.dataPoint);
+                }
+                if (readStructures % 10 == 0) {
+                    logger.info("read {} out of {} structures", readStructures, queuedStructures);
+                }
             }
-            dataPoints.add(toDataPoint(structure, structure.getPdbIdentifier(), structure.getFirstModel().getFirstChain().getChainIdentifier()));
-            int remainingStructures = multiParser.getNumberOfRemainingStructures();
-            if (remainingStructures % 10 == 0) {
-                logger.info("read {} out of {} structures", queuedStructures - remainingStructures, queuedStructures);
+            for (Future<?> future : futures) {
+                future.get();
             }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new ItemsetMinerException("reading of structures was interrupted");
+        } catch (ExecutionException e) {
+            throw new ItemsetMinerException("failed to read structures: " + e.getCause().getMessage());
         }
-        return dataPoints;
+        return new ArrayList<>(dataPoints.values());
     }
 
     /**
      * Converts the given {@link Structure} to a {@link DataPoint}.
      *
-     * @param structure       The {@link Structure} to be converted.
-     * @param pdbIdentifier   The PDB identifier of the {@link Structure}.
-     * @param chainIdentifier The chain identifier of the {@link Structure};
+     * @param structure                The {@link Structure} to be converted.
+     * @param leafSubstructureProvider The provider that materializes the {@link LeafSubstructure}s of coordinate-only {@link DataPoint}s or null.
      * @return A new {@link DataPoint}.
      */
-    private DataPoint<String> toDataPoint(Structure structure, String pdbIdentifier, String chainIdentifier) {
+    private DataPoint<String> toDataPoint(Structure structure, StructureLeafSubstructureProvider leafSubstructureProvider) {
         // only consider first model
         if (structure.getAllModels().size() > 1) {
             logger.info("multi-model structure {} detected, using only first model", structure);
         }
         Model firstModel = structure.getFirstModel();
+        return toDataPoint(structure.getPdbIdentifier(), firstModel.getFirstChain().getChainIdentifier(), firstModel.getAllLeafSubstructures(), null, leafSubstructureProvider);
+    }
+
+    /**
+     * Converts the given {@link Structure} to a {@link DataPoint} unless it contains alpha carbon or backbone atoms only.
+     *
+     * @param structure                The {@link Structure} to be converted.
+     * @param leafSubstructureProvider The provider that materializes the {@link LeafSubstructure}s of coordinate-only {@link DataPoint}s or null.
+     * @return A new {@link DataPoint} or null if the {@link Structure} is skipped.
+     */
+    private DataPoint<String> toCompleteDataPoint(Structure structure, StructureLeafSubstructureProvider leafSubstructureProvider) {
+        if (Structures.isAlphaCarbonStructure(structure) || Structures.isBackboneStructure(structure)) {
+            logger.warn("detected alpha carbon/backbone only structure, skipping {}", structure);
+            return null;
+        }
+        return toDataPoint(structure, leafSubstructureProvider);
+    }
+
+    /**
+     * Converts the given {@link LeafSubstructure}s to a {@link DataPoint}.
+     *
+     * @param pdbIdentifier            The PDB identifier of the structure.
+     * @param chainIdentifier          The chain identifier of the structure.
+     * @param leafSubstructures        The {@link LeafSubstructure}s of the structure.
+     * @param consecutiveIndices       The consecutive index of each {@link LeafSubstructure} or null if it is given by its position.
+     * @param leafSubstructureProvider The provider that materializes the {@link LeafSubstructure}s of coordinate-only {@link DataPoint}s or null.
+     * @return A new {@link DataPoint}.
+     */
+    private DataPoint<String> toDataPoint(String pdbIdentifier, String chainIdentifier, List<LeafSubstructure<?>> leafSubstructures, List<Integer> consecutiveIndices,
+                                          StructureLeafSubstructureProvider leafSubstructureProvider) {
         List<Item<String>> items = new ArrayList<>();
-        List<LeafSubstructure<?>> leafSubstructures = firstModel.getAllLeafSubstructures();
-        for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+        for (int i = 0; i < leafSubstructures.size(); i++) {
+            LeafSubstructure<?> leafSubstructure = leafSubstructures.get(i);
             if (leafSubstructureFilter.test(leafSubstructure) && hasValidLabel(leafSubstructure, labelWhiteList)) {
-                Item<String> stringItem = toItem(leafSubstructure, leafSubstructures.indexOf(leafSubstructure));
+                int consecutiveSequenceIndex = consecutiveIndices != null ? consecutiveIndices.get(i) : i;
+                Item<String> stringItem = leafSubstructureProvider != null ? toCoordinateOnlyItem(leafSubstructure, consecutiveSequenceIndex, leafSubstructureProvider)
+                                                                           : toItem(leafSubstructure, consecutiveSequenceIndex);
                 items.add(stringItem);
             }
         }
@@ -254,4 +560,245 @@ public class DataPointReader {
         }
         return new Item<>(leafSubstructure.getFamily().getThreeLetterCode(), leafSubstructure);
     }
+
+    /**
+     * Converts the given {@link LeafSubstructure} to a coordinate-only {@link Item} that holds its position and, if configured, the position of its representing atom.
+     *
+     * @param leafSubstructure          The {@link LeafSubstructure} to be converted.
+     * @param consecutiveSequenceIndex  The consecutive index of this {@link Item} in the {@link DataPoint}.
+     * @param leafSubstructureProvider  The {@link LeafSubstructureProvider} that materializes the {@link LeafSubstructure}.
+     * @return The converted {@link Item}.
+     */
+    private Item<String> toCoordinateOnlyItem(LeafSubstructure<?> leafSubstructure, int consecutiveSequenceIndex, LeafSubstructureProvider leafSubstructureProvider) {
+        int sequencePosition = dataPointReaderConfiguration.isConsecutiveSequenceNumbering() ? consecutiveSequenceIndex : leafSubstructure.getIdentifier().getSerial();
+        double[] position = leafSubstructure.getPosition().getElements();
+        RepresentationSchemeType representationSchemeType = dataPointReaderConfiguration.getCoordinatesRepresentationSchemeType();
+        double[] representativePosition = null;
+        if (representationSchemeType != null) {
+            representativePosition = RepresentationSchemeFactory.createRepresentationScheme(representationSchemeType)
+                                                                .determineRepresentingAtom(leafSubstructure)
+                                                                .getPosition()
+                                                                .getElements();
+        }
+        boolean polymer = leafSubstructure instanceof AminoAcid || leafSubstructure instanceof Nucleotide;
+        return new Item<>(leafSubstructure.getFamily().getThreeLetterCode(), leafSubstructure.getIdentifier(), polymer, sequencePosition, position, representativePosition,
+                          representationSchemeType, leafSubstructureProvider);
+    }
+
+    /**
+     * A {@link DataPoint} read by a {@link ReaderWorker} along with its position in the input. Structures that could not be read are passed without {@link DataPoint}.
+     */
+    private static class ReadDataPoint {
+
+        private static final ReadDataPoint END_OF_INPUT = new ReadDataPoint(-1, null);
+
+        private final int inputIndex;
+        private final DataPoint<String> dataPoint;
+
+        private ReadDataPoint(int inputIndex, DataPoint<String> dataPoint) {
+            this.inputIndex = inputIndex;
+            this.dataPoint = dataPoint;
+        }
+    }
+
+    /**
+     * The cache of materialized structures, which evicts the least recently used structure if more than the given number of structures are kept.
+     */
+    static class MaterializedStructures extends LinkedHashMap<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maximalSize;
+
+        MaterializedStructures(int maximalSize) {
+            super(16, 0.75f, true);
+            if (maximalSize < 1) {
+                throw new IllegalArgumentException("the number of materialized structures must be positive");
+            }
+            this.maximalSize = maximalSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> eldest) {
+            return size() > maximalSize;
+        }
+    }
+
+    /**
+     * A single input that is parsed on its own, either to be read by a {@link CachedStructureWorker} or to materialize {@link LeafSubstructure}s again. Its entry in the
+     * {@link StructureCache} is addressed by the local file if known and by the PDB identifier otherwise.
+     */
+    private static class StructureSource {
+
+        private final Path structurePath;
+        private final SourceLocation sourceLocation;
+        private final String pdbIdentifier;
+        private final String chainIdentifier;
+        private final Supplier<Structure> structureParser;
+
+        private StructureSource(Path structurePath, SourceLocation sourceLocation, String pdbIdentifier, String chainIdentifier, Supplier<Structure> structureParser) {
+            this.structurePath = structurePath;
+            this.sourceLocation = sourceLocation;
+            this.pdbIdentifier = pdbIdentifier;
+            this.chainIdentifier = chainIdentifier;
+            this.structureParser = structureParser;
+        }
+    }
+
+    /**
+     * A local file whose atom records are read by an {@link AtomRecordWorker}.
+     */
+    private static class AtomRecordSource {
+
+        private final Path structurePath;
+        private final String chainIdentifier;
+
+        private AtomRecordSource(Path structurePath, String chainIdentifier) {
+            this.structurePath = structurePath;
+            this.chainIdentifier = chainIdentifier;
+        }
+    }
+
+    /**
+     * Reads the structures assigned to a single worker and converts them to {@link DataPoint}s. Blocks if the queue of read {@link DataPoint}s is full.
+     */
+    private abstract class ReaderWorker implements Callable<Void> {
+
+        private final int workerIndex;
+        private final int workers;
+        private final BlockingQueue<ReadDataPoint> readDataPoints;
+
+        private ReaderWorker(int workerIndex, int workers, BlockingQueue<ReadDataPoint> readDataPoints) {
+            this.workerIndex = workerIndex;
+            this.workers = workers;
+            this.readDataPoints = readDataPoints;
+        }
+
+        /**
+         * Returns true if further structures are assigned to this worker.
+         *
+         * @return True if further structures should be read.
+         */
+        abstract boolean hasNext();
+
+        /**
+         * Reads the next structure assigned to this worker.
+         *
+         * @param leafSubstructureProvider The provider that materializes the {@link LeafSubstructure}s of coordinate-only {@link DataPoint}s or null.
+         * @return The {@link DataPoint} or null if the structure could not be read or should be skipped.
+         */
+        abstract DataPoint<String> readNext(StructureLeafSubstructureProvider leafSubstructureProvider);
+
+        @Override
+        public Void call() throws InterruptedException {
+            try {
+                int readStructures = 0;
+                while (hasNext()) {
+                    int inputIndex = readStructures++ * workers + workerIndex;
+                    StructureLeafSubstructureProvider leafSubstructureProvider = dataPointReaderConfiguration.isCoordinatesOnly() ? createLeafSubstructureProvider(inputIndex) : null;
+                    readDataPoints.put(new ReadDataPoint(inputIndex, readNext(leafSubstructureProvider)));
+                }
+            } finally {
+                readDataPoints.put(ReadDataPoint.END_OF_INPUT);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parses the structures of a single {@link MultiParser}.
+     */
+    private class ParserWorker extends ReaderWorker {
+
+        private final MultiParser multiParser;
+
+        private ParserWorker(int workerIndex, int workers, MultiParser multiParser, BlockingQueue<ReadDataPoint> readDataPoints) {
+            super(workerIndex, workers, readDataPoints);
+            this.multiParser = multiParser;
+        }
+
+        @Override
+        boolean hasNext() {
+            return multiParser.hasNext();
+        }
+
+        @Override
+        DataPoint<String> readNext(StructureLeafSubstructureProvider leafSubstructureProvider) {
+            Structure structure;
+            try {
+                structure = multiParser.next();
+            } catch (StructureParserException | UncheckedIOException e) {
+                logger.warn("failed to parse structure", e);
+                return null;
+            }
+            return toCompleteDataPoint(structure, leafSubstructureProvider);
+        }
+    }
+
+    /**
+     * Reads the assigned {@link StructureSource}s through the {@link StructureCache}, such that only structures without entry are parsed.
+     */
+    private class CachedStructureWorker extends ReaderWorker {
+
+        private final Iterator<StructureSource> sourceIterator;
+
+        private CachedStructureWorker(int workerIndex, int workers, List<StructureSource> sources, BlockingQueue<ReadDataPoint> readDataPoints) {
+            super(workerIndex, workers, readDataPoints);
+            sourceIterator = sources.iterator();
+        }
+
+        @Override
+        boolean hasNext() {
+            return sourceIterator.hasNext();
+        }
+
+        @Override
+        DataPoint<String> readNext(StructureLeafSubstructureProvider leafSubstructureProvider) {
+            StructureSource source = sourceIterator.next();
+            Structure structure;
+            try {
+                structure = readStructure(source);
+            } catch (StructureParserException | UncheckedIOException e) {
+                logger.warn("failed to parse structure", e);
+                return null;
+            }
+            return toCompleteDataPoint(structure, leafSubstructureProvider);
+        }
+    }
+
+    /**
+     * Reads the atom records of the assigned {@link AtomRecordSource}s with the {@link AtomRecordReader}.
+     */
+    private class AtomRecordWorker extends ReaderWorker {
+
+        private final Iterator<AtomRecordSource> sourceIterator;
+
+        private AtomRecordWorker(int workerIndex, int workers, List<AtomRecordSource> sources, BlockingQueue<ReadDataPoint> readDataPoints) {
+            super(workerIndex, workers, readDataPoints);
+            sourceIterator = sources.iterator();
+        }
+
+        @Override
+        boolean hasNext() {
+            return sourceIterator.hasNext();
+        }
+
+        @Override
+        DataPoint<String> readNext(StructureLeafSubstructureProvider leafSubstructureProvider) {
+            AtomRecordSource source = sourceIterator.next();
+            AtomRecordReader.AtomRecords atomRecords;
+            try {
+                atomRecords = atomRecordReader.read(source.structurePath, source.chainIdentifier);
+            } catch (StructureParserException | UncheckedIOException | NumberFormatException e) {
+                logger.warn("failed to read atom records of {}", source.structurePath, e);
+                return null;
+            }
+            if (atomRecords.isReducedStructure()) {
+                logger.warn("detected alpha carbon/backbone only structure, skipping {}", source.structurePath);
+                return null;
+            }
+            return toDataPoint(atomRecords.getPdbIdentifier(), atomRecords.getChainIdentifier(), atomRecords.getLeafSubstructures(), atomRecords.getConsecutiveIndices(),
+                               leafSubstructureProvider);
+        }
+    }
 }
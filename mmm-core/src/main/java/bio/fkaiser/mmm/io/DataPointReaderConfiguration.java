@@ -3,6 +3,7 @@ package bio.fkaiser.mmm.io;
 import bio.fkaiser.mmm.model.configurations.Jsonizable;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
 import de.bioforscher.singa.structure.parser.pdb.rest.cluster.PDBSequenceCluster.PDBSequenceClusterIdentity;
 import de.bioforscher.singa.structure.parser.pdb.structures.StructureParser;
 import jdk.nashorn.internal.ir.annotations.Ignore;
@@ -20,6 +21,11 @@ public class DataPointReaderConfiguration implements Jsonizable<DataPointReaderC
 
     private static final String DEFAULT_CHAIN_LIST_SEPARATOR = "\t";
     private static final PDBSequenceClusterIdentity DEFAULT_PDB_SEQUENCE_CLUSTER_IDENTITY = PDBSequenceClusterIdentity.IDENTITY_90;
+    private static final int DEFAULT_LEVEL_OF_PARALLELISM = -1;
+    /**
+     * the default number of structures materialized for coordinate-only data points that are kept
+     */
+    public static final int DEFAULT_MATERIALIZED_STRUCTURES = 64;
 
     @JsonProperty("pdb-location")
     private String pdbLocation;
@@ -41,6 +47,16 @@ public class DataPointReaderConfiguration implements Jsonizable<DataPointReaderC
     private boolean parseWater;
     @JsonProperty("consecutive-sequence-numbering")
     private boolean consecutiveSequenceNumbering;
+    @JsonProperty("level-of-parallelism")
+    private int levelOfParallelism = DEFAULT_LEVEL_OF_PARALLELISM;
+    @JsonProperty("coordinates-only")
+    private boolean coordinatesOnly;
+    @JsonProperty("coordinates-representation-scheme")
+    private RepresentationSchemeType coordinatesRepresentationSchemeType;
+    @JsonProperty("materialized-structures")
+    private int materializedStructures = DEFAULT_MATERIALIZED_STRUCTURES;
+    @JsonProperty("stream-atom-records")
+    private boolean streamAtomRecords;
 
     /**
      * Adds the specified label to the allowed labels for ligands.
@@ -99,6 +115,76 @@ public class DataPointReaderConfiguration implements Jsonizable<DataPointReaderC
         this.consecutiveSequenceNumbering = consecutiveSequenceNumbering;
     }
 
+    public int getLevelOfParallelism() {
+        return levelOfParallelism;
+    }
+
+    /**
+     * Sets the number of parser workers, -1 to use all available processors.
+     *
+     * @param levelOfParallelism The number of parser workers.
+     */
+    public void setLevelOfParallelism(int levelOfParallelism) {
+        this.levelOfParallelism = levelOfParallelism;
+    }
+
+    public boolean isCoordinatesOnly() {
+        return coordinatesOnly;
+    }
+
+    /**
+     * Sets whether {@link bio.fkaiser.mmm.model.Item}s should hold primitive coordinates only. Their {@link de.bioforscher.singa.structure.model.interfaces.LeafSubstructure}s are then
+     * materialized on demand by parsing the structure again.
+     *
+     * @param coordinatesOnly True if only coordinates should be held.
+     */
+    public void setCoordinatesOnly(boolean coordinatesOnly) {
+        this.coordinatesOnly = coordinatesOnly;
+    }
+
+    public RepresentationSchemeType getCoordinatesRepresentationSchemeType() {
+        return coordinatesRepresentationSchemeType;
+    }
+
+    /**
+     * Sets the {@link RepresentationSchemeType} whose representing atom should additionally be held by coordinate-only {@link bio.fkaiser.mmm.model.Item}s. This should match the
+     * representation used by the metrics.
+     *
+     * @param coordinatesRepresentationSchemeType The {@link RepresentationSchemeType} or null.
+     */
+    public void setCoordinatesRepresentationSchemeType(RepresentationSchemeType coordinatesRepresentationSchemeType) {
+        this.coordinatesRepresentationSchemeType = coordinatesRepresentationSchemeType;
+    }
+
+    public int getMaterializedStructures() {
+        return materializedStructures;
+    }
+
+    /**
+     * Sets the number of structures whose {@link de.bioforscher.singa.structure.model.interfaces.LeafSubstructure}s are kept once they were materialized for coordinate-only
+     * {@link bio.fkaiser.mmm.model.Item}s (default: {@value #DEFAULT_MATERIALIZED_STRUCTURES}). The least recently used structure is evicted and parsed again when it is requested
+     * later, thus passes over all data points, e.g. the extraction of consensus or adherence, should keep at least as many structures as there are data points.
+     *
+     * @param materializedStructures The number of structures to keep, must be positive.
+     */
+    public void setMaterializedStructures(int materializedStructures) {
+        this.materializedStructures = materializedStructures;
+    }
+
+    public boolean isStreamAtomRecords() {
+        return streamAtomRecords;
+    }
+
+    /**
+     * Sets whether local PDB and mmCIF files (optionally gzipped) should be read by scanning their atom records instead of parsing complete structures. This applies to input files and
+     * chain lists with a local PDB that is not in MMTF format.
+     *
+     * @param streamAtomRecords True if atom records should be streamed.
+     */
+    public void setStreamAtomRecords(boolean streamAtomRecords) {
+        this.streamAtomRecords = streamAtomRecords;
+    }
+
     public boolean isMmtf() {
         return mmtf;
     }
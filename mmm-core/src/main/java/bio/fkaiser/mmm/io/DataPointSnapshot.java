@@ -0,0 +1,336 @@
+package bio.fkaiser.mmm.io;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.mapping.MappingRule;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A compact binary snapshot of prepared {@link DataPoint}s, i.e. {@link DataPoint}s that were read, enriched and mapped. For each {@link Item} the label, the sequence position and the
+ * {@link LeafSubstructure} with identifier, family and atom coordinates are stored, such that metrics can be evaluated on the restored {@link DataPoint}s as on the original ones.
+ * Coordinate-only {@link Item}s are stored in their coordinate-only form, i.e. with the {@link LeafIdentifier}, the kind and the positions of their {@link LeafSubstructure} as well as
+ * the input index from which the {@link DataPointReader} materializes it again.
+ * <p>
+ * The snapshot starts with a magic number, the format version and a key that is derived from the input and the configuration of the {@link DataPointReader}, the
+ * {@link bio.fkaiser.mmm.model.enrichment.DataPointEnricher} and the {@link MappingRule}s. Snapshots with another version or key are ignored. The snapshot is memory-mapped for
+ * loading.
+ *
+ * @author fk
+ */
+public class DataPointSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataPointSnapshot.class);
+
+    private static final int MAGIC_NUMBER = 0x4d4d4d53;
+    private static final int VERSION = 2;
+
+    private final Path snapshotPath;
+    private final String key;
+
+    public DataPointSnapshot(Path snapshotPath, String key) {
+        this.snapshotPath = snapshotPath;
+        this.key = key;
+    }
+
+    /**
+     * Creates a {@link DataPointSnapshot} for the input and the preparation steps of the given {@link ItemsetMinerConfiguration}.
+     *
+     * @param snapshotPath              The path of the snapshot.
+     * @param itemsetMinerConfiguration The {@link ItemsetMinerConfiguration}.
+     * @return A new {@link DataPointSnapshot}.
+     * @throws IOException If the input cannot be fingerprinted.
+     */
+    public static DataPointSnapshot of(Path snapshotPath, ItemsetMinerConfiguration<String> itemsetMinerConfiguration) throws IOException {
+        return new DataPointSnapshot(snapshotPath, createKey(itemsetMinerConfiguration));
+    }
+
+    /**
+     * Creates the key of the given {@link ItemsetMinerConfiguration}. The key covers the input specification and the content of input lists and directories as well as the
+     * configurations of all steps that prepare {@link DataPoint}s.
+     *
+     * @param itemsetMinerConfiguration The {@link ItemsetMinerConfiguration}.
+     * @return The key.
+     * @throws IOException If the input cannot be fingerprinted.
+     */
+    static String createKey(ItemsetMinerConfiguration<String> itemsetMinerConfiguration) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategy.KEBAB_CASE);
+        StringJoiner stringJoiner = new StringJoiner("\n");
+        stringJoiner.add("input-chain=" + itemsetMinerConfiguration.getInputChain());
+        stringJoiner.add("input-list=" + fingerprintInputList(itemsetMinerConfiguration.getInputListLocation()));
+        stringJoiner.add("input-directory=" + fingerprintInputDirectory(itemsetMinerConfiguration.getInputDirectoryLocation()));
+        try {
+            stringJoiner.add("reader=" + mapper.writeValueAsString(itemsetMinerConfiguration.getDataPointReaderConfiguration()));
+            stringJoiner.add("enricher=" + (itemsetMinerConfiguration.getDataPointEnricher() == null ? null : itemsetMinerConfiguration.getDataPointEnricher().getClass().getName()
+                                                                                                                + mapper.writeValueAsString(itemsetMinerConfiguration.getDataPointEnricher())));
+            if (itemsetMinerConfiguration.getMappingRules() != null) {
+                for (MappingRule<String> mappingRule : itemsetMinerConfiguration.getMappingRules()) {
+                    stringJoiner.add("mapping-rule=" + mappingRule.getClass().getName() + mapper.writeValueAsString(mappingRule));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IOException("failed to serialize configuration for data point snapshot", e);
+        }
+        return Hashes.sha256(stringJoiner.toString());
+    }
+
+    private static String fingerprintInputList(String inputListLocation) throws IOException {
+        if (inputListLocation == null) {
+            return null;
+        }
+        Path inputListPath = Paths.get(inputListLocation);
+        URL inputListResourceURL = Thread.currentThread().getContextClassLoader().getResource(inputListLocation);
+        if (inputListResourceURL != null) {
+            try {
+                inputListPath = Paths.get(inputListResourceURL.toURI());
+            } catch (URISyntaxException | FileSystemNotFoundException e) {
+                throw new IOException("failed to locate input list " + inputListLocation, e);
+            }
+        }
+        return inputListLocation + ":" + Hashes.sha256(Files.readAllBytes(inputListPath));
+    }
+
+    private static String fingerprintInputDirectory(String inputDirectoryLocation) throws IOException {
+        if (inputDirectoryLocation == null) {
+            return null;
+        }
+        try (Stream<Path> paths = Files.list(Paths.get(inputDirectoryLocation))) {
+            return inputDirectoryLocation + ":" + paths.filter(path -> path.toFile().isFile())
+                                                       .map(path -> path.getFileName() + "," + path.toFile().length() + "," + path.toFile().lastModified())
+                                                       .sorted()
+                                                       .collect(Collectors.joining(";"));
+        }
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Loads the {@link DataPoint}s of this snapshot if it exists and matches the format version and key. The {@link LeafSubstructure}s of coordinate-only {@link Item}s cannot be
+     * materialized.
+     *
+     * @return The {@link DataPoint}s or an empty {@link Optional} if the snapshot cannot be used.
+     */
+    public Optional<List<DataPoint<String>>> load() {
+        return load(null);
+    }
+
+    /**
+     * Loads the {@link DataPoint}s of this snapshot if it exists and matches the format version and key. The {@link LeafSubstructure}s of coordinate-only {@link Item}s are
+     * materialized by the given {@link DataPointReader}, which must be created for the same input.
+     *
+     * @param dataPointReader The {@link DataPointReader} that materializes {@link LeafSubstructure}s of coordinate-only {@link Item}s or null.
+     * @return The {@link DataPoint}s or an empty {@link Optional} if the snapshot cannot be used, e.g. because it is damaged.
+     */
+    public Optional<List<DataPoint<String>>> load(DataPointReader dataPointReader) {
+        if (!Files.isRegularFile(snapshotPath)) {
+            logger.info("no data point snapshot found at {}", snapshotPath);
+            return Optional.empty();
+        }
+        try (FileChannel fileChannel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (fileChannel.size() > Integer.MAX_VALUE) {
+                logger.warn("data point snapshot {} is too large to be mapped", snapshotPath);
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC_NUMBER) {
+                logger.warn("{} is no data point snapshot", snapshotPath);
+                return Optional.empty();
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                logger.info("data point snapshot {} has version {}, but version {} is required", snapshotPath, version, VERSION);
+                return Optional.empty();
+            }
+            String snapshotKey = LeafSubstructureCodec.readString(buffer);
+            if (!key.equals(snapshotKey)) {
+                logger.info("data point snapshot {} was created for another input or configuration", snapshotPath);
+                return Optional.empty();
+            }
+            List<DataPoint<String>> dataPoints = readDataPoints(buffer, dataPointReader);
+            logger.info("loaded {} data points from snapshot {}", dataPoints.size(), snapshotPath);
+            return Optional.of(dataPoints);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.warn("failed to load data point snapshot {}", snapshotPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the given {@link DataPoint}s to this snapshot. The snapshot is written to a temporary file first and then moved to its location.
+     *
+     * @param dataPoints The {@link DataPoint}s to be written.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void write(List<DataPoint<String>> dataPoints) throws IOException {
+
+        // collect all strings
+        Map<String, Integer> stringIndices = new LinkedHashMap<>();
+        for (DataPoint<String> dataPoint : dataPoints) {
+            LeafSubstructureCodec.indexString(stringIndices, dataPoint.getDataPointIdentifier().getPdbIdentifier());
+            LeafSubstructureCodec.indexString(stringIndices, dataPoint.getDataPointIdentifier().getChainIdentifier());
+            for (Item<String> item : dataPoint.getItems()) {
+                LeafSubstructureCodec.indexString(stringIndices, item.getLabel());
+                if (item.isCoordinateOnly()) {
+                    item.getLeafIdentifier().ifPresent(leafIdentifier -> LeafSubstructureCodec.indexStrings(stringIndices, leafIdentifier));
+                    item.getRepresentativeSchemeType().ifPresent(representationSchemeType -> LeafSubstructureCodec.indexString(stringIndices, representationSchemeType.name()));
+                } else {
+                    item.getLeafSubstructure().ifPresent(leafSubstructure -> LeafSubstructureCodec.indexStrings(stringIndices, leafSubstructure));
+                }
+            }
+        }
+
+        Path parentPath = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(parentPath);
+        Path temporaryPath = Files.createTempFile(parentPath, "mmm_", ".tmp");
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            outputStream.writeInt(MAGIC_NUMBER);
+            outputStream.writeInt(VERSION);
+            LeafSubstructureCodec.writeString(outputStream, key);
+            LeafSubstructureCodec.writeStringTable(outputStream, stringIndices);
+            outputStream.writeInt(dataPoints.size());
+            for (DataPoint<String> dataPoint : dataPoints) {
+                outputStream.writeInt(stringIndices.get(dataPoint.getDataPointIdentifier().getPdbIdentifier()));
+                outputStream.writeInt(stringIndices.get(dataPoint.getDataPointIdentifier().getChainIdentifier()));
+                outputStream.writeInt(dataPoint.getItems().size());
+                for (Item<String> item : dataPoint.getItems()) {
+                    writeItem(outputStream, item, stringIndices);
+                }
+            }
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("wrote {} data points to snapshot {}", dataPoints.size(), snapshotPath);
+    }
+
+    private static void writeItem(DataOutputStream outputStream, Item<String> item, Map<String, Integer> stringIndices) throws IOException {
+        outputStream.writeInt(stringIndices.get(item.getLabel()));
+        outputStream.writeInt(item.getSequencePosition());
+        if (item.isCoordinateOnly()) {
+            writeCoordinateOnlyItem(outputStream, item, stringIndices);
+        } else if (item.getLeafSubstructure().isPresent()) {
+            LeafSubstructureCodec.writeLeafSubstructure(outputStream, item.getLeafSubstructure().get(), stringIndices);
+        } else {
+            outputStream.writeByte(LeafSubstructureCodec.NO_LEAF_SUBSTRUCTURE);
+        }
+    }
+
+    /**
+     * Writes the given coordinate-only {@link Item} without materializing its {@link LeafSubstructure}.
+     *
+     * @param outputStream  The stream to write to.
+     * @param item          The coordinate-only {@link Item}.
+     * @param stringIndices The string table.
+     * @throws IOException If the {@link Item} cannot be written.
+     */
+    private static void writeCoordinateOnlyItem(DataOutputStream outputStream, Item<String> item, Map<String, Integer> stringIndices) throws IOException {
+        outputStream.writeByte(LeafSubstructureCodec.COORDINATE_ONLY_ITEM);
+        outputStream.writeInt(item.getLeafSubstructureProvider()
+                                  .filter(StructureLeafSubstructureProvider.class::isInstance)
+                                  .map(leafSubstructureProvider -> ((StructureLeafSubstructureProvider) leafSubstructureProvider).getInputIndex())
+                                  .orElse(-1));
+        LeafSubstructureCodec.writeLeafIdentifier(outputStream, item.getLeafIdentifier().orElseThrow(IllegalStateException::new), stringIndices);
+        outputStream.writeBoolean(item.isPolymer());
+        writePosition(outputStream, item.getPosition().orElseThrow(IllegalStateException::new));
+        Optional<RepresentationSchemeType> representationSchemeType = item.getRepresentativeSchemeType();
+        outputStream.writeInt(LeafSubstructureCodec.stringIndex(stringIndices, representationSchemeType.map(type -> type.name()).orElse(null)));
+        if (representationSchemeType.isPresent()) {
+            writePosition(outputStream, item.getPosition(representationSchemeType.get()).orElseThrow(IllegalStateException::new));
+        }
+    }
+
+    private static void writePosition(DataOutputStream outputStream, Vector3D position) throws IOException {
+        outputStream.writeDouble(position.getX());
+        outputStream.writeDouble(position.getY());
+        outputStream.writeDouble(position.getZ());
+    }
+
+    private static List<DataPoint<String>> readDataPoints(ByteBuffer buffer, DataPointReader dataPointReader) {
+        Map<Integer, StructureLeafSubstructureProvider> leafSubstructureProviders = new HashMap<>();
+        String[] strings = LeafSubstructureCodec.readStringTable(buffer);
+        int dataPointCount = LeafSubstructureCodec.readCount(buffer, 3 * Integer.BYTES);
+        List<DataPoint<String>> dataPoints = new ArrayList<>(dataPointCount);
+        for (int i = 0; i < dataPointCount; i++) {
+            DataPointIdentifier dataPointIdentifier = new DataPointIdentifier(strings[buffer.getInt()], strings[buffer.getInt()]);
+            int itemCount = LeafSubstructureCodec.readCount(buffer, 2 * Integer.BYTES + 1);
+            List<Item<String>> items = new ArrayList<>(itemCount);
+            for (int j = 0; j < itemCount; j++) {
+                items.add(readItem(buffer, strings, dataPointReader, leafSubstructureProviders));
+            }
+            dataPoints.add(new DataPoint<>(items, dataPointIdentifier));
+        }
+        return dataPoints;
+    }
+
+    private static Item<String> readItem(ByteBuffer buffer, String[] strings, DataPointReader dataPointReader,
+                                         Map<Integer, StructureLeafSubstructureProvider> leafSubstructureProviders) {
+        String label = strings[buffer.getInt()];
+        int sequencePosition = buffer.getInt();
+        if (buffer.get(buffer.position()) == LeafSubstructureCodec.COORDINATE_ONLY_ITEM) {
+            buffer.get();
+            return readCoordinateOnlyItem(buffer, strings, label, sequencePosition, dataPointReader, leafSubstructureProviders);
+        }
+        LeafSubstructure<?> leafSubstructure = LeafSubstructureCodec.readLeafSubstructure(buffer, strings);
+        return new Item<>(label, leafSubstructure, sequencePosition);
+    }
+
+    /**
+     * Reads a coordinate-only {@link Item} written by {@link #writeCoordinateOnlyItem(DataOutputStream, Item, Map)}. All {@link Item}s of the same input share a single
+     * {@link StructureLeafSubstructureProvider}.
+     *
+     * @param buffer                    The buffer to read from.
+     * @param strings                   The string table.
+     * @param label                     The label of the {@link Item}.
+     * @param sequencePosition          The sequence position of the {@link Item}.
+     * @param dataPointReader           The {@link DataPointReader} that materializes the {@link LeafSubstructure} or null.
+     * @param leafSubstructureProviders The {@link StructureLeafSubstructureProvider}s created so far by input index.
+     * @return The coordinate-only {@link Item}.
+     */
+    private static Item<String> readCoordinateOnlyItem(ByteBuffer buffer, String[] strings, String label, int sequencePosition, DataPointReader dataPointReader,
+                                                       Map<Integer, StructureLeafSubstructureProvider> leafSubstructureProviders) {
+        int inputIndex = buffer.getInt();
+        LeafIdentifier leafIdentifier = LeafSubstructureCodec.readLeafIdentifier(buffer, strings);
+        boolean polymer = buffer.get() != 0;
+        double[] position = readPosition(buffer);
+        int representationSchemeTypeIndex = buffer.getInt();
+        RepresentationSchemeType representationSchemeType = null;
+        double[] representativePosition = null;
+        if (representationSchemeTypeIndex != -1) {
+            representationSchemeType = RepresentationSchemeType.valueOf(strings[representationSchemeTypeIndex]);
+            representativePosition = readPosition(buffer);
+        }
+        StructureLeafSubstructureProvider leafSubstructureProvider = null;
+        if (dataPointReader != null && inputIndex != -1) {
+            leafSubstructureProvider = leafSubstructureProviders.computeIfAbsent(inputIndex, dataPointReader::createLeafSubstructureProvider);
+        }
+        return new Item<>(label, leafIdentifier, polymer, sequencePosition, position, representativePosition, representationSchemeType, leafSubstructureProvider);
+    }
+
+    private static double[] readPosition(ByteBuffer buffer) {
+        return new double[]{buffer.getDouble(), buffer.getDouble(), buffer.getDouble()};
+    }
+}
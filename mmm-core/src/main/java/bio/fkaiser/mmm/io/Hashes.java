@@ -0,0 +1,46 @@
+package bio.fkaiser.mmm.io;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes that are used as keys of on-disk caches and libraries.
+ *
+ * @author fk
+ */
+public final class Hashes {
+
+    private Hashes() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 digest of the given bytes.
+     *
+     * @param bytes The bytes.
+     * @return The digest.
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : digest) {
+                hexString.append(String.format("%02x", b));
+            }
+            return hexString.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("failed to calculate hash", e);
+        }
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 digest of the UTF-8 encoding of the given string.
+     *
+     * @param string The string.
+     * @return The digest.
+     */
+    public static String sha256(String string) {
+        return sha256(string.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,228 @@
+package bio.fkaiser.mmm.io;
+
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.families.LigandFamily;
+import de.bioforscher.singa.structure.model.families.NucleotideFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
+import de.bioforscher.singa.structure.model.interfaces.Atom;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
+import de.bioforscher.singa.structure.model.oak.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary encoding of {@link LeafSubstructure}s shared by the {@link DataPointSnapshot} and the {@link StructureCache}. A {@link LeafSubstructure} is written as its type, identifier,
+ * family and atoms, where all strings are replaced by their index in a string table that precedes the encoded {@link LeafSubstructure}s.
+ *
+ * @author fk
+ */
+final class LeafSubstructureCodec {
+
+    static final byte NO_LEAF_SUBSTRUCTURE = 0;
+    private static final byte AMINO_ACID = 1;
+    private static final byte NUCLEOTIDE = 2;
+    private static final byte LIGAND = 3;
+    static final byte COORDINATE_ONLY_ITEM = 4;
+
+    private LeafSubstructureCodec() {
+        // prevent instantiation
+    }
+
+    /**
+     * Adds all strings of the given {@link LeafSubstructure} to the string table.
+     *
+     * @param stringIndices    The string table.
+     * @param leafSubstructure The {@link LeafSubstructure}.
+     */
+    static void indexStrings(Map<String, Integer> stringIndices, LeafSubstructure<?> leafSubstructure) {
+        indexStrings(stringIndices, leafSubstructure.getIdentifier());
+        indexString(stringIndices, determineFamilyCode(leafSubstructure));
+        indexString(stringIndices, leafSubstructure.getFamily().getOneLetterCode());
+        for (Atom atom : leafSubstructure.getAllAtoms()) {
+            indexString(stringIndices, atom.getAtomName());
+            indexString(stringIndices, atom.getElement().getSymbol());
+        }
+    }
+
+    static void indexString(Map<String, Integer> stringIndices, String string) {
+        if (string != null) {
+            stringIndices.putIfAbsent(string, stringIndices.size());
+        }
+    }
+
+    static int stringIndex(Map<String, Integer> stringIndices, String string) {
+        return string == null ? -1 : stringIndices.get(string);
+    }
+
+    /**
+     * Returns the code from which the family of the given {@link LeafSubstructure} is restored, i.e. the name of the constant for amino acids and nucleotides and the three-letter code
+     * for ligands.
+     *
+     * @param leafSubstructure The {@link LeafSubstructure}.
+     * @return The code of the family.
+     */
+    private static String determineFamilyCode(LeafSubstructure<?> leafSubstructure) {
+        if (leafSubstructure.getFamily() instanceof AminoAcidFamily) {
+            return ((AminoAcidFamily) leafSubstructure.getFamily()).name();
+        }
+        if (leafSubstructure.getFamily() instanceof NucleotideFamily) {
+            return ((NucleotideFamily) leafSubstructure.getFamily()).name();
+        }
+        return leafSubstructure.getFamily().getThreeLetterCode();
+    }
+
+    /**
+     * Writes the given {@link LeafSubstructure}, whose strings must be contained in the string table.
+     *
+     * @param outputStream     The stream to write to.
+     * @param leafSubstructure The {@link LeafSubstructure} to be written.
+     * @param stringIndices    The string table.
+     * @throws IOException If the {@link LeafSubstructure} cannot be written.
+     */
+    static void writeLeafSubstructure(DataOutputStream outputStream, LeafSubstructure<?> leafSubstructure, Map<String, Integer> stringIndices) throws IOException {
+        if (leafSubstructure instanceof AminoAcid) {
+            outputStream.writeByte(AMINO_ACID);
+        } else if (leafSubstructure instanceof Nucleotide) {
+            outputStream.writeByte(NUCLEOTIDE);
+        } else {
+            outputStream.writeByte(LIGAND);
+        }
+        writeLeafIdentifier(outputStream, leafSubstructure.getIdentifier(), stringIndices);
+        outputStream.writeInt(stringIndex(stringIndices, determineFamilyCode(leafSubstructure)));
+        outputStream.writeInt(stringIndex(stringIndices, leafSubstructure.getFamily().getOneLetterCode()));
+        outputStream.writeBoolean(leafSubstructure.isAnnotatedAsHeteroAtom());
+        List<Atom> atoms = leafSubstructure.getAllAtoms();
+        outputStream.writeInt(atoms.size());
+        for (Atom atom : atoms) {
+            outputStream.writeInt(atom.getAtomIdentifier());
+            outputStream.writeInt(stringIndex(stringIndices, atom.getAtomName()));
+            outputStream.writeInt(stringIndex(stringIndices, atom.getElement().getSymbol()));
+            Vector3D position = atom.getPosition();
+            outputStream.writeDouble(position.getX());
+            outputStream.writeDouble(position.getY());
+            outputStream.writeDouble(position.getZ());
+        }
+    }
+
+    /**
+     * Reads a {@link LeafSubstructure} written by {@link #writeLeafSubstructure(DataOutputStream, LeafSubstructure, Map)}.
+     *
+     * @param buffer  The buffer to read from.
+     * @param strings The string table.
+     * @return The {@link LeafSubstructure} or null if {@link #NO_LEAF_SUBSTRUCTURE} was written instead.
+     */
+    static OakLeafSubstructure<?> readLeafSubstructure(ByteBuffer buffer, String[] strings) {
+        byte leafSubstructureType = buffer.get();
+        if (leafSubstructureType == NO_LEAF_SUBSTRUCTURE) {
+            return null;
+        }
+        LeafIdentifier leafIdentifier = readLeafIdentifier(buffer, strings);
+        String familyCode = strings[buffer.getInt()];
+        int oneLetterCodeIndex = buffer.getInt();
+        OakLeafSubstructure<?> leafSubstructure;
+        switch (leafSubstructureType) {
+            case AMINO_ACID:
+                leafSubstructure = new OakAminoAcid(leafIdentifier, AminoAcidFamily.valueOf(familyCode));
+                break;
+            case NUCLEOTIDE:
+                leafSubstructure = new OakNucleotide(leafIdentifier, NucleotideFamily.valueOf(familyCode));
+                break;
+            case LIGAND:
+                leafSubstructure = new OakLigand(leafIdentifier, new LigandFamily(oneLetterCodeIndex == -1 ? "?" : strings[oneLetterCodeIndex], familyCode));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown leaf substructure type " + leafSubstructureType);
+        }
+        leafSubstructure.setAnnotatedAsHetAtom(buffer.get() != 0);
+        int atomCount = readCount(buffer, 3 * Integer.BYTES + 3 * Double.BYTES);
+        for (int k = 0; k < atomCount; k++) {
+            int atomIdentifier = buffer.getInt();
+            String atomName = strings[buffer.getInt()];
+            String elementSymbol = strings[buffer.getInt()];
+            Vector3D position = new Vector3D(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+            leafSubstructure.addAtom(new OakAtom(atomIdentifier, ElementProvider.getElementBySymbol(elementSymbol).orElse(ElementProvider.UNKOWN), atomName, position));
+        }
+        return leafSubstructure;
+    }
+
+    /**
+     * Adds all strings of the given {@link LeafIdentifier} to the string table.
+     *
+     * @param stringIndices  The string table.
+     * @param leafIdentifier The {@link LeafIdentifier}.
+     */
+    static void indexStrings(Map<String, Integer> stringIndices, LeafIdentifier leafIdentifier) {
+        indexString(stringIndices, leafIdentifier.getPdbIdentifier());
+        indexString(stringIndices, leafIdentifier.getChainIdentifier());
+    }
+
+    static void writeLeafIdentifier(DataOutputStream outputStream, LeafIdentifier leafIdentifier, Map<String, Integer> stringIndices) throws IOException {
+        outputStream.writeInt(stringIndex(stringIndices, leafIdentifier.getPdbIdentifier()));
+        outputStream.writeInt(leafIdentifier.getModelIdentifier());
+        outputStream.writeInt(stringIndex(stringIndices, leafIdentifier.getChainIdentifier()));
+        outputStream.writeInt(leafIdentifier.getSerial());
+        outputStream.writeChar(leafIdentifier.getInsertionCode());
+    }
+
+    static LeafIdentifier readLeafIdentifier(ByteBuffer buffer, String[] strings) {
+        int pdbIdentifierIndex = buffer.getInt();
+        int modelIdentifier = buffer.getInt();
+        int chainIdentifierIndex = buffer.getInt();
+        int serial = buffer.getInt();
+        char insertionCode = buffer.getChar();
+        return new LeafIdentifier(pdbIdentifierIndex == -1 ? null : strings[pdbIdentifierIndex], modelIdentifier,
+                                  chainIdentifierIndex == -1 ? null : strings[chainIdentifierIndex], serial, insertionCode);
+    }
+
+    static void writeStringTable(DataOutputStream outputStream, Map<String, Integer> stringIndices) throws IOException {
+        outputStream.writeInt(stringIndices.size());
+        for (String string : stringIndices.keySet()) {
+            writeString(outputStream, string);
+        }
+    }
+
+    static String[] readStringTable(ByteBuffer buffer) {
+        String[] strings = new String[readCount(buffer, Integer.BYTES)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        return strings;
+    }
+
+    static void writeString(DataOutputStream outputStream, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the number of elements that follow in the buffer. A corrupt count is rejected before anything is allocated for it.
+     *
+     * @param buffer       The buffer to read from.
+     * @param elementBytes The minimal number of bytes of each element.
+     * @return The number of elements.
+     * @throws IllegalArgumentException If the remaining buffer cannot hold the given number of elements.
+     */
+    static int readCount(ByteBuffer buffer, int elementBytes) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / elementBytes) {
+            throw new IllegalArgumentException("corrupt element count " + count);
+        }
+        return count;
+    }
+}
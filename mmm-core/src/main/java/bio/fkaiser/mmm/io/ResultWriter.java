@@ -6,8 +6,10 @@ import bio.fkaiser.mmm.model.DataPointIdentifier;
 import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.enrichment.DataPointEnrichmentStage.EnrichmentFailure;
 import bio.fkaiser.mmm.model.metrics.ConsensusMetric;
 import bio.fkaiser.mmm.model.metrics.ExtractionMetric;
+import bio.fkaiser.mmm.model.metrics.affinity.SparseAffinityAlignment;
 import de.bioforscher.singa.core.utility.Resources;
 import de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusAlignment;
@@ -134,8 +136,15 @@ public class ResultWriter<LabelType extends Comparable<LabelType>> {
             int rank = i + 1;
             String rankString = rankFormatter.format(rank);
             Path itemsetPath = outputPath.resolve("clustered_itemsets").resolve(rankString + "_" + itemset.toSimpleString());
-            ConsensusAlignment consensusAlignment = itemsetMiner.getTotalClusteredItemsets().get(itemset);
-            consensusAlignment.writeClusters(itemsetPath);
+            List<ConsensusAlignment> consensusAlignments = itemsetMiner.getTotalClusteredItemsets().get(itemset);
+            if (consensusAlignments.size() == 1) {
+                consensusAlignments.get(0).writeClusters(itemsetPath);
+            } else {
+                // itemsets aligned incrementally in several seeded partitions
+                for (int j = 0; j < consensusAlignments.size(); j++) {
+                    consensusAlignments.get(j).writeClusters(itemsetPath.resolve("partition_" + (j + 1)));
+                }
+            }
         }
     }
 
@@ -146,7 +155,8 @@ public class ResultWriter<LabelType extends Comparable<LabelType>> {
                                                                .reduce(Integer::sum);
 
         int extractedItemsetCount = extractedItemsetsCount.orElse(0);
-        logger.info("writing {} affinity itemsets with {} observations in total", itemsetMiner.getTotalAffinityItemsets().size(), extractedItemsetCount);
+        logger.info("writing {} affinity itemsets with {} observations in total", itemsetMiner.getTotalAffinityItemsets().size() + itemsetMiner.getTotalSparseAffinityItemsets().size(),
+                    extractedItemsetCount);
 
         int patternCount = String.valueOf(extractedItemsetCount).length();
         StringBuilder pattern = new StringBuilder();
@@ -163,7 +173,14 @@ public class ResultWriter<LabelType extends Comparable<LabelType>> {
             String rankString = rankFormatter.format(rank);
             Path itemsetPath = outputPath.resolve("affinity_itemsets").resolve(rankString + "_" + itemset.toSimpleString());
             AffinityAlignment affinityAlignment = itemsetMiner.getTotalAffinityItemsets().get(itemset);
-            affinityAlignment.writeClusters(itemsetPath);
+            if (affinityAlignment != null) {
+                affinityAlignment.writeClusters(itemsetPath);
+            } else {
+                SparseAffinityAlignment sparseAffinityAlignment = itemsetMiner.getTotalSparseAffinityItemsets().get(itemset);
+                if (sparseAffinityAlignment != null) {
+                    sparseAffinityAlignment.writeClusters(itemsetPath);
+                }
+            }
         }
     }
 
@@ -281,4 +298,22 @@ public class ResultWriter<LabelType extends Comparable<LabelType>> {
         logger.info("writing CSV output to {}", csvOutputPath);
         Files.write(csvOutputPath, fileContent.getBytes());
     }
+
+    /**
+     * Writes the report of {@link bio.fkaiser.mmm.model.DataPoint}s that could not be enriched as tab-separated file.
+     *
+     * @param enrichmentFailures The {@link EnrichmentFailure}s.
+     * @throws IOException If writing of the report fails.
+     */
+    public void writeEnrichmentFailures(List<EnrichmentFailure> enrichmentFailures) throws IOException {
+        String fileContent = enrichmentFailures.stream()
+                                               .map(enrichmentFailure -> enrichmentFailure.getDataPointIdentifier().getPdbIdentifier() + "\t"
+                                                                         + enrichmentFailure.getDataPointIdentifier().getChainIdentifier() + "\t"
+                                                                         + enrichmentFailure.getAttempts() + "\t"
+                                                                         + enrichmentFailure.getReason())
+                                               .collect(Collectors.joining("\n", "pdb\tchain\tattempts\treason\n", "\n"));
+        Path failuresOutputPath = outputPath.resolve("enrichment_failures.tsv");
+        logger.info("writing {} enrichment failures to {}", enrichmentFailures.size(), failuresOutputPath);
+        Files.write(failuresOutputPath, fileContent.getBytes());
+    }
 }
@@ -0,0 +1,303 @@
+package bio.fkaiser.mmm.io;
+
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.Atom;
+import de.bioforscher.singa.structure.model.interfaces.Chain;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.interfaces.Model;
+import de.bioforscher.singa.structure.model.interfaces.Structure;
+import de.bioforscher.singa.structure.model.oak.OakChain;
+import de.bioforscher.singa.structure.model.oak.OakLeafSubstructure;
+import de.bioforscher.singa.structure.model.oak.OakModel;
+import de.bioforscher.singa.structure.model.oak.OakStructure;
+import de.bioforscher.singa.structure.parser.pdb.structures.SourceLocation;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureParserOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed cache of parsed {@link Structure}s on disk, which is shared by all runs and modules that use the same cache location. Each entry is named by the SHA-256 digest of its
+ * source, i.e. the content of a local structure file or the PDB identifier of a remote structure, together with the requested chain and the {@link StructureParserOptions}. Thus, each
+ * structure is parsed once and then restored from a compact binary entry instead.
+ * <p>
+ * Entries hold the first model of a structure with identifiers, families and atoms of all {@link LeafSubstructure}s, but no bonds. The total size of all entries is bounded, if it is
+ * exceeded the least recently used entries are deleted. The last modification time of an entry is updated whenever it is used, such that concurrent processes share the order of usage.
+ *
+ * @author fk
+ */
+public class StructureCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StructureCache.class);
+
+    private static final int MAGIC_NUMBER = 0x4d4d4d43;
+    private static final int VERSION = 1;
+    private static final String ENTRY_EXTENSION = ".mmmc";
+    private static final Map<Path, StructureCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path cachePath;
+    private final long maximalCacheSize;
+    private long cacheSize;
+
+    private StructureCache(Path cachePath, long maximalCacheSize) {
+        this.cachePath = cachePath;
+        this.maximalCacheSize = maximalCacheSize;
+        try {
+            Files.createDirectories(cachePath);
+            cacheSize = listEntries().stream()
+                                     .mapToLong(entryPath -> entryPath.toFile().length())
+                                     .sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to initialize structure cache at " + cachePath, e);
+        }
+        logger.info("structure cache at {} holds {} of at most {} bytes", cachePath, cacheSize, maximalCacheSize);
+    }
+
+    /**
+     * Returns the {@link StructureCache} at the given location. All users of the same location within this process share a single instance, the maximal size given first applies.
+     *
+     * @param cachePath        The directory of the cache.
+     * @param maximalCacheSize The maximal size of all entries in bytes.
+     * @return The {@link StructureCache}.
+     */
+    public static StructureCache of(Path cachePath, long maximalCacheSize) {
+        return INSTANCES.computeIfAbsent(cachePath.toAbsolutePath().normalize(), path -> new StructureCache(path, maximalCacheSize));
+    }
+
+    private static String encodeOptions(StructureParserOptions structureParserOptions) {
+        if (structureParserOptions == null) {
+            return "default";
+        }
+        return structureParserOptions.isHeteroAtoms() + ","
+               + structureParserOptions.isCreatingEdges() + ","
+               + structureParserOptions.isRetrievingLigandInformation() + ","
+               + structureParserOptions.isConnectingHydrogens() + ","
+               + structureParserOptions.isOmittingHydrogen() + ","
+               + structureParserOptions.isInferringTitleFromFileName() + ","
+               + structureParserOptions.isInferringIdentifierFromFileName();
+    }
+
+    public Path getCachePath() {
+        return cachePath;
+    }
+
+    /**
+     * Returns the {@link Structure} parsed from the given local file. The entry is addressed by the name and the content of the file, thus modified files are parsed again.
+     *
+     * @param structurePath          The path of the structure file.
+     * @param chainIdentifier        The identifier of the parsed chain or null if all chains are parsed.
+     * @param structureParserOptions The {@link StructureParserOptions} of the parser or null if the default options are used.
+     * @param structureParser        Parses the structure if no entry exists.
+     * @return The cached or parsed {@link Structure}.
+     */
+    public Structure getStructure(Path structurePath, String chainIdentifier, StructureParserOptions structureParserOptions, Supplier<Structure> structureParser) {
+        String contentHash;
+        try {
+            contentHash = Hashes.sha256(Files.readAllBytes(structurePath));
+        } catch (IOException e) {
+            logger.warn("failed to read {}, structure is not cached", structurePath, e);
+            return structureParser.get();
+        }
+        // the file name is part of the key, since identifiers may be inferred from it
+        return getStructure("file:" + structurePath.getFileName() + ":" + contentHash + ":" + chainIdentifier + ":" + encodeOptions(structureParserOptions), structureParser);
+    }
+
+    /**
+     * Returns the {@link Structure} with the given PDB identifier parsed from the given {@link SourceLocation}. The entry is addressed by the PDB identifier, which is assumed to denote
+     * immutable content.
+     *
+     * @param sourceLocation         The {@link SourceLocation} of the parser.
+     * @param pdbIdentifier          The PDB identifier of the structure.
+     * @param chainIdentifier        The identifier of the parsed chain or null if all chains are parsed.
+     * @param structureParserOptions The {@link StructureParserOptions} of the parser or null if the default options are used.
+     * @param structureParser        Parses the structure if no entry exists.
+     * @return The cached or parsed {@link Structure}.
+     */
+    public Structure getStructure(SourceLocation sourceLocation, String pdbIdentifier, String chainIdentifier, StructureParserOptions structureParserOptions,
+                                  Supplier<Structure> structureParser) {
+        return getStructure(sourceLocation + ":" + pdbIdentifier.toLowerCase() + ":" + chainIdentifier + ":" + encodeOptions(structureParserOptions), structureParser);
+    }
+
+    private Structure getStructure(String key, Supplier<Structure> structureParser) {
+        Path entryPath = cachePath.resolve(Hashes.sha256(key) + ENTRY_EXTENSION);
+        Optional<Structure> cachedStructure = readEntry(entryPath, key);
+        if (cachedStructure.isPresent()) {
+            logger.debug("restored structure {} from cache", key);
+            return cachedStructure.get();
+        }
+        Structure structure = structureParser.get();
+        try {
+            writeEntry(entryPath, key, structure);
+        } catch (IOException e) {
+            logger.warn("failed to write structure cache entry {}", entryPath, e);
+        }
+        return structure;
+    }
+
+    private Optional<Structure> readEntry(Path entryPath, String key) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(entryPath);
+            // mark entry as recently used
+            Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("failed to read structure cache entry {}", entryPath, e);
+            return Optional.empty();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != VERSION || !key.equals(LeafSubstructureCodec.readString(buffer))) {
+                logger.info("structure cache entry {} is outdated", entryPath);
+                return Optional.empty();
+            }
+            return Optional.of(readStructure(buffer));
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger.warn("structure cache entry {} is corrupt", entryPath, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Structure readStructure(ByteBuffer buffer) {
+        String[] strings = LeafSubstructureCodec.readStringTable(buffer);
+        OakStructure structure = new OakStructure();
+        int pdbIdentifierIndex = buffer.getInt();
+        int titleIndex = buffer.getInt();
+        if (pdbIdentifierIndex != -1) {
+            structure.setPdbIdentifier(strings[pdbIdentifierIndex]);
+        }
+        if (titleIndex != -1) {
+            structure.setTitle(strings[titleIndex]);
+        }
+        OakModel model = new OakModel(buffer.getInt());
+        int lastAtomIdentifier = 0;
+        int chainCount = buffer.getInt();
+        for (int i = 0; i < chainCount; i++) {
+            OakChain chain = new OakChain(strings[buffer.getInt()]);
+            int leafSubstructureCount = buffer.getInt();
+            for (int j = 0; j < leafSubstructureCount; j++) {
+                boolean consecutive = buffer.get() != 0;
+                OakLeafSubstructure<?> leafSubstructure = LeafSubstructureCodec.readLeafSubstructure(buffer, strings);
+                for (Atom atom : leafSubstructure.getAllAtoms()) {
+                    lastAtomIdentifier = Math.max(lastAtomIdentifier, atom.getAtomIdentifier());
+                }
+                chain.addLeafSubstructure(leafSubstructure, consecutive);
+            }
+            model.addChain(chain);
+        }
+        structure.addModel(model);
+        structure.setLastAddedAtomIdentifier(lastAtomIdentifier);
+        return structure;
+    }
+
+    private void writeEntry(Path entryPath, String key, Structure structure) throws IOException {
+        Model model = structure.getFirstModel();
+        List<Chain> chains = model.getAllChains();
+
+        // collect all strings
+        Map<String, Integer> stringIndices = new LinkedHashMap<>();
+        LeafSubstructureCodec.indexString(stringIndices, structure.getPdbIdentifier());
+        LeafSubstructureCodec.indexString(stringIndices, structure.getTitle());
+        for (Chain chain : chains) {
+            LeafSubstructureCodec.indexString(stringIndices, chain.getChainIdentifier());
+            for (LeafSubstructure<?> leafSubstructure : chain.getAllLeafSubstructures()) {
+                LeafSubstructureCodec.indexStrings(stringIndices, leafSubstructure);
+            }
+        }
+
+        Path temporaryPath = Files.createTempFile(cachePath, "mmm_", ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                outputStream.writeInt(MAGIC_NUMBER);
+                outputStream.writeInt(VERSION);
+                LeafSubstructureCodec.writeString(outputStream, key);
+                LeafSubstructureCodec.writeStringTable(outputStream, stringIndices);
+                outputStream.writeInt(LeafSubstructureCodec.stringIndex(stringIndices, structure.getPdbIdentifier()));
+                outputStream.writeInt(LeafSubstructureCodec.stringIndex(stringIndices, structure.getTitle()));
+                outputStream.writeInt(model.getModelIdentifier());
+                outputStream.writeInt(chains.size());
+                for (Chain chain : chains) {
+                    Set<LeafIdentifier> consecutiveIdentifiers = chain instanceof OakChain ? ((OakChain) chain).getConsecutivePart().stream()
+                                                                                                               .map(LeafSubstructure::getIdentifier)
+                                                                                                               .collect(Collectors.toSet())
+                                                                                           : Collections.emptySet();
+                    List<LeafSubstructure<?>> leafSubstructures = chain.getAllLeafSubstructures();
+                    outputStream.writeInt(LeafSubstructureCodec.stringIndex(stringIndices, chain.getChainIdentifier()));
+                    outputStream.writeInt(leafSubstructures.size());
+                    for (LeafSubstructure<?> leafSubstructure : leafSubstructures) {
+                        outputStream.writeBoolean(consecutiveIdentifiers.contains(leafSubstructure.getIdentifier()));
+                        LeafSubstructureCodec.writeLeafSubstructure(outputStream, leafSubstructure, stringIndices);
+                    }
+                }
+            }
+            Files.move(temporaryPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        logger.debug("wrote structure cache entry {}", entryPath);
+        addToCacheSize(entryPath.toFile().length());
+    }
+
+    /**
+     * Adds the size of a written entry and deletes the least recently used entries if the maximal size is exceeded. The size of all entries is determined again before deletion, as other
+     * processes may have written or deleted entries.
+     *
+     * @param entrySize The size of the written entry.
+     */
+    private synchronized void addToCacheSize(long entrySize) {
+        cacheSize += entrySize;
+        if (cacheSize <= maximalCacheSize) {
+            return;
+        }
+        List<Path> entryPaths;
+        try {
+            entryPaths = listEntries();
+        } catch (IOException e) {
+            logger.warn("failed to list structure cache entries", e);
+            return;
+        }
+        Map<Path, Long> lastModifiedTimes = new HashMap<>();
+        for (Path entryPath : entryPaths) {
+            lastModifiedTimes.put(entryPath, entryPath.toFile().lastModified());
+        }
+        entryPaths.sort(Comparator.comparing(lastModifiedTimes::get));
+        cacheSize = entryPaths.stream()
+                              .mapToLong(entryPath -> entryPath.toFile().length())
+                              .sum();
+        int evictedEntries = 0;
+        for (Iterator<Path> iterator = entryPaths.iterator(); iterator.hasNext() && cacheSize > maximalCacheSize; ) {
+            Path entryPath = iterator.next();
+            long size = entryPath.toFile().length();
+            try {
+                if (Files.deleteIfExists(entryPath)) {
+                    evictedEntries++;
+                }
+                cacheSize -= size;
+            } catch (IOException e) {
+                logger.warn("failed to evict structure cache entry {}", entryPath, e);
+            }
+        }
+        logger.info("evicted {} least recently used structure cache entries", evictedEntries);
+    }
+
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> paths = Files.list(cachePath)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(ENTRY_EXTENSION))
+                        .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package bio.fkaiser.mmm.io;
+
+import bio.fkaiser.mmm.model.LeafSubstructureProvider;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A {@link LeafSubstructureProvider} that materializes the {@link LeafSubstructure}s of a single {@link bio.fkaiser.mmm.model.DataPoint} by reading its structure again. Materialized
+ * structures are kept in a cache shared by all providers of a {@link DataPointReader}, which holds a bounded number of structures and evicts the least recently used ones.
+ *
+ * @author fk
+ */
+class StructureLeafSubstructureProvider implements LeafSubstructureProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(StructureLeafSubstructureProvider.class);
+
+    private final int inputIndex;
+    private final Supplier<List<LeafSubstructure<?>>> leafSubstructureSource;
+    private final Map<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> materializedStructures;
+
+    /**
+     * Creates a new {@link StructureLeafSubstructureProvider}.
+     *
+     * @param inputIndex             The index of the structure in the input of the {@link DataPointReader}.
+     * @param leafSubstructureSource Reads the {@link LeafSubstructure}s of the first model of the {@link bio.fkaiser.mmm.model.DataPoint}.
+     * @param materializedStructures The synchronized cache of materialized structures.
+     */
+    StructureLeafSubstructureProvider(int inputIndex, Supplier<List<LeafSubstructure<?>>> leafSubstructureSource,
+                                      Map<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> materializedStructures) {
+        this.inputIndex = inputIndex;
+        this.leafSubstructureSource = leafSubstructureSource;
+        this.materializedStructures = materializedStructures;
+    }
+
+    int getInputIndex() {
+        return inputIndex;
+    }
+
+    @Override
+    public synchronized Optional<LeafSubstructure<?>> provideLeafSubstructure(LeafIdentifier leafIdentifier) {
+        Map<LeafIdentifier, LeafSubstructure<?>> leafSubstructures = materializedStructures.get(this);
+        if (leafSubstructures == null) {
+            List<LeafSubstructure<?>> readLeafSubstructures;
+            try {
+                readLeafSubstructures = leafSubstructureSource.get();
+            } catch (StructureParserException | UncheckedIOException e) {
+                logger.warn("failed to materialize leaf substructure {}", leafIdentifier, e);
+                return Optional.empty();
+            }
+            logger.debug("materialized structure of {}", leafIdentifier);
+            leafSubstructures = new HashMap<>();
+            for (LeafSubstructure<?> leafSubstructure : readLeafSubstructures) {
+                leafSubstructures.put(leafSubstructure.getIdentifier(), leafSubstructure);
+            }
+            materializedStructures.put(this, leafSubstructures);
+        }
+        LeafSubstructure<?> leafSubstructure = leafSubstructures.get(leafIdentifier);
+        if (leafSubstructure == null) {
+            logger.warn("leaf substructure {} not found in materialized structure", leafIdentifier);
+        }
+        return Optional.ofNullable(leafSubstructure);
+    }
+}
@@ -1,6 +1,7 @@
 package bio.fkaiser.mmm.model;
 
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureRepresentation;
 import de.bioforscher.singa.structure.parser.pdb.structures.StructureWriter;
 import de.bioforscher.singa.structure.parser.plip.InteractionType;
 
@@ -48,19 +49,29 @@ public class DataPoint<LabelType extends Comparable<LabelType>> {
      * @throws IOException If the {@link DataPoint} cannot be written.
      */
     public void writeAsPdb(Path pdbFilePath) throws IOException {
+        StructureWriter.writeLeafSubstructures(getStructuralLeafSubstructures(), pdbFilePath);
+    }
 
-        List<LeafSubstructure<?>> leafSubstructures = items.stream()
-                                                           .map(Item::getLeafSubstructure)
-                                                           .filter(Optional::isPresent)
-                                                           .map(Optional::get)
-                                                           // ignore interaction representations when writing data points
-                                                           .filter(leafSubstructure -> Arrays.stream(InteractionType.values())
-                                                                                                .noneMatch(interactionType -> interactionType.getThreeLetterCode()
-                                                                                                                                             .equalsIgnoreCase(leafSubstructure.getFamily()
-                                                                                                                                                                               .getThreeLetterCode())))
-                                                           .collect(Collectors.toList());
+    /**
+     * Composes the PDB representation of the {@link DataPoint} as written by {@link #writeAsPdb(Path)}.
+     *
+     * @return The PDB representation.
+     */
+    public String toPdbRepresentation() {
+        return StructureRepresentation.composePdbRepresentation(getStructuralLeafSubstructures());
+    }
 
-        StructureWriter.writeLeafSubstructures(leafSubstructures, pdbFilePath);
+    private List<LeafSubstructure<?>> getStructuralLeafSubstructures() {
+        return items.stream()
+                    .map(Item::getLeafSubstructure)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    // ignore interaction representations when writing data points
+                    .filter(leafSubstructure -> Arrays.stream(InteractionType.values())
+                                                      .noneMatch(interactionType -> interactionType.getThreeLetterCode()
+                                                                                                   .equalsIgnoreCase(leafSubstructure.getFamily()
+                                                                                                                                     .getThreeLetterCode())))
+                    .collect(Collectors.toList());
     }
 
     public DataPoint<LabelType> getCopy() {
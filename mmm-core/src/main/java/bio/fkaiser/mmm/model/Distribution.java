@@ -2,41 +2,186 @@ package bio.fkaiser.mmm.model;
 
 import bio.fkaiser.mmm.model.metrics.DistributionMetric;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * An object that stores values observed by {@link DistributionMetric}s during mining.
+ * An object that stores values observed by {@link DistributionMetric}s during mining. Values are kept in a primitive buffer, while mean and variance are updated in a streaming fashion
+ * (Welford) and quantiles are estimated by a {@link QuantileSketch}. Consumers that only need moments or quantiles can create distributions that do not retain the observed values.
+ * Distributions filled by different threads can be merged.
  *
  * @author fk
  */
 public class Distribution {
 
-    private Class<? extends DistributionMetric> distributionMetricType;
-    private List<Double> observations;
+    private static final int INITIAL_CAPACITY = 16;
 
-    public Distribution(Class<? extends DistributionMetric> distributionMetricType) {
+    private final Class<? extends DistributionMetric<?>> distributionMetricType;
+    private final boolean retainingObservations;
+    private final QuantileSketch quantileSketch;
+    private double[] observations;
+    private int size;
+    private double mean;
+    private double squaredDeviationSum;
+    private double minimum = Double.POSITIVE_INFINITY;
+    private double maximum = Double.NEGATIVE_INFINITY;
+
+    public <MetricType extends DistributionMetric<?>> Distribution(Class<MetricType> distributionMetricType) {
+        this(distributionMetricType, true);
+    }
+
+    /**
+     * Creates a new {@link Distribution}.
+     *
+     * @param distributionMetricType The type of the {@link DistributionMetric} that observes the values.
+     * @param retainingObservations  True if observed values should be stored, otherwise only moments and quantiles are available.
+     */
+    public <MetricType extends DistributionMetric<?>> Distribution(Class<MetricType> distributionMetricType, boolean retainingObservations) {
         this.distributionMetricType = distributionMetricType;
-        observations = new ArrayList<>();
+        this.retainingObservations = retainingObservations;
+        quantileSketch = new QuantileSketch();
+        observations = retainingObservations ? new double[INITIAL_CAPACITY] : null;
     }
 
+    /**
+     * Returns a read-only view of the values observed so far. Prefer {@link #getObservationValues()} for numerical work to avoid boxing.
+     *
+     * @return The observed values.
+     */
     public List<Double> getObservations() {
+        double[] values = requireObservations();
+        int observationCount = size;
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                if (index >= observationCount) {
+                    throw new IndexOutOfBoundsException("index " + index + " out of bounds for " + observationCount + " observations");
+                }
+                return values[index];
+            }
+
+            @Override
+            public int size() {
+                return observationCount;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the observed values.
+     *
+     * @return The observed values.
+     */
+    public double[] getObservationValues() {
+        return Arrays.copyOf(requireObservations(), size);
+    }
+
+    private double[] requireObservations() {
+        if (!retainingObservations) {
+            throw new IllegalStateException("observations of " + this + " are not retained");
+        }
         return observations;
     }
 
-    public Class<? extends DistributionMetric> getDistributionMetricType() {
+    public Class<? extends DistributionMetric<?>> getDistributionMetricType() {
         return distributionMetricType;
     }
 
+    public boolean isRetainingObservations() {
+        return retainingObservations;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getMean() {
+        return size == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the bias-corrected variance of the observed values.
+     *
+     * @return The variance, 0 for a single and NaN for no observation.
+     */
+    public double getVariance() {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        return size == 1 ? 0.0 : squaredDeviationSum / (size - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMinimum() {
+        return size == 0 ? Double.NaN : minimum;
+    }
+
+    public double getMaximum() {
+        return size == 0 ? Double.NaN : maximum;
+    }
+
+    /**
+     * Estimates the given quantile with the relative accuracy of the {@link QuantileSketch}.
+     *
+     * @param quantile The quantile in [0,1].
+     * @return The estimated quantile.
+     */
+    public double getQuantile(double quantile) {
+        return quantileSketch.getQuantile(quantile);
+    }
+
     @Override
     public String toString() {
         return "Distribution{" +
                "distributionMetricType=" + distributionMetricType.getSimpleName() +
-               ", observations=" + observations.size() +
+               ", observations=" + size +
                '}';
     }
 
     public void addObservationValue(double observationValue) {
-        observations.add(observationValue);
+        if (retainingObservations) {
+            if (size == observations.length) {
+                observations = Arrays.copyOf(observations, 2 * observations.length);
+            }
+            observations[size] = observationValue;
+        }
+        size++;
+        double delta = observationValue - mean;
+        mean += delta / size;
+        squaredDeviationSum += delta * (observationValue - mean);
+        minimum = Math.min(minimum, observationValue);
+        maximum = Math.max(maximum, observationValue);
+        quantileSketch.add(observationValue);
+    }
+
+    /**
+     * Merges the given {@link Distribution} into this one. Observed values of the given {@link Distribution} are appended.
+     *
+     * @param distribution The {@link Distribution} to be merged, which must retain its values if this one does.
+     */
+    public void merge(Distribution distribution) {
+        if (distribution.size == 0) {
+            return;
+        }
+        if (retainingObservations) {
+            double[] values = distribution.requireObservations();
+            if (size + distribution.size > observations.length) {
+                observations = Arrays.copyOf(observations, Math.max(2 * observations.length, size + distribution.size));
+            }
+            System.arraycopy(values, 0, observations, size, distribution.size);
+        }
+        // combine moments (Chan et al.)
+        int combinedSize = size + distribution.size;
+        double delta = distribution.mean - mean;
+        mean += delta * distribution.size / combinedSize;
+        squaredDeviationSum += distribution.squaredDeviationSum + delta * delta * size * distribution.size / combinedSize;
+        size = combinedSize;
+        minimum = Math.min(minimum, distribution.minimum);
+        maximum = Math.max(maximum, distribution.maximum);
+        quantileSketch.merge(distribution.quantileSketch);
     }
 }
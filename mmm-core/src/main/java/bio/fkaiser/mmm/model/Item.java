@@ -4,13 +4,19 @@ import de.bioforscher.singa.mathematics.vectors.Vector3D;
 import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationScheme;
 import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeFactory;
 import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
 import de.bioforscher.singa.structure.model.interfaces.Atom;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
 
 import java.util.Optional;
 
 /**
  * Implementation of an item. {@link Item}s are equal iff their label is equal.
+ * <p>
+ * Coordinate-only {@link Item}s hold their position (and optionally the position of the representing atom) as primitive coordinates together with the {@link LeafIdentifier} and the kind of
+ * their {@link LeafSubstructure}, which is materialized by a {@link LeafSubstructureProvider} only when it is requested.
  *
  * @author fk
  */
@@ -20,6 +26,13 @@ public class Item<LabelType extends Comparable<LabelType>> implements Comparable
     private LeafSubstructure<?> leafSubstructure;
     private int sequencePosition;
 
+    private LeafIdentifier leafIdentifier;
+    private boolean polymer;
+    private double[] position;
+    private double[] representativePosition;
+    private RepresentationSchemeType representativeSchemeType;
+    private LeafSubstructureProvider leafSubstructureProvider;
+
     public Item(LabelType label) {
         this.label = label;
     }
@@ -36,14 +49,87 @@ public class Item<LabelType extends Comparable<LabelType>> implements Comparable
         this.sequencePosition = sequencePosition;
     }
 
+    /**
+     * Creates a new coordinate-only {@link Item}.
+     *
+     * @param label                     The label.
+     * @param leafIdentifier            The {@link LeafIdentifier} of the {@link LeafSubstructure} to be materialized.
+     * @param polymer                   True if the {@link LeafSubstructure} is an amino acid or a nucleotide.
+     * @param sequencePosition          The sequence position.
+     * @param position                  The coordinates of the position of the {@link LeafSubstructure}.
+     * @param representativePosition    The coordinates of the representing atom or null.
+     * @param representativeSchemeType  The {@link RepresentationSchemeType} of the representing atom or null.
+     * @param leafSubstructureProvider  The {@link LeafSubstructureProvider} that materializes the {@link LeafSubstructure}.
+     */
+    public Item(LabelType label, LeafIdentifier leafIdentifier, boolean polymer, int sequencePosition, double[] position, double[] representativePosition,
+                RepresentationSchemeType representativeSchemeType, LeafSubstructureProvider leafSubstructureProvider) {
+        this.label = label;
+        this.leafIdentifier = leafIdentifier;
+        this.polymer = polymer;
+        this.sequencePosition = sequencePosition;
+        this.position = position;
+        this.representativePosition = representativePosition;
+        this.representativeSchemeType = representativeSchemeType;
+        this.leafSubstructureProvider = leafSubstructureProvider;
+    }
+
     public int getSequencePosition() {
         return sequencePosition;
     }
 
+    /**
+     * Returns the associated {@link LeafSubstructure} if any. For coordinate-only {@link Item}s, it is materialized by the {@link LeafSubstructureProvider}.
+     *
+     * @return Optional of the {@link LeafSubstructure}.
+     */
     public Optional<LeafSubstructure<?>> getLeafSubstructure() {
+        if (leafSubstructure == null && leafSubstructureProvider != null) {
+            return leafSubstructureProvider.provideLeafSubstructure(leafIdentifier);
+        }
         return Optional.ofNullable(leafSubstructure);
     }
 
+    public Optional<LeafIdentifier> getLeafIdentifier() {
+        if (leafSubstructure != null) {
+            return Optional.of(leafSubstructure.getIdentifier());
+        }
+        return Optional.ofNullable(leafIdentifier);
+    }
+
+    /**
+     * Returns true if this {@link Item} holds primitive coordinates only and its {@link LeafSubstructure} is materialized on demand.
+     *
+     * @return True if this {@link Item} is coordinate-only.
+     */
+    public boolean isCoordinateOnly() {
+        return leafSubstructure == null && leafSubstructureProvider != null;
+    }
+
+    /**
+     * Returns true if the associated {@link LeafSubstructure} is an amino acid or a nucleotide. For coordinate-only {@link Item}s, the {@link LeafSubstructure} is not materialized.
+     *
+     * @return True if this {@link Item} represents an amino acid or a nucleotide.
+     */
+    public boolean isPolymer() {
+        if (leafSubstructure != null) {
+            return leafSubstructure instanceof AminoAcid || leafSubstructure instanceof Nucleotide;
+        }
+        return polymer;
+    }
+
+    public Optional<LeafSubstructureProvider> getLeafSubstructureProvider() {
+        return Optional.ofNullable(leafSubstructureProvider);
+    }
+
+    /**
+     * Returns the {@link RepresentationSchemeType} for which the position of the representing atom is held by a coordinate-only {@link Item}.
+     *
+     * @return Optional of the {@link RepresentationSchemeType}.
+     */
+    public Optional<RepresentationSchemeType> getRepresentativeSchemeType() {
+        return leafSubstructure == null ? Optional.ofNullable(representativeSchemeType) : Optional.empty();
+    }
+
     public void setLeafSubstructure(LeafSubstructure<?> leafSubstructure) {
         this.leafSubstructure = leafSubstructure;
     }
@@ -80,12 +166,10 @@ public class Item<LabelType extends Comparable<LabelType>> implements Comparable
      * @return Optional of the position.
      */
     public Optional<Vector3D> getPosition() {
-        Vector3D position = null;
-        // try to determine position
-        if (leafSubstructure != null) {
-            position = leafSubstructure.getPosition();
+        if (position != null && leafSubstructure == null) {
+            return Optional.of(new Vector3D(position[0], position[1], position[2]));
         }
-        return Optional.ofNullable(position);
+        return getLeafSubstructure().map(LeafSubstructure::getPosition);
     }
 
     /**
@@ -95,12 +179,11 @@ public class Item<LabelType extends Comparable<LabelType>> implements Comparable
      * @return Optional of the position.
      */
     public Optional<Vector3D> getPosition(RepresentationSchemeType representationSchemeType) {
-        Vector3D position = null;
-        if (leafSubstructure != null) {
-            RepresentationScheme representationScheme = RepresentationSchemeFactory.createRepresentationScheme(representationSchemeType);
-            position = representationScheme.determineRepresentingAtom(leafSubstructure).getPosition();
+        if (representativePosition != null && representationSchemeType == representativeSchemeType && leafSubstructure == null) {
+            return Optional.of(new Vector3D(representativePosition[0], representativePosition[1], representativePosition[2]));
         }
-        return Optional.ofNullable(position);
+        RepresentationScheme representationScheme = RepresentationSchemeFactory.createRepresentationScheme(representationSchemeType);
+        return getLeafSubstructure().map(leafSubstructure -> representationScheme.determineRepresentingAtom(leafSubstructure).getPosition());
     }
 
     @Override public int compareTo(Item<LabelType> o) {
@@ -112,7 +195,23 @@ public class Item<LabelType extends Comparable<LabelType>> implements Comparable
     }
 
     public Item<LabelType> getDeepCopy() {
+        if (leafSubstructure == null) {
+            return getRelabeledCopy(label);
+        }
         return new Item<>(label, leafSubstructure.getCopy());
     }
 
+    /**
+     * Returns a copy of this {@link Item} with the given label that refers to the same {@link LeafSubstructure}, which is not materialized for coordinate-only {@link Item}s.
+     *
+     * @param label The label of the copy.
+     * @return The relabeled copy.
+     */
+    public Item<LabelType> getRelabeledCopy(LabelType label) {
+        if (leafSubstructure == null) {
+            return new Item<>(label, leafIdentifier, polymer, sequencePosition, position, representativePosition, representativeSchemeType, leafSubstructureProvider);
+        }
+        return new Item<>(label, leafSubstructure, sequencePosition);
+    }
+
 }
@@ -32,6 +32,7 @@ public class Itemset<LabelType extends Comparable<LabelType>> implements Compara
 
     private final Set<Item<LabelType>> items;
     private StructuralMotif structuralMotif;
+    private List<Item<LabelType>> structuralMotifItems;
     private Vector3D position;
     private DataPointIdentifier originDataPointIdentifier;
     private double support;
@@ -61,6 +62,20 @@ public class Itemset<LabelType extends Comparable<LabelType>> implements Compara
         this.originDataPointIdentifier = originDataPointIdentifier;
     }
 
+    /**
+     * Creates a new {@link Itemset} whose {@link StructuralMotif} is built from the {@link LeafSubstructure}s of the given ordered {@link Item}s when it is requested first. Thus,
+     * {@link LeafSubstructure}s of coordinate-only {@link Item}s are only materialized for observations that need them.
+     *
+     * @param items                     The {@link Item}s.
+     * @param structuralMotifItems      The {@link Item}s in the order of the {@link LeafSubstructure}s in the {@link StructuralMotif}.
+     * @param originDataPointIdentifier The {@link DataPointIdentifier} of the origin.
+     */
+    public Itemset(Set<Item<LabelType>> items, List<Item<LabelType>> structuralMotifItems, DataPointIdentifier originDataPointIdentifier) {
+        this(items);
+        this.structuralMotifItems = structuralMotifItems;
+        this.originDataPointIdentifier = originDataPointIdentifier;
+    }
+
     /**
      * Creates a new {@link Itemset} out of the given {@link Item}s.
      *
@@ -174,7 +189,7 @@ public class Itemset<LabelType extends Comparable<LabelType>> implements Compara
     }
 
     public Itemset<LabelType> getDeepCopy() {
-        return new Itemset<>(items.stream().map(Item::getDeepCopy).collect(Collectors.toSet()), structuralMotif.getCopy());
+        return new Itemset<>(items.stream().map(Item::getDeepCopy).collect(Collectors.toSet()), getStructuralMotif().map(StructuralMotif::getCopy).orElse(null));
     }
 
     public Set<Item<LabelType>> getItems() {
@@ -217,6 +232,17 @@ public class Itemset<LabelType extends Comparable<LabelType>> implements Compara
     }
 
     public Optional<StructuralMotif> getStructuralMotif() {
+        // construct structural motif of ordered items
+        if (structuralMotif == null && structuralMotifItems != null) {
+            List<LeafSubstructure<?>> leafSubstructures = structuralMotifItems.stream()
+                                                                              .map(Item::getLeafSubstructure)
+                                                                              .filter(Optional::isPresent)
+                                                                              .map(Optional::get)
+                                                                              .collect(Collectors.toList());
+            if (!leafSubstructures.isEmpty()) {
+                structuralMotif = StructuralMotif.fromLeafSubstructures(leafSubstructures);
+            }
+        }
         // try to construct structural motif
         if (structuralMotif == null) {
             List<LeafSubstructure<?>> leafSubstructures = items.stream()
@@ -0,0 +1,23 @@
+package bio.fkaiser.mmm.model;
+
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+
+import java.util.Optional;
+
+/**
+ * Materializes {@link LeafSubstructure}s of coordinate-only {@link Item}s on demand, e.g. by parsing their structure again.
+ *
+ * @author fk
+ */
+@FunctionalInterface
+public interface LeafSubstructureProvider {
+
+    /**
+     * Returns the {@link LeafSubstructure} with the given {@link LeafIdentifier}.
+     *
+     * @param leafIdentifier The {@link LeafIdentifier} of the {@link LeafSubstructure}.
+     * @return The {@link LeafSubstructure} if it can be materialized.
+     */
+    Optional<LeafSubstructure<?>> provideLeafSubstructure(LeafIdentifier leafIdentifier);
+}
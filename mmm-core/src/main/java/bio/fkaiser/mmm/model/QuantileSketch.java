@@ -0,0 +1,160 @@
+package bio.fkaiser.mmm.model;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch to estimate quantiles of a stream of values with bounded relative error. Values are counted in logarithmically sized buckets (Masson et al., DDSketch, 2019),
+ * thus the memory depends only on the range of the values and two sketches with the same relative accuracy can be merged without loss.
+ *
+ * @author fk
+ */
+public class QuantileSketch {
+
+    /**
+     * the default relative accuracy of quantile estimates
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * values closer to zero than this are counted as zero
+     */
+    private static final double MINIMAL_INDEXABLE_VALUE = 1E-12;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final BucketStore positiveBuckets;
+    private final BucketStore negativeBuckets;
+    private long zeroCount;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0.0 || relativeAccuracy >= 1.0) {
+            throw new IllegalArgumentException("relative accuracy must be in (0,1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        logGamma = Math.log((1.0 + relativeAccuracy) / (1.0 - relativeAccuracy));
+        positiveBuckets = new BucketStore();
+        negativeBuckets = new BucketStore();
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return zeroCount + positiveBuckets.count + negativeBuckets.count;
+    }
+
+    public void add(double value) {
+        if (value > MINIMAL_INDEXABLE_VALUE) {
+            positiveBuckets.add(index(value), 1);
+        } else if (value < -MINIMAL_INDEXABLE_VALUE) {
+            negativeBuckets.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Adds all counts of the given {@link QuantileSketch} to this sketch.
+     *
+     * @param quantileSketch The {@link QuantileSketch} to be merged, which must have the same relative accuracy.
+     */
+    public void merge(QuantileSketch quantileSketch) {
+        if (quantileSketch.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("only sketches with the same relative accuracy can be merged");
+        }
+        positiveBuckets.merge(quantileSketch.positiveBuckets);
+        negativeBuckets.merge(quantileSketch.negativeBuckets);
+        zeroCount += quantileSketch.zeroCount;
+    }
+
+    /**
+     * Estimates the given quantile.
+     *
+     * @param quantile The quantile in [0,1].
+     * @return The estimated value of the quantile or NaN if the sketch is empty.
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("quantile must be in [0,1]");
+        }
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        // negative values in ascending order are stored with descending index
+        if (rank < negativeBuckets.count) {
+            long seen = 0;
+            for (int i = negativeBuckets.counts.length - 1; i >= 0; i--) {
+                seen += negativeBuckets.counts[i];
+                if (seen > rank) {
+                    return -value(negativeBuckets.offset + i);
+                }
+            }
+        }
+        rank -= negativeBuckets.count;
+        if (rank < zeroCount) {
+            return 0.0;
+        }
+        rank -= zeroCount;
+        long seen = 0;
+        for (int i = 0; i < positiveBuckets.counts.length; i++) {
+            seen += positiveBuckets.counts[i];
+            if (seen > rank) {
+                return value(positiveBuckets.offset + i);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private double value(int index) {
+        // the center of the bucket with respect to the relative error
+        return 2.0 * Math.exp(index * logGamma) / (1.0 + Math.exp(logGamma));
+    }
+
+    /**
+     * Counts of contiguous bucket indices backed by a growable primitive array.
+     */
+    private static class BucketStore {
+
+        private long[] counts = new long[0];
+        private int offset;
+        private long count;
+
+        private void add(int index, long bucketCount) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index - counts.length / 2;
+            }
+            if (index < offset) {
+                // grow to the left
+                int shift = Math.max(offset - index, counts.length);
+                long[] grown = new long[counts.length + shift];
+                System.arraycopy(counts, 0, grown, shift, counts.length);
+                counts = grown;
+                offset -= shift;
+            } else if (index >= offset + counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(index - offset + 1, 2 * counts.length));
+            }
+            counts[index - offset] += bucketCount;
+            count += bucketCount;
+        }
+
+        private void merge(BucketStore bucketStore) {
+            for (int i = 0; i < bucketStore.counts.length; i++) {
+                if (bucketStore.counts[i] > 0) {
+                    add(bucketStore.offset + i, bucketStore.counts[i]);
+                }
+            }
+        }
+    }
+}
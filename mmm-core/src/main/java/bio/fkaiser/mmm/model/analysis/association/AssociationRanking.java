@@ -0,0 +1,66 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import java.util.*;
+
+/**
+ * A bounded collection of the best scored {@link ItemsetAssociation}s. Associations must exceed a minimal score and, if a maximal size is given, only the associations scoring at least as
+ * high as the association at this rank are kept. Associations with equal scores are never dropped in favor of each other, thus the ranking may hold more associations than its maximal
+ * size if there are ties at the last rank. Rankings filled by different threads can be merged.
+ *
+ * @author fk
+ */
+class AssociationRanking<LabelType extends Comparable<LabelType>> {
+
+    private final double minimalScore;
+    private final int maximalSize;
+    private final TreeMap<Double, List<ItemsetAssociation<LabelType>>> associations;
+    private int size;
+
+    /**
+     * Creates a new {@link AssociationRanking}.
+     *
+     * @param minimalScore The score that has to be exceeded by associations.
+     * @param maximalSize  The rank up to which associations are kept or 0 to keep all associations exceeding the minimal score.
+     */
+    AssociationRanking(double minimalScore, int maximalSize) {
+        this.minimalScore = minimalScore;
+        this.maximalSize = maximalSize;
+        associations = new TreeMap<>();
+    }
+
+    void add(ItemsetAssociation<LabelType> association) {
+        double score = association.getScore();
+        if (!(score > minimalScore)) {
+            return;
+        }
+        if (maximalSize > 0 && size >= maximalSize && score < associations.firstKey()) {
+            return;
+        }
+        associations.computeIfAbsent(score, key -> new ArrayList<>()).add(association);
+        size++;
+        // drop the lowest scores if they are not needed to fill the ranking
+        if (maximalSize > 0) {
+            Map.Entry<Double, List<ItemsetAssociation<LabelType>>> lowestEntry = associations.firstEntry();
+            if (size - lowestEntry.getValue().size() >= maximalSize) {
+                associations.pollFirstEntry();
+                size -= lowestEntry.getValue().size();
+            }
+        }
+    }
+
+    void merge(AssociationRanking<LabelType> associationRanking) {
+        associationRanking.associations.values().forEach(scoredAssociations -> scoredAssociations.forEach(this::add));
+    }
+
+    /**
+     * Returns the kept associations ordered by {@link ItemsetAssociation#DESCENDING_SCORE}.
+     *
+     * @return The kept associations.
+     */
+    List<ItemsetAssociation<LabelType>> toList() {
+        List<ItemsetAssociation<LabelType>> rankedAssociations = new ArrayList<>(size);
+        associations.values().forEach(rankedAssociations::addAll);
+        rankedAssociations.sort(ItemsetAssociation.DESCENDING_SCORE);
+        return rankedAssociations;
+    }
+}
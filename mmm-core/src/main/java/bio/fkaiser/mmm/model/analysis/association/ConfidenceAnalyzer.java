@@ -4,14 +4,19 @@ import bio.fkaiser.mmm.ItemsetMiner;
 import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.analysis.AbstractItemsetMinerAnalyzer;
-import de.bioforscher.singa.core.utility.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Calculates and stores the confidence between {@link Itemset}s.
+ * Calculates and stores the confidence between {@link Itemset}s. A rule between two {@link Itemset}s of equal size is generated if their union was mined as well. Rules are enumerated
+ * from the subsets of each mined {@link Itemset}, which are looked up in a hash index of all mined {@link Itemset}s. {@link Itemset}s with more than
+ * {@link #MAXIMAL_ITEMSET_SIZE} items are skipped.
  * <b>NOTE: Confidence is not transitive.</b>
  *
  * @author fk
@@ -19,47 +24,149 @@ import java.util.*;
 public class ConfidenceAnalyzer<LabelType extends Comparable<LabelType>> extends AbstractItemsetMinerAnalyzer<LabelType> {
 
     private static final Logger logger = LoggerFactory.getLogger(ConfidenceAnalyzer.class);
-    private TreeMap<Double, Pair<Itemset<LabelType>>> confidence;
+    private static final double DEFAULT_MINIMAL_CONFIDENCE = 0.0;
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    /**
+     * the maximal size of {@link Itemset}s whose subsets are enumerated, larger {@link Itemset}s are skipped
+     */
+    static final int MAXIMAL_ITEMSET_SIZE = 16;
+
+    private final double minimalConfidence;
+    private final int levelOfParallelism;
+    private List<ItemsetAssociation<LabelType>> confidence;
+    private Map<Set<Item<LabelType>>, Integer> itemsetIndex;
 
     public ConfidenceAnalyzer(ItemsetMiner<LabelType> itemsetMiner) {
-        super(itemsetMiner);
+        this(itemsetMiner, DEFAULT_MINIMAL_CONFIDENCE, -1);
+    }
 
-        confidence = new TreeMap<>(Collections.reverseOrder());
+    /**
+     * Creates a new {@link ConfidenceAnalyzer}.
+     *
+     * @param itemsetMiner       The {@link ItemsetMiner} that found the {@link Itemset}s.
+     * @param minimalConfidence  The confidence that has to be exceeded by rules.
+     * @param levelOfParallelism The desired level of parallelism.
+     */
+    public ConfidenceAnalyzer(ItemsetMiner<LabelType> itemsetMiner, double minimalConfidence, int levelOfParallelism) {
+        super(itemsetMiner);
+        this.minimalConfidence = minimalConfidence;
+        this.levelOfParallelism = levelOfParallelism;
         calculateConfidence();
     }
 
-    public TreeMap<Double, Pair<Itemset<LabelType>>> getConfidence() {
+    /**
+     * Returns all rules exceeding the minimal confidence in descending order. The first {@link Itemset} of each {@link ItemsetAssociation} is the antecedent of the rule.
+     *
+     * @return The rules.
+     */
+    public List<ItemsetAssociation<LabelType>> getConfidence() {
         return confidence;
     }
 
     private void calculateConfidence() {
+
+        // index all mined itemsets by their items
         List<Itemset<LabelType>> totalItemsets = itemsetMiner.getTotalItemsets();
-        for (int i = 0; i < itemsetMiner.getTotalItemsets().size(); i++) {
-            Itemset<LabelType> itemsetOne = totalItemsets.get(i);
-            for (int j = 0; j < totalItemsets.size(); j++) {
-                Itemset<LabelType> itemsetTwo = totalItemsets.get(j);
+        itemsetIndex = new HashMap<>();
+        for (int i = 0; i < totalItemsets.size(); i++) {
+            itemsetIndex.putIfAbsent(totalItemsets.get(i).getItems(), i);
+        }
+
+        // create jobs
+        int parallelism = (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism;
+        List<RuleGenerator> jobs = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            jobs.add(new RuleGenerator(i, parallelism));
+        }
+
+        // execute jobs and merge rules
+        ExecutorService executorService = Executors.newWorkStealingPool(parallelism);
+        AssociationRanking<LabelType> ranking = new AssociationRanking<>(minimalConfidence, 0);
+        try {
+            executorService.invokeAll(jobs).forEach(future -> {
+                try {
+                    ranking.merge(future.get());
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (InterruptedException e) {
+            logger.error("parallel calculation of confidence failed", e);
+        } finally {
+            executorService.shutdown();
+        }
+        confidence = ranking.toList();
+        logger.info("generated {} rules with confidence >{}", confidence.size(), minimalConfidence);
+    }
+
+    /**
+     * Generates the rules of the assigned mined {@link Itemset}s, i.e. all ordered pairs of mined subsets of equal size whose union is the {@link Itemset}.
+     */
+    private class RuleGenerator implements Callable<AssociationRanking<LabelType>> {
+
+        private final int firstIndex;
+        private final int indexStep;
 
-                if (itemsetOne.equals(itemsetTwo) || (itemsetOne.getItems().size() != itemsetTwo.getItems().size())) {
+        private RuleGenerator(int firstIndex, int indexStep) {
+            this.firstIndex = firstIndex;
+            this.indexStep = indexStep;
+        }
+
+        @Override
+        public AssociationRanking<LabelType> call() {
+            List<Itemset<LabelType>> totalItemsets = itemsetMiner.getTotalItemsets();
+            AssociationRanking<LabelType> ranking = new AssociationRanking<>(minimalConfidence, 0);
+            for (int i = firstIndex; i < totalItemsets.size(); i += indexStep) {
+                Itemset<LabelType> joinedItemset = totalItemsets.get(i);
+                // skip duplicates of indexed itemsets
+                if (itemsetIndex.get(joinedItemset.getItems()) != i) {
+                    continue;
+                }
+                List<Item<LabelType>> items = new ArrayList<>(joinedItemset.getItems());
+                int size = items.size();
+                if (size > MAXIMAL_ITEMSET_SIZE) {
+                    logger.warn("itemset {} is too large to enumerate its subsets, skipping", joinedItemset.toSimpleString());
                     continue;
                 }
 
-                // create joined items
-                Set<Item<LabelType>> joinedItems = new TreeSet<>();
-                joinedItems.addAll(itemsetOne.getItems());
-                joinedItems.addAll(itemsetTwo.getItems());
+                // collect mined subsets by size, two subsets of equal size can only cover the itemset if they have at least half its size
+                Map<Integer, List<Integer>> subsetMasks = new HashMap<>();
+                Map<Integer, Integer> subsetIndices = new HashMap<>();
+                for (int mask = 1; mask < (1 << size) - 1; mask++) {
+                    int subsetSize = Integer.bitCount(mask);
+                    if (2 * subsetSize < size) {
+                        continue;
+                    }
+                    Set<Item<LabelType>> subsetItems = new TreeSet<>();
+                    for (int j = 0; j < size; j++) {
+                        if ((mask & (1 << j)) != 0) {
+                            subsetItems.add(items.get(j));
+                        }
+                    }
+                    Integer subsetIndex = itemsetIndex.get(subsetItems);
+                    if (subsetIndex != null) {
+                        subsetMasks.computeIfAbsent(subsetSize, key -> new ArrayList<>()).add(mask);
+                        subsetIndices.put(mask, subsetIndex);
+                    }
+                }
 
-                // check association between pairs
-                itemsetMiner.getTotalItemsets().stream()
-                            .filter(itemset -> itemset.getItems().equals(joinedItems))
-                            .findFirst()
-                            .ifPresent(joinedItemset -> storeConfidence(joinedItemset, itemsetOne, itemsetTwo));
+                // generate rules between subsets that cover the itemset
+                int fullMask = (1 << size) - 1;
+                for (List<Integer> masks : subsetMasks.values()) {
+                    for (int antecedentMask : masks) {
+                        for (int consequentMask : masks) {
+                            if (antecedentMask != consequentMask && (antecedentMask | consequentMask) == fullMask) {
+                                Itemset<LabelType> antecedent = totalItemsets.get(subsetIndices.get(antecedentMask));
+                                Itemset<LabelType> consequent = totalItemsets.get(subsetIndices.get(consequentMask));
+                                double confidenceValue = joinedItemset.getSupport() / antecedent.getSupport();
+                                logger.debug("confidence for rule {} => {} is {}", antecedent.toSimpleString(), consequent.toSimpleString(), confidenceValue);
+                                ranking.add(new ItemsetAssociation<>(antecedent, consequent, subsetIndices.get(antecedentMask), subsetIndices.get(consequentMask), confidenceValue));
+                            }
+                        }
+                    }
+                }
             }
+            return ranking;
         }
     }
-
-    private void storeConfidence(Itemset<LabelType> joinedItemset, Itemset<LabelType> itemsetOne, Itemset<LabelType> itemsetTwo) {
-        double confidenceValue = joinedItemset.getSupport() / itemsetOne.getSupport();
-        logger.debug("confidence for rule {} => {} is {}", itemsetOne.toSimpleString(), itemsetTwo.toSimpleString(), confidenceValue);
-        confidence.put(confidenceValue, new Pair<>(itemsetOne, itemsetTwo));
-    }
 }
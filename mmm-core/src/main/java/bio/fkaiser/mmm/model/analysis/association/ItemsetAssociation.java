@@ -0,0 +1,73 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import bio.fkaiser.mmm.model.Itemset;
+
+import java.util.Comparator;
+
+/**
+ * An association between two {@link Itemset}s that is scored by some measure, e.g. mutual information or confidence. For directed measures the association holds from the first to the
+ * second {@link Itemset}.
+ *
+ * @author fk
+ */
+public class ItemsetAssociation<LabelType extends Comparable<LabelType>> {
+
+    /**
+     * orders associations by descending score, ties are ordered by the positions of the {@link Itemset}s
+     */
+    public static final Comparator<ItemsetAssociation<?>> DESCENDING_SCORE = Comparator.<ItemsetAssociation<?>>comparingDouble(ItemsetAssociation::getScore).reversed()
+                                                                                       .thenComparingInt(ItemsetAssociation::getFirstIndex)
+                                                                                       .thenComparingInt(ItemsetAssociation::getSecondIndex);
+
+    private final Itemset<LabelType> first;
+    private final Itemset<LabelType> second;
+    private final int firstIndex;
+    private final int secondIndex;
+    private final double score;
+
+    /**
+     * Creates a new {@link ItemsetAssociation}.
+     *
+     * @param first       The first {@link Itemset}.
+     * @param second      The second {@link Itemset}.
+     * @param firstIndex  The position of the first {@link Itemset} in the analyzed {@link Itemset}s.
+     * @param secondIndex The position of the second {@link Itemset} in the analyzed {@link Itemset}s.
+     * @param score       The score of the association.
+     */
+    public ItemsetAssociation(Itemset<LabelType> first, Itemset<LabelType> second, int firstIndex, int secondIndex, double score) {
+        this.first = first;
+        this.second = second;
+        this.firstIndex = firstIndex;
+        this.secondIndex = secondIndex;
+        this.score = score;
+    }
+
+    public Itemset<LabelType> getFirst() {
+        return first;
+    }
+
+    public Itemset<LabelType> getSecond() {
+        return second;
+    }
+
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    public int getSecondIndex() {
+        return secondIndex;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemsetAssociation{" +
+               "first=" + first.toSimpleString() +
+               ", second=" + second.toSimpleString() +
+               ", score=" + score +
+               '}';
+    }
+}
@@ -7,105 +7,128 @@ import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.graphs.ItemsetGraph;
 import bio.fkaiser.mmm.model.graphs.ItemsetNode;
-import de.bioforscher.singa.mathematics.algorithms.graphs.DisconnectedSubgraphFinder;
 import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimposer;
 import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimposition;
 import de.bioforscher.singa.structure.model.families.LigandFamily;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
 import de.bioforscher.singa.structure.model.oak.StructuralMotif;
-import de.bioforscher.singa.structure.parser.pdb.structures.StructureWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
- * Naiive implementation of {@link Itemset} extension based on a given {@link ItemsetGraph}.
+ * Naiive implementation of {@link Itemset} extension based on a given {@link ItemsetGraph}. Disconnected subgraphs are extended in parallel and the superimposition onto the reference
+ * ligand is computed in parallel for each {@link DataPoint}. Merged motifs are handed to a bounded {@link MergedMotifWriter} as soon as they are available and are not kept in memory.
  *
  * @author fk
  */
 public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
 
     private static final Logger logger = LoggerFactory.getLogger(ItemsetExtender.class);
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_MAXIMAL_PENDING_MOTIFS = 64;
 
     private final ItemsetMiner<LabelType> itemsetMiner;
     private final Path outputPath;
     private final ItemsetGraph<LabelType> itemsetGraph;
+    private final int levelOfParallelism;
 
     private LigandFamily referenceLigandFamily;
     private Predicate<LeafSubstructure> alignmentReferenceFilter;
-    private Map<DataPointIdentifier, StructuralMotif> mergedMotifs;
+    private ExecutorService executorService;
+    private ExecutorService alignmentExecutorService;
+    private int writtenMotifCount;
 
     public ItemsetExtender(ItemsetMiner<LabelType> itemsetMiner, ItemsetGraph<LabelType> itemsetGraph, Path outputPath) {
-        this.itemsetMiner = itemsetMiner;
-        this.itemsetGraph = itemsetGraph;
-        this.outputPath = outputPath;
-        mergedMotifs = new TreeMap<>(DataPointIdentifier.COMPARATOR);
-        findDisconnectedSubgraphs();
+        this(itemsetMiner, itemsetGraph, outputPath, null);
     }
 
     public ItemsetExtender(ItemsetMiner<LabelType> itemsetMiner, ItemsetGraph<LabelType> itemsetGraph, Path outputPath, LigandFamily referenceLigandFamily) {
+        this(itemsetMiner, itemsetGraph, outputPath, referenceLigandFamily, -1);
+    }
+
+    /**
+     * Creates a new {@link ItemsetExtender} and writes the merged motifs of all disconnected subgraphs.
+     *
+     * @param itemsetMiner          The {@link ItemsetMiner} that found the {@link Itemset}s.
+     * @param itemsetGraph          The {@link ItemsetGraph} of associated {@link Itemset}s.
+     * @param outputPath            The path to which merged motifs should be written.
+     * @param referenceLigandFamily The {@link LigandFamily} on which merged motifs should be superimposed or null.
+     * @param levelOfParallelism    The desired level of parallelism.
+     */
+    public ItemsetExtender(ItemsetMiner<LabelType> itemsetMiner, ItemsetGraph<LabelType> itemsetGraph, Path outputPath, LigandFamily referenceLigandFamily,
+                           int levelOfParallelism) {
         this.itemsetMiner = itemsetMiner;
         this.itemsetGraph = itemsetGraph;
         this.outputPath = outputPath;
         this.referenceLigandFamily = referenceLigandFamily;
+        this.levelOfParallelism = (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism;
         if (referenceLigandFamily != null) {
             alignmentReferenceFilter = leafSubstructure -> leafSubstructure.getFamily().equals(referenceLigandFamily);
         }
-
-        mergedMotifs = new TreeMap<>(DataPointIdentifier.COMPARATOR);
         findDisconnectedSubgraphs();
     }
 
-
-    public Map<DataPointIdentifier, StructuralMotif> getMergedMotifs() {
-        return mergedMotifs;
+    /**
+     * Returns the number of merged motifs that were written.
+     *
+     * @return The number of written merged motifs.
+     */
+    public int getWrittenMotifCount() {
+        return writtenMotifCount;
     }
 
     /**
-     * Finds disconnected subgraphs in the given {@link ItemsetGraph}.
+     * Finds disconnected subgraphs in the given {@link ItemsetGraph}, i.e. its connected components, and extends them in parallel.
      */
     private void findDisconnectedSubgraphs() {
 
-        List<ItemsetGraph<LabelType>> subgraphs = DisconnectedSubgraphFinder.findDisconnectedSubgraphs(itemsetGraph);
+        List<List<ItemsetNode<LabelType>>> subgraphs = itemsetGraph.getComponents();
 
         logger.info("found {} disconnected subgraphs", subgraphs.size());
 
-        for (ItemsetGraph<LabelType> subgraph : subgraphs) {
-
-            List<Itemset<LabelType>> subgraphItemsets = subgraph.getNodes().stream()
-                                                                .map(ItemsetNode::getItemset)
-                                                                .collect(Collectors.toList());
-
-            // collect all extracted itemsets for subgraph
-            List<Itemset<LabelType>> extractedItemsets = subgraphItemsets.stream()
-                                                                         .map(itemset -> itemsetMiner.getTotalExtractedItemsets().get(itemset))
-                                                                         .flatMap(Collection::stream)
-                                                                         .collect(Collectors.toList());
-
-            mergeItemsets(extractedItemsets);
-            if (referenceLigandFamily != null) {
-                logger.info("aligning all merged subgraphs on common ligand {}", referenceLigandFamily);
-                alignInLigand(subgraph);
-            }
+        executorService = Executors.newWorkStealingPool(levelOfParallelism);
+        // superimpositions are submitted from within subgraph jobs, thus they use their own pool to avoid blocking the workers they wait on
+        alignmentExecutorService = Executors.newWorkStealingPool(levelOfParallelism);
+        MergedMotifWriter mergedMotifWriter = new MergedMotifWriter(DEFAULT_MAXIMAL_PENDING_MOTIFS);
+        try {
+            List<SubgraphExtender> jobs = subgraphs.stream()
+                                                   .map(subgraph -> new SubgraphExtender(subgraph, mergedMotifWriter))
+                                                   .collect(Collectors.toList());
             try {
-                writeMergedMotifs(subgraph);
-            } catch (IOException e) {
-                logger.warn("failed to write merged motifs to {}", outputPath, e);
+                for (Future<Void> future : executorService.invokeAll(jobs)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("failed to extend subgraph", e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.error("parallel extension of subgraphs failed", e);
+                Thread.currentThread().interrupt();
             }
+        } finally {
+            // wait for pending motifs before counting them
+            mergedMotifWriter.close();
+            executorService.shutdown();
+            alignmentExecutorService.shutdown();
         }
+        writtenMotifCount = mergedMotifWriter.getWrittenMotifCount();
+        logger.info("wrote {} merged motifs", writtenMotifCount);
     }
 
     /**
-     * Aligns all members of the subgraph in the specified ligand.
+     * Aligns all members of the subgraph in the specified ligand. The superimposition of each {@link DataPoint} is computed in parallel.
      *
-     * @param subgraph The subgraph of which all members should be aligned in the ligand.
+     * @param subgraph     The subgraph of which all members should be aligned in the ligand.
+     * @param mergedMotifs The merged motifs of the subgraph, which are replaced by their aligned counterparts.
      */
-    private void alignInLigand(ItemsetGraph<LabelType> subgraph) {
+    private void alignInLigand(List<ItemsetNode<LabelType>> subgraph, Map<DataPointIdentifier, StructuralMotif> mergedMotifs) throws InterruptedException {
 
         // pick first a first reference leaf substructure from the current subgraph
         Optional<LeafSubstructure<?>> referenceLeafSubstructure = mergedMotifs.values().stream()
@@ -117,22 +140,18 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
 
             logger.info("handling subgraph {}", subgraph);
 
-            for (Map.Entry<DataPointIdentifier, StructuralMotif> entry : mergedMotifs.entrySet()) {
+            List<LeafSubstructure<?>> reference = new ArrayList<>();
+            reference.add(referenceLeafSubstructure.get());
 
-                Optional<LeafSubstructure<?>> candidateLeafSubstructure = entry.getValue().getAllLeafSubstructures().stream()
-                                                                               .filter(alignmentReferenceFilter)
-                                                                               .findFirst();
-                if (candidateLeafSubstructure.isPresent()) {
-                    // compute superimposition based on ligand and apply to merged motif
-                    List<LeafSubstructure<?>> candidate = new ArrayList<>();
-                    candidate.add(candidateLeafSubstructure.get());
-                    List<LeafSubstructure<?>> reference = new ArrayList<>();
-                    reference.add(referenceLeafSubstructure.get());
-                    SubstructureSuperimposition superimposition = SubstructureSuperimposer.calculateSubstructureSuperimposition(reference, candidate);
-                    StructuralMotif mappedStructuralMotif = StructuralMotif.fromLeafSubstructures(superimposition.applyTo(entry.getValue().getAllLeafSubstructures()));
-                    entry.setValue(mappedStructuralMotif);
-                } else {
-                    logger.warn("no ligand found to be aligned for structure {}", entry.getKey());
+            Map<DataPointIdentifier, Future<StructuralMotif>> alignedMotifs = new TreeMap<>(DataPointIdentifier.COMPARATOR);
+            for (Map.Entry<DataPointIdentifier, StructuralMotif> entry : mergedMotifs.entrySet()) {
+                alignedMotifs.put(entry.getKey(), alignmentExecutorService.submit(() -> alignInLigand(entry.getKey(), entry.getValue(), reference)));
+            }
+            for (Map.Entry<DataPointIdentifier, Future<StructuralMotif>> entry : alignedMotifs.entrySet()) {
+                try {
+                    mergedMotifs.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("failed to align merged motif of " + entry.getKey(), e.getCause());
                 }
             }
         } else {
@@ -140,18 +159,42 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
         }
     }
 
+    /**
+     * Superimposes the given merged motif such that its ligand is aligned to the reference ligand.
+     *
+     * @param dataPointIdentifier The {@link DataPointIdentifier} of the merged motif.
+     * @param mergedMotif         The merged motif.
+     * @param reference           The reference ligand.
+     * @return The aligned merged motif or the unchanged merged motif if it contains no ligand.
+     */
+    private StructuralMotif alignInLigand(DataPointIdentifier dataPointIdentifier, StructuralMotif mergedMotif, List<LeafSubstructure<?>> reference) {
+        Optional<LeafSubstructure<?>> candidateLeafSubstructure = mergedMotif.getAllLeafSubstructures().stream()
+                                                                             .filter(alignmentReferenceFilter)
+                                                                             .findFirst();
+        if (candidateLeafSubstructure.isPresent()) {
+            // compute superimposition based on ligand and apply to merged motif
+            List<LeafSubstructure<?>> candidate = new ArrayList<>();
+            candidate.add(candidateLeafSubstructure.get());
+            SubstructureSuperimposition superimposition = SubstructureSuperimposer.calculateSubstructureSuperimposition(reference, candidate);
+            return StructuralMotif.fromLeafSubstructures(superimposition.applyTo(mergedMotif.getAllLeafSubstructures()));
+        }
+        logger.warn("no ligand found to be aligned for structure {}", dataPointIdentifier);
+        return mergedMotif;
+    }
+
     /**
      * Writes all merged {@link StructuralMotif}s of the given subgraph.
      *
-     * @param subgraph The subgraph of which all {@link StructuralMotif}s should be written.
-     * @throws IOException If the merged motifs cannot be written.
+     * @param subgraph          The subgraph of which all {@link StructuralMotif}s should be written.
+     * @param mergedMotifs      The merged motifs of the subgraph.
+     * @param mergedMotifWriter The {@link MergedMotifWriter} to be used.
      */
-    private void writeMergedMotifs(ItemsetGraph<LabelType> subgraph) throws IOException {
+    private void writeMergedMotifs(List<ItemsetNode<LabelType>> subgraph, Map<DataPointIdentifier, StructuralMotif> mergedMotifs, MergedMotifWriter mergedMotifWriter)
+            throws InterruptedException {
 
         logger.info("writing {} merged motifs", mergedMotifs.size());
 
-        String subgraphItemString = subgraph.getNodes()
-                                            .stream()
+        String subgraphItemString = subgraph.stream()
                                             .map(ItemsetNode::getItemset)
                                             .map(Itemset::getItems)
                                             .flatMap(Collection::stream)
@@ -160,10 +203,8 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
                                             .sorted()
                                             .collect(Collectors.joining("-"));
 
-        for (Map.Entry<DataPointIdentifier, StructuralMotif> entry : mergedMotifs.entrySet()) {
-            StructuralMotif structuralMotif = entry.getValue();
-            logger.debug("writing motif {}", structuralMotif);
-            StructureWriter.writeLeafSubstructureContainer(entry.getValue(), outputPath.resolve(subgraphItemString).resolve(structuralMotif.toString().split("_")[0] + ".pdb"));
+        for (StructuralMotif structuralMotif : mergedMotifs.values()) {
+            mergedMotifWriter.write(structuralMotif, outputPath.resolve(subgraphItemString).resolve(structuralMotif.toString().split("_")[0] + ".pdb"));
         }
     }
 
@@ -171,8 +212,9 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
      * Merges the given extracted {@link Itemset}s for each {@link DataPoint}.
      *
      * @param extractedItemsets The extracted {@link Itemset}s to be merged.
+     * @return The merged motif of each {@link DataPoint}.
      */
-    private void mergeItemsets(List<Itemset<LabelType>> extractedItemsets) {
+    private Map<DataPointIdentifier, StructuralMotif> mergeItemsets(List<Itemset<LabelType>> extractedItemsets) {
 
         // group itemsets by their data point
         Map<DataPointIdentifier, List<Itemset<LabelType>>> itemsetsOfDataPoints = new TreeMap<>(DataPointIdentifier.COMPARATOR);
@@ -190,6 +232,7 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
             }
         }
 
+        Map<DataPointIdentifier, StructuralMotif> mergedMotifs = new TreeMap<>(DataPointIdentifier.COMPARATOR);
         for (Map.Entry<DataPointIdentifier, List<Itemset<LabelType>>> entry : itemsetsOfDataPoints.entrySet()) {
             // collect all leaf substructures
             List<LeafSubstructure<?>> allLeafSubStructures = entry.getValue().stream()
@@ -206,5 +249,39 @@ public class ItemsetExtender<LabelType extends Comparable<LabelType>> {
 
             mergedMotifs.put(entry.getKey(), mergedMotif);
         }
+        return mergedMotifs;
+    }
+
+    /**
+     * Merges the extracted {@link Itemset}s of a single subgraph, aligns them in the reference ligand and hands them to the {@link MergedMotifWriter}.
+     */
+    private class SubgraphExtender implements Callable<Void> {
+
+        private final List<ItemsetNode<LabelType>> subgraph;
+        private final MergedMotifWriter mergedMotifWriter;
+
+        private SubgraphExtender(List<ItemsetNode<LabelType>> subgraph, MergedMotifWriter mergedMotifWriter) {
+            this.subgraph = subgraph;
+            this.mergedMotifWriter = mergedMotifWriter;
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+
+            // collect all extracted itemsets for subgraph
+            List<Itemset<LabelType>> extractedItemsets = subgraph.stream()
+                                                                 .map(ItemsetNode::getItemset)
+                                                                 .map(itemset -> itemsetMiner.getTotalExtractedItemsets().get(itemset))
+                                                                 .flatMap(Collection::stream)
+                                                                 .collect(Collectors.toList());
+
+            Map<DataPointIdentifier, StructuralMotif> mergedMotifs = mergeItemsets(extractedItemsets);
+            if (referenceLigandFamily != null) {
+                logger.info("aligning all merged subgraphs on common ligand {}", referenceLigandFamily);
+                alignInLigand(subgraph, mergedMotifs);
+            }
+            writeMergedMotifs(subgraph, mergedMotifs, mergedMotifWriter);
+            return null;
+        }
     }
 }
@@ -0,0 +1,87 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import de.bioforscher.singa.structure.model.oak.StructuralMotif;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes merged {@link StructuralMotif}s on a dedicated thread. At most the given number of motifs are pending, further submissions block until pending motifs are written. Thus, motifs
+ * do not accumulate in memory if they are produced faster than they can be written.
+ *
+ * @author fk
+ */
+class MergedMotifWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MergedMotifWriter.class);
+
+    private final ExecutorService writerService;
+    private final Semaphore pendingMotifs;
+    private final AtomicInteger writtenMotifCount;
+
+    /**
+     * Creates a new {@link MergedMotifWriter}.
+     *
+     * @param maximalPendingMotifs The maximal number of motifs waiting to be written.
+     */
+    MergedMotifWriter(int maximalPendingMotifs) {
+        writerService = Executors.newSingleThreadExecutor();
+        pendingMotifs = new Semaphore(maximalPendingMotifs);
+        writtenMotifCount = new AtomicInteger();
+    }
+
+    /**
+     * Schedules the given {@link StructuralMotif} to be written to the given path. Blocks if the maximal number of motifs is pending.
+     *
+     * @param structuralMotif The {@link StructuralMotif} to be written.
+     * @param motifPath       The path of the PDB file.
+     * @throws InterruptedException If interrupted while waiting for pending motifs to be written.
+     */
+    void write(StructuralMotif structuralMotif, Path motifPath) throws InterruptedException {
+        pendingMotifs.acquire();
+        try {
+            writerService.execute(() -> {
+                try {
+                    logger.debug("writing motif {}", structuralMotif);
+                    StructureWriter.writeLeafSubstructureContainer(structuralMotif, motifPath);
+                    writtenMotifCount.incrementAndGet();
+                } catch (IOException e) {
+                    logger.warn("failed to write merged motif to {}", motifPath, e);
+                } finally {
+                    pendingMotifs.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingMotifs.release();
+            throw e;
+        }
+    }
+
+    int getWrittenMotifCount() {
+        return writtenMotifCount.get();
+    }
+
+    /**
+     * Waits until all pending motifs are written and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writerService.shutdown();
+        try {
+            while (!writerService.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("waiting for pending merged motifs to be written");
+            }
+        } catch (InterruptedException e) {
+            writerService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,29 +1,59 @@
 package bio.fkaiser.mmm.model.analysis.association;
 
 
-import java.util.Iterator;
+import java.util.Arrays;
 
 /**
  * @author fk
  */
 public class MutualInformation {
 
+    private static final double LOG_TWO = Math.log(2.0);
+
     public static double calculate(double[] var0, double[] var1) {
-        JointProbabilityState var4 = new JointProbabilityState(var0, var1);
-        int var5 = var4.getFirstMaxVal();
-        double var12 = 0.0D;
-        Iterator var14 = var4.getJointProbMap().keySet().iterator();
+        int[] firstStates = new int[var0.length];
+        int[] secondStates = new int[var1.length];
+        int firstStateCount = ProbabilityState.normaliseArray(var0, firstStates);
+        int secondStateCount = ProbabilityState.normaliseArray(var1, secondStates);
+        return calculate(firstStates, firstStateCount, secondStates, secondStateCount, var0.length, null);
+    }
+
+    /**
+     * Calculates the mutual information (in bits) of two discretized observation sequences. Only the first observations up to the given length are considered. All counts are held in
+     * one flat array that can be reused between calls.
+     *
+     * @param firstStates      The discretized first observations in [0,firstStateCount).
+     * @param firstStateCount  The number of states of the first observations.
+     * @param secondStates     The discretized second observations in [0,secondStateCount).
+     * @param secondStateCount The number of states of the second observations.
+     * @param length           The number of observations to consider.
+     * @param countBuffer      A buffer for the counts of at least (firstStateCount + 1) * (secondStateCount + 1) elements or null if a new buffer should be allocated.
+     * @return The mutual information.
+     */
+    public static double calculate(int[] firstStates, int firstStateCount, int[] secondStates, int secondStateCount, int length, int[] countBuffer) {
+        if (length == 0) {
+            return 0.0;
+        }
+        // joint counts followed by the marginal counts of first and second states
+        int jointCountSize = firstStateCount * secondStateCount;
+        int bufferSize = jointCountSize + firstStateCount + secondStateCount;
+        int[] counts = (countBuffer == null) ? new int[bufferSize] : countBuffer;
+        Arrays.fill(counts, 0, bufferSize, 0);
+        for (int i = 0; i < length; i++) {
+            counts[firstStates[i] + firstStateCount * secondStates[i]]++;
+            counts[jointCountSize + firstStates[i]]++;
+            counts[jointCountSize + firstStateCount + secondStates[i]]++;
+        }
 
-        while (var14.hasNext()) {
-            Integer var15 = (Integer) var14.next();
-            double var6 = var4.getJointProbMap().get(var15);
-            double var8 = var4.getFirstProbMap().get(var15 % var5);
-            double var10 = var4.getSecondProbMap().get(var15 / var5);
-            if (var6 > 0.0D && var8 > 0.0D && var10 > 0.0D) {
-                var12 += var6 * Math.log(var6 / var8 / var10);
+        double mutualInformation = 0.0;
+        for (int jointState = 0; jointState < jointCountSize; jointState++) {
+            int jointCount = counts[jointState];
+            if (jointCount > 0) {
+                int firstCount = counts[jointCountSize + jointState % firstStateCount];
+                int secondCount = counts[jointCountSize + firstStateCount + jointState / firstStateCount];
+                mutualInformation += (double) jointCount / length * Math.log((double) jointCount * length / ((double) firstCount * secondCount));
             }
         }
-        var12 /= Math.log(2.0);
-        return var12;
+        return mutualInformation / LOG_TWO;
     }
 }
@@ -1,27 +1,30 @@
 package bio.fkaiser.mmm.model.analysis.association;
 
 import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.model.Distribution;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.analysis.AbstractItemsetMinerAnalyzer;
 import bio.fkaiser.mmm.model.analysis.ItemsetMinerAnalyzerException;
 import bio.fkaiser.mmm.model.graphs.ItemsetGraph;
+import bio.fkaiser.mmm.model.graphs.ItemsetGraphBuilder;
 import bio.fkaiser.mmm.model.graphs.ItemsetGraphRenderer;
 import bio.fkaiser.mmm.model.graphs.ItemsetNode;
 import bio.fkaiser.mmm.model.metrics.DistributionMetric;
-import de.bioforscher.singa.core.utility.Pair;
 import de.bioforscher.singa.javafx.renderer.graphs.GraphDisplayApplication;
 import javafx.application.Application;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Analzes the mutual information between {@link Itemset}s based on the specified {@link DistributionMetric}.
+ * Analzes the mutual information between {@link Itemset}s based on the specified {@link DistributionMetric}. The distribution of each {@link Itemset} is discretized once and all pairs are
+ * evaluated in parallel. Only pairs exceeding the minimal mutual information are kept, optionally bounded to the top ranks (including ties).
  *
  * @author fk
  */
@@ -29,22 +32,42 @@ public class MutualInformationAnalyzer<LabelType extends Comparable<LabelType>>
 
     private static final Logger logger = LoggerFactory.getLogger(MutualInformationAnalyzer.class);
     private static final double DEFAULT_MINIMAL_MUTUAL_INFORMATION = 0.8;
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
 
-    private final Class<? extends DistributionMetric> distributionMetricType;
+    private final Class<? extends DistributionMetric<?>> distributionMetricType;
+
+    private final int maximalPairs;
+    private final int levelOfParallelism;
 
     private double minimalMutualInformation = DEFAULT_MINIMAL_MUTUAL_INFORMATION;
-    private TreeMap<Double, Pair<Itemset<LabelType>>> mutualInformation;
+    private List<ItemsetAssociation<LabelType>> mutualInformation;
     private ItemsetGraph<LabelType> itemsetGraph;
     private boolean visualize;
 
-    public MutualInformationAnalyzer(ItemsetMiner<LabelType> itemsetMiner, Class<? extends DistributionMetric> distributionMetricType, double minimalMutualInformation, boolean visualize) {
+    public <MetricType extends DistributionMetric<?>> MutualInformationAnalyzer(ItemsetMiner<LabelType> itemsetMiner, Class<MetricType> distributionMetricType, double minimalMutualInformation, boolean visualize) {
+        this(itemsetMiner, distributionMetricType, minimalMutualInformation, 0, -1, visualize);
+    }
+
+    /**
+     * Creates a new {@link MutualInformationAnalyzer}.
+     *
+     * @param itemsetMiner             The {@link ItemsetMiner} that found the {@link Itemset}s.
+     * @param distributionMetricType   The type of the {@link DistributionMetric} whose distributions should be compared.
+     * @param minimalMutualInformation The mutual information that has to be exceeded by pairs.
+     * @param maximalPairs             The rank up to which pairs are kept (ties at the last rank are kept as well) or 0 to keep all pairs.
+     * @param levelOfParallelism       The desired level of parallelism.
+     * @param visualize                True if the resulting {@link ItemsetGraph} should be displayed.
+     */
+    public <MetricType extends DistributionMetric<?>> MutualInformationAnalyzer(ItemsetMiner<LabelType> itemsetMiner, Class<MetricType> distributionMetricType, double minimalMutualInformation, int maximalPairs,
+                                     int levelOfParallelism, boolean visualize) {
         super(itemsetMiner);
         this.distributionMetricType = distributionMetricType;
         this.minimalMutualInformation = minimalMutualInformation;
+        this.maximalPairs = maximalPairs;
+        this.levelOfParallelism = levelOfParallelism;
         this.visualize = visualize;
         logger.info("calculating mutual information for distribution metric {}", distributionMetricType);
 
-        mutualInformation = new TreeMap<>(Collections.reverseOrder());
         calculateMutualInformation();
         createGraph();
     }
@@ -58,33 +81,11 @@ public class MutualInformationAnalyzer<LabelType extends Comparable<LabelType>>
      */
     private void createGraph() {
         logger.info("creating graph of itemset associations for mutual information >{}", minimalMutualInformation);
-        List<Pair<Itemset<LabelType>>> connectedPairs = mutualInformation.entrySet().stream()
-                                                                         .filter(entry -> entry.getKey() > minimalMutualInformation)
-                                                                         .map(Map.Entry::getValue)
-                                                                         .collect(Collectors.toList());
-
-        itemsetGraph = new ItemsetGraph<>();
-        for (Pair<Itemset<LabelType>> connectedPair : connectedPairs) {
-
-            ItemsetNode<LabelType> nodeOne = itemsetGraph.getNodes().stream()
-                                                         .filter(node -> node.getItemset().equals(connectedPair.getFirst()))
-                                                         .findFirst()
-                                                         .orElse(new ItemsetNode<>(itemsetGraph.nextNodeIdentifier(), connectedPair.getFirst()));
-
-            ItemsetNode<LabelType> nodeTwo = itemsetGraph.getNodes().stream()
-                                                         .filter(node -> node.getItemset().equals(connectedPair.getSecond()))
-                                                         .findFirst()
-                                                         .orElse(new ItemsetNode<>(itemsetGraph.nextNodeIdentifier(), connectedPair.getSecond()));
-
-            if (!itemsetGraph.containsNode(nodeOne)) {
-                itemsetGraph.addNode(nodeOne);
-            }
-            if (!itemsetGraph.containsNode(nodeTwo)) {
-                itemsetGraph.addNode(nodeTwo);
-            }
-
-            itemsetGraph.addEdgeBetween(nodeOne, nodeTwo);
+        ItemsetGraphBuilder<LabelType> itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        for (ItemsetAssociation<LabelType> connectedPair : mutualInformation) {
+            itemsetGraphBuilder.addEdge(connectedPair.getFirst(), connectedPair.getSecond());
         }
+        itemsetGraph = itemsetGraphBuilder.build();
 
         for (ItemsetNode<LabelType> labelTypeItemsetNode : itemsetGraph.getNodes()) {
             logger.debug("degree of node {} is {}", labelTypeItemsetNode, labelTypeItemsetNode.getDegree());
@@ -97,7 +98,12 @@ public class MutualInformationAnalyzer<LabelType extends Comparable<LabelType>>
         }
     }
 
-    public TreeMap<Double, Pair<Itemset<LabelType>>> getMutualInformation() {
+    /**
+     * Returns the kept pairs of {@link Itemset}s with their mutual information in descending order.
+     *
+     * @return The pairs of {@link Itemset}s.
+     */
+    public List<ItemsetAssociation<LabelType>> getMutualInformation() {
         return mutualInformation;
     }
 
@@ -110,29 +116,93 @@ public class MutualInformationAnalyzer<LabelType extends Comparable<LabelType>>
                                                                        .map(dist -> (DistributionMetric<LabelType>) dist)
                                                                        .findFirst()
                                                                        .orElseThrow(() -> new ItemsetMinerAnalyzerException("no distribution metric found to calculate mutual information"));
+
+        // discretize the distribution of each itemset once
         List<Itemset<LabelType>> totalItemsets = itemsetMiner.getTotalItemsets();
-        for (int i = 0; i < itemsetMiner.getTotalItemsets().size(); i++) {
-            Itemset<LabelType> itemsetOne = totalItemsets.get(i);
-            for (int j = i + 1; j < totalItemsets.size(); j++) {
-                Itemset<LabelType> itemsetTwo = totalItemsets.get(j);
-                // cap to smaller observations
-                List<Double> itemsetOneObservations = distributionMetric.getDistributions().get(itemsetOne).getObservations();
-                List<Double> itemsetTwoObservations = distributionMetric.getDistributions().get(itemsetTwo).getObservations();
-                int itemsetOneDistributionSize = itemsetOneObservations.size();
-                int itemsetTwoDistributionSize = itemsetTwoObservations.size();
-
-                if (itemsetOneDistributionSize > itemsetTwoDistributionSize) {
-                    itemsetOneObservations = itemsetOneObservations.subList(0, itemsetTwoDistributionSize);
-                } else if (itemsetTwoDistributionSize > itemsetOneDistributionSize) {
-                    itemsetTwoObservations = itemsetTwoObservations.subList(0, itemsetOneDistributionSize);
+        int[][] states = new int[totalItemsets.size()][];
+        int[] stateCounts = new int[totalItemsets.size()];
+        for (int i = 0; i < totalItemsets.size(); i++) {
+            Distribution distribution = distributionMetric.getDistributions().get(totalItemsets.get(i));
+            if (distribution == null) {
+                logger.debug("no distribution for itemset {}, will be ignored", totalItemsets.get(i));
+                continue;
+            }
+            if (!distribution.isRetainingObservations()) {
+                throw new ItemsetMinerAnalyzerException("observed values of " + distributionMetricType.getSimpleName() + " are not retained, cannot calculate mutual information");
+            }
+            double[] observations = distribution.getObservationValues();
+            states[i] = new int[observations.length];
+            stateCounts[i] = ProbabilityState.normaliseArray(observations, states[i]);
+        }
+
+        // create jobs, rows are distributed in an interleaved manner to balance the triangular workload
+        int parallelism = (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism;
+        List<MutualInformationCalculator> jobs = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            jobs.add(new MutualInformationCalculator(i, parallelism, states, stateCounts));
+        }
+
+        // execute jobs and merge rankings
+        ExecutorService executorService = Executors.newWorkStealingPool(parallelism);
+        AssociationRanking<LabelType> ranking = new AssociationRanking<>(minimalMutualInformation, maximalPairs);
+        try {
+            executorService.invokeAll(jobs).forEach(future -> {
+                try {
+                    ranking.merge(future.get());
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IllegalStateException(e);
                 }
+            });
+        } catch (InterruptedException e) {
+            logger.error("parallel calculation of mutual information failed", e);
+        } finally {
+            executorService.shutdown();
+        }
+        mutualInformation = ranking.toList();
+        logger.info("kept {} pairs with mutual information >{}", mutualInformation.size(), minimalMutualInformation);
+    }
 
-                logger.debug("calculating mutual information for pair {}_{}", itemsetOne, itemsetTwo);
-                double mi = MutualInformation.calculate(itemsetOneObservations.stream().mapToDouble(Double::doubleValue).toArray(),
-                                                        itemsetTwoObservations.stream().mapToDouble(Double::doubleValue).toArray());
+    /**
+     * Calculates the mutual information of every pair of {@link Itemset}s in the assigned rows.
+     */
+    private class MutualInformationCalculator implements Callable<AssociationRanking<LabelType>> {
+
+        private final int firstRow;
+        private final int rowStep;
+        private final int[][] states;
+        private final int[] stateCounts;
+
+        private MutualInformationCalculator(int firstRow, int rowStep, int[][] states, int[] stateCounts) {
+            this.firstRow = firstRow;
+            this.rowStep = rowStep;
+            this.states = states;
+            this.stateCounts = stateCounts;
+        }
 
-                mutualInformation.put(mi, new Pair<>(itemsetOne, itemsetTwo));
+        @Override
+        public AssociationRanking<LabelType> call() {
+            List<Itemset<LabelType>> totalItemsets = itemsetMiner.getTotalItemsets();
+            AssociationRanking<LabelType> ranking = new AssociationRanking<>(minimalMutualInformation, maximalPairs);
+            int[] countBuffer = new int[0];
+            for (int i = firstRow; i < states.length; i += rowStep) {
+                if (states[i] == null) {
+                    continue;
+                }
+                for (int j = i + 1; j < states.length; j++) {
+                    if (states[j] == null) {
+                        continue;
+                    }
+                    // cap to smaller observations
+                    int length = Math.min(states[i].length, states[j].length);
+                    int bufferSize = stateCounts[i] * stateCounts[j] + stateCounts[i] + stateCounts[j];
+                    if (countBuffer.length < bufferSize) {
+                        countBuffer = new int[bufferSize];
+                    }
+                    double mi = MutualInformation.calculate(states[i], stateCounts[i], states[j], stateCounts[j], length, countBuffer);
+                    ranking.add(new ItemsetAssociation<>(totalItemsets.get(i), totalItemsets.get(j), i, j, mi));
+                }
             }
+            return ranking;
         }
     }
 }
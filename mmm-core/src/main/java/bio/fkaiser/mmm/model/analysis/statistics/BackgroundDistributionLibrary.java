@@ -0,0 +1,219 @@
+package bio.fkaiser.mmm.model.analysis.statistics;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.io.Hashes;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Distribution;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.AdherenceMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.AffinityMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ExtractionDependentMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ExtractionMetricConfiguration;
+import bio.fkaiser.mmm.model.metrics.AdherenceMetric;
+import bio.fkaiser.mmm.model.metrics.AffinityMetric;
+import bio.fkaiser.mmm.model.metrics.ConsensusMetric;
+import bio.fkaiser.mmm.model.metrics.DistributionMetric;
+import bio.fkaiser.mmm.model.metrics.ExtractionMetric;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * An on-disk library of background {@link Distribution}s sampled by the {@link DistributionSampler}. Entries are keyed by the label composition of the {@link Itemset}, the type of the
+ * {@link DistributionMetric}, the settings of the extraction and a fingerprint of the {@link DataPoint}s, thus background distributions can be reused across runs on the same data.
+ * <p>
+ * Each entry is stored as a single text file named after the SHA-256 hash of its key. The first line holds the key itself, the second line the number of sampling rounds and all
+ * remaining lines the sampled values.
+ *
+ * @author fk
+ */
+class BackgroundDistributionLibrary<LabelType extends Comparable<LabelType>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundDistributionLibrary.class);
+    private static final String ENTRY_FILE_EXTENSION = ".dist";
+    /**
+     * the properties of metric configurations that do not change the background values and are left out of the keys
+     */
+    private static final List<String> IGNORED_PROPERTIES = Collections.singletonList("level-of-parallelism");
+    private static final ObjectMapper SETTINGS_MAPPER = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategy.KEBAB_CASE);
+
+    private final Path libraryPath;
+    private final ItemsetMiner<LabelType> itemsetMiner;
+    private final String dataSetFingerprint;
+    private final Map<Class<? extends DistributionMetric<?>>, String> extractionSettings;
+
+    BackgroundDistributionLibrary(Path libraryPath, ItemsetMiner<LabelType> itemsetMiner) {
+        this.libraryPath = libraryPath;
+        this.itemsetMiner = itemsetMiner;
+        extractionSettings = new HashMap<>();
+        try {
+            Files.createDirectories(libraryPath);
+        } catch (IOException e) {
+            throw new DistributionSamplerException("failed to create background distribution library at " + libraryPath, e);
+        }
+        dataSetFingerprint = calculateDataSetFingerprint(itemsetMiner.getDataPoints());
+        logger.info("using background distribution library {} for data set with fingerprint {}", libraryPath, dataSetFingerprint);
+    }
+
+    /**
+     * Calculates the fingerprint of the given {@link DataPoint}s from their identifiers, labels and positions. The fingerprint does not depend on the order of the {@link DataPoint}s.
+     *
+     * @param dataPoints The {@link DataPoint}s.
+     * @return The fingerprint.
+     */
+    private static <LabelType extends Comparable<LabelType>> String calculateDataSetFingerprint(List<DataPoint<LabelType>> dataPoints) {
+        List<String> dataPointStrings = new ArrayList<>(dataPoints.size());
+        for (DataPoint<LabelType> dataPoint : dataPoints) {
+            StringJoiner stringJoiner = new StringJoiner(";", dataPoint.getDataPointIdentifier().toString() + ":", "");
+            for (Item<LabelType> item : dataPoint.getItems()) {
+                Optional<Vector3D> position = item.getPosition();
+                stringJoiner.add(item.getLabel() + (position.map(vector -> String.format(Locale.US, "@%.3f,%.3f,%.3f", vector.getX(), vector.getY(), vector.getZ())).orElse("")));
+            }
+            dataPointStrings.add(stringJoiner.toString());
+        }
+        Collections.sort(dataPointStrings);
+        return Hashes.sha256(String.join("\n", dataPointStrings));
+    }
+
+    /**
+     * Returns the settings of the extraction that influence the background values of the given {@link DistributionMetric}. These are all properties of the
+     * {@link ExtractionMetricConfiguration} and, for the {@link ConsensusMetric} and the {@link AffinityMetric}, of their {@link ExtractionDependentMetricConfiguration}, except for
+     * the {@link #IGNORED_PROPERTIES}.
+     *
+     * @param distributionMetricType The type of the {@link DistributionMetric}.
+     * @return The extraction settings.
+     */
+    private String determineExtractionSettings(Class<? extends DistributionMetric<?>> distributionMetricType) {
+        ExtractionMetric<?> extractionMetric = itemsetMiner.getEvaluationMetrics().stream()
+                                                           .filter(ExtractionMetric.class::isInstance)
+                                                           .map(ExtractionMetric.class::cast)
+                                                           .findAny()
+                                                           .orElseThrow(() -> new DistributionSamplerException("failed to determine used extraction metric"));
+        StringJoiner stringJoiner = new StringJoiner(",");
+        stringJoiner.add(extractionMetric.getClass().getSimpleName());
+        stringJoiner.add("vertexOne=" + extractionMetric.isVertexOne());
+        stringJoiner.add("representation=" + extractionMetric.getRepresentationSchemeType());
+        ItemsetMinerConfiguration<LabelType> itemsetMinerConfiguration = itemsetMiner.getItemsetMinerConfiguration();
+        stringJoiner.add(serializeSettings(itemsetMinerConfiguration.getExtractionMetricConfiguration()));
+        if (distributionMetricType.equals(AdherenceMetric.class)) {
+            stringJoiner.add("minimalObservations=" + AdherenceMetricConfiguration.MINIMAL_OBSERVATIONS);
+        }
+        Class<?> dependentConfigurationType = null;
+        if (distributionMetricType.equals(ConsensusMetric.class)) {
+            dependentConfigurationType = ConsensusMetricConfiguration.class;
+        } else if (distributionMetricType.equals(AffinityMetric.class)) {
+            dependentConfigurationType = AffinityMetricConfiguration.class;
+        }
+        if (dependentConfigurationType != null) {
+            for (ExtractionDependentMetricConfiguration<LabelType> extractionDependentMetricConfiguration : itemsetMinerConfiguration.getExtractionDependentMetricConfigurations()) {
+                if (dependentConfigurationType.isInstance(extractionDependentMetricConfiguration)) {
+                    stringJoiner.add(serializeSettings(extractionDependentMetricConfiguration));
+                }
+            }
+        }
+        return stringJoiner.toString();
+    }
+
+    /**
+     * Serializes the given metric configuration to a compact Json string without the {@link #IGNORED_PROPERTIES}.
+     *
+     * @param metricConfiguration The metric configuration.
+     * @return The serialized settings.
+     */
+    private static String serializeSettings(Object metricConfiguration) {
+        if (metricConfiguration == null) {
+            return "null";
+        }
+        ObjectNode settings = SETTINGS_MAPPER.valueToTree(metricConfiguration);
+        settings.remove(IGNORED_PROPERTIES);
+        return settings.toString();
+    }
+
+    private String createKey(Itemset<LabelType> itemset, Class<? extends DistributionMetric<?>> distributionMetricType) {
+        String labels = itemset.getItems().stream()
+                               .map(Item::getLabel)
+                               .sorted()
+                               .map(String::valueOf)
+                               .collect(Collectors.joining("-"));
+        return labels + "|" + distributionMetricType.getSimpleName() + "|" + extractionSettings.computeIfAbsent(distributionMetricType, this::determineExtractionSettings) + "|" + dataSetFingerprint;
+    }
+
+    private Path resolveEntryPath(String key) {
+        return libraryPath.resolve(Hashes.sha256(key) + ENTRY_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the stored background {@link Distribution} of the given {@link Itemset} if it was sampled for at least the given number of rounds.
+     *
+     * @param itemset                The {@link Itemset}.
+     * @param distributionMetricType The type of the {@link DistributionMetric}.
+     * @param minimalRounds          The minimal number of sampling rounds.
+     * @return The stored background {@link Distribution} or empty if there is no applicable entry.
+     */
+    Optional<Distribution> lookup(Itemset<LabelType> itemset, Class<? extends DistributionMetric<?>> distributionMetricType, int minimalRounds) {
+        String key = createKey(itemset, distributionMetricType);
+        Path entryPath = resolveEntryPath(key);
+        if (!Files.exists(entryPath)) {
+            return Optional.empty();
+        }
+        try {
+            List<String> lines = Files.readAllLines(entryPath, StandardCharsets.UTF_8);
+            if (lines.size() < 2 || !lines.get(0).equals(key)) {
+                logger.warn("ignoring invalid background distribution library entry {}", entryPath);
+                return Optional.empty();
+            }
+            if (Integer.parseInt(lines.get(1)) < minimalRounds) {
+                return Optional.empty();
+            }
+            Distribution distribution = new Distribution(distributionMetricType);
+            for (int i = 2; i < lines.size(); i++) {
+                distribution.addObservationValue(Double.parseDouble(lines.get(i)));
+            }
+            logger.debug("reusing background distribution of itemset {} from library", itemset.toSimpleString());
+            return Optional.of(distribution);
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("failed to read background distribution library entry {}", entryPath, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the given background {@link Distribution} of the given {@link Itemset}. Entries are written to a temporary file first and then moved, such that concurrent runs never
+     * read partial entries.
+     *
+     * @param itemset      The {@link Itemset}.
+     * @param distribution The background {@link Distribution}.
+     * @param rounds       The number of sampling rounds of the {@link Distribution}.
+     */
+    void store(Itemset<LabelType> itemset, Distribution distribution, int rounds) {
+        String key = createKey(itemset, distribution.getDistributionMetricType());
+        Path entryPath = resolveEntryPath(key);
+        List<String> lines = new ArrayList<>(distribution.size() + 2);
+        lines.add(key);
+        lines.add(String.valueOf(rounds));
+        for (double value : distribution.getObservationValues()) {
+            lines.add(String.valueOf(value));
+        }
+        try {
+            Path temporaryPath = Files.createTempFile(libraryPath, "entry", ".tmp");
+            Files.write(temporaryPath, lines, StandardCharsets.UTF_8);
+            Files.move(temporaryPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("failed to store background distribution of itemset {} in library", itemset.toSimpleString(), e);
+        }
+    }
+}
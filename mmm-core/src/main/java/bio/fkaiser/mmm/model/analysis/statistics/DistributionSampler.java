@@ -3,12 +3,16 @@ package bio.fkaiser.mmm.model.analysis.statistics;
 import bio.fkaiser.mmm.ItemsetMiner;
 import bio.fkaiser.mmm.Itemsets;
 import bio.fkaiser.mmm.model.*;
+import bio.fkaiser.mmm.model.configurations.metrics.AdherenceMetricConfiguration;
 import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
 import bio.fkaiser.mmm.model.metrics.*;
 import bio.fkaiser.mmm.model.metrics.cohesion.VertexCandidateGenerator;
+import de.bioforscher.singa.mathematics.metrics.model.VectorMetricProvider;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
 import de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusBuilder;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
 import de.bioforscher.singa.structure.model.oak.StructuralEntityFilter.AtomFilter;
 import de.bioforscher.singa.structure.model.oak.StructuralMotif;
 import org.slf4j.Logger;
@@ -19,15 +23,21 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 /**
  * This allows the sampling of background distributions of {@link Itemset}s regarding supported {@link DistributionMetric}s.
  * To sample the background distributions the labels of each {@link DataPoint} are shuffled such that the original frequency is not changed.
+ * <p>
+ * The {@link DataPoint}s are never modified or copied. Each sampling round is defined by a label permutation for every {@link DataPoint} that is drawn from its own
+ * {@link SplittableRandom} stream, thus rounds are evaluated in parallel and results are reproducible for a given seed. Background values of several {@link DistributionMetric}s can be
+ * collected in the same pass, i.e. from the same shuffled embeddings.
  *
  * @author fk
  */
-class DistributionSampler<LabelType extends Comparable<LabelType>> extends DataPointCache<LabelType> {
+class DistributionSampler<LabelType extends Comparable<LabelType>> {
 
     private static final Logger logger = LoggerFactory.getLogger(DistributionSampler.class);
     private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
@@ -36,38 +46,74 @@ class DistributionSampler<LabelType extends Comparable<LabelType>> extends DataP
     private final List<Itemset<LabelType>> itemsets;
     private final int sampleSize;
     private final int levelOfParallelism;
-    private final Class<? extends DistributionMetric> distributionMetricType;
+    private final long samplingSeed;
+    private final List<Class<? extends DistributionMetric<?>>> distributionMetricTypes;
     private final Class<? extends ExtractionMetric> extractionMetricType;
-    private final Map<Itemset<LabelType>, Distribution> backgroundDistributions;
+    private final RepresentationSchemeType representationSchemeType;
+    private final Map<Class<? extends DistributionMetric<?>>, Map<Itemset<LabelType>, Distribution>> backgroundDistributions;
     private final boolean vertexOne;
     private final ExecutorService executorService;
+    private final BiPredicate<Itemset<LabelType>, Distribution> stoppingRule;
 
-    private double clusterCutoff;
-    private Map<Itemset<LabelType>, Integer> itemsetObservationCounts;
+    /**
+     * the original labels of the items of each data point (shared read-only between rounds)
+     */
+    private final List<List<LabelType>> dataPointLabels;
+    /**
+     * the positions of the items of each data point by item index (shared read-only between rounds), distances are calculated on demand
+     */
+    private final List<Vector3D[]> dataPointPositions;
+    private final AtomicInteger finishedRounds;
 
-    DistributionSampler(ItemsetMiner<LabelType> itemsetMiner, Class<? extends DistributionMetric> distributionMetricType, int levelOfParallelism, int sampleSize) {
+    private double clusterCutoff;
+    private double desiredSquaredExtent;
+    private double squaredExtentDelta;
 
-        super(itemsetMiner.getEvaluationMetrics().stream()
-                          .filter(ExtractionMetric.class::isInstance)
-                          .map(ExtractionMetric.class::cast)
-                          .map(ExtractionMetric::getRepresentationSchemeType)
-                          .filter(Objects::nonNull)
-                          .findAny()
-                          .orElse(null));
+    DistributionSampler(ItemsetMiner<LabelType> itemsetMiner, Class<? extends DistributionMetric<?>> distributionMetricType, int levelOfParallelism, int sampleSize, long samplingSeed) {
+        this(itemsetMiner, itemsetMiner.getTotalItemsets(), Collections.singletonList(distributionMetricType), levelOfParallelism, sampleSize, samplingSeed, null);
+    }
 
-        this.distributionMetricType = distributionMetricType;
+    /**
+     * Creates a new {@link DistributionSampler} for the given {@link Itemset}s that optionally stops sampling of single {@link Itemset}s early. Rounds are evaluated in batches and
+     * {@link Itemset}s for which the given stopping rule holds are not considered in later batches.
+     *
+     * @param itemsetMiner            The {@link ItemsetMiner} that found the {@link Itemset}s.
+     * @param itemsets                The {@link Itemset}s for which background distributions should be sampled.
+     * @param distributionMetricTypes The types of the {@link DistributionMetric}s to be sampled in the same pass.
+     * @param levelOfParallelism      The desired level of parallelism.
+     * @param sampleSize              The maximal number of sampling rounds.
+     * @param samplingSeed            The seed for the label permutations.
+     * @param stoppingRule            The rule to decide whether sampling of a {@link Distribution} of an {@link Itemset} can be stopped or null if all rounds should be sampled. An
+     *                                {@link Itemset} is dropped only if the rule holds for all of its {@link Distribution}s.
+     */
+    DistributionSampler(ItemsetMiner<LabelType> itemsetMiner, List<Itemset<LabelType>> itemsets, List<Class<? extends DistributionMetric<?>>> distributionMetricTypes, int levelOfParallelism, int sampleSize, long samplingSeed,
+                        BiPredicate<Itemset<LabelType>, Distribution> stoppingRule) {
+
+        representationSchemeType = itemsetMiner.getEvaluationMetrics().stream()
+                                               .filter(ExtractionMetric.class::isInstance)
+                                               .map(ExtractionMetric.class::cast)
+                                               .map(ExtractionMetric::getRepresentationSchemeType)
+                                               .filter(Objects::nonNull)
+                                               .findAny()
+                                               .orElse(null);
+
+        this.distributionMetricTypes = distributionMetricTypes;
         this.levelOfParallelism = levelOfParallelism;
         this.sampleSize = sampleSize;
-
-        // work with copy of data points such that original labels stay the same
-        dataPoints = itemsetMiner.getDataPoints().stream()
-                                 .map(DataPoint::getCopy)
-                                 .collect(Collectors.toList());
-        itemsets = itemsetMiner.getTotalItemsets();
-        backgroundDistributions = new HashMap<>();
+        this.samplingSeed = samplingSeed;
+        this.stoppingRule = stoppingRule;
+
+        // original data points are only read, labels are permuted per round
+        dataPoints = itemsetMiner.getDataPoints();
+        this.itemsets = itemsets;
+        backgroundDistributions = new LinkedHashMap<>();
+        distributionMetricTypes.forEach(distributionMetricType -> backgroundDistributions.put(distributionMetricType, new HashMap<>()));
         executorService = (levelOfParallelism == -1) ? Executors.newWorkStealingPool() : Executors.newWorkStealingPool(levelOfParallelism);
+        finishedRounds = new AtomicInteger();
 
-        logger.info("distribution sampler initialized for distribution metric type " + distributionMetricType.getSimpleName());
+        logger.info("distribution sampler initialized for distribution metric types " + distributionMetricTypes.stream()
+                                                                                                 .map(Class::getSimpleName)
+                                                                                                 .collect(Collectors.joining(",")));
 
         // get associated extraction metric and store parameters
         ExtractionMetric extractionMetric = itemsetMiner.getEvaluationMetrics().stream()
@@ -78,7 +124,7 @@ class DistributionSampler<LabelType extends Comparable<LabelType>> extends DataP
         extractionMetricType = extractionMetric.getClass();
         vertexOne = extractionMetric.isVertexOne();
 
-        if (distributionMetricType == ConsensusMetric.class) {
+        if (distributionMetricTypes.contains(ConsensusMetric.class)) {
             clusterCutoff = itemsetMiner.getItemsetMinerConfiguration().getExtractionDependentMetricConfigurations().stream()
                                         .filter(ConsensusMetricConfiguration.class::isInstance)
                                         .map(ConsensusMetricConfiguration.class::cast)
@@ -87,191 +133,421 @@ class DistributionSampler<LabelType extends Comparable<LabelType>> extends DataP
                                         .getClusterCutoffValue();
         }
 
+        if (distributionMetricTypes.contains(AdherenceMetric.class)) {
+            // background adherence is only meaningful for itemsets extracted by adherence
+            if (!(itemsetMiner.getItemsetMinerConfiguration().getExtractionMetricConfiguration() instanceof AdherenceMetricConfiguration)) {
+                throw new DistributionSamplerException("sampling of adherence requires adherence as extraction metric");
+            }
+            AdherenceMetricConfiguration<LabelType> adherenceMetricConfiguration = (AdherenceMetricConfiguration<LabelType>) itemsetMiner.getItemsetMinerConfiguration()
+                                                                                                                                          .getExtractionMetricConfiguration();
+            desiredSquaredExtent = adherenceMetricConfiguration.getDesiredExtent() * adherenceMetricConfiguration.getDesiredExtent();
+            squaredExtentDelta = adherenceMetricConfiguration.getDesiredExtentDelta() * adherenceMetricConfiguration.getDesiredExtentDelta();
+        }
+
+        // collect labels and positions of all data points once
+        dataPointLabels = new ArrayList<>(dataPoints.size());
+        dataPointPositions = new ArrayList<>(dataPoints.size());
+        for (DataPoint<LabelType> dataPoint : dataPoints) {
+            dataPointLabels.add(dataPoint.getItems().stream()
+                                         .map(Item::getLabel)
+                                         .collect(Collectors.toList()));
+            dataPointPositions.add(collectPositions(dataPoint));
+        }
+
         runBackgroundSampling();
     }
 
+    /**
+     * Returns the background distributions of the first sampled {@link DistributionMetric}.
+     *
+     * @return The background distributions.
+     */
     public Map<Itemset<LabelType>, Distribution> getBackgroundDistributions() {
-        return backgroundDistributions;
+        return backgroundDistributions.get(distributionMetricTypes.get(0));
+    }
+
+    public Map<Itemset<LabelType>, Distribution> getBackgroundDistributions(Class<? extends DistributionMetric<?>> distributionMetricType) {
+        return backgroundDistributions.get(distributionMetricType);
+    }
+
+    private void addSampleValueForItemset(Class<? extends DistributionMetric<?>> distributionMetricType, Itemset<LabelType> itemset, double sampleValue) {
+        backgroundDistributions.get(distributionMetricType)
+                               .computeIfAbsent(itemset, key -> new Distribution(distributionMetricType))
+                               .addObservationValue(sampleValue);
+    }
+
+    /**
+     * Decides whether sampling of the given {@link Itemset} can be stopped, i.e. the stopping rule holds for the {@link Distribution}s of all sampled {@link DistributionMetric}s.
+     *
+     * @param itemset The {@link Itemset}.
+     * @return True if sampling can be stopped.
+     */
+    private boolean isSettled(Itemset<LabelType> itemset) {
+        for (Map<Itemset<LabelType>, Distribution> distributions : backgroundDistributions.values()) {
+            Distribution distribution = distributions.get(itemset);
+            if (distribution == null || !stoppingRule.test(itemset, distribution)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private void addSampleValueForItemset(Itemset<LabelType> itemset, double sampleValue) {
-        if (backgroundDistributions.containsKey(itemset)) {
-            backgroundDistributions.get(itemset).addObservationValue(sampleValue);
-        } else {
-            Distribution distribution = new Distribution(distributionMetricType);
-            distribution.addObservationValue(sampleValue);
-            backgroundDistributions.put(itemset, distribution);
+    /**
+     * Collects the positions of all {@link Item}s of the given {@link DataPoint} by their index. {@link Item}s without position are represented by null.
+     *
+     * @param dataPoint The {@link DataPoint} for which positions should be collected.
+     * @return The positions.
+     */
+    private Vector3D[] collectPositions(DataPoint<LabelType> dataPoint) {
+        List<Item<LabelType>> items = dataPoint.getItems();
+        Vector3D[] positions = new Vector3D[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Item<LabelType> item = items.get(i);
+            positions[i] = (representationSchemeType != null ? item.getPosition(representationSchemeType) : item.getPosition()).orElse(null);
         }
+        return positions;
     }
 
     /**
-     * Runs the background sampling for the specified number of samples.
+     * Calculates the squared distance between two {@link Item}s of a {@link DataPoint}. {@link Item}s without position are infinitely far away.
+     *
+     * @param positions   The positions of the {@link Item}s of the {@link DataPoint}.
+     * @param firstIndex  The index of the first {@link Item}.
+     * @param secondIndex The index of the second {@link Item}.
+     * @return The squared distance.
+     */
+    private static double calculateSquaredDistance(Vector3D[] positions, int firstIndex, int secondIndex) {
+        if (positions[firstIndex] == null || positions[secondIndex] == null) {
+            return Double.MAX_VALUE;
+        }
+        return VectorMetricProvider.SQUARED_EUCLIDEAN_METRIC.calculateDistance(positions[firstIndex], positions[secondIndex]);
+    }
+
+    /**
+     * Runs the background sampling for the specified number of samples. Rounds are evaluated in parallel, but sample values are added to the background distributions in round order. If a
+     * stopping rule is given, rounds are evaluated in batches and settled {@link Itemset}s are dropped after each batch.
      */
     private void runBackgroundSampling() {
-        for (int i = 0; i < sampleSize; i++) {
-            if (i % Math.floor(sampleSize / 10) == 0) {
-                logger.info("running background sampling round {} of {}", i + 1, sampleSize);
-            }
-            randomizeDataPoints();
-            // reset itemset observation counts in each sample round
-            itemsetObservationCounts = new HashMap<>();
 
-            // create chunks for parallel execution
-            List<List<Itemset<LabelType>>> partitions = partition(new ArrayList<>(itemsets), (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism);
+        int parallelism = (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism;
+        int batchSize = (stoppingRule == null) ? sampleSize : parallelism;
+        logger.info("running {} background sampling rounds with level of parallelism {}", sampleSize, parallelism);
+
+        // split one independent stream per round in deterministic order
+        SplittableRandom splittableRandom = new SplittableRandom(samplingSeed);
+        List<Itemset<LabelType>> activeItemsets = new ArrayList<>(itemsets);
+        int sampledRounds = 0;
+        while (sampledRounds < sampleSize && !activeItemsets.isEmpty()) {
 
             // create jobs
-            List<DistributionCalculator> jobs = partitions.stream()
-                                                          .map(DistributionCalculator::new)
-                                                          .collect(Collectors.toList());
+            int batchRounds = Math.min(batchSize, sampleSize - sampledRounds);
+            List<RoundSampler> jobs = new ArrayList<>(batchRounds);
+            for (int i = 0; i < batchRounds; i++) {
+                jobs.add(new RoundSampler(splittableRandom.split(), activeItemsets));
+            }
 
             // execute jobs
+            List<double[][]> roundSampleValues = new ArrayList<>(batchRounds);
             try {
                 executorService.invokeAll(jobs).forEach(future -> {
                     try {
-                        future.get();
+                        roundSampleValues.add(future.get());
                     } catch (InterruptedException | ExecutionException e) {
                         throw new IllegalStateException(e);
                     }
                 });
             } catch (InterruptedException e) {
-                logger.error("parallel cohesion execution of {} failed", this, e);
+                logger.error("parallel background sampling of {} failed", this, e);
             }
-        }
-    }
 
-    /**
-     * This assigns the labels of the {@link Item}s for each {@link DataPoint} randomly.
-     */
-    private void randomizeDataPoints() {
-        logger.debug("randomizing data points");
-        for (DataPoint<LabelType> dataPoint : dataPoints) {
-            logger.trace("shuffling data point {}", dataPoint);
-            List<LabelType> shuffledItems = dataPoint.getItems().stream()
-                                                     .map(Item::getLabel)
-                                                     .collect(Collectors.toList());
-            Collections.shuffle(shuffledItems);
-            ListIterator<LabelType> itemListIterator = shuffledItems.listIterator();
-            for (Item<LabelType> item : dataPoint.getItems()) {
-                LabelType newLabel = itemListIterator.next();
-                item.setLabel(newLabel);
-                itemListIterator.remove();
+            // store sample values in round order
+            for (double[][] sampleValues : roundSampleValues) {
+                for (int i = 0; i < activeItemsets.size(); i++) {
+                    for (int j = 0; j < distributionMetricTypes.size(); j++) {
+                        if (!Double.isNaN(sampleValues[i][j])) {
+                            addSampleValueForItemset(distributionMetricTypes.get(j), activeItemsets.get(i), sampleValues[i][j]);
+                        }
+                    }
+                }
+            }
+            sampledRounds += batchRounds;
+
+            // drop itemsets for which sampling can be stopped
+            if (stoppingRule != null) {
+                int activeItemsetCount = activeItemsets.size();
+                activeItemsets = activeItemsets.stream()
+                                               .filter(itemset -> !isSettled(itemset))
+                                               .collect(Collectors.toList());
+                logger.info("stopped sampling for {} itemsets after {} rounds, {} remaining", activeItemsetCount - activeItemsets.size(), sampledRounds, activeItemsets.size());
             }
         }
     }
 
     /**
-     * Increments the observation count of the given Itemset.
+     * Creates a uniform random permutation of the given size (Fisher-Yates).
      *
-     * @param itemset The {@link Itemset} for which the count should be incremented.
+     * @param size   The size of the permutation.
+     * @param random The source of randomness.
+     * @return The permutation.
      */
-    private synchronized void incrementObservationCount(Itemset<LabelType> itemset) {
-        if (itemsetObservationCounts.containsKey(itemset)) {
-            itemsetObservationCounts.put(itemset, itemsetObservationCounts.get(itemset) + 1);
-        } else {
-            itemsetObservationCounts.put(itemset, 1);
+    private static int[] createPermutation(int size, SplittableRandom random) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
         }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
     }
 
-    private List<List<Itemset<LabelType>>> partition(List<Itemset<LabelType>> itemsets, int k) {
+    /**
+     * Samples background values for all {@link Itemset}s for a single set of label permutations.
+     */
+    private class RoundSampler implements Callable<double[][]> {
 
-        List<List<Itemset<LabelType>>> partitions = new ArrayList<>();
-        // init partitions
-        for (int i = 0; i < k; i++) {
-            partitions.add(new ArrayList<>(itemsets.size() / k + 1));
-        }
+        private final SplittableRandom random;
+        private final List<Itemset<LabelType>> itemsets;
 
-        // distribute objects fairly among all partitions
-        for (int i = 0; i < itemsets.size(); i++) {
-            partitions.get(i % k).add(itemsets.get(i));
+        private RoundSampler(SplittableRandom random, List<Itemset<LabelType>> itemsets) {
+            this.random = random;
+            this.itemsets = itemsets;
         }
 
-        return partitions;
-    }
+        @Override
+        public double[][] call() {
 
-    private class DistributionCalculator implements Callable<Void> {
+            // the label of item j of data point d in this round is the original label at position permutations[d][j]
+            int[][] permutations = new int[dataPoints.size()][];
+            for (int i = 0; i < dataPoints.size(); i++) {
+                permutations[i] = createPermutation(dataPointLabels.get(i).size(), random);
+            }
 
-        private List<Itemset<LabelType>> itemsets;
+            double[][] sampleValues = new double[itemsets.size()][];
+            for (int i = 0; i < itemsets.size(); i++) {
+                sampleValues[i] = sampleItemset(itemsets.get(i), permutations);
+            }
 
-        private DistributionCalculator(List<Itemset<LabelType>> itemsets) {
-            this.itemsets = itemsets;
+            int finishedRoundCount = finishedRounds.incrementAndGet();
+            if (finishedRoundCount % Math.max(1, sampleSize / 10) == 0) {
+                logger.info("finished background sampling round {} of {}", finishedRoundCount, sampleSize);
+            }
+            return sampleValues;
         }
 
-        @Override
-        public Void call() {
-
-            for (Itemset<LabelType> itemset : itemsets) {
-
-                // create shallow copy background itemset
-                Itemset<LabelType> backgroundItemset = new Itemset<>(itemset.getItems());
-                List<Itemset<LabelType>> allCandidates = new ArrayList<>();
-                for (DataPoint<LabelType> dataPoint : dataPoints) {
-                    // create candidates for current itemset
-                    VertexCandidateGenerator<LabelType> candidateGenerator = new VertexCandidateGenerator<>(backgroundItemset, dataPoint, obtainSquaredDistanceMatrix(dataPoint), vertexOne);
-                    List<Itemset<LabelType>> candidates = candidateGenerator.generateCandidates();
-                    if (!candidates.isEmpty()) {
-                        if (extractionMetricType == CohesionMetric.class) {
-                            // find and store candidate with minimal squared extent
-                            Itemset<LabelType> bestCandidate = candidates.stream()
-                                                                         .min((Comparator.comparingDouble(Itemsets::calculateMaximalSquaredExtent)))
-                                                                         .orElseThrow(() -> new DistributionSamplerException("failed to get candidate with minimal extent"));
-                            // calculate squared extent of best candidate
-                            double bestCandidateSquaredExtent = Itemsets.calculateMaximalSquaredExtent(bestCandidate);
-
-                            if (distributionMetricType == CohesionMetric.class) {
-                                // store extent for background probability distribution
-                                backgroundItemset.setCohesion(backgroundItemset.getCohesion() + bestCandidateSquaredExtent);
-                                incrementObservationCount(itemset);
+        /**
+         * Calculates the background values of the given {@link Itemset} under the given label permutations for all sampled {@link DistributionMetric}s. Candidates are generated only once
+         * and shared by all {@link DistributionMetric}s.
+         *
+         * @param itemset      The {@link Itemset} for which the values should be sampled.
+         * @param permutations The label permutations of all {@link DataPoint}s.
+         * @return The sampled values in the order of the {@link DistributionMetric} types, NaN if the {@link Itemset} was not observed.
+         */
+        private double[] sampleItemset(Itemset<LabelType> itemset, int[][] permutations) {
+
+            boolean sampleCohesion = distributionMetricTypes.contains(CohesionMetric.class);
+            boolean sampleAdherence = distributionMetricTypes.contains(AdherenceMetric.class);
+            List<LabelType> itemsetLabels = itemset.getItems().stream()
+                                                   .map(Item::getLabel)
+                                                   .collect(Collectors.toList());
+            double squaredExtentSum = 0.0;
+            int observationCount = 0;
+            // adherence only needs the moments of the extent values
+            Distribution adherenceExtents = new Distribution(AdherenceMetric.class, false);
+            List<Itemset<LabelType>> allCandidates = new ArrayList<>();
+            for (int i = 0; i < dataPoints.size(); i++) {
+                // create candidates for current itemset
+                List<Itemset<LabelType>> candidates = generateCandidates(itemsetLabels, i, permutations[i]);
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                if (extractionMetricType == AdherenceMetric.class) {
+                    // store all candidates close to the desired extent
+                    for (Itemset<LabelType> candidate : candidates) {
+                        double candidateSquaredExtent = Itemsets.calculateMaximalSquaredExtent(candidate);
+                        if ((candidateSquaredExtent > (desiredSquaredExtent - squaredExtentDelta)) && candidateSquaredExtent < ((desiredSquaredExtent + squaredExtentDelta))) {
+                            allCandidates.add(candidate);
+                            if (sampleAdherence) {
+                                adherenceExtents.addObservationValue(Math.sqrt(candidateSquaredExtent));
                             }
-                            allCandidates.add(bestCandidate);
                         }
-                        // TODO implement support for adherence metric here
                     }
                 }
-                // calculate consensus if wanted
-                if (distributionMetricType == ConsensusMetric.class) {
-                    if (!allCandidates.isEmpty()) {
-                        List<StructuralMotif> structuralMotifs = allCandidates.stream()
-                                                                              .map(Itemset::getStructuralMotif)
-                                                                              .filter(Optional::isPresent)
-                                                                              .map(Optional::get)
-                                                                              .collect(Collectors.toList());
-                        // perform consensus alignment with backbone atoms only
-                        ConsensusAlignment consensusAlignment = ConsensusBuilder.create()
-                                                                                .inputStructuralMotifs(structuralMotifs)
-                                                                                .atomFilter(AtomFilter.isBackbone())
-                                                                                .clusterCutoff(clusterCutoff)
-                                                                                .alignWithinClusters(false)
-                                                                                .idealSuperimposition(false)
-                                                                                .run();
-                        backgroundItemset.setConsensus(consensusAlignment.getNormalizedConsensusScore());
-                        addSampleValueForItemset(itemset, backgroundItemset.getConsensus());
+                if (extractionMetricType == CohesionMetric.class || sampleCohesion) {
+                    // find candidate with minimal squared extent
+                    Itemset<LabelType> bestCandidate = null;
+                    double minimalSquaredExtent = Double.MAX_VALUE;
+                    for (Itemset<LabelType> candidate : candidates) {
+                        double candidateSquaredExtent = Itemsets.calculateMaximalSquaredExtent(candidate);
+                        if (bestCandidate == null || candidateSquaredExtent < minimalSquaredExtent) {
+                            bestCandidate = candidate;
+                            minimalSquaredExtent = candidateSquaredExtent;
+                        }
                     }
-                } else if (distributionMetricType == AffinityMetric.class) {
-                    if (!allCandidates.isEmpty()) {
-                        List<StructuralMotif> structuralMotifs = allCandidates.stream()
-                                                                              .map(Itemset::getStructuralMotif)
-                                                                              .filter(Optional::isPresent)
-                                                                              .map(Optional::get)
-                                                                              .collect(Collectors.toList());
-                        // perform affinity alignment with backbone atoms only
-                        AffinityAlignment affinityAlignment = AffinityAlignment.create()
-                                                                               .inputStructuralMotifs(structuralMotifs)
-                                                                               .atomFilter(AtomFilter.isBackbone())
-                                                                               .alignWithinClusters(false)
-                                                                               .idealSuperimposition(false)
-                                                                               .run();
-                        backgroundItemset.setAffinity(AffinityMetric.calculateAffinity(affinityAlignment));
-                        addSampleValueForItemset(itemset, backgroundItemset.getAffinity());
+                    if (sampleCohesion) {
+                        // store extent for background probability distribution
+                        squaredExtentSum += minimalSquaredExtent;
+                        observationCount++;
+                    }
+                    if (extractionMetricType == CohesionMetric.class) {
+                        allCandidates.add(bestCandidate);
                     }
                 }
-                // normalize and store cohesion value
-                if (distributionMetricType == CohesionMetric.class) {
+            }
+
+            double[] sampleValues = new double[distributionMetricTypes.size()];
+            for (int i = 0; i < distributionMetricTypes.size(); i++) {
+                Class<? extends DistributionMetric<?>> distributionMetricType = distributionMetricTypes.get(i);
+                if (distributionMetricType.equals(CohesionMetric.class)) {
                     // normalize cohesion value
-                    backgroundItemset.setCohesion(Math.sqrt(backgroundItemset.getCohesion() / itemsetObservationCounts.get(backgroundItemset)));
-                    addSampleValueForItemset(itemset, backgroundItemset.getCohesion());
+                    sampleValues[i] = observationCount == 0 ? Double.NaN : Math.sqrt(squaredExtentSum / observationCount);
+                } else if (distributionMetricType.equals(AdherenceMetric.class)) {
+                    sampleValues[i] = calculateAdherence(adherenceExtents);
+                } else if (distributionMetricType.equals(ConsensusMetric.class)) {
+                    sampleValues[i] = calculateConsensus(allCandidates);
+                } else if (distributionMetricType.equals(AffinityMetric.class)) {
+                    sampleValues[i] = calculateAffinity(allCandidates);
+                } else {
+                    sampleValues[i] = Double.NaN;
+                }
+            }
+            return sampleValues;
+        }
+
+        private double calculateAdherence(Distribution extents) {
+            if (extents.size() < AdherenceMetricConfiguration.MINIMAL_OBSERVATIONS) {
+                return Double.NaN;
+            }
+            // adherence is the standard deviation of extent values
+            return extents.getStandardDeviation();
+        }
+
+        private double calculateConsensus(List<Itemset<LabelType>> candidates) {
+            if (candidates.isEmpty()) {
+                return Double.NaN;
+            }
+            // perform consensus alignment with backbone atoms only
+            ConsensusAlignment consensusAlignment = ConsensusBuilder.create()
+                                                                    .inputStructuralMotifs(collectStructuralMotifs(candidates))
+                                                                    .atomFilter(AtomFilter.isBackbone())
+                                                                    .clusterCutoff(clusterCutoff)
+                                                                    .alignWithinClusters(false)
+                                                                    .idealSuperimposition(false)
+                                                                    .run();
+            return consensusAlignment.getNormalizedConsensusScore();
+        }
+
+        private double calculateAffinity(List<Itemset<LabelType>> candidates) {
+            if (candidates.isEmpty()) {
+                return Double.NaN;
+            }
+            // perform affinity alignment with backbone atoms only
+            AffinityAlignment affinityAlignment = AffinityAlignment.create()
+                                                                   .inputStructuralMotifs(collectStructuralMotifs(candidates))
+                                                                   .atomFilter(AtomFilter.isBackbone())
+                                                                   .alignWithinClusters(false)
+                                                                   .idealSuperimposition(false)
+                                                                   .run();
+            return AffinityMetric.calculateAffinity(affinityAlignment);
+        }
+
+        private List<StructuralMotif> collectStructuralMotifs(List<Itemset<LabelType>> candidates) {
+            return candidates.stream()
+                             .map(Itemset::getStructuralMotif)
+                             .filter(Optional::isPresent)
+                             .map(Optional::get)
+                             .collect(Collectors.toList());
+        }
+
+        /**
+         * Generates candidates of the given labels in a permuted {@link DataPoint}. This follows the {@link VertexCandidateGenerator} but operates on item indices, such that the
+         * geometry of the {@link DataPoint} is shared and only the labels are permuted.
+         *
+         * @param itemsetLabels  The labels of the {@link Itemset} for which candidates should be generated.
+         * @param dataPointIndex The index of the {@link DataPoint}.
+         * @param permutation    The label permutation of the {@link DataPoint}.
+         * @return The generated candidates.
+         */
+        private List<Itemset<LabelType>> generateCandidates(List<LabelType> itemsetLabels, int dataPointIndex, int[] permutation) {
+
+            DataPoint<LabelType> dataPoint = dataPoints.get(dataPointIndex);
+            List<LabelType> labels = dataPointLabels.get(dataPointIndex);
+            Vector3D[] positions = dataPointPositions.get(dataPointIndex);
+
+            // collect indices of all matching data point items
+            int itemsetSize = itemsetLabels.size();
+            List<int[]> matchingIndices = new ArrayList<>(itemsetSize);
+            for (LabelType itemsetLabel : itemsetLabels) {
+                int[] indices = new int[permutation.length];
+                int indexCount = 0;
+                for (int i = 0; i < permutation.length; i++) {
+                    if (labels.get(permutation[i]).equals(itemsetLabel)) {
+                        indices[indexCount++] = i;
+                    }
+                }
+                // return empty list if items are missing in the data point
+                if (indexCount == 0) {
+                    return new ArrayList<>();
+                }
+                matchingIndices.add(Arrays.copyOf(indices, indexCount));
+            }
+
+            List<Itemset<LabelType>> candidates = new ArrayList<>();
+            Set<List<Integer>> candidateIndexLists = new HashSet<>();
+            for (int i = 0; i < itemsetSize; i++) {
+                for (int referenceIndex : matchingIndices.get(i)) {
+
+                    // determine closest items of all other labels
+                    int[] candidateIndices = new int[itemsetSize];
+                    candidateIndices[0] = referenceIndex;
+                    for (int j = 0; j < itemsetSize - 1; j++) {
+                        int pointer = (j + i + 1) % itemsetSize;
+                        int closestIndex = -1;
+                        double closestSquaredDistance = Double.MAX_VALUE;
+                        for (int index : matchingIndices.get(pointer)) {
+                            double squaredDistance = calculateSquaredDistance(positions, referenceIndex, index);
+                            if (squaredDistance < closestSquaredDistance) {
+                                closestSquaredDistance = squaredDistance;
+                                closestIndex = index;
+                            }
+                        }
+                        if (closestIndex == -1) {
+                            closestIndex = matchingIndices.get(pointer)[0];
+                        }
+                        candidateIndices[j + 1] = closestIndex;
+                    }
+
+                    // leaf substructures are sorted based on the natural ordering of their labels, the structural motif is only built if requested
+                    Set<Item<LabelType>> candidateItems = new TreeSet<>();
+                    TreeMap<LabelType, Item<LabelType>> labelMap = new TreeMap<>();
+                    TreeMap<LabelType, Integer> indexMap = new TreeMap<>();
+                    for (int candidateIndex : candidateIndices) {
+                        Item<LabelType> dataPointItem = dataPoint.getItems().get(candidateIndex);
+                        if (dataPointItem.isCoordinateOnly() || dataPointItem.getLeafSubstructure().isPresent()) {
+                            LabelType permutedLabel = labels.get(permutation[candidateIndex]);
+                            Item<LabelType> candidateItem = dataPointItem.getRelabeledCopy(permutedLabel);
+                            candidateItems.add(candidateItem);
+                            labelMap.put(permutedLabel, candidateItem);
+                            indexMap.put(permutedLabel, candidateIndex);
+                        }
+                    }
+                    // each data point item refers to its own leaf substructure, thus equal indices denote equal leaf substructures
+                    List<Integer> orderedCandidateIndices = new ArrayList<>(indexMap.values());
+                    if (!candidateIndexLists.add(orderedCandidateIndices)) {
+                        continue;
+                    }
+                    candidates.add(new Itemset<>(candidateItems, new ArrayList<>(labelMap.values()), dataPoint.getDataPointIdentifier()));
+                }
+
+                // break after first iteration if VertexOne heuristic specified
+                if (vertexOne) {
+                    break;
                 }
             }
-            return null;
+            return candidates;
         }
     }
-}
\ No newline at end of file
+}
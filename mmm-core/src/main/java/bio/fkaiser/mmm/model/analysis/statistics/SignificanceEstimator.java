@@ -4,22 +4,26 @@ import bio.fkaiser.mmm.ItemsetMiner;
 import bio.fkaiser.mmm.model.Distribution;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.analysis.statistics.SignificanceEstimatorConfiguration;
+import bio.fkaiser.mmm.model.metrics.AdherenceMetric;
+import bio.fkaiser.mmm.model.metrics.AffinityMetric;
 import bio.fkaiser.mmm.model.metrics.CohesionMetric;
 import bio.fkaiser.mmm.model.metrics.ConsensusMetric;
 import bio.fkaiser.mmm.model.metrics.DistributionMetric;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import org.apache.commons.math3.distribution.BinomialDistribution;
 import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.inference.TestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Uses the {@link DistributionSampler} to estimate the significance of found {@link Itemset}s regarding a defined {@link DistributionMetric}.
- * Currently supported are {@link CohesionMetric} and {@link ConsensusMetric}.
+ * Currently supported are {@link CohesionMetric}, {@link AdherenceMetric}, {@link ConsensusMetric} and {@link AffinityMetric}. Additional types are sampled in the same pass and their
+ * p-values are reported, but only the primary type determines the significant {@link Itemset}s.
  *
  * @author fk
  */
@@ -30,91 +34,312 @@ public class SignificanceEstimator<LabelType extends Comparable<LabelType>> {
 
     private final ItemsetMiner<LabelType> itemsetMiner;
     private final SignificanceEstimatorType type;
+    private final List<SignificanceEstimatorType> types;
     private final double ksCutoff;
     private final double significanceCutoff;
+    private final boolean sequentialSampling;
+    private final int sequentialExceedances;
+    private final double sequentialErrorRate;
+    private final String backgroundLibraryLocation;
     private final TreeMap<Significance, Itemset<LabelType>> significantItemsets;
-    private Map<Itemset<LabelType>, Distribution> backgroundDistributions;
+    private final Map<SignificanceEstimatorType, TreeMap<Significance, Itemset<LabelType>>> significantItemsetsByType;
 
     public SignificanceEstimator(ItemsetMiner<LabelType> itemsetMiner, SignificanceEstimatorConfiguration configuration) {
         this.itemsetMiner = itemsetMiner;
         type = configuration.getSignificanceType();
+        types = new ArrayList<>();
+        types.add(type);
+        configuration.getAdditionalSignificanceTypes().stream()
+                     .filter(additionalType -> !types.contains(additionalType))
+                     .forEach(types::add);
         ksCutoff = configuration.getKsCutoff();
         significanceCutoff = configuration.getSignificanceCutoff();
-        significantItemsets = new TreeMap<>();
-        sampleDistributions(configuration.getLevelOfParallelism(), configuration.getSampleSize());
+        sequentialSampling = configuration.isSequentialSampling();
+        sequentialExceedances = configuration.getSequentialExceedances();
+        sequentialErrorRate = configuration.getSequentialErrorRate();
+        backgroundLibraryLocation = configuration.getBackgroundLibraryLocation();
+        significantItemsetsByType = new EnumMap<>(SignificanceEstimatorType.class);
+        types.forEach(significanceType -> significantItemsetsByType.put(significanceType, new TreeMap<>()));
+        significantItemsets = significantItemsetsByType.get(type);
+        int sampleSize = configuration.getSampleSize();
+        if (sequentialSampling) {
+            int sequentialRounds = determineSequentialRounds(sampleSize, significanceCutoff);
+            if (sequentialRounds > sampleSize) {
+                logger.info("raising maximal number of sequential sampling rounds from {} to {} to reach significance cutoff {}", sampleSize, sequentialRounds, significanceCutoff);
+                sampleSize = sequentialRounds;
+            }
+        }
+        sampleDistributions(configuration.getLevelOfParallelism(), sampleSize, configuration.getSamplingSeed());
     }
 
     /**
-     * Samples background distributions with the given level of parallelism.
+     * Samples background distributions of all types in one pass with the given level of parallelism. If a {@link BackgroundDistributionLibrary} is used, {@link Itemset}s whose
+     * background distributions of all types are stored are not sampled again.
      *
      * @param levelOfParallelism The desired level of parallelism.
      * @param sampleSize         The desired sample size.
+     * @param samplingSeed       The seed for the label permutations.
+     */
+    private void sampleDistributions(int levelOfParallelism, int sampleSize, long samplingSeed) {
+
+        BackgroundDistributionLibrary<LabelType> backgroundDistributionLibrary = (backgroundLibraryLocation == null) ? null :
+                                                                                 new BackgroundDistributionLibrary<>(Paths.get(backgroundLibraryLocation), itemsetMiner);
+        Map<SignificanceEstimatorType, Map<Itemset<LabelType>, Distribution>> backgroundDistributions = new EnumMap<>(SignificanceEstimatorType.class);
+        types.forEach(significanceType -> backgroundDistributions.put(significanceType, new HashMap<>()));
+
+        // reuse stored background distributions if available for all types
+        List<Itemset<LabelType>> itemsetsToSample = new ArrayList<>();
+        for (Itemset<LabelType> itemset : itemsetMiner.getTotalItemsets()) {
+            if (backgroundDistributionLibrary != null) {
+                Map<SignificanceEstimatorType, Distribution> storedDistributions = new EnumMap<>(SignificanceEstimatorType.class);
+                for (SignificanceEstimatorType significanceType : types) {
+                    backgroundDistributionLibrary.lookup(itemset, significanceType.getDistributionMetric(), sampleSize)
+                                                 .ifPresent(distribution -> storedDistributions.put(significanceType, distribution));
+                }
+                if (storedDistributions.size() == types.size()) {
+                    storedDistributions.forEach((significanceType, distribution) -> backgroundDistributions.get(significanceType).put(itemset, distribution));
+                    continue;
+                }
+            }
+            itemsetsToSample.add(itemset);
+        }
+        if (backgroundDistributionLibrary != null) {
+            logger.info("reusing stored background distributions for {} of {} itemsets", itemsetMiner.getTotalItemsets().size() - itemsetsToSample.size(),
+                        itemsetMiner.getTotalItemsets().size());
+        }
+
+        if (!itemsetsToSample.isEmpty()) {
+            List<Class<? extends DistributionMetric<?>>> distributionMetricTypes = types.stream()
+                                                                                        .map(SignificanceEstimatorType::getDistributionMetric)
+                                                                                        .collect(Collectors.toList());
+            DistributionSampler<LabelType> distributionSampler = new DistributionSampler<>(itemsetMiner, itemsetsToSample, distributionMetricTypes, levelOfParallelism, sampleSize,
+                                                                                           samplingSeed, sequentialSampling ? this::isSettled : null);
+            for (SignificanceEstimatorType significanceType : types) {
+                Map<Itemset<LabelType>, Distribution> sampledDistributions = distributionSampler.getBackgroundDistributions(significanceType.getDistributionMetric());
+                backgroundDistributions.get(significanceType).putAll(sampledDistributions);
+                // only complete samples are stored, sequential sampling stops after a varying number of rounds
+                if (backgroundDistributionLibrary != null && !sequentialSampling) {
+                    sampledDistributions.forEach((itemset, distribution) -> backgroundDistributionLibrary.store(itemset, distribution, sampleSize));
+                }
+            }
+        }
+
+        for (SignificanceEstimatorType significanceType : types) {
+            for (Map.Entry<Itemset<LabelType>, Distribution> entry : backgroundDistributions.get(significanceType).entrySet()) {
+                if (sequentialSampling) {
+                    determineSequentialSignificance(significanceType, entry.getKey(), entry.getValue());
+                } else {
+                    determineSignificance(significanceType, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the observed value of the given {@link Itemset} for the given {@link DistributionMetric}.
+     *
+     * @param distributionMetricType The type of the {@link DistributionMetric}.
+     * @param itemset                The {@link Itemset}.
+     * @return The observed value.
      */
-    private void sampleDistributions(int levelOfParallelism, int sampleSize) {
-        DistributionSampler<LabelType> distributionSampler = new DistributionSampler<>(itemsetMiner, type.getDistributionMetric(), levelOfParallelism, sampleSize);
-        backgroundDistributions = distributionSampler.getBackgroundDistributions();
-        backgroundDistributions.keySet().forEach(this::determineSignificance);
+    private double getObservedValue(Class<? extends DistributionMetric<?>> distributionMetricType, Itemset<LabelType> itemset) {
+        if (distributionMetricType.equals(CohesionMetric.class)) {
+            return itemset.getCohesion();
+        } else if (distributionMetricType.equals(AdherenceMetric.class)) {
+            return itemset.getAdherence();
+        } else if (distributionMetricType.equals(ConsensusMetric.class)) {
+            return itemset.getConsensus();
+        } else if (distributionMetricType.equals(AffinityMetric.class)) {
+            return itemset.getAffinity();
+        }
+        return Double.NaN;
     }
 
     /**
-     * Determines the significance for the given {@link Itemset} by modeling the background normal distribution.
+     * Stores the given {@link Significance} if the p-value is below the cutoff. Only the primary type is assigned to the {@link Itemset}.
+     *
+     * @param significanceType The type of the {@link Significance}.
+     * @param itemset          The {@link Itemset}.
+     * @param significance     The {@link Significance} of the {@link Itemset}.
+     */
+    private void storeSignificance(SignificanceEstimatorType significanceType, Itemset<LabelType> itemset, Significance significance) {
+        logger.debug("{} p-value for itemset {} is {}", significanceType, itemset.toSimpleString(), significance.getPvalue());
+        if (significance.getPvalue() < significanceCutoff) {
+            significantItemsetsByType.get(significanceType).put(significance, itemset);
+            if (significanceType == type) {
+                itemset.setpValue(significance.getPvalue());
+                if (!Double.isNaN(significance.getKs())) {
+                    itemset.setKs(significance.getKs());
+                }
+            }
+            logger.info("itemset {} is significant with {} for type {}", itemset.toSimpleString(), significance, significanceType);
+        } else {
+            logger.info("itemset {} is insignificant for type {}", itemset.toSimpleString(), significanceType);
+        }
+    }
+
+    /**
+     * Returns the maximal number of sequential sampling rounds, which is at least the given sample size and large enough that the smallest sequential p-value 1/(n+1) is below the
+     * significance cutoff.
+     *
+     * @param sampleSize         The configured sample size.
+     * @param significanceCutoff The significance cutoff.
+     * @return The maximal number of sampling rounds.
+     */
+    static int determineSequentialRounds(int sampleSize, double significanceCutoff) {
+        int sequentialRounds = Math.max(sampleSize, (int) Math.floor(1.0 / significanceCutoff) - 1);
+        while (1.0 / (sequentialRounds + 1.0) >= significanceCutoff) {
+            sequentialRounds++;
+        }
+        return sequentialRounds;
+    }
+
+    /**
+     * Counts the background values that are at least as extreme (i.e. small) as the observed value of the given {@link Itemset}.
+     *
+     * @param itemset                The {@link Itemset}.
+     * @param backgroundDistribution The background {@link Distribution} sampled so far.
+     * @return The number of exceedances.
+     */
+    private int countExceedances(Itemset<LabelType> itemset, Distribution backgroundDistribution) {
+        double observedValue = getObservedValue(backgroundDistribution.getDistributionMetricType(), itemset);
+        int exceedances = 0;
+        for (double backgroundValue : backgroundDistribution.getObservationValues()) {
+            if (backgroundValue <= observedValue) {
+                exceedances++;
+            }
+        }
+        return exceedances;
+    }
+
+    /**
+     * Decides whether background sampling for the given {@link Itemset} can be stopped. This is the case if the number of exceedances is reached (Besag & Clifford, 1991) or if the observed
+     * exceedances are unlikely at the given error rate, given that the true p-value was the significance cutoff.
+     *
+     * @param itemset                The {@link Itemset}.
+     * @param backgroundDistribution The background {@link Distribution} sampled so far.
+     * @return True if sampling can be stopped.
+     */
+    private boolean isSettled(Itemset<LabelType> itemset, Distribution backgroundDistribution) {
+        return isSettled(countExceedances(itemset, backgroundDistribution), backgroundDistribution.size(), sequentialExceedances, significanceCutoff, sequentialErrorRate);
+    }
+
+    /**
+     * Decides whether sequential sampling can be stopped after the given number of rounds.
+     *
+     * @param exceedances           The number of background values at least as extreme as the observed value.
+     * @param sampledRounds         The number of sampled rounds.
+     * @param sequentialExceedances The number of exceedances after which sampling stops.
+     * @param significanceCutoff    The significance cutoff.
+     * @param sequentialErrorRate   The error rate of stopping although the p-value is the significance cutoff.
+     * @return True if sampling can be stopped.
+     */
+    static boolean isSettled(int exceedances, int sampledRounds, int sequentialExceedances, double significanceCutoff, double sequentialErrorRate) {
+        if (exceedances >= sequentialExceedances) {
+            return true;
+        }
+        if (exceedances == 0) {
+            return false;
+        }
+        BinomialDistribution binomialDistribution = new BinomialDistribution(null, sampledRounds, significanceCutoff);
+        return 1.0 - binomialDistribution.cumulativeProbability(exceedances - 1) < sequentialErrorRate;
+    }
+
+    /**
+     * Determines the significance for the given {@link Itemset} by its sequential Monte Carlo p-value.
      *
-     * @param itemset The {@link Itemset} for which the significance should be calculated.
+     * @param significanceType       The type of the significance.
+     * @param itemset                The {@link Itemset} for which the significance should be calculated.
+     * @param backgroundDistribution The background {@link Distribution} of the {@link Itemset}.
      */
-    private void determineSignificance(Itemset<LabelType> itemset) {
+    private void determineSequentialSignificance(SignificanceEstimatorType significanceType, Itemset<LabelType> itemset, Distribution backgroundDistribution) {
+
+        int sampledRounds = backgroundDistribution.size();
+        double pValue = calculateSequentialPvalue(countExceedances(itemset, backgroundDistribution), sampledRounds, sequentialExceedances);
+        logger.debug("sequential p-value for itemset {} determined after {} rounds", itemset.toSimpleString(), sampledRounds);
+        storeSignificance(significanceType, itemset, new Significance(pValue, Double.NaN, itemset.toSimpleString()));
+    }
+
+    /**
+     * Calculates the sequential Monte Carlo p-value (Besag & Clifford, 1991), which is the fraction of exceedances if sampling stopped because enough exceedances were observed and
+     * (exceedances + 1) / (rounds + 1) otherwise.
+     *
+     * @param exceedances           The number of background values at least as extreme as the observed value.
+     * @param sampledRounds         The number of sampled rounds.
+     * @param sequentialExceedances The number of exceedances after which sampling stops.
+     * @return The p-value.
+     */
+    static double calculateSequentialPvalue(int exceedances, int sampledRounds, int sequentialExceedances) {
+        if (exceedances >= sequentialExceedances) {
+            return (double) exceedances / sampledRounds;
+        }
+        return (exceedances + 1.0) / (sampledRounds + 1.0);
+    }
 
-        double[] values = backgroundDistributions.get(itemset).getObservations().stream()
-                                                 .mapToDouble(Double::doubleValue).toArray();
+    /**
+     * Determines the significance for the given {@link Itemset} by modeling the background normal distribution.
+     *
+     * @param significanceType       The type of the significance.
+     * @param itemset                The {@link Itemset} for which the significance should be calculated.
+     * @param backgroundDistribution The background {@link Distribution} of the {@link Itemset}.
+     */
+    private void determineSignificance(SignificanceEstimatorType significanceType, Itemset<LabelType> itemset, Distribution backgroundDistribution) {
 
         // model normal distribution
-        DescriptiveStatistics descriptiveStatistics = new DescriptiveStatistics(values);
-        double mean = descriptiveStatistics.getMean();
-        double standardDeviation = descriptiveStatistics.getStandardDeviation();
-        NormalDistribution normalDistribution = new NormalDistribution(mean, standardDeviation);
+        NormalDistribution normalDistribution = new NormalDistribution(backgroundDistribution.getMean(), backgroundDistribution.getStandardDeviation());
 
         // calculate KS p-value to estimate quality of fit
-        double ks = TestUtils.kolmogorovSmirnovTest(normalDistribution, values, false);
+        double ks = TestUtils.kolmogorovSmirnovTest(normalDistribution, backgroundDistribution.getObservationValues(), false);
         if (ks < ksCutoff) {
-            logger.warn("itemset {} background distribution of type {} violates KS-cutoff, skipping", itemset, type);
+            logger.warn("itemset {} background distribution of type {} violates KS-cutoff, skipping", itemset, significanceType);
             return;
         }
 
-        double pValue = Double.NaN;
-        if (type == SignificanceEstimatorType.COHESION) {
-            pValue = normalDistribution.cumulativeProbability(itemset.getCohesion());
-        } else if (type == SignificanceEstimatorType.CONSENSUS) {
-            pValue = normalDistribution.cumulativeProbability(itemset.getConsensus());
-        } else if (type == SignificanceEstimatorType.AFFINITY) {
-            pValue = normalDistribution.cumulativeProbability(itemset.getAffinity());
-        }
-
-        logger.debug("p-value for itemset {} is {}", itemset.toSimpleString(), pValue);
-        if (pValue < significanceCutoff) {
-            Significance significance = new Significance(pValue, ks);
-            significantItemsets.put(significance, itemset);
-            itemset.setpValue(pValue);
-            itemset.setKs(ks);
-            logger.info("itemset {} is significant with {}", itemset.toSimpleString(), significance);
-        } else {
-            logger.info("itemset {} is insignificant", itemset.toSimpleString());
-        }
+        double pValue = normalDistribution.cumulativeProbability(getObservedValue(significanceType.getDistributionMetric(), itemset));
+        storeSignificance(significanceType, itemset, new Significance(pValue, ks, itemset.toSimpleString()));
     }
 
+    /**
+     * Returns the significant {@link Itemset}s of the primary type.
+     *
+     * @return The significant {@link Itemset}s.
+     */
     public TreeMap<Significance, Itemset<LabelType>> getSignificantItemsets() {
         return significantItemsets;
     }
 
     /**
-     * A data object to hold statistical measures, that is the p-value and the Kolmogorov-Smirnov value.
+     * Returns the significant {@link Itemset}s of all sampled types, including the primary type.
+     *
+     * @return The significant {@link Itemset}s by type.
+     */
+    public Map<SignificanceEstimatorType, TreeMap<Significance, Itemset<LabelType>>> getSignificantItemsetsByType() {
+        return significantItemsetsByType;
+    }
+
+    /**
+     * A data object to hold statistical measures, that is the p-value and the Kolmogorov-Smirnov value. {@link Significance}s with equal p-values are ordered by the {@link Itemset} they
+     * belong to, thus tied {@link Itemset}s do not replace each other in sorted maps.
      */
     public static class Significance implements Comparable<Significance> {
 
+        private static final Comparator<String> ITEMSET_COMPARATOR = Comparator.nullsFirst(Comparator.naturalOrder());
+
         private final double pvalue;
         private final double ks;
+        private final String itemset;
 
-        public Significance(double pvalue, double ks) {
+        /**
+         * Creates a new {@link Significance} of the given {@link Itemset}.
+         *
+         * @param pvalue  The p-value.
+         * @param ks      The Kolmogorov-Smirnov value.
+         * @param itemset The simple string representation of the {@link Itemset}.
+         */
+        public Significance(double pvalue, double ks, String itemset) {
             this.pvalue = pvalue;
             this.ks = ks;
+            this.itemset = itemset;
         }
 
         @Override public String toString() {
@@ -125,7 +350,11 @@ public class SignificanceEstimator<LabelType extends Comparable<LabelType>> {
         }
 
         @Override public int compareTo(Significance o) {
-            return Double.compare(pvalue, o.pvalue);
+            int comparison = Double.compare(pvalue, o.pvalue);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return ITEMSET_COMPARATOR.compare(itemset, o.itemset);
         }
 
         public double getKs() {
@@ -1,5 +1,6 @@
 package bio.fkaiser.mmm.model.analysis.statistics;
 
+import bio.fkaiser.mmm.model.metrics.AdherenceMetric;
 import bio.fkaiser.mmm.model.metrics.AffinityMetric;
 import bio.fkaiser.mmm.model.metrics.CohesionMetric;
 import bio.fkaiser.mmm.model.metrics.ConsensusMetric;
@@ -12,15 +13,15 @@ import bio.fkaiser.mmm.model.metrics.DistributionMetric;
  */
 public enum SignificanceEstimatorType {
 
-    COHESION(CohesionMetric.class), CONSENSUS(ConsensusMetric.class), AFFINITY(AffinityMetric.class);
+    COHESION(CohesionMetric.class), ADHERENCE(AdherenceMetric.class), CONSENSUS(ConsensusMetric.class), AFFINITY(AffinityMetric.class);
 
-    private Class<? extends DistributionMetric> distributionMetric;
+    private Class<? extends DistributionMetric<?>> distributionMetric;
 
-    SignificanceEstimatorType(Class<? extends DistributionMetric> distributionMetric) {
+    <MetricType extends DistributionMetric<?>> SignificanceEstimatorType(Class<MetricType> distributionMetric) {
         this.distributionMetric = distributionMetric;
     }
 
-    public Class<? extends DistributionMetric> getDistributionMetric() {
+    public Class<? extends DistributionMetric<?>> getDistributionMetric() {
         return distributionMetric;
     }
 }
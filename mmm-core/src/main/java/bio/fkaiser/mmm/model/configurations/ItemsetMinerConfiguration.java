@@ -35,6 +35,14 @@ public class ItemsetMinerConfiguration<LabelType extends Comparable<LabelType>>
 
     private static final ItemsetComparatorType DEFAULT_ITEMSET_COMPARATOR = ItemsetComparatorType.SUPPORT;
     private static final int DEFAULT_MAXIMAL_EPOCHS = -1;
+    private static final int DEFAULT_MAXIMAL_OBSERVATIONS = -1;
+    private static final long DEFAULT_OBSERVATION_SAMPLING_SEED = 0L;
+    private static final boolean DEFAULT_ADAPTIVE_METRIC_ORDERING = false;
+    private static final long DEFAULT_MAXIMAL_STRUCTURE_CACHE_SIZE = 1024L;
+    private static final int DEFAULT_MAXIMAL_ENRICHMENT_REQUESTS = 8;
+    private static final long DEFAULT_ENRICHMENT_TIMEOUT = 300L;
+    private static final int DEFAULT_ENRICHMENT_RETRIES = 2;
+    private static final long DEFAULT_ENRICHMENT_RETRY_BACKOFF = 1000L;
 
     @JsonProperty("creation-user")
     private String creationUser;
@@ -68,8 +76,33 @@ public class ItemsetMinerConfiguration<LabelType extends Comparable<LabelType>>
     private ItemsetComparatorType itemsetComparatorType = DEFAULT_ITEMSET_COMPARATOR;
     @JsonProperty("maximal-epochs")
     private int maximalEpochs = DEFAULT_MAXIMAL_EPOCHS;
+    @JsonProperty("maximal-observations")
+    private int maximalObservations = DEFAULT_MAXIMAL_OBSERVATIONS;
+    @JsonProperty("observation-sampling-seed")
+    private long observationSamplingSeed = DEFAULT_OBSERVATION_SAMPLING_SEED;
+    @JsonProperty("adaptive-metric-ordering")
+    private boolean adaptiveMetricOrdering = DEFAULT_ADAPTIVE_METRIC_ORDERING;
     @JsonProperty("significance-estimator-configuration")
     private SignificanceEstimatorConfiguration significanceEstimatorConfiguration;
+    @JsonProperty("data-point-snapshot-location")
+    private String dataPointSnapshotLocation;
+    @JsonProperty("structure-cache-location")
+    private String structureCacheLocation;
+    @JsonProperty("maximal-structure-cache-size")
+    private long maximalStructureCacheSize = DEFAULT_MAXIMAL_STRUCTURE_CACHE_SIZE;
+    @JsonProperty("plip-rest-provider-url")
+    private String plipRestProviderUrl;
+    @JsonProperty("plip-cache-location")
+    private String plipCacheLocation;
+    @JsonProperty("maximal-enrichment-requests")
+    private int maximalEnrichmentRequests = DEFAULT_MAXIMAL_ENRICHMENT_REQUESTS;
+    @JsonProperty("enrichment-timeout")
+    private long enrichmentTimeout = DEFAULT_ENRICHMENT_TIMEOUT;
+    @JsonProperty("enrichment-retries")
+    private int enrichmentRetries = DEFAULT_ENRICHMENT_RETRIES;
+    @JsonProperty("enrichment-retry-backoff")
+    private long enrichmentRetryBackoff = DEFAULT_ENRICHMENT_RETRY_BACKOFF;
+
     public ItemsetMinerConfiguration() {
         this.creationUser = System.getProperty("user.name");
         this.creationDate = LocalDateTime.now().toString();
@@ -202,6 +235,36 @@ public class ItemsetMinerConfiguration<LabelType extends Comparable<LabelType>>
         this.maximalEpochs = maximalEpochs;
     }
 
+    public int getMaximalObservations() {
+        return maximalObservations;
+    }
+
+    public void setMaximalObservations(int maximalObservations) {
+        this.maximalObservations = maximalObservations;
+    }
+
+    public long getObservationSamplingSeed() {
+        return observationSamplingSeed;
+    }
+
+    public void setObservationSamplingSeed(long observationSamplingSeed) {
+        this.observationSamplingSeed = observationSamplingSeed;
+    }
+
+    public boolean isAdaptiveMetricOrdering() {
+        return adaptiveMetricOrdering;
+    }
+
+    /**
+     * Sets whether metrics of the same class should be reordered between epochs according to their measured cost and rejection rate, such that cheap and selective metrics are evaluated
+     * first.
+     *
+     * @param adaptiveMetricOrdering True if metrics should be reordered adaptively.
+     */
+    public void setAdaptiveMetricOrdering(boolean adaptiveMetricOrdering) {
+        this.adaptiveMetricOrdering = adaptiveMetricOrdering;
+    }
+
     public String getOutputLocation() {
         return outputLocation;
     }
@@ -226,6 +289,126 @@ public class ItemsetMinerConfiguration<LabelType extends Comparable<LabelType>>
         this.significanceEstimatorConfiguration = significanceEstimatorConfiguration;
     }
 
+    public String getDataPointSnapshotLocation() {
+        return dataPointSnapshotLocation;
+    }
+
+    /**
+     * Sets the location of the binary snapshot of the read, enriched and mapped {@link bio.fkaiser.mmm.model.DataPoint}s. If a matching snapshot exists, it is loaded instead of
+     * preparing the {@link bio.fkaiser.mmm.model.DataPoint}s, otherwise it is written after they were prepared.
+     *
+     * @param dataPointSnapshotLocation The location of the snapshot or null if no snapshot should be used.
+     */
+    public void setDataPointSnapshotLocation(String dataPointSnapshotLocation) {
+        this.dataPointSnapshotLocation = dataPointSnapshotLocation;
+    }
+
+    public String getStructureCacheLocation() {
+        return structureCacheLocation;
+    }
+
+    /**
+     * Sets the location of the {@link bio.fkaiser.mmm.io.StructureCache}, which is used for all structures that are parsed to read, enrich and map the
+     * {@link bio.fkaiser.mmm.model.DataPoint}s. The cache can be shared by multiple runs.
+     *
+     * @param structureCacheLocation The location of the cache or null if no cache should be used.
+     */
+    public void setStructureCacheLocation(String structureCacheLocation) {
+        this.structureCacheLocation = structureCacheLocation;
+    }
+
+    public long getMaximalStructureCacheSize() {
+        return maximalStructureCacheSize;
+    }
+
+    /**
+     * Sets the maximal size of the {@link bio.fkaiser.mmm.io.StructureCache} in megabytes. If it is exceeded, the least recently used structures are evicted.
+     *
+     * @param maximalStructureCacheSize The maximal size in megabytes.
+     */
+    public void setMaximalStructureCacheSize(long maximalStructureCacheSize) {
+        this.maximalStructureCacheSize = maximalStructureCacheSize;
+    }
+
+    public String getPlipRestProviderUrl() {
+        return plipRestProviderUrl;
+    }
+
+    /**
+     * Sets the base URL of the PLIP REST service that is queried for interactions, e.g. a local instance for offline runs.
+     *
+     * @param plipRestProviderUrl The base URL or null if the public service should be used.
+     */
+    public void setPlipRestProviderUrl(String plipRestProviderUrl) {
+        this.plipRestProviderUrl = plipRestProviderUrl;
+    }
+
+    public String getPlipCacheLocation() {
+        return plipCacheLocation;
+    }
+
+    /**
+     * Sets the location of the {@link bio.fkaiser.mmm.model.plip.PlipInteractionCache}, which is consulted before the PLIP REST service is queried. The cache can be shared by
+     * multiple runs.
+     *
+     * @param plipCacheLocation The location of the cache or null if no cache should be used.
+     */
+    public void setPlipCacheLocation(String plipCacheLocation) {
+        this.plipCacheLocation = plipCacheLocation;
+    }
+
+    public int getMaximalEnrichmentRequests() {
+        return maximalEnrichmentRequests;
+    }
+
+    /**
+     * Sets the maximal number of {@link bio.fkaiser.mmm.model.DataPoint}s that are enriched concurrently, i.e. the maximal number of requests in flight to external services.
+     *
+     * @param maximalEnrichmentRequests The maximal number of concurrent enrichments.
+     */
+    public void setMaximalEnrichmentRequests(int maximalEnrichmentRequests) {
+        this.maximalEnrichmentRequests = maximalEnrichmentRequests;
+    }
+
+    public long getEnrichmentTimeout() {
+        return enrichmentTimeout;
+    }
+
+    /**
+     * Sets the timeout of a single attempt to enrich a {@link bio.fkaiser.mmm.model.DataPoint}.
+     *
+     * @param enrichmentTimeout The timeout in seconds.
+     */
+    public void setEnrichmentTimeout(long enrichmentTimeout) {
+        this.enrichmentTimeout = enrichmentTimeout;
+    }
+
+    public int getEnrichmentRetries() {
+        return enrichmentRetries;
+    }
+
+    /**
+     * Sets the number of retries if the enrichment of a {@link bio.fkaiser.mmm.model.DataPoint} failed or timed out.
+     *
+     * @param enrichmentRetries The number of retries.
+     */
+    public void setEnrichmentRetries(int enrichmentRetries) {
+        this.enrichmentRetries = enrichmentRetries;
+    }
+
+    public long getEnrichmentRetryBackoff() {
+        return enrichmentRetryBackoff;
+    }
+
+    /**
+     * Sets the delay before the first retry of a failed enrichment, which is doubled for every further retry.
+     *
+     * @param enrichmentRetryBackoff The delay in milliseconds.
+     */
+    public void setEnrichmentRetryBackoff(long enrichmentRetryBackoff) {
+        this.enrichmentRetryBackoff = enrichmentRetryBackoff;
+    }
+
     public List<SimpleMetricConfiguration<LabelType>> getSimpleMetricConfigurations() {
         return simpleMetricConfigurations;
     }
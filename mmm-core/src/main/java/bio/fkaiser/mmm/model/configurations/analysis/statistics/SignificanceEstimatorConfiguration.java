@@ -3,6 +3,9 @@ package bio.fkaiser.mmm.model.configurations.analysis.statistics;
 import bio.fkaiser.mmm.model.analysis.statistics.SignificanceEstimatorType;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author fk
  */
@@ -12,9 +15,14 @@ public class SignificanceEstimatorConfiguration {
     private static final int DEFAULT_SAMPLE_SIZE = 30;
     private static final double DEFAULT_SIGNIFICANCE_CUTOFF = 1E-3;
     private static final double DEFAULT_KS_CUTOFF = 0.1;
+    private static final long DEFAULT_SAMPLING_SEED = 0L;
+    private static final int DEFAULT_SEQUENTIAL_EXCEEDANCES = 10;
+    private static final double DEFAULT_SEQUENTIAL_ERROR_RATE = 0.01;
 
     @JsonProperty("significance-type")
     private SignificanceEstimatorType significanceType;
+    @JsonProperty("additional-significance-types")
+    private List<SignificanceEstimatorType> additionalSignificanceTypes = new ArrayList<>();
     @JsonProperty("ks-cutoff")
     private double ksCutoff = DEFAULT_KS_CUTOFF;
     @JsonProperty("significance-cutoff")
@@ -23,6 +31,16 @@ public class SignificanceEstimatorConfiguration {
     private int levelOfParallelism = DEFAULT_LEVEL_OF_PARALLELISM;
     @JsonProperty("sample-size")
     private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    @JsonProperty("sampling-seed")
+    private long samplingSeed = DEFAULT_SAMPLING_SEED;
+    @JsonProperty("sequential-sampling")
+    private boolean sequentialSampling;
+    @JsonProperty("sequential-exceedances")
+    private int sequentialExceedances = DEFAULT_SEQUENTIAL_EXCEEDANCES;
+    @JsonProperty("sequential-error-rate")
+    private double sequentialErrorRate = DEFAULT_SEQUENTIAL_ERROR_RATE;
+    @JsonProperty("background-library-location")
+    private String backgroundLibraryLocation;
 
     public double getKsCutoff() {
         return ksCutoff;
@@ -48,6 +66,70 @@ public class SignificanceEstimatorConfiguration {
         this.sampleSize = sampleSize;
     }
 
+    public long getSamplingSeed() {
+        return samplingSeed;
+    }
+
+    public void setSamplingSeed(long samplingSeed) {
+        this.samplingSeed = samplingSeed;
+    }
+
+    public boolean isSequentialSampling() {
+        return sequentialSampling;
+    }
+
+    /**
+     * Sets whether sequential Monte Carlo p-values (Besag & Clifford, 1991) should be used instead of modeling the background distribution. In this mode, the sample size is the maximal
+     * number of sampling rounds, and sampling of an itemset stops as soon as its decision is settled. The maximal number of rounds is raised if needed, such that the smallest possible
+     * p-value is below the significance cutoff.
+     *
+     * @param sequentialSampling True if sequential sampling should be used.
+     */
+    public void setSequentialSampling(boolean sequentialSampling) {
+        this.sequentialSampling = sequentialSampling;
+    }
+
+    public int getSequentialExceedances() {
+        return sequentialExceedances;
+    }
+
+    /**
+     * Sets the number of background values at least as extreme as the observed value after which sampling is stopped.
+     *
+     * @param sequentialExceedances The number of exceedances.
+     */
+    public void setSequentialExceedances(int sequentialExceedances) {
+        this.sequentialExceedances = sequentialExceedances;
+    }
+
+    public double getSequentialErrorRate() {
+        return sequentialErrorRate;
+    }
+
+    /**
+     * Sets the error rate at which an itemset is considered insignificant before the number of exceedances is reached, i.e. observing at least as many exceedances would have this
+     * probability if the true p-value was the significance cutoff.
+     *
+     * @param sequentialErrorRate The error rate.
+     */
+    public void setSequentialErrorRate(double sequentialErrorRate) {
+        this.sequentialErrorRate = sequentialErrorRate;
+    }
+
+    public String getBackgroundLibraryLocation() {
+        return backgroundLibraryLocation;
+    }
+
+    /**
+     * Sets the location of the on-disk library of background distributions. Background distributions found in the library are reused instead of being sampled again, newly sampled
+     * background distributions are stored. If not set, no library is used.
+     *
+     * @param backgroundLibraryLocation The location of the library.
+     */
+    public void setBackgroundLibraryLocation(String backgroundLibraryLocation) {
+        this.backgroundLibraryLocation = backgroundLibraryLocation;
+    }
+
     public double getSignificanceCutoff() {
         return significanceCutoff;
     }
@@ -63,4 +145,18 @@ public class SignificanceEstimatorConfiguration {
     public void setSignificanceType(SignificanceEstimatorType significanceType) {
         this.significanceType = significanceType;
     }
+
+    public List<SignificanceEstimatorType> getAdditionalSignificanceTypes() {
+        return additionalSignificanceTypes;
+    }
+
+    /**
+     * Sets further types for which p-values should be reported. Their background distributions are sampled in the same pass as the one of the significance type, but only the
+     * significance type decides which itemsets are retained.
+     *
+     * @param additionalSignificanceTypes The additional types.
+     */
+    public void setAdditionalSignificanceTypes(List<SignificanceEstimatorType> additionalSignificanceTypes) {
+        this.additionalSignificanceTypes = additionalSignificanceTypes;
+    }
 }
@@ -44,6 +44,16 @@ public class AdherenceMetricConfiguration<LabelType extends Comparable<LabelType
      */
     public static final int DEFAULT_LEVEL_OF_PARALLELISM = -1;
 
+    /**
+     * the default number of observations per data point that are retained, 0 means all
+     */
+    public static final int DEFAULT_RETAINED_OBSERVATIONS_PER_DATA_POINT = 0;
+
+    /**
+     * the default number of observations per itemset that are retained, 0 means all
+     */
+    public static final int DEFAULT_RETAINED_OBSERVATIONS_PER_ITEMSET = 0;
+
     @JsonProperty("level-of-parallelism")
     private int levelOfParallelism = DEFAULT_LEVEL_OF_PARALLELISM;
     @JsonProperty("desired-extent")
@@ -58,6 +68,10 @@ public class AdherenceMetricConfiguration<LabelType extends Comparable<LabelType
     private boolean vertexOne = DEFAULT_VERTEX_ONE;
     @JsonProperty("representation-scheme-type")
     private RepresentationSchemeType representationSchemeType;
+    @JsonProperty("retained-observations-per-data-point")
+    private int retainedObservationsPerDataPoint = DEFAULT_RETAINED_OBSERVATIONS_PER_DATA_POINT;
+    @JsonProperty("retained-observations-per-itemset")
+    private int retainedObservationsPerItemset = DEFAULT_RETAINED_OBSERVATIONS_PER_ITEMSET;
 
     public RepresentationSchemeType getRepresentationSchemeType() {
         return representationSchemeType;
@@ -115,6 +129,34 @@ public class AdherenceMetricConfiguration<LabelType extends Comparable<LabelType
         this.vertexOne = vertexOne;
     }
 
+    public int getRetainedObservationsPerDataPoint() {
+        return retainedObservationsPerDataPoint;
+    }
+
+    /**
+     * Sets the maximal number of observations per data point that are retained as extracted itemsets. If capped, the observations closest to the desired extent are retained. The
+     * adherence and its distribution are always calculated from all observations.
+     *
+     * @param retainedObservationsPerDataPoint The maximal number of retained observations per data point, 0 to retain all.
+     */
+    public void setRetainedObservationsPerDataPoint(int retainedObservationsPerDataPoint) {
+        this.retainedObservationsPerDataPoint = retainedObservationsPerDataPoint;
+    }
+
+    public int getRetainedObservationsPerItemset() {
+        return retainedObservationsPerItemset;
+    }
+
+    /**
+     * Sets the maximal number of observations per itemset that are retained as extracted itemsets. If capped, the observations closest to the desired extent are retained. The
+     * adherence and its distribution are always calculated from all observations.
+     *
+     * @param retainedObservationsPerItemset The maximal number of retained observations per itemset, 0 to retain all.
+     */
+    public void setRetainedObservationsPerItemset(int retainedObservationsPerItemset) {
+        this.retainedObservationsPerItemset = retainedObservationsPerItemset;
+    }
+
     @Override
     public String toString() {
         return "AdherenceMetricConfiguration{" +
@@ -125,6 +167,8 @@ public class AdherenceMetricConfiguration<LabelType extends Comparable<LabelType
                ", minimalObservations=" + minimalObservations +
                ", vertexOne=" + vertexOne +
                ", representationSchemeType=" + representationSchemeType +
+               ", retainedObservationsPerDataPoint=" + retainedObservationsPerDataPoint +
+               ", retainedObservationsPerItemset=" + retainedObservationsPerItemset +
                '}';
     }
 }
@@ -30,6 +30,11 @@ public class AffinityMetricConfiguration<LabelType extends Comparable<LabelType>
      */
     public static final AtomFilterType DEFAULT_ATOM_FILTER_TYPE = AtomFilterType.ARBITRARY;
 
+    /**
+     * the default number of nearest neighbors for sparse affinity propagation (dense if not positive)
+     */
+    public static final int DEFAULT_NEAREST_NEIGHBORS = 0;
+
     @JsonProperty("maximal-affinity")
     private double maximalAffinity = DEFAULT_MAXIMAL_AFFINITY;
     @JsonProperty("level-of-parallelism")
@@ -40,6 +45,8 @@ public class AffinityMetricConfiguration<LabelType extends Comparable<LabelType>
     private RepresentationSchemeType representationSchemeType;
     @JsonProperty("align-within-clusters")
     private boolean alignWithinClusters;
+    @JsonProperty("nearest-neighbors")
+    private int nearestNeighbors = DEFAULT_NEAREST_NEIGHBORS;
 
     public RepresentationSchemeType getRepresentationSchemeType() {
         return representationSchemeType;
@@ -81,6 +88,20 @@ public class AffinityMetricConfiguration<LabelType extends Comparable<LabelType>
         this.alignWithinClusters = alignWithinClusters;
     }
 
+    public int getNearestNeighbors() {
+        return nearestNeighbors;
+    }
+
+    /**
+     * Sets the number of nearest neighbors that are retained for each observation. If positive, affinity propagation is performed on the sparse k-nearest-neighbor graph of observations
+     * instead of the dense all-vs-all matrix. This cannot be combined with alignment within clusters.
+     *
+     * @param nearestNeighbors The number of nearest neighbors.
+     */
+    public void setNearestNeighbors(int nearestNeighbors) {
+        this.nearestNeighbors = nearestNeighbors;
+    }
+
     @Override public String toString() {
         return "AffinityMetricConfiguration{" +
                "maximalAffinity=" + maximalAffinity +
@@ -88,6 +109,7 @@ public class AffinityMetricConfiguration<LabelType extends Comparable<LabelType>
                ", atomFilterType=" + atomFilterType +
                ", representationSchemeType=" + representationSchemeType +
                ", alignWithinClusters=" + alignWithinClusters +
+               ", nearestNeighbors=" + nearestNeighbors +
                '}';
     }
 }
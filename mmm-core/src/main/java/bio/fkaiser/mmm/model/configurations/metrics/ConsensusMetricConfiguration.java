@@ -53,6 +53,8 @@ public class ConsensusMetricConfiguration<LabelType extends Comparable<LabelType
     private RepresentationSchemeType representationSchemeType;
     @JsonProperty("align-within-clusters")
     private boolean alignWithinClusters;
+    @JsonProperty("incremental")
+    private boolean incremental;
 
     @Override public String toString() {
         return "ConsensusMetricConfiguration{" +
@@ -62,6 +64,7 @@ public class ConsensusMetricConfiguration<LabelType extends Comparable<LabelType
                ", atomFilterType=" + atomFilterType +
                ", representationSchemeType=" + representationSchemeType +
                ", alignWithinClusters=" + alignWithinClusters +
+               ", incremental=" + incremental +
                '}';
     }
 
@@ -120,4 +123,18 @@ public class ConsensusMetricConfiguration<LabelType extends Comparable<LabelType
     public void setAlignWithinClusters(boolean alignWithinClusters) {
         this.alignWithinClusters = alignWithinClusters;
     }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * If set, the consensus alignment of a (k+1)-itemset is seeded by the clusters of its best-scoring k-itemset parent. Observations are partitioned according to the parent cluster of their
+     * origin data point and aligned within each partition only. The resulting score neglects merges between partitions and the alignment of the most populated partition is retained.
+     *
+     * @param incremental True if incremental consensus alignment should be used.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
 }
@@ -2,6 +2,9 @@ package bio.fkaiser.mmm.model.enrichment;
 
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.plip.AbstractPlipRequest;
+import bio.fkaiser.mmm.model.plip.PlipInteractionCache;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import de.bioforscher.singa.mathematics.vectors.Vector;
 import de.bioforscher.singa.mathematics.vectors.Vector3D;
 import de.bioforscher.singa.mathematics.vectors.Vectors;
@@ -13,13 +16,11 @@ import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
 import de.bioforscher.singa.structure.model.oak.OakAtom;
 import de.bioforscher.singa.structure.model.oak.OakLigand;
 import de.bioforscher.singa.structure.parser.plip.Interaction;
-import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
 import de.bioforscher.singa.structure.parser.plip.InteractionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -49,49 +50,86 @@ public abstract class AbstractInteractionEnricher implements DataPointEnricher<S
 //        ACTIVE_INTERACTIONS.add(InteractionType.WATER_BRIDGE);
     }
 
+    @JsonIgnore
+    protected String plipRestProviderUrl = AbstractPlipRequest.DEFAULT_PLIP_REST_PROVIDER_URL;
+    @JsonIgnore
+    protected PlipInteractionCache plipInteractionCache;
+
+    /**
+     * Sets the location of the PLIP REST service, e.g. a local instance for offline runs.
+     *
+     * @param plipRestProviderUrl The base URL of the PLIP REST service.
+     */
+    public void setPlipRestProviderUrl(String plipRestProviderUrl) {
+        this.plipRestProviderUrl = plipRestProviderUrl;
+    }
+
     /**
-     * Adds the given {@link InteractionContainer} to the specified {@link DataPoint}.
+     * Sets the {@link PlipInteractionCache} that is consulted before the PLIP REST service is queried.
      *
-     * @param interaction The {@link InteractionContainer} to be added.
-     * @param dataPoint   The {@link DataPoint} to which the {@link InteractionContainer} should be added.
+     * @param plipInteractionCache The {@link PlipInteractionCache} or null if the service should always be queried.
      */
-    void addInteractionItem(Interaction interaction, DataPoint<String> dataPoint) {
-        // determine next identifiers
-        int nextLeafIdentifier = dataPoint.getItems().stream()
-                                          .map(Item::getLeafSubstructure)
-                                          .filter(Optional::isPresent)
-                                          .map(Optional::get)
-                                          .mapToInt(leafSubstructure -> leafSubstructure.getIdentifier().getSerial())
-                                          .max()
-                                          .orElseThrow(() -> new RuntimeException("failed to determine next leaf identifer")) + 1;
-        int nextAtomIdentifier = dataPoint.getItems().stream()
-                                          .map(Item::getLeafSubstructure)
-                                          .filter(Optional::isPresent)
-                                          .map(Optional::get)
-                                          .map(LeafSubstructure::getAllAtoms)
-                                          .flatMap(Collection::stream)
-                                          .mapToInt(Atom::getAtomIdentifier)
-                                          .max()
-                                          .orElseThrow(() -> new RuntimeException("failed to determine next atom identifer")) + 1;
+    public void setPlipInteractionCache(PlipInteractionCache plipInteractionCache) {
+        this.plipInteractionCache = plipInteractionCache;
+    }
+
+    /**
+     * Adds the given {@link Interaction}s as pseudoatom {@link Item}s to the specified {@link DataPoint}. The next leaf and atom identifiers are determined once for all
+     * {@link Interaction}s and the {@link Item}s are appended in the order of the {@link Interaction}s.
+     *
+     * @param interactions The {@link Interaction}s to be added.
+     * @param dataPoint    The {@link DataPoint} to which the {@link Interaction}s should be added.
+     */
+    void addInteractionItems(List<Interaction> interactions, DataPoint<String> dataPoint) {
+        if (interactions.isEmpty()) {
+            return;
+        }
+
+        // determine next identifiers in a single pass
+        int maximalLeafIdentifier = Integer.MIN_VALUE;
+        int maximalAtomIdentifier = Integer.MIN_VALUE;
+        boolean atomPresent = false;
+        for (Item<String> item : dataPoint.getItems()) {
+            Optional<LeafSubstructure<?>> optionalLeafSubstructure = item.getLeafSubstructure();
+            if (!optionalLeafSubstructure.isPresent()) {
+                continue;
+            }
+            LeafSubstructure<?> leafSubstructure = optionalLeafSubstructure.get();
+            maximalLeafIdentifier = Math.max(maximalLeafIdentifier, leafSubstructure.getIdentifier().getSerial());
+            for (Atom atom : leafSubstructure.getAllAtoms()) {
+                maximalAtomIdentifier = Math.max(maximalAtomIdentifier, atom.getAtomIdentifier());
+                atomPresent = true;
+            }
+        }
+        if (maximalLeafIdentifier == Integer.MIN_VALUE) {
+            throw new RuntimeException("failed to determine next leaf identifer");
+        }
+        if (!atomPresent) {
+            throw new RuntimeException("failed to determine next atom identifer");
+        }
+        int nextLeafIdentifier = maximalLeafIdentifier + 1;
+        int nextAtomIdentifier = maximalAtomIdentifier + 1;
 
-        // calculate interaction centroid by using PLIP ligand and protein coordinates
-        Vector interactionCentroid = Vectors.getCentroid(Stream.of(interaction.getLigandCoordinate(), interaction.getProteinCoordinate())
-                                                               .map(Vector3D::new)
-                                                               .collect(Collectors.toList()));
+        String pdbIdentifier = dataPoint.getDataPointIdentifier().getPdbIdentifier();
+        String chainIdentifier = dataPoint.getDataPointIdentifier().getChainIdentifier();
+        List<Item<String>> interactionItems = new ArrayList<>(interactions.size());
+        for (Interaction interaction : interactions) {
+            // calculate interaction centroid by using PLIP ligand and protein coordinates
+            Vector interactionCentroid = Vectors.getCentroid(Stream.of(interaction.getLigandCoordinate(), interaction.getProteinCoordinate())
+                                                                   .map(Vector3D::new)
+                                                                   .collect(Collectors.toList()));
 
-        // create new atom container
-        String interactionThreeLetterCode = InteractionType.getThreeLetterCode(interaction.getClass());
-        LigandFamily family = new LigandFamily("X", interactionThreeLetterCode);
-        OakLigand ligandContainer = new OakLigand(new LeafIdentifier(dataPoint.getDataPointIdentifier().getPdbIdentifier(),
-                                                                     0,
-                                                                     dataPoint.getDataPointIdentifier().getChainIdentifier(),
-                                                                     nextLeafIdentifier), family);
+            // create new atom container
+            String interactionThreeLetterCode = InteractionType.getThreeLetterCode(interaction.getClass());
+            LigandFamily family = new LigandFamily("X", interactionThreeLetterCode);
+            OakLigand ligandContainer = new OakLigand(new LeafIdentifier(pdbIdentifier, 0, chainIdentifier, nextLeafIdentifier++), family);
 
-        OakAtom interactionPseudoAtom = new OakAtom(nextAtomIdentifier, ElementProvider.UNKOWN, "CA", interactionCentroid.as(Vector3D.class));
-        ligandContainer.addAtom(interactionPseudoAtom);
-        Item<String> interactionItem = new Item<>(interactionThreeLetterCode, ligandContainer);
-        dataPoint.getItems().add(interactionItem);
+            OakAtom interactionPseudoAtom = new OakAtom(nextAtomIdentifier++, ElementProvider.UNKOWN, "CA", interactionCentroid.as(Vector3D.class));
+            ligandContainer.addAtom(interactionPseudoAtom);
+            interactionItems.add(new Item<>(interactionThreeLetterCode, ligandContainer));
+        }
+        dataPoint.getItems().addAll(interactionItems);
 
-        logger.debug("added {} to data point {}", interactionItem, dataPoint);
+        logger.debug("added {} interaction items to data point {}", interactionItems.size(), dataPoint);
     }
 }
@@ -11,8 +11,15 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
  */
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
-@JsonSubTypes({@JsonSubTypes.Type(value = IntraChainInteractionEnricher.class), @JsonSubTypes.Type(value = LigandInteractionEnricher.class)})
+@JsonSubTypes({@JsonSubTypes.Type(value = IntraChainInteractionEnricher.class), @JsonSubTypes.Type(value = LigandInteractionEnricher.class),
+               @JsonSubTypes.Type(value = GeometricInteractionEnricher.class)})
 public interface DataPointEnricher<LabelType extends Comparable<LabelType>> {
 
+    /**
+     * Enriches the given {@link DataPoint} by adding {@link bio.fkaiser.mmm.model.Item}s to it.
+     *
+     * @param dataPoint The {@link DataPoint} to be enriched.
+     * @throws DataPointEnricherException If the enrichment failed, e.g. because an external service was not available.
+     */
     void enrichDataPoint(DataPoint<LabelType> dataPoint);
 }
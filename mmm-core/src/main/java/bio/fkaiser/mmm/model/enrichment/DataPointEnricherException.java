@@ -0,0 +1,22 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+/**
+ * An exception that should be used when the enrichment of a {@link bio.fkaiser.mmm.model.DataPoint} fails and may be retried.
+ *
+ * @author fk
+ */
+public class DataPointEnricherException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DataPointEnricherException() {
+    }
+
+    public DataPointEnricherException(String message) {
+        super(message);
+    }
+
+    public DataPointEnricherException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,226 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies a {@link DataPointEnricher} to many {@link DataPoint}s concurrently. At most the given number of enrichments (i.e. requests to external services) are in flight at once. Each
+ * attempt is bounded by a timeout and failed attempts are retried with exponential backoff. An attempt that timed out keeps its request permit until its thread actually finishes, since
+ * blocking IO may ignore the interruption. Every attempt enriches a fresh copy of the {@link DataPoint}, which replaces the original
+ * only if the attempt succeeded. Thus, abandoned attempts cannot leak items and the result is independent of the order in which enrichments complete. {@link DataPoint}s that could not
+ * be enriched are kept unchanged and reported as {@link EnrichmentFailure}s.
+ *
+ * @author fk
+ */
+public class DataPointEnrichmentStage<LabelType extends Comparable<LabelType>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataPointEnrichmentStage.class);
+
+    private final DataPointEnricher<LabelType> dataPointEnricher;
+    private final int maximalRequests;
+    private final long timeout;
+    private final int retries;
+    private final long retryBackoff;
+    private final List<EnrichmentFailure> enrichmentFailures;
+    private ExecutorService attemptExecutorService;
+    private Semaphore requestPermits;
+
+    /**
+     * Creates a new {@link DataPointEnrichmentStage}.
+     *
+     * @param dataPointEnricher The {@link DataPointEnricher} to be applied, which must be safe to use concurrently.
+     * @param maximalRequests   The maximal number of enrichments in flight.
+     * @param timeout           The timeout of a single attempt in milliseconds.
+     * @param retries           The number of retries after the first failed attempt.
+     * @param retryBackoff      The delay before the first retry in milliseconds, which is doubled for every further retry.
+     */
+    public DataPointEnrichmentStage(DataPointEnricher<LabelType> dataPointEnricher, int maximalRequests, long timeout, int retries, long retryBackoff) {
+        if (maximalRequests < 1) {
+            throw new IllegalArgumentException("at least one enrichment request must be allowed");
+        }
+        this.dataPointEnricher = dataPointEnricher;
+        this.maximalRequests = maximalRequests;
+        this.timeout = timeout;
+        this.retries = retries;
+        this.retryBackoff = retryBackoff;
+        enrichmentFailures = new ArrayList<>();
+    }
+
+    /**
+     * Enriches the given {@link DataPoint}s.
+     *
+     * @param dataPoints The {@link DataPoint}s to be enriched.
+     * @return The enriched {@link DataPoint}s in the order of the input.
+     */
+    public List<DataPoint<LabelType>> enrichDataPoints(List<DataPoint<LabelType>> dataPoints) {
+        enrichmentFailures.clear();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(maximalRequests, dataPoints.size())));
+        requestPermits = new Semaphore(maximalRequests);
+        // attempts run on their own threads such that timed out attempts can be abandoned
+        attemptExecutorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<EnrichmentResult<LabelType>>> futures = new ArrayList<>();
+            for (DataPoint<LabelType> dataPoint : dataPoints) {
+                futures.add(executorService.submit(new EnrichmentTask(dataPoint)));
+            }
+            List<DataPoint<LabelType>> enrichedDataPoints = new ArrayList<>();
+            for (Future<EnrichmentResult<LabelType>> future : futures) {
+                EnrichmentResult<LabelType> enrichmentResult = future.get();
+                enrichedDataPoints.add(enrichmentResult.dataPoint);
+                if (enrichmentResult.enrichmentFailure != null) {
+                    enrichmentFailures.add(enrichmentResult.enrichmentFailure);
+                }
+            }
+            logger.info("enriched {} of {} data points, {} failed", dataPoints.size() - enrichmentFailures.size(), dataPoints.size(), enrichmentFailures.size());
+            for (EnrichmentFailure enrichmentFailure : enrichmentFailures) {
+                logger.warn("failed to enrich {}", enrichmentFailure);
+            }
+            return enrichedDataPoints;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataPointEnricherException("interrupted during enrichment of data points", e);
+        } catch (ExecutionException e) {
+            throw new DataPointEnricherException("failed to enrich data points", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+            attemptExecutorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the {@link EnrichmentFailure}s of the last enrichment in the order of the input {@link DataPoint}s.
+     *
+     * @return The {@link EnrichmentFailure}s.
+     */
+    public List<EnrichmentFailure> getEnrichmentFailures() {
+        return Collections.unmodifiableList(enrichmentFailures);
+    }
+
+    /**
+     * The report of a {@link DataPoint} whose enrichment failed after all attempts.
+     */
+    public static class EnrichmentFailure {
+
+        private final DataPointIdentifier dataPointIdentifier;
+        private final int attempts;
+        private final String reason;
+
+        EnrichmentFailure(DataPointIdentifier dataPointIdentifier, int attempts, String reason) {
+            this.dataPointIdentifier = dataPointIdentifier;
+            this.attempts = attempts;
+            this.reason = reason;
+        }
+
+        public DataPointIdentifier getDataPointIdentifier() {
+            return dataPointIdentifier;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return dataPointIdentifier + " after " + attempts + " attempt(s): " + reason;
+        }
+    }
+
+    private static class EnrichmentResult<LabelType extends Comparable<LabelType>> {
+
+        private final DataPoint<LabelType> dataPoint;
+        private final EnrichmentFailure enrichmentFailure;
+
+        private EnrichmentResult(DataPoint<LabelType> dataPoint, EnrichmentFailure enrichmentFailure) {
+            this.dataPoint = dataPoint;
+            this.enrichmentFailure = enrichmentFailure;
+        }
+    }
+
+    private class EnrichmentTask implements Callable<EnrichmentResult<LabelType>> {
+
+        private final DataPoint<LabelType> dataPoint;
+
+        private EnrichmentTask(DataPoint<LabelType> dataPoint) {
+            this.dataPoint = dataPoint;
+        }
+
+        @Override
+        public EnrichmentResult<LabelType> call() throws InterruptedException {
+            String reason = null;
+            for (int attempt = 0; attempt <= retries; attempt++) {
+                if (attempt > 0) {
+                    long delay = retryBackoff << Math.min(attempt - 1, 16);
+                    logger.debug("retrying enrichment of data point {} in {} ms", dataPoint, delay);
+                    Thread.sleep(delay);
+                }
+                // items are only appended during enrichment, thus a shallow copy of the item list suffices
+                DataPoint<LabelType> dataPointCopy = new DataPoint<>(new ArrayList<>(dataPoint.getItems()), dataPoint.getDataPointIdentifier());
+                // wait until abandoned attempts have really finished
+                requestPermits.acquire();
+                EnrichmentAttempt enrichmentAttempt = new EnrichmentAttempt(dataPointCopy);
+                Future<?> attemptFuture = attemptExecutorService.submit(enrichmentAttempt);
+                try {
+                    attemptFuture.get(timeout, TimeUnit.MILLISECONDS);
+                    return new EnrichmentResult<>(dataPointCopy, null);
+                } catch (ExecutionException e) {
+                    reason = String.valueOf(e.getCause().getMessage());
+                    logger.debug("attempt {} to enrich data point {} failed", attempt + 1, dataPoint, e.getCause());
+                } catch (TimeoutException e) {
+                    enrichmentAttempt.abandon(attemptFuture);
+                    reason = "timed out after " + timeout + " ms";
+                    logger.debug("attempt {} to enrich data point {} timed out", attempt + 1, dataPoint);
+                }
+            }
+            return new EnrichmentResult<>(dataPoint, new EnrichmentFailure(dataPoint.getDataPointIdentifier(), retries + 1, reason));
+        }
+    }
+
+    /**
+     * A single attempt to enrich a {@link DataPoint} that releases its request permit once it is done. If the attempt is abandoned before it started, the permit is released right away.
+     */
+    private class EnrichmentAttempt implements Runnable {
+
+        private final DataPoint<LabelType> dataPoint;
+        private final AtomicBoolean claimed;
+
+        private EnrichmentAttempt(DataPoint<LabelType> dataPoint) {
+            this.dataPoint = dataPoint;
+            claimed = new AtomicBoolean();
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dataPointEnricher.enrichDataPoint(dataPoint);
+            } finally {
+                requestPermits.release();
+            }
+        }
+
+        private void abandon(Future<?> attemptFuture) {
+            attemptFuture.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                requestPermits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
+import de.bioforscher.singa.structure.model.interfaces.Atom;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
+import de.bioforscher.singa.structure.parser.plip.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Enriches {@link DataPoint}s with interactions that are detected locally by geometric criteria, i.e. without the PLIP REST service. The {@link #ACTIVE_INTERACTIONS} are
+ * detected between the {@link LeafSubstructure}s of the {@link DataPoint} with the distance and angle thresholds of PLIP, where atoms, charged groups and aromatic rings are looked up
+ * in a {@link SpatialIndex}. Interactions are abstracted as pseudoatoms defined as the midpoint between interacting atoms (or group centers), exactly as for PLIP interactions.
+ * <p>
+ * As no hydrogens are available, hydrogen bonds are detected by the donor-acceptor distance only. Charged groups and aromatic rings are only known for amino acids and nucleotides.
+ *
+ * @author fk
+ */
+@JsonTypeName("GEOMETRIC_INTERACTION")
+public class GeometricInteractionEnricher extends AbstractInteractionEnricher {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeometricInteractionEnricher.class);
+
+    // distance and angle thresholds as used by PLIP, except for hydrogen bonds, whose angle cannot be checked without hydrogens and thus use the common heavy-atom distance
+    private static final double MINIMAL_HYDROGEN_BOND_DISTANCE = 2.5;
+    private static final double MAXIMAL_HYDROGEN_BOND_DISTANCE = 3.5;
+    private static final double MAXIMAL_SALT_BRIDGE_DISTANCE = 5.5;
+    private static final double MAXIMAL_PI_STACKING_DISTANCE = 5.5;
+    private static final double MAXIMAL_PI_STACKING_ANGLE_DEVIATION = 30.0;
+    private static final double MAXIMAL_PI_STACKING_OFFSET = 2.0;
+    private static final double MAXIMAL_PI_CATION_DISTANCE = 6.0;
+    private static final double MAXIMAL_PI_CATION_OFFSET = 2.0;
+    private static final double MAXIMAL_METAL_DISTANCE = 3.0;
+    private static final double MAXIMAL_HALOGEN_BOND_DISTANCE = 4.0;
+    private static final double OPTIMAL_HALOGEN_DONOR_ANGLE = 165.0;
+    private static final double OPTIMAL_HALOGEN_ACCEPTOR_ANGLE = 120.0;
+    private static final double MAXIMAL_HALOGEN_ANGLE_DEVIATION = 30.0;
+    private static final double MAXIMAL_COVALENT_BOND_DISTANCE = 2.1;
+    private static final double CELL_SIZE = MAXIMAL_PI_CATION_DISTANCE;
+
+    private static final Set<String> BACKBONE_ATOM_NAMES = new HashSet<>(Arrays.asList("N", "CA", "C", "O", "OXT"));
+    private static final Set<String> METAL_SYMBOLS = new HashSet<>(Arrays.asList("LI", "NA", "K", "MG", "CA", "MN", "FE", "CO", "NI", "CU", "ZN", "CD", "HG"));
+    private static final Set<String> HALOGEN_SYMBOLS = new HashSet<>(Arrays.asList("F", "CL", "BR", "I"));
+    private static final Map<AminoAcidFamily, Set<String>> DONOR_ATOM_NAMES = new EnumMap<>(AminoAcidFamily.class);
+    private static final Map<AminoAcidFamily, Set<String>> ACCEPTOR_ATOM_NAMES = new EnumMap<>(AminoAcidFamily.class);
+    private static final Map<AminoAcidFamily, List<List<String>>> POSITIVE_GROUPS = new EnumMap<>(AminoAcidFamily.class);
+    private static final Map<AminoAcidFamily, List<List<String>>> NEGATIVE_GROUPS = new EnumMap<>(AminoAcidFamily.class);
+    private static final Map<AminoAcidFamily, List<List<String>>> AROMATIC_RINGS = new EnumMap<>(AminoAcidFamily.class);
+    private static final List<String> PURINE_SIX_RING = Arrays.asList("N1", "C2", "N3", "C4", "C5", "C6");
+    private static final List<String> PURINE_FIVE_RING = Arrays.asList("C4", "C5", "N7", "C8", "N9");
+    private static final List<String> PHOSPHATE_GROUP = Arrays.asList("OP1", "OP2");
+
+    static {
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.ARGININE, names("NE", "NH1", "NH2"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.ASPARAGINE, names("ND2"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.GLUTAMINE, names("NE2"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.HISTIDINE, names("ND1", "NE2"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.LYSINE, names("NZ"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.SERINE, names("OG"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.THREONINE, names("OG1"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.TYROSINE, names("OH"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.TRYPTOPHAN, names("NE1"));
+        DONOR_ATOM_NAMES.put(AminoAcidFamily.CYSTEINE, names("SG"));
+
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.ASPARTIC_ACID, names("OD1", "OD2"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.GLUTAMIC_ACID, names("OE1", "OE2"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.ASPARAGINE, names("OD1"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.GLUTAMINE, names("OE1"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.HISTIDINE, names("ND1", "NE2"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.SERINE, names("OG"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.THREONINE, names("OG1"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.TYROSINE, names("OH"));
+        ACCEPTOR_ATOM_NAMES.put(AminoAcidFamily.METHIONINE, names("SD"));
+
+        POSITIVE_GROUPS.put(AminoAcidFamily.LYSINE, Collections.singletonList(Collections.singletonList("NZ")));
+        POSITIVE_GROUPS.put(AminoAcidFamily.ARGININE, Collections.singletonList(Arrays.asList("NE", "NH1", "NH2")));
+        POSITIVE_GROUPS.put(AminoAcidFamily.HISTIDINE, Collections.singletonList(Arrays.asList("ND1", "NE2")));
+        NEGATIVE_GROUPS.put(AminoAcidFamily.ASPARTIC_ACID, Collections.singletonList(Arrays.asList("OD1", "OD2")));
+        NEGATIVE_GROUPS.put(AminoAcidFamily.GLUTAMIC_ACID, Collections.singletonList(Arrays.asList("OE1", "OE2")));
+
+        List<String> benzeneRing = Arrays.asList("CG", "CD1", "CD2", "CE1", "CE2", "CZ");
+        AROMATIC_RINGS.put(AminoAcidFamily.PHENYLALANINE, Collections.singletonList(benzeneRing));
+        AROMATIC_RINGS.put(AminoAcidFamily.TYROSINE, Collections.singletonList(benzeneRing));
+        AROMATIC_RINGS.put(AminoAcidFamily.HISTIDINE, Collections.singletonList(Arrays.asList("CG", "ND1", "CD2", "CE1", "NE2")));
+        AROMATIC_RINGS.put(AminoAcidFamily.TRYPTOPHAN, Arrays.asList(Arrays.asList("CG", "CD1", "NE1", "CE2", "CD2"),
+                                                                    Arrays.asList("CD2", "CE2", "CE3", "CZ2", "CZ3", "CH2")));
+    }
+
+    private static Set<String> names(String... atomNames) {
+        return new HashSet<>(Arrays.asList(atomNames));
+    }
+
+    private static double[] coordinates(Atom atom) {
+        Vector3D position = atom.getPosition();
+        return new double[]{position.getX(), position.getY(), position.getZ()};
+    }
+
+    private static String symbol(Atom atom) {
+        return atom.getElement().getSymbol().toUpperCase();
+    }
+
+    private static double[] subtract(double[] a, double[] b) {
+        return new double[]{a[0] - b[0], a[1] - b[1], a[2] - b[2]};
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    private static double[] cross(double[] a, double[] b) {
+        return new double[]{a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0]};
+    }
+
+    private static double[] normalize(double[] a) {
+        double norm = Math.sqrt(dot(a, a));
+        return new double[]{a[0] / norm, a[1] / norm, a[2] / norm};
+    }
+
+    private static double angle(double[] a, double[] b) {
+        double cosine = dot(a, b) / Math.sqrt(dot(a, a) * dot(b, b));
+        return Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, cosine))));
+    }
+
+    /**
+     * Returns the distance of the given position from the center of the given ring, projected onto the plane of the ring.
+     */
+    private static double offset(Group ring, double[] position) {
+        double[] difference = subtract(position, ring.center);
+        double height = dot(difference, ring.normal);
+        return Math.sqrt(Math.max(0.0, dot(difference, difference) - height * height));
+    }
+
+    private static boolean isInteractionLeafSubstructure(LeafSubstructure<?> leafSubstructure) {
+        return Arrays.stream(InteractionType.values())
+                     .anyMatch(interactionType -> interactionType.getThreeLetterCode().equalsIgnoreCase(leafSubstructure.getFamily().getThreeLetterCode()));
+    }
+
+    private static <InteractionClass extends Interaction> InteractionClass locate(InteractionClass interaction, LeafSubstructure<?> source, double[] sourcePosition,
+                                                                                   LeafSubstructure<?> target, double[] targetPosition) {
+        interaction.setSource(source.getIdentifier());
+        interaction.setTarget(target.getIdentifier());
+        interaction.setProteinCoordinate(sourcePosition);
+        interaction.setLigandCoordinate(targetPosition);
+        return interaction;
+    }
+
+    @Override
+    public void enrichDataPoint(DataPoint<String> dataPoint) {
+        logger.debug("enriching data point {} with geometric interaction information", dataPoint);
+        InteractionSites interactionSites = new InteractionSites(dataPoint);
+        List<Interaction> activeInteractions = new ArrayList<>();
+        for (InteractionType activeInteraction : ACTIVE_INTERACTIONS) {
+            switch (activeInteraction) {
+                case HYDROGEN_BOND:
+                    interactionSites.detectHydrogenBonds(activeInteractions);
+                    break;
+                case SALT_BRIDGE:
+                    interactionSites.detectSaltBridges(activeInteractions);
+                    break;
+                case PI_STACKING:
+                    interactionSites.detectPiStacking(activeInteractions);
+                    break;
+                case PI_CATION_INTERACTION:
+                    interactionSites.detectPiCationInteractions(activeInteractions);
+                    break;
+                case METAL_COMPLEX:
+                    interactionSites.detectMetalComplexes(activeInteractions);
+                    break;
+                case HALOGEN_BOND:
+                    interactionSites.detectHalogenBonds(activeInteractions);
+                    break;
+                default:
+                    logger.debug("interactions of type {} cannot be detected geometrically", activeInteraction);
+            }
+        }
+        addInteractionItems(activeInteractions, dataPoint);
+    }
+
+    @Override
+    public String toString() {
+        return "GeometricInteractionEnricher{}";
+    }
+
+    /**
+     * An atom together with the index of its {@link LeafSubstructure} in the {@link DataPoint}.
+     */
+    private static class IndexedAtom {
+
+        private final Atom atom;
+        private final LeafSubstructure<?> leafSubstructure;
+        private final int leafIndex;
+        private final double[] position;
+
+        private IndexedAtom(Atom atom, LeafSubstructure<?> leafSubstructure, int leafIndex) {
+            this.atom = atom;
+            this.leafSubstructure = leafSubstructure;
+            this.leafIndex = leafIndex;
+            position = coordinates(atom);
+        }
+    }
+
+    /**
+     * A charged group or aromatic ring, represented by its center and, for rings, the normal of its plane.
+     */
+    private static class Group {
+
+        private final LeafSubstructure<?> leafSubstructure;
+        private final int leafIndex;
+        private final double[] center;
+        private final double[] normal;
+
+        private Group(LeafSubstructure<?> leafSubstructure, int leafIndex, List<double[]> positions) {
+            this.leafSubstructure = leafSubstructure;
+            this.leafIndex = leafIndex;
+            center = new double[3];
+            for (double[] position : positions) {
+                for (int i = 0; i < 3; i++) {
+                    center[i] += position[i] / positions.size();
+                }
+            }
+            normal = positions.size() >= 3 ? determineNormal(positions) : null;
+        }
+
+        /**
+         * Determines the normal of the plane through the center from the most perpendicular pair of atoms, which does not depend on the order of the atoms.
+         */
+        private double[] determineNormal(List<double[]> positions) {
+            double[] normal = null;
+            double maximalNorm = 0.0;
+            for (int i = 1; i < positions.size(); i++) {
+                double[] candidate = cross(subtract(positions.get(0), center), subtract(positions.get(i), center));
+                double norm = dot(candidate, candidate);
+                if (norm > maximalNorm) {
+                    maximalNorm = norm;
+                    normal = candidate;
+                }
+            }
+            return normalize(normal);
+        }
+    }
+
+    /**
+     * The atoms, charged groups and aromatic rings of a {@link DataPoint}, each of them indexed in a {@link SpatialIndex}.
+     */
+    private static class InteractionSites {
+
+        private final List<LeafSubstructure<?>> leafSubstructures;
+        private final List<IndexedAtom> atoms;
+        private final SpatialIndex<IndexedAtom> atomIndex;
+        private final List<Group> positiveGroups;
+        private final List<Group> negativeGroups;
+        private final List<Group> aromaticRings;
+        private final SpatialIndex<Group> negativeGroupIndex;
+        private final SpatialIndex<Group> aromaticRingIndex;
+        private int nextIdentifier = 1;
+
+        private InteractionSites(DataPoint<String> dataPoint) {
+            leafSubstructures = dataPoint.getItems().stream()
+                                         .map(Item::getLeafSubstructure)
+                                         .filter(Optional::isPresent)
+                                         .map(Optional::get)
+                                         .filter(leafSubstructure -> !isInteractionLeafSubstructure(leafSubstructure))
+                                         .collect(Collectors.toList());
+            atoms = new ArrayList<>();
+            atomIndex = new SpatialIndex<>(CELL_SIZE);
+            positiveGroups = new ArrayList<>();
+            negativeGroups = new ArrayList<>();
+            aromaticRings = new ArrayList<>();
+            negativeGroupIndex = new SpatialIndex<>(CELL_SIZE);
+            aromaticRingIndex = new SpatialIndex<>(CELL_SIZE);
+            for (int i = 0; i < leafSubstructures.size(); i++) {
+                LeafSubstructure<?> leafSubstructure = leafSubstructures.get(i);
+                for (Atom atom : leafSubstructure.getAllAtoms()) {
+                    IndexedAtom indexedAtom = new IndexedAtom(atom, leafSubstructure, i);
+                    atoms.add(indexedAtom);
+                    atomIndex.add(indexedAtom.position, indexedAtom);
+                }
+                if (leafSubstructure instanceof AminoAcid) {
+                    AminoAcidFamily family = ((AminoAcid) leafSubstructure).getFamily();
+                    addGroups(positiveGroups, null, POSITIVE_GROUPS.get(family), leafSubstructure, i);
+                    addGroups(negativeGroups, negativeGroupIndex, NEGATIVE_GROUPS.get(family), leafSubstructure, i);
+                    addGroups(aromaticRings, aromaticRingIndex, AROMATIC_RINGS.get(family), leafSubstructure, i);
+                } else if (leafSubstructure instanceof Nucleotide) {
+                    addGroups(negativeGroups, negativeGroupIndex, Collections.singletonList(PHOSPHATE_GROUP), leafSubstructure, i);
+                    // the five-membered ring is only present in purines
+                    addGroups(aromaticRings, aromaticRingIndex, Arrays.asList(PURINE_SIX_RING, PURINE_FIVE_RING), leafSubstructure, i);
+                }
+            }
+        }
+
+        private static Optional<double[]> atomPosition(LeafSubstructure<?> leafSubstructure, String atomName) {
+            return leafSubstructure.getAtomByName(atomName).map(GeometricInteractionEnricher::coordinates);
+        }
+
+        private void addGroups(List<Group> groups, SpatialIndex<Group> groupIndex, List<List<String>> atomNameGroups, LeafSubstructure<?> leafSubstructure, int leafIndex) {
+            if (atomNameGroups == null) {
+                return;
+            }
+            for (List<String> atomNames : atomNameGroups) {
+                List<double[]> positions = new ArrayList<>();
+                for (String atomName : atomNames) {
+                    atomPosition(leafSubstructure, atomName).ifPresent(positions::add);
+                }
+                // incomplete groups are ignored
+                if (positions.size() != atomNames.size()) {
+                    continue;
+                }
+                Group group = new Group(leafSubstructure, leafIndex, positions);
+                groups.add(group);
+                if (groupIndex != null) {
+                    groupIndex.add(group.center, group);
+                }
+            }
+        }
+
+        private boolean isDonor(IndexedAtom indexedAtom) {
+            return isPolar(indexedAtom, DONOR_ATOM_NAMES) || indexedAtom.leafSubstructure instanceof AminoAcid && indexedAtom.atom.getAtomName().equals("N")
+                                                             && ((AminoAcid) indexedAtom.leafSubstructure).getFamily() != AminoAcidFamily.PROLINE;
+        }
+
+        private boolean isAcceptor(IndexedAtom indexedAtom) {
+            return isPolar(indexedAtom, ACCEPTOR_ATOM_NAMES) || indexedAtom.leafSubstructure instanceof AminoAcid
+                                                                && (indexedAtom.atom.getAtomName().equals("O") || indexedAtom.atom.getAtomName().equals("OXT"));
+        }
+
+        private boolean isPolar(IndexedAtom indexedAtom, Map<AminoAcidFamily, Set<String>> atomNames) {
+            if (indexedAtom.leafSubstructure instanceof AminoAcid) {
+                Set<String> polarAtomNames = atomNames.get(((AminoAcid) indexedAtom.leafSubstructure).getFamily());
+                return polarAtomNames != null && polarAtomNames.contains(indexedAtom.atom.getAtomName());
+            }
+            // without hydrogens, nitrogen and oxygen atoms of other residues can be both donors and acceptors
+            String symbol = symbol(indexedAtom.atom);
+            return symbol.equals("N") || symbol.equals("O");
+        }
+
+        /**
+         * Returns true if both atoms belong to the backbone of neighboring amino acids of the same chain, whose contacts are imposed by the peptide bond.
+         */
+        private boolean isAdjacentBackbone(IndexedAtom atom1, IndexedAtom atom2) {
+            return atom1.leafSubstructure instanceof AminoAcid && atom2.leafSubstructure instanceof AminoAcid
+                   && BACKBONE_ATOM_NAMES.contains(atom1.atom.getAtomName()) && BACKBONE_ATOM_NAMES.contains(atom2.atom.getAtomName())
+                   && Objects.equals(atom1.leafSubstructure.getIdentifier().getChainIdentifier(), atom2.leafSubstructure.getIdentifier().getChainIdentifier())
+                   && Math.abs(atom1.leafSubstructure.getIdentifier().getSerial() - atom2.leafSubstructure.getIdentifier().getSerial()) <= 1;
+        }
+
+        private void detectHydrogenBonds(List<Interaction> interactions) {
+            for (IndexedAtom donor : atoms) {
+                if (!isDonor(donor)) {
+                    continue;
+                }
+                for (IndexedAtom acceptor : atomIndex.findNeighbors(donor.position, MAXIMAL_HYDROGEN_BOND_DISTANCE)) {
+                    if (acceptor.leafIndex == donor.leafIndex || !isAcceptor(acceptor) || isAdjacentBackbone(donor, acceptor)) {
+                        continue;
+                    }
+                    // atoms that are both donor and acceptor are reported once per pair
+                    if (isDonor(acceptor) && isAcceptor(donor) && acceptor.leafIndex < donor.leafIndex) {
+                        continue;
+                    }
+                    double distance = Math.sqrt(SpatialIndex.squaredDistance(donor.position, acceptor.position));
+                    if (distance < MINIMAL_HYDROGEN_BOND_DISTANCE) {
+                        continue;
+                    }
+                    HydrogenBond hydrogenBond = locate(new HydrogenBond(nextIdentifier++), donor.leafSubstructure, donor.position, acceptor.leafSubstructure, acceptor.position);
+                    hydrogenBond.setDonor(donor.atom.getAtomIdentifier());
+                    hydrogenBond.setAcceptor(acceptor.atom.getAtomIdentifier());
+                    hydrogenBond.setDistanceDA(distance);
+                    hydrogenBond.setProtIsDon(true);
+                    hydrogenBond.setSidechain(!BACKBONE_ATOM_NAMES.contains(donor.atom.getAtomName()));
+                    interactions.add(hydrogenBond);
+                }
+            }
+        }
+
+        private void detectSaltBridges(List<Interaction> interactions) {
+            for (Group positiveGroup : positiveGroups) {
+                for (Group negativeGroup : negativeGroupIndex.findNeighbors(positiveGroup.center, MAXIMAL_SALT_BRIDGE_DISTANCE)) {
+                    if (negativeGroup.leafIndex == positiveGroup.leafIndex) {
+                        continue;
+                    }
+                    SaltBridge saltBridge = locate(new SaltBridge(nextIdentifier++), positiveGroup.leafSubstructure, positiveGroup.center, negativeGroup.leafSubstructure,
+                                                   negativeGroup.center);
+                    saltBridge.setDistance(Math.sqrt(SpatialIndex.squaredDistance(positiveGroup.center, negativeGroup.center)));
+                    saltBridge.setProtIsPos(true);
+                    interactions.add(saltBridge);
+                }
+            }
+        }
+
+        private void detectPiStacking(List<Interaction> interactions) {
+            for (int i = 0; i < aromaticRings.size(); i++) {
+                Group ring1 = aromaticRings.get(i);
+                for (Group ring2 : aromaticRingIndex.findNeighbors(ring1.center, MAXIMAL_PI_STACKING_DISTANCE)) {
+                    // each pair of rings is reported once
+                    if (ring2.leafIndex <= ring1.leafIndex) {
+                        continue;
+                    }
+                    double angle = angle(ring1.normal, ring2.normal);
+                    angle = Math.min(angle, 180.0 - angle);
+                    String type;
+                    if (angle < MAXIMAL_PI_STACKING_ANGLE_DEVIATION) {
+                        type = "P";
+                    } else if (Math.abs(angle - 90.0) < MAXIMAL_PI_STACKING_ANGLE_DEVIATION) {
+                        type = "T";
+                    } else {
+                        continue;
+                    }
+                    double offset = Math.min(offset(ring1, ring2.center), offset(ring2, ring1.center));
+                    if (offset > MAXIMAL_PI_STACKING_OFFSET) {
+                        continue;
+                    }
+                    PiStacking piStacking = locate(new PiStacking(nextIdentifier++), ring1.leafSubstructure, ring1.center, ring2.leafSubstructure, ring2.center);
+                    piStacking.setDistance(Math.sqrt(SpatialIndex.squaredDistance(ring1.center, ring2.center)));
+                    piStacking.setAngle(angle);
+                    piStacking.setOffset(offset);
+                    piStacking.setType(type);
+                    interactions.add(piStacking);
+                }
+            }
+        }
+
+        private void detectPiCationInteractions(List<Interaction> interactions) {
+            for (Group positiveGroup : positiveGroups) {
+                for (Group ring : aromaticRingIndex.findNeighbors(positiveGroup.center, MAXIMAL_PI_CATION_DISTANCE)) {
+                    if (ring.leafIndex == positiveGroup.leafIndex) {
+                        continue;
+                    }
+                    double offset = offset(ring, positiveGroup.center);
+                    if (offset > MAXIMAL_PI_CATION_OFFSET) {
+                        continue;
+                    }
+                    PiCation piCation = locate(new PiCation(nextIdentifier++), positiveGroup.leafSubstructure, positiveGroup.center, ring.leafSubstructure, ring.center);
+                    piCation.setDistance(Math.sqrt(SpatialIndex.squaredDistance(positiveGroup.center, ring.center)));
+                    piCation.setOffset(offset);
+                    piCation.setProtcharged(true);
+                    interactions.add(piCation);
+                }
+            }
+        }
+
+        private void detectMetalComplexes(List<Interaction> interactions) {
+            for (IndexedAtom metal : atoms) {
+                if (!METAL_SYMBOLS.contains(symbol(metal.atom))) {
+                    continue;
+                }
+                for (IndexedAtom target : atomIndex.findNeighbors(metal.position, MAXIMAL_METAL_DISTANCE)) {
+                    String symbol = symbol(target.atom);
+                    if (target.leafIndex == metal.leafIndex || !(symbol.equals("O") || symbol.equals("N") || symbol.equals("S"))) {
+                        continue;
+                    }
+                    MetalComplex metalComplex = locate(new MetalComplex(nextIdentifier++), target.leafSubstructure, target.position, metal.leafSubstructure, metal.position);
+                    metalComplex.setAtom1(metal.atom.getAtomIdentifier());
+                    metalComplex.setAtom2(target.atom.getAtomIdentifier());
+                    metalComplex.setDistance(Math.sqrt(SpatialIndex.squaredDistance(metal.position, target.position)));
+                    metalComplex.setMetalType(metal.atom.getElement().getSymbol());
+                    interactions.add(metalComplex);
+                }
+            }
+        }
+
+        /**
+         * Returns the position of the closest atom that is covalently bound to the given atom within its {@link LeafSubstructure}.
+         */
+        private Optional<double[]> bondedPosition(IndexedAtom indexedAtom) {
+            return atomIndex.findNeighbors(indexedAtom.position, MAXIMAL_COVALENT_BOND_DISTANCE).stream()
+                            .filter(neighbor -> neighbor != indexedAtom && neighbor.leafIndex == indexedAtom.leafIndex && !symbol(neighbor.atom).equals("H"))
+                            .min(Comparator.comparingDouble(neighbor -> SpatialIndex.squaredDistance(neighbor.position, indexedAtom.position)))
+                            .map(neighbor -> neighbor.position);
+        }
+
+        private void detectHalogenBonds(List<Interaction> interactions) {
+            for (IndexedAtom halogen : atoms) {
+                if (!HALOGEN_SYMBOLS.contains(symbol(halogen.atom))) {
+                    continue;
+                }
+                Optional<double[]> donorPosition = bondedPosition(halogen);
+                if (!donorPosition.isPresent()) {
+                    continue;
+                }
+                for (IndexedAtom acceptor : atomIndex.findNeighbors(halogen.position, MAXIMAL_HALOGEN_BOND_DISTANCE)) {
+                    String symbol = symbol(acceptor.atom);
+                    if (acceptor.leafIndex == halogen.leafIndex || !(symbol.equals("O") || symbol.equals("N") || symbol.equals("S"))) {
+                        continue;
+                    }
+                    Optional<double[]> acceptorNeighborPosition = bondedPosition(acceptor);
+                    if (!acceptorNeighborPosition.isPresent()) {
+                        continue;
+                    }
+                    double donorAngle = angle(subtract(donorPosition.get(), halogen.position), subtract(acceptor.position, halogen.position));
+                    double acceptorAngle = angle(subtract(halogen.position, acceptor.position), subtract(acceptorNeighborPosition.get(), acceptor.position));
+                    if (Math.abs(donorAngle - OPTIMAL_HALOGEN_DONOR_ANGLE) > MAXIMAL_HALOGEN_ANGLE_DEVIATION
+                        || Math.abs(acceptorAngle - OPTIMAL_HALOGEN_ACCEPTOR_ANGLE) > MAXIMAL_HALOGEN_ANGLE_DEVIATION) {
+                        continue;
+                    }
+                    HalogenBond halogenBond = locate(new HalogenBond(nextIdentifier++), acceptor.leafSubstructure, acceptor.position, halogen.leafSubstructure, halogen.position);
+                    halogenBond.setDonor(halogen.atom.getAtomIdentifier());
+                    halogenBond.setAcceptor(acceptor.atom.getAtomIdentifier());
+                    halogenBond.setDistance(Math.sqrt(SpatialIndex.squaredDistance(halogen.position, acceptor.position)));
+                    halogenBond.setDonorAngle(donorAngle);
+                    halogenBond.setAcceptorAngle(acceptorAngle);
+                    interactions.add(halogenBond);
+                }
+            }
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package bio.fkaiser.mmm.model.enrichment;
 
+import bio.fkaiser.mmm.io.StructureCache;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.plip.PlipGetRequest;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import de.bioforscher.singa.structure.model.interfaces.Structure;
 import de.bioforscher.singa.structure.model.oak.OakStructure;
+import de.bioforscher.singa.structure.parser.pdb.structures.SourceLocation;
 import de.bioforscher.singa.structure.parser.pdb.structures.StructureParser;
+import de.bioforscher.singa.structure.parser.plip.Interaction;
 import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
 import de.bioforscher.singa.structure.parser.plip.InteractionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Enriches {@link DataPoint}s with inter-chain interaction information predicted by the Protein-Ligand Interaction Profiler (PLIP). Interactions are abstracted as pseudoatoms defined as the
@@ -22,45 +30,60 @@ import java.util.Optional;
 public class IntraChainInteractionEnricher extends AbstractInteractionEnricher {
 
     private static final Logger logger = LoggerFactory.getLogger(IntraChainInteractionEnricher.class);
-    private static final String PLIP_REST_PROVIDER_URL = "https://biosciences.hs-mittweida.de/plip/interaction/plain";
+    private static final String PLIP_ENDPOINT = "/interaction/plain";
+
+    @JsonIgnore
+    private StructureCache structureCache;
 
     private static void validateInteractions(InteractionContainer interactions, OakStructure structure) {
         interactions.validateWithStructure(structure);
     }
 
+    /**
+     * Sets the {@link StructureCache} from which the structures of enriched {@link DataPoint}s are restored instead of fetching them again.
+     *
+     * @param structureCache The {@link StructureCache} or null if structures should always be fetched.
+     */
+    public void setStructureCache(StructureCache structureCache) {
+        this.structureCache = structureCache;
+    }
+
     @Override
     public void enrichDataPoint(DataPoint<String> dataPoint) {
 
-        // TODO avoid fetching of structure every time
-        OakStructure structure = (OakStructure) StructureParser.pdb()
-                                                               .pdbIdentifier(dataPoint.getDataPointIdentifier().getPdbIdentifier())
-                                                               .parse();
-
-        logger.debug("enriching data point {} with interaction information", dataPoint);
-
         String pdbIdentifier = dataPoint.getDataPointIdentifier().getPdbIdentifier();
         String chainIdentifier = dataPoint.getDataPointIdentifier().getChainIdentifier();
 
-        PlipGetRequest plipGetRequest = new PlipGetRequest(PLIP_REST_PROVIDER_URL, pdbIdentifier, chainIdentifier);
+        Supplier<Structure> structureParser = () -> StructureParser.pdb()
+                                                                   .pdbIdentifier(pdbIdentifier)
+                                                                   .parse();
+        OakStructure structure = (OakStructure) (structureCache != null ? structureCache.getStructure(SourceLocation.ONLINE_PDB, pdbIdentifier, null, null, structureParser)
+                                                                        : structureParser.get());
+
+        logger.debug("enriching data point {} with interaction information", dataPoint);
+
+        PlipGetRequest plipGetRequest = new PlipGetRequest(plipRestProviderUrl + PLIP_ENDPOINT, pdbIdentifier, chainIdentifier);
 
-        Optional<InteractionContainer> optionalInteractions = plipGetRequest.queryInteractions();
+        Optional<InteractionContainer> optionalInteractions = plipGetRequest.queryInteractions(plipInteractionCache);
 
         if (optionalInteractions.isPresent()) {
             InteractionContainer interactions = optionalInteractions.get();
             // validate interactions (necessary for intra-chain interactions)
             validateInteractions(interactions, structure);
+            List<Interaction> activeInteractions = new ArrayList<>();
             for (InteractionType activeInteraction : ACTIVE_INTERACTIONS) {
                 logger.debug("enriching data point {} with interactions of type {}", dataPoint, activeInteraction);
                 interactions.getInteractions().stream()
                             .filter(interaction -> activeInteraction.getInteractionClass().equals(interaction.getClass()))
-                            .forEach(interaction -> addInteractionItem(interaction, dataPoint));
+                            .forEach(activeInteractions::add);
                 // metal complexes are stored as ligand interactions
                 interactions.getLigandInteractions().stream()
                             .filter(interaction -> activeInteraction.getInteractionClass().equals(interaction.getClass()))
-                            .forEach(interaction -> addInteractionItem(interaction, dataPoint));
+                            .forEach(activeInteractions::add);
             }
+            addInteractionItems(activeInteractions, dataPoint);
         } else {
-            logger.warn("failed to enrich data point {} with intra-interaction data", dataPoint);
+            throw new DataPointEnricherException("failed to enrich data point " + dataPoint + " with intra-interaction data");
         }
     }
 
@@ -7,14 +7,14 @@ import com.fasterxml.jackson.annotation.JsonTypeName;
 import de.bioforscher.singa.structure.model.families.NucleotideFamily;
 import de.bioforscher.singa.structure.model.families.StructuralFamily;
 import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
+import de.bioforscher.singa.structure.parser.plip.Interaction;
 import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
 import de.bioforscher.singa.structure.parser.plip.InteractionType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -29,8 +29,8 @@ import java.util.stream.Collectors;
 public class LigandInteractionEnricher extends AbstractInteractionEnricher {
 
     private static final Logger logger = LoggerFactory.getLogger(LigandInteractionEnricher.class);
-    private static final String PLIP_REST_PROVIDER_URL_PROTEIN = "https://biosciences.hs-mittweida.de/plip/interaction/calculate/protein";
-    private static final String PLIP_REST_PROVIDER_URL_NUCLEOTIDE = "https://biosciences.hs-mittweida.de/plip/interaction/calculate/nucleotide";
+    private static final String PLIP_ENDPOINT_PROTEIN = "/interaction/calculate/protein";
+    private static final String PLIP_ENDPOINT_NUCLEOTIDE = "/interaction/calculate/nucleotide";
 
     /**
      * Tries to determine the type of the given {@link DataPoint}.
@@ -62,36 +62,26 @@ public class LigandInteractionEnricher extends AbstractInteractionEnricher {
         String plipUrl;
         if (isNucleotideDataPoint(dataPoint)) {
             logger.debug("data point {} is of type nucleotide", dataPoint);
-            plipUrl = PLIP_REST_PROVIDER_URL_NUCLEOTIDE;
+            plipUrl = plipRestProviderUrl + PLIP_ENDPOINT_NUCLEOTIDE;
         } else {
-            plipUrl = PLIP_REST_PROVIDER_URL_PROTEIN;
+            plipUrl = plipRestProviderUrl + PLIP_ENDPOINT_PROTEIN;
         }
 
-        try {
-            // write PDB structure of data point to temporary file
-            Path structureFilePath = Files.createTempFile("mmm_", "_" + dataPoint.getDataPointIdentifier().toString() + ".pdb");
-            dataPoint.writeAsPdb(structureFilePath);
+        // submit PLIP POST query with the PDB representation of the data point
+        PlipPostRequest plipPostRequest = new PlipPostRequest(plipUrl, dataPoint.getDataPointIdentifier().getPdbIdentifier(), dataPoint.toPdbRepresentation());
 
-            // submit PLIP POST query
-            PlipPostRequest plipPostRequest = new PlipPostRequest(plipUrl, dataPoint.getDataPointIdentifier().getPdbIdentifier(), structureFilePath);
-
-            Optional<InteractionContainer> interactions = plipPostRequest.queryInteractions();
-            if (interactions.isPresent()) {
-                for (InteractionType activeInteraction : ACTIVE_INTERACTIONS) {
-                    logger.debug("enriching data point {} with interactions of type {}", dataPoint, activeInteraction);
-                    interactions.get().getInteractions().stream()
-                                .filter(interaction -> activeInteraction.getInteractionClass().equals(interaction.getClass()))
-                                .forEach(interaction -> addInteractionItem(interaction, dataPoint));
-                }
-            } else {
-                logger.warn("failed to enrich data point {} with ligand interaction data", dataPoint);
+        Optional<InteractionContainer> interactions = plipPostRequest.queryInteractions(plipInteractionCache);
+        if (interactions.isPresent()) {
+            List<Interaction> activeInteractions = new ArrayList<>();
+            for (InteractionType activeInteraction : ACTIVE_INTERACTIONS) {
+                logger.debug("enriching data point {} with interactions of type {}", dataPoint, activeInteraction);
+                interactions.get().getInteractions().stream()
+                            .filter(interaction -> activeInteraction.getInteractionClass().equals(interaction.getClass()))
+                            .forEach(activeInteractions::add);
             }
-
-            // delete temporary structure
-            Files.delete(structureFilePath);
-
-        } catch (IOException e) {
-            logger.warn("failed to annotate ligand interactions for data point {}", dataPoint, e);
+            addInteractionItems(activeInteractions, dataPoint);
+        } else {
+            throw new DataPointEnricherException("failed to enrich data point " + dataPoint + " with ligand interaction data");
         }
     }
 }
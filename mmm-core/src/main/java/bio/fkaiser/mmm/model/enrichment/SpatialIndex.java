@@ -0,0 +1,104 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over points in space that answers fixed-radius neighbor queries by only inspecting the cells around the query position. Neighbors are returned in the order in which
+ * they were added, which keeps results independent of the hashing of cells.
+ *
+ * @author fk
+ */
+final class SpatialIndex<ValueType> {
+
+    private static final int CELL_BITS = 21;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+    private static final int CELL_OFFSET = 1 << (CELL_BITS - 1);
+
+    private final double cellSize;
+    private final Map<Long, List<Entry<ValueType>>> cells;
+    private int size;
+
+    /**
+     * Creates a new {@link SpatialIndex}.
+     *
+     * @param cellSize The edge length of a cell, which should be close to the largest query radius.
+     */
+    SpatialIndex(double cellSize) {
+        this.cellSize = cellSize;
+        cells = new HashMap<>();
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((x + CELL_OFFSET) & CELL_MASK) << (2 * CELL_BITS) | ((y + CELL_OFFSET) & CELL_MASK) << CELL_BITS | ((z + CELL_OFFSET) & CELL_MASK);
+    }
+
+    static double squaredDistance(double[] position1, double[] position2) {
+        double dx = position1[0] - position2[0];
+        double dy = position1[1] - position2[1];
+        double dz = position1[2] - position2[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    void add(double[] position, ValueType value) {
+        cells.computeIfAbsent(cellKey(cell(position[0]), cell(position[1]), cell(position[2])), key -> new ArrayList<>())
+             .add(new Entry<>(size++, position, value));
+    }
+
+    /**
+     * Returns all values whose position is within the given radius of the query position.
+     *
+     * @param position The query position.
+     * @param radius   The radius.
+     * @return The values in the order in which they were added.
+     */
+    List<ValueType> findNeighbors(double[] position, double radius) {
+        int reach = (int) Math.ceil(radius / cellSize);
+        int x = cell(position[0]);
+        int y = cell(position[1]);
+        int z = cell(position[2]);
+        double squaredRadius = radius * radius;
+        List<Entry<ValueType>> neighbors = new ArrayList<>();
+        for (int i = x - reach; i <= x + reach; i++) {
+            for (int j = y - reach; j <= y + reach; j++) {
+                for (int k = z - reach; k <= z + reach; k++) {
+                    List<Entry<ValueType>> entries = cells.get(cellKey(i, j, k));
+                    if (entries == null) {
+                        continue;
+                    }
+                    for (Entry<ValueType> entry : entries) {
+                        if (squaredDistance(position, entry.position) <= squaredRadius) {
+                            neighbors.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+        neighbors.sort(Comparator.comparingInt(entry -> entry.index));
+        List<ValueType> values = new ArrayList<>(neighbors.size());
+        for (Entry<ValueType> neighbor : neighbors) {
+            values.add(neighbor.value);
+        }
+        return values;
+    }
+
+    private static class Entry<ValueType> {
+
+        private final int index;
+        private final double[] position;
+        private final ValueType value;
+
+        private Entry(int index, double[] position, ValueType value) {
+            this.index = index;
+            this.position = position;
+            this.value = value;
+        }
+    }
+}
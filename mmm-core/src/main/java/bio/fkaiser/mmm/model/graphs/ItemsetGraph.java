@@ -3,8 +3,11 @@ package bio.fkaiser.mmm.model.graphs;
 import de.bioforscher.singa.mathematics.graphs.model.AbstractMapGraph;
 import de.bioforscher.singa.mathematics.vectors.Vector2D;
 
+import java.util.*;
+
 /**
- * A {@link de.bioforscher.singa.mathematics.graphs.model.Graph} for {@link bio.fkaiser.mmm.model.Itemset}s.
+ * A {@link de.bioforscher.singa.mathematics.graphs.model.Graph} for {@link bio.fkaiser.mmm.model.Itemset}s. Connected components are maintained with a union-find structure while nodes
+ * and edges are added, thus they are available without traversing the graph.
  *
  * @author fk
  */
@@ -12,11 +15,50 @@ public class ItemsetGraph<LabelType extends Comparable<LabelType>> extends Abstr
 
     private int nextNodeIdentifier;
 
+    /**
+     * the nodes by their position in the union-find structure
+     */
+    private final List<ItemsetNode<LabelType>> componentNodes = new ArrayList<>();
+    private final Map<Integer, Integer> componentIndices = new HashMap<>();
+    private int[] componentParents = new int[16];
+    private int[] componentRanks = new int[16];
+    private boolean componentsValid = true;
+
     @Override
     public int addEdgeBetween(int identifier, ItemsetNode<LabelType> source, ItemsetNode<LabelType> target) {
         return addEdgeBetween(new ItemsetEdge<>(identifier), source, target);
     }
 
+    @Override
+    public int addEdgeBetween(ItemsetEdge<LabelType> edge, ItemsetNode<LabelType> source, ItemsetNode<LabelType> target) {
+        int edgeIdentifier = super.addEdgeBetween(edge, source, target);
+        if (componentsValid) {
+            union(findComponentIndex(source), findComponentIndex(target));
+        }
+        return edgeIdentifier;
+    }
+
+    @Override
+    public Integer addNode(ItemsetNode<LabelType> node) {
+        Integer identifier = super.addNode(node);
+        if (componentsValid) {
+            findComponentIndex(node);
+        }
+        return identifier;
+    }
+
+    @Override
+    public ItemsetNode<LabelType> removeNode(ItemsetNode<LabelType> node) {
+        componentsValid = false;
+        return super.removeNode(node);
+    }
+
+    @Override
+    public ItemsetNode<LabelType> removeNode(Integer identifier) {
+        componentsValid = false;
+        return super.removeNode(identifier);
+    }
+
     @Override
     public Integer nextNodeIdentifier() {
         return nextNodeIdentifier++;
@@ -26,4 +68,82 @@ public class ItemsetGraph<LabelType extends Comparable<LabelType>> extends Abstr
     public int addEdgeBetween(ItemsetNode<LabelType> source, ItemsetNode<LabelType> target) {
         return addEdgeBetween(nextEdgeIdentifier(), source, target);
     }
+
+    /**
+     * Returns the connected components of this graph. Components are ordered by their smallest node identifier and contain their nodes ordered by identifier.
+     *
+     * @return The connected components.
+     */
+    public List<List<ItemsetNode<LabelType>>> getComponents() {
+        if (!componentsValid) {
+            rebuildComponents();
+        }
+        Map<Integer, List<ItemsetNode<LabelType>>> components = new HashMap<>();
+        for (int i = 0; i < componentNodes.size(); i++) {
+            components.computeIfAbsent(find(i), root -> new ArrayList<>()).add(componentNodes.get(i));
+        }
+        List<List<ItemsetNode<LabelType>>> sortedComponents = new ArrayList<>(components.values());
+        Comparator<ItemsetNode<LabelType>> nodeComparator = Comparator.comparing(ItemsetNode::getIdentifier);
+        sortedComponents.forEach(component -> component.sort(nodeComparator));
+        sortedComponents.sort(Comparator.comparing(component -> component.get(0).getIdentifier()));
+        return sortedComponents;
+    }
+
+    /**
+     * Rebuilds the union-find structure from the current nodes and edges, which is required after nodes were removed.
+     */
+    private void rebuildComponents() {
+        componentNodes.clear();
+        componentIndices.clear();
+        componentsValid = true;
+        getNodes().forEach(this::findComponentIndex);
+        getEdges().forEach(edge -> union(findComponentIndex(edge.getSource()), findComponentIndex(edge.getTarget())));
+    }
+
+    private int findComponentIndex(ItemsetNode<LabelType> node) {
+        Integer componentIndex = componentIndices.get(node.getIdentifier());
+        if (componentIndex != null) {
+            return componentIndex;
+        }
+        int newComponentIndex = componentNodes.size();
+        if (newComponentIndex == componentParents.length) {
+            componentParents = Arrays.copyOf(componentParents, 2 * componentParents.length);
+            componentRanks = Arrays.copyOf(componentRanks, 2 * componentRanks.length);
+        }
+        componentParents[newComponentIndex] = newComponentIndex;
+        componentRanks[newComponentIndex] = 0;
+        componentNodes.add(node);
+        componentIndices.put(node.getIdentifier(), newComponentIndex);
+        return newComponentIndex;
+    }
+
+    private int find(int componentIndex) {
+        int root = componentIndex;
+        while (componentParents[root] != root) {
+            root = componentParents[root];
+        }
+        // compress path
+        while (componentParents[componentIndex] != root) {
+            int parent = componentParents[componentIndex];
+            componentParents[componentIndex] = root;
+            componentIndex = parent;
+        }
+        return root;
+    }
+
+    private void union(int firstComponentIndex, int secondComponentIndex) {
+        int firstRoot = find(firstComponentIndex);
+        int secondRoot = find(secondComponentIndex);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (componentRanks[firstRoot] < componentRanks[secondRoot]) {
+            componentParents[firstRoot] = secondRoot;
+        } else if (componentRanks[firstRoot] > componentRanks[secondRoot]) {
+            componentParents[secondRoot] = firstRoot;
+        } else {
+            componentParents[secondRoot] = firstRoot;
+            componentRanks[firstRoot]++;
+        }
+    }
 }
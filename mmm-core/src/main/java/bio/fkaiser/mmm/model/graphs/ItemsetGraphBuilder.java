@@ -0,0 +1,54 @@
+package bio.fkaiser.mmm.model.graphs;
+
+import bio.fkaiser.mmm.model.Itemset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an {@link ItemsetGraph} from connected pairs of {@link Itemset}s. The node of each {@link Itemset} is kept in an index, thus adding an edge takes constant time.
+ *
+ * @author fk
+ */
+public class ItemsetGraphBuilder<LabelType extends Comparable<LabelType>> {
+
+    private final ItemsetGraph<LabelType> itemsetGraph;
+    private final Map<Itemset<LabelType>, ItemsetNode<LabelType>> nodeIndex;
+
+    public ItemsetGraphBuilder() {
+        itemsetGraph = new ItemsetGraph<>();
+        nodeIndex = new HashMap<>();
+    }
+
+    /**
+     * Returns the node of the given {@link Itemset} and creates it if it does not exist.
+     *
+     * @param itemset The {@link Itemset}.
+     * @return The node of the {@link Itemset}.
+     */
+    public ItemsetNode<LabelType> addNode(Itemset<LabelType> itemset) {
+        ItemsetNode<LabelType> node = nodeIndex.get(itemset);
+        if (node == null) {
+            node = new ItemsetNode<>(itemsetGraph.nextNodeIdentifier(), itemset);
+            itemsetGraph.addNode(node);
+            nodeIndex.put(itemset, node);
+        }
+        return node;
+    }
+
+    /**
+     * Connects the nodes of the given {@link Itemset}s.
+     *
+     * @param first  The first {@link Itemset}.
+     * @param second The second {@link Itemset}.
+     * @return This builder.
+     */
+    public ItemsetGraphBuilder<LabelType> addEdge(Itemset<LabelType> first, Itemset<LabelType> second) {
+        itemsetGraph.addEdgeBetween(addNode(first), addNode(second));
+        return this;
+    }
+
+    public ItemsetGraph<LabelType> build() {
+        return itemsetGraph;
+    }
+}
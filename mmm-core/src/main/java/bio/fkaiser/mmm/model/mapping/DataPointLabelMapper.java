@@ -3,12 +3,15 @@ package bio.fkaiser.mmm.model.mapping;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.mapping.rules.InteractionShellMappingRule;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.parser.plip.PlipShellGenerator.InteractionShell;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,7 +36,7 @@ public class DataPointLabelMapper<LabelType extends Comparable<LabelType>> {
 
     /**
      * Maps the given {@link DataPoint} according to the {@link MappingRule}.
-     * <b>NOTE: This operation is not in place, a new {@link DataPoint} will be returned.</b>
+     * <b>NOTE: This operation is not in place, a new {@link DataPoint} will be returned.</b> Different {@link DataPoint}s can be mapped concurrently.
      *
      * @param dataPoint The {@link DataPoint} to be mapped.
      * @return A new {@link DataPoint} with mapped {@link Item}s.
@@ -42,21 +45,26 @@ public class DataPointLabelMapper<LabelType extends Comparable<LabelType>> {
         List<Item<LabelType>> mappedItems = dataPoint.getItems();
         for (MappingRule<LabelType> mappingRule : mappingRules) {
 
+            Function<Item<LabelType>, Optional<Item<LabelType>>> itemMapper = mappingRule::mapItem;
             if (mappingRule instanceof InteractionShellMappingRule) {
-                try {
-                    InteractionShellMappingRule interactionShellMappingRule = (InteractionShellMappingRule) mappingRule;
-                    interactionShellMappingRule.updateCurrentInteractionShells(dataPoint);
-                } catch (IOException e) {
-                    logger.warn("failed to calculate interaction shells for data point {}", dataPoint);
-                }
+                InteractionShellMappingRule interactionShellMappingRule = (InteractionShellMappingRule) mappingRule;
+                Map<LeafIdentifier, InteractionShell> interactionShells = interactionShellMappingRule.getInteractionShells(dataPoint);
+                itemMapper = item -> mapInteractionShellItem(interactionShellMappingRule, interactionShells, item);
             }
 
             mappedItems = mappedItems.stream()
-                                     .map(mappingRule::mapItem)
+                                     .map(itemMapper)
                                      .filter(Optional::isPresent)
                                      .map(Optional::get)
                                      .collect(Collectors.toList());
         }
         return new DataPoint<>(mappedItems, dataPoint.getDataPointIdentifier());
     }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Item<LabelType>> mapInteractionShellItem(InteractionShellMappingRule interactionShellMappingRule, Map<LeafIdentifier, InteractionShell> interactionShells,
+                                                             Item<LabelType> item) {
+        Optional<Item<String>> mappedItem = interactionShellMappingRule.mapItem((Item<String>) item, interactionShells);
+        return mappedItem.map(stringItem -> (Item<LabelType>) stringItem);
+    }
 }
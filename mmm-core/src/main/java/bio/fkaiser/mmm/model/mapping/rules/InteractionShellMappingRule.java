@@ -1,16 +1,22 @@
 package bio.fkaiser.mmm.model.mapping.rules;
 
+import bio.fkaiser.mmm.io.StructureCache;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.mapping.MappingRule;
+import bio.fkaiser.mmm.model.plip.AbstractPlipRequest;
 import bio.fkaiser.mmm.model.plip.PlipGetRequest;
+import bio.fkaiser.mmm.model.plip.PlipInteractionCache;
 import bio.fkaiser.mmm.model.plip.PlipPostRequest;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
 import de.bioforscher.singa.structure.model.interfaces.Chain;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
 import de.bioforscher.singa.structure.model.interfaces.Structure;
+import de.bioforscher.singa.structure.parser.pdb.structures.SourceLocation;
 import de.bioforscher.singa.structure.parser.pdb.structures.StructureParser;
 import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
 import de.bioforscher.singa.structure.parser.plip.PlipShellGenerator;
@@ -18,12 +24,15 @@ import de.bioforscher.singa.structure.parser.plip.PlipShellGenerator.Interaction
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * @author fk
@@ -33,13 +42,19 @@ import java.util.Optional;
 public class InteractionShellMappingRule implements MappingRule<String> {
 
     private static final Logger logger = LoggerFactory.getLogger(InteractionShellMappingRule.class);
-    private static final String PLIP_REST_PROVIDER_URL_INTRA_CHAIN = "https://biosciences.hs-mittweida.de/plip/interaction/plain";
-    private static final String PLIP_REST_PROVIDER_URL_LIGAND = "https://biosciences.hs-mittweida.de/plip/interaction/calculate/protein";
+    private static final String PLIP_ENDPOINT_INTRA_CHAIN = "/interaction/plain";
+    private static final String PLIP_ENDPOINT_LIGAND = "/interaction/calculate/protein";
 
     @JsonProperty("ligand-label")
     private String ligandLabel;
-    @JsonProperty("current-interaction-shells")
-    private Map<InteractionShell, List<LeafSubstructure<?>>> currentInteractionShells;
+    @JsonIgnore
+    private final Map<String, Map<LeafIdentifier, InteractionShell>> interactionShellsByDataPoint = new ConcurrentHashMap<>();
+    @JsonIgnore
+    private StructureCache structureCache;
+    @JsonIgnore
+    private String plipRestProviderUrl = AbstractPlipRequest.DEFAULT_PLIP_REST_PROVIDER_URL;
+    @JsonIgnore
+    private PlipInteractionCache plipInteractionCache;
 
     public InteractionShellMappingRule(String ligandLabel) {
         this.ligandLabel = ligandLabel;
@@ -48,43 +63,145 @@ public class InteractionShellMappingRule implements MappingRule<String> {
     public InteractionShellMappingRule() {
     }
 
-    public Map<InteractionShell, List<LeafSubstructure<?>>> getCurrentInteractionShells() {
-        return currentInteractionShells;
+    /**
+     * Sets the {@link StructureCache} from which the parent structures of mapped {@link DataPoint}s are restored instead of fetching them again.
+     *
+     * @param structureCache The {@link StructureCache} or null if structures should always be fetched.
+     */
+    public void setStructureCache(StructureCache structureCache) {
+        this.structureCache = structureCache;
     }
 
-    public void updateCurrentInteractionShells(DataPoint<?> currentDataPoint) throws IOException {
-        String pdbIdentifier = currentDataPoint.getDataPointIdentifier().getPdbIdentifier();
-        String chainIdentifier = currentDataPoint.getDataPointIdentifier().getChainIdentifier();
+    /**
+     * Sets the location of the PLIP REST service, e.g. a local instance for offline runs.
+     *
+     * @param plipRestProviderUrl The base URL of the PLIP REST service.
+     */
+    public void setPlipRestProviderUrl(String plipRestProviderUrl) {
+        this.plipRestProviderUrl = plipRestProviderUrl;
+    }
+
+    /**
+     * Sets the {@link PlipInteractionCache} that is consulted before the PLIP REST service is queried.
+     *
+     * @param plipInteractionCache The {@link PlipInteractionCache} or null if the service should always be queried.
+     */
+    public void setPlipInteractionCache(PlipInteractionCache plipInteractionCache) {
+        this.plipInteractionCache = plipInteractionCache;
+    }
+
+    /**
+     * Computes the interaction shells of all given {@link DataPoint}s in parallel and keeps them for subsequent mapping of their {@link Item}s. Interaction shells that are already known
+     * are not computed again.
+     *
+     * @param dataPoints         The {@link DataPoint}s for which interaction shells should be computed.
+     * @param levelOfParallelism The number of concurrent computations or -1 to use all available processors.
+     */
+    public void precomputeInteractionShells(List<? extends DataPoint<?>> dataPoints, int levelOfParallelism) {
+        ExecutorService executorService = (levelOfParallelism == -1) ? Executors.newWorkStealingPool() : Executors.newWorkStealingPool(levelOfParallelism);
+        List<Callable<Map<LeafIdentifier, InteractionShell>>> tasks = dataPoints.stream()
+                                                                               .map(InteractionShellTask::new)
+                                                                               .collect(Collectors.toList());
+        try {
+            for (Future<Map<LeafIdentifier, InteractionShell>> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during computation of interaction shells", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("failed to compute interaction shells", e.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+        logger.info("computed interaction shells for {} data points", dataPoints.size());
+    }
+
+    /**
+     * Returns the interaction shells of the given {@link DataPoint}, which are computed only if they are not known yet. This method is safe to use concurrently.
+     *
+     * @param dataPoint The {@link DataPoint} for which interaction shells should be returned.
+     * @return An immutable mapping of {@link LeafIdentifier}s to their {@link InteractionShell}, which is empty if no interaction shells could be computed.
+     */
+    public Map<LeafIdentifier, InteractionShell> getInteractionShells(DataPoint<?> dataPoint) {
+        String key = toKey(dataPoint);
+        Map<LeafIdentifier, InteractionShell> interactionShells = interactionShellsByDataPoint.get(key);
+        if (interactionShells == null) {
+            // computed outside of the map to not block other data points while querying PLIP, a concurrent duplicate computation yields the same result
+            Map<LeafIdentifier, InteractionShell> computedInteractionShells = computeInteractionShells(dataPoint);
+            interactionShells = interactionShellsByDataPoint.putIfAbsent(key, computedInteractionShells);
+            if (interactionShells == null) {
+                interactionShells = computedInteractionShells;
+            }
+        }
+        return interactionShells;
+    }
+
+    private static String toKey(DataPoint<?> dataPoint) {
+        return dataPoint.getDataPointIdentifier().getPdbIdentifier().toLowerCase() + "_" + dataPoint.getDataPointIdentifier().getChainIdentifier();
+    }
+
+    /**
+     * Computes the interaction shells of the given {@link DataPoint} by querying PLIP for its parent structure.
+     *
+     * @param dataPoint The {@link DataPoint} for which interaction shells should be computed.
+     * @return An immutable mapping of {@link LeafIdentifier}s to their {@link InteractionShell}, which is empty if no interaction shells could be computed.
+     */
+    protected Map<LeafIdentifier, InteractionShell> computeInteractionShells(DataPoint<?> dataPoint) {
+        String pdbIdentifier = dataPoint.getDataPointIdentifier().getPdbIdentifier();
+        String chainIdentifier = dataPoint.getDataPointIdentifier().getChainIdentifier();
 
-        logger.info("obtaining parent structure of data point {}", currentDataPoint);
-        Structure structure = StructureParser.pdb()
-                                             .pdbIdentifier(pdbIdentifier)
-                                             .parse();
+        logger.info("obtaining parent structure of data point {}", dataPoint);
+        Supplier<Structure> structureParser = () -> StructureParser.pdb()
+                                                                   .pdbIdentifier(pdbIdentifier)
+                                                                   .parse();
+        Structure structure;
+        try {
+            structure = structureCache != null ? structureCache.getStructure(SourceLocation.ONLINE_PDB, pdbIdentifier, null, null, structureParser)
+                                               : structureParser.get();
+        } catch (UncheckedIOException e) {
+            logger.warn("failed to calculate interaction shells for data point {}", dataPoint, e);
+            return Collections.emptyMap();
+        }
         Chain chain = structure.getFirstChain();
         Optional<LeafSubstructure<?>> optionalLigand = selectLigand(chain);
 
-        if (optionalLigand.isPresent()) {
+        if (!optionalLigand.isPresent()) {
+            logger.warn("failed to calculate interaction shells for data point {}, no matching ligand with label {} found", dataPoint, ligandLabel);
+            return Collections.emptyMap();
+        }
+
+        Optional<InteractionContainer> intraChainInteractions = new PlipGetRequest(plipRestProviderUrl + PLIP_ENDPOINT_INTRA_CHAIN, pdbIdentifier, chainIdentifier)
+                .queryInteractions(plipInteractionCache);
+        Optional<InteractionContainer> ligandInteractions = new PlipPostRequest(plipRestProviderUrl + PLIP_ENDPOINT_LIGAND, pdbIdentifier, dataPoint.toPdbRepresentation())
+                .queryInteractions(plipInteractionCache);
 
-            Optional<InteractionContainer> intraChainInteractions = new PlipGetRequest(PLIP_REST_PROVIDER_URL_INTRA_CHAIN, pdbIdentifier, chainIdentifier).queryInteractions();
+        if (!intraChainInteractions.isPresent() || !ligandInteractions.isPresent()) {
+            logger.warn("failed to calculate interaction shells for data point {}", dataPoint);
+            return Collections.emptyMap();
+        }
 
-            // write PDB structure of data point to temporary file
-            Path structureFilePath = Files.createTempFile("mmm_", "_" + currentDataPoint.getDataPointIdentifier().toString() + ".pdb");
-            currentDataPoint.writeAsPdb(structureFilePath);
-            Optional<InteractionContainer> ligandInteractions = new PlipPostRequest(PLIP_REST_PROVIDER_URL_LIGAND, pdbIdentifier, structureFilePath).queryInteractions();
+        return assignInnermostShells(PlipShellGenerator.getInteractionShellsForLigand(chain, optionalLigand.get(), intraChainInteractions.get(), ligandInteractions.get())
+                                                       .getShells());
+    }
 
-            if (intraChainInteractions.isPresent() && ligandInteractions.isPresent()) {
-                currentInteractionShells = PlipShellGenerator.getInteractionShellsForLigand(chain, optionalLigand.get(), intraChainInteractions.get(), ligandInteractions.get()).getShells();
-            } else {
-                logger.warn("failed to calculate interaction shells for data point {}", currentDataPoint);
-                currentInteractionShells = null;
+    /**
+     * Assigns each {@link LeafSubstructure} to the innermost {@link InteractionShell} it occurs in.
+     *
+     * @param shells The members of each {@link InteractionShell}.
+     * @return An immutable mapping of {@link LeafIdentifier}s to their {@link InteractionShell}.
+     */
+    static Map<LeafIdentifier, InteractionShell> assignInnermostShells(Map<InteractionShell, List<LeafSubstructure<?>>> shells) {
+        Map<LeafIdentifier, InteractionShell> interactionShells = new HashMap<>();
+        for (InteractionShell interactionShell : InteractionShell.values()) {
+            List<LeafSubstructure<?>> shell = shells.get(interactionShell);
+            if (shell != null) {
+                for (LeafSubstructure<?> leafSubstructure : shell) {
+                    interactionShells.putIfAbsent(leafSubstructure.getIdentifier(), interactionShell);
+                }
             }
-
-            // delete temporary structure
-            Files.delete(structureFilePath);
-        } else {
-            logger.warn("failed to calculate interaction shells for data point {}, no matching ligand with label {} found", currentDataPoint, ligandLabel);
-            currentInteractionShells = null;
         }
+        return Collections.unmodifiableMap(interactionShells);
     }
 
     private Optional<LeafSubstructure<?>> selectLigand(Chain chain) {
@@ -93,18 +210,33 @@ public class InteractionShellMappingRule implements MappingRule<String> {
                     .findFirst();
     }
 
+    /**
+     * Not supported, because the {@link DataPoint} of a single {@link Item} cannot be determined reliably, e.g. for file-based inputs whose identifiers differ from the
+     * {@link LeafIdentifier}s of their {@link Item}s. Use {@link #mapItem(Item, Map)} with the interaction shells obtained by {@link #getInteractionShells(DataPoint)}, as done by
+     * the {@link bio.fkaiser.mmm.model.mapping.DataPointLabelMapper}.
+     *
+     * @param item The {@link Item} to be mapped.
+     * @return Never returns.
+     */
     @Override
     public Optional<Item<String>> mapItem(Item<String> item) {
-        LeafSubstructure<?> leafSubstructure = item.getLeafSubstructure()
-                                                   .orElseThrow(() -> new UnsupportedOperationException("interaction shells can only be computed for structure-derived items"));
-        if (currentInteractionShells != null) {
-            for (Map.Entry<InteractionShell, List<LeafSubstructure<?>>> interactionShellEntry : currentInteractionShells.entrySet()) {
-                if (interactionShellEntry.getValue().contains(leafSubstructure)) {
-                    InteractionShell interactionShell = interactionShellEntry.getKey();
-                    logger.info("item {} is shell {}", item, interactionShell);
-                    item.setLabel(item.getLabel() + ".s" + interactionShell.ordinal());
-                }
-            }
+        throw new UnsupportedOperationException("interaction shells can only be mapped for the items of a data point, use mapItem(item, interactionShells)");
+    }
+
+    /**
+     * Maps the given {@link Item} according to the given interaction shells.
+     *
+     * @param item              The {@link Item} to be mapped.
+     * @param interactionShells The interaction shells of the {@link DataPoint} the {@link Item} belongs to.
+     * @return The mapped {@link Item}.
+     */
+    public Optional<Item<String>> mapItem(Item<String> item, Map<LeafIdentifier, InteractionShell> interactionShells) {
+        LeafIdentifier leafIdentifier = item.getLeafIdentifier()
+                                            .orElseThrow(() -> new UnsupportedOperationException("interaction shells can only be computed for structure-derived items"));
+        InteractionShell interactionShell = interactionShells.get(leafIdentifier);
+        if (interactionShell != null) {
+            logger.debug("item {} is shell {}", item, interactionShell);
+            item.setLabel(item.getLabel() + ".s" + interactionShell.ordinal());
         }
         return Optional.of(item);
     }
@@ -113,4 +245,18 @@ public class InteractionShellMappingRule implements MappingRule<String> {
     public Item<String> apply(Item<String> item) {
         return mapItem(item).orElse(null);
     }
+
+    private class InteractionShellTask implements Callable<Map<LeafIdentifier, InteractionShell>> {
+
+        private final DataPoint<?> dataPoint;
+
+        private InteractionShellTask(DataPoint<?> dataPoint) {
+            this.dataPoint = dataPoint;
+        }
+
+        @Override
+        public Map<LeafIdentifier, InteractionShell> call() {
+            return getInteractionShells(dataPoint);
+        }
+    }
 }
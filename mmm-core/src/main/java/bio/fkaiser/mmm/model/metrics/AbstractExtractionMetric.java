@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract {@link ExtractionDependentMetric} that provides common functionality for {@link ExtractionMetric}s.
@@ -22,12 +23,23 @@ public abstract class AbstractExtractionMetric<LabelType extends Comparable<Labe
     private static final Logger logger = LoggerFactory.getLogger(AbstractExtractionMetric.class);
 
     protected final List<DataPoint<LabelType>> dataPoints;
+    private final List<ObservationMetric<LabelType>> observationMetrics;
+    private final Map<Itemset<LabelType>, double[]> observationScoreSums;
     Map<Itemset<LabelType>, List<Itemset<LabelType>>> extractedItemsets;
 
     AbstractExtractionMetric(List<DataPoint<LabelType>> dataPoints, RepresentationSchemeType representationSchemeType) {
         super(representationSchemeType);
         this.dataPoints = dataPoints;
         extractedItemsets = new HashMap<>();
+        observationMetrics = new ArrayList<>();
+        observationScoreSums = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void addObservationMetric(ObservationMetric<LabelType> observationMetric) {
+        logger.info("fusing observation metric {} into extraction of {}", observationMetric, this);
+        observationMetrics.add(observationMetric);
+        observationMetric.setFused(true);
     }
 
     @Override
@@ -41,7 +53,40 @@ public abstract class AbstractExtractionMetric<LabelType extends Comparable<Labe
 
     protected abstract void filterExtractedItemsets();
 
-    synchronized void addToExtractedItemsets(Itemset<LabelType> itemset, Itemset<LabelType> extractedItemset) {
+    /**
+     * Assigns the mean observation scores of all fused {@link ObservationMetric}s to the extracted {@link Itemset}s. This has to be called once all observations were extracted.
+     */
+    void assignObservationScores() {
+        if (observationMetrics.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Itemset<LabelType>, List<Itemset<LabelType>>> entry : extractedItemsets.entrySet()) {
+            double[] scoreSums = observationScoreSums.get(entry.getKey());
+            for (int i = 0; i < observationMetrics.size(); i++) {
+                observationMetrics.get(i).assignScore(entry.getKey(), scoreSums[i] / entry.getValue().size());
+            }
+        }
+        observationScoreSums.clear();
+    }
+
+    void addToExtractedItemsets(Itemset<LabelType> itemset, Itemset<LabelType> extractedItemset) {
+        // score the observation with fused metrics in the extracting worker
+        if (!observationMetrics.isEmpty()) {
+            double[] scores = new double[observationMetrics.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = observationMetrics.get(i).calculateObservationScore(itemset, extractedItemset);
+            }
+            observationScoreSums.merge(itemset, scores, (scoreSums, observationScores) -> {
+                for (int i = 0; i < scoreSums.length; i++) {
+                    scoreSums[i] += observationScores[i];
+                }
+                return scoreSums;
+            });
+        }
+        storeExtractedItemset(itemset, extractedItemset);
+    }
+
+    private synchronized void storeExtractedItemset(Itemset<LabelType> itemset, Itemset<LabelType> extractedItemset) {
         if (extractedItemsets.containsKey(itemset)) {
             extractedItemsets.get(itemset).add(extractedItemset);
         } else {
@@ -6,13 +6,12 @@ import bio.fkaiser.mmm.model.Distribution;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.metrics.AdherenceMetricConfiguration;
 import bio.fkaiser.mmm.model.metrics.cohesion.VertexCandidateGenerator;
-import de.bioforscher.singa.mathematics.vectors.RegularVector;
-import de.bioforscher.singa.mathematics.vectors.Vectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,6 +21,11 @@ import java.util.stream.Collectors;
  * An {@link ExtractionMetric} that extracts {@link Itemset}s based on the adherence of their items. For further reference see
  * <p/>
  * Kaiser, F. & Labudde, D. IEEE/ACM Trans. Comput. Biol. Bioinform. (under review)
+ * <p>
+ * The adherence and the distribution of extents are calculated from all observed extents. Only a streaming summary (moments and quantiles) of the extents is kept per {@link Itemset}, thus
+ * the observed values are not available. The number of observations that are retained as extracted {@link Itemset}s (and thus keep their
+ * {@link de.bioforscher.singa.structure.model.oak.StructuralMotif}s) can be capped per {@link DataPoint} and per {@link Itemset}, in which case the observations closest to the desired
+ * extent are retained.
  *
  * @author fk
  */
@@ -37,10 +41,16 @@ public class AdherenceMetric<LabelType extends Comparable<LabelType>> extends Ab
     private final int levelOfParallelism;
     private final ExecutorService executorService;
     private final Map<Itemset<LabelType>, Distribution> distributions;
+    private final int retainedObservationsPerDataPoint;
+    private final int retainedObservationsPerItemset;
+    private final double desiredExtent;
 
     public AdherenceMetric(List<DataPoint<LabelType>> dataPoints, AdherenceMetricConfiguration<LabelType> adherenceMetricConfiguration) {
         super(dataPoints, adherenceMetricConfiguration.getRepresentationSchemeType());
-        distributions = Collections.synchronizedMap(new HashMap<>());
+        distributions = new ConcurrentHashMap<>();
+        desiredExtent = adherenceMetricConfiguration.getDesiredExtent();
+        retainedObservationsPerDataPoint = adherenceMetricConfiguration.getRetainedObservationsPerDataPoint();
+        retainedObservationsPerItemset = adherenceMetricConfiguration.getRetainedObservationsPerItemset();
         desiredSquaredExtent = adherenceMetricConfiguration.getDesiredExtent() * adherenceMetricConfiguration.getDesiredExtent();
         squaredExtentDelta = adherenceMetricConfiguration.getDesiredExtentDelta() * adherenceMetricConfiguration.getDesiredExtentDelta();
         maximalAdherence = adherenceMetricConfiguration.getMaximalAdherence();
@@ -95,21 +105,20 @@ public class AdherenceMetric<LabelType extends Comparable<LabelType>> extends Ab
             logger.error("parallel adherence execution of {} failed", this, e);
         }
 
+        // assign scores of fused observation metrics
+        assignObservationScores();
+
         for (Itemset<LabelType> itemset : itemsets) {
-            if (distributions.containsKey(itemset)) {
-                Distribution distribution = distributions.get(itemset);
-                if (distribution.getObservations().size() < AdherenceMetricConfiguration.MINIMAL_OBSERVATIONS) {
+            Distribution distribution = distributions.get(itemset);
+            if (distribution != null) {
+                if (distribution.size() < AdherenceMetricConfiguration.MINIMAL_OBSERVATIONS) {
                     logger.debug("not enough observations to determine adherence for itemset {}, will be removed", itemset);
                     itemset.setAdherence(Double.MAX_VALUE);
                     continue;
                 }
 
                 // calculate adherence of itemset (standard deviation of extent values)
-                double[] elements = distribution.getObservations().stream()
-                                                .mapToDouble(Double::doubleValue)
-                                                .toArray();
-                RegularVector vector = new RegularVector(elements);
-                itemset.setAdherence(Vectors.getStandardDeviation(vector));
+                itemset.setAdherence(distribution.getStandardDeviation());
 
             } else {
                 // ignore itemsets that could not be found in the data
@@ -134,7 +143,109 @@ public class AdherenceMetric<LabelType extends Comparable<LabelType>> extends Ab
         return distributions;
     }
 
+    /**
+     * Selects the observations of an {@link Itemset} that are retained as extracted {@link Itemset}s. If capped, the observations closest to the desired extent are retained per
+     * {@link DataPoint} and then per {@link Itemset}, ties are broken in favor of earlier observations. Retained observations are returned in the order of their observation.
+     *
+     * @param <CandidateType> The type of the observed candidates.
+     */
+    static class ObservationRetainer<CandidateType> {
+
+        private final double desiredExtent;
+        private final int retainedObservationsPerDataPoint;
+        private final int retainedObservationsPerItemset;
+        private final Comparator<RetainedObservation<CandidateType>> retentionComparator;
+        private final PriorityQueue<RetainedObservation<CandidateType>> retainedObservations;
+        private final List<RetainedObservation<CandidateType>> uncappedObservations;
+        private List<RetainedObservation<CandidateType>> dataPointObservations;
+        private int sequenceNumber;
+
+        /**
+         * Creates a new {@link ObservationRetainer}.
+         *
+         * @param desiredExtent                    The desired extent.
+         * @param retainedObservationsPerDataPoint The number of observations retained per {@link DataPoint}, 0 means all.
+         * @param retainedObservationsPerItemset   The number of observations retained per {@link Itemset}, 0 means all.
+         */
+        ObservationRetainer(double desiredExtent, int retainedObservationsPerDataPoint, int retainedObservationsPerItemset) {
+            this.desiredExtent = desiredExtent;
+            this.retainedObservationsPerDataPoint = retainedObservationsPerDataPoint;
+            this.retainedObservationsPerItemset = retainedObservationsPerItemset;
+            retentionComparator = Comparator.<RetainedObservation<CandidateType>>comparingDouble(this::calculateExtentDeviation)
+                    .thenComparingInt(retainedObservation -> retainedObservation.sequenceNumber);
+            retainedObservations = new PriorityQueue<>(retentionComparator.reversed());
+            uncappedObservations = new ArrayList<>();
+            dataPointObservations = new ArrayList<>();
+        }
+
+        private double calculateExtentDeviation(RetainedObservation<CandidateType> retainedObservation) {
+            return Math.abs(retainedObservation.extent - desiredExtent);
+        }
+
+        /**
+         * Adds an observation of the current {@link DataPoint}.
+         *
+         * @param candidate The observed candidate.
+         * @param extent    The extent of the candidate.
+         */
+        void addObservation(CandidateType candidate, double extent) {
+            dataPointObservations.add(new RetainedObservation<>(candidate, extent, sequenceNumber++));
+        }
+
+        /**
+         * Completes the observations of the current {@link DataPoint} and applies the cap per {@link DataPoint}.
+         */
+        void completeDataPoint() {
+            if (retainedObservationsPerDataPoint > 0 && dataPointObservations.size() > retainedObservationsPerDataPoint) {
+                dataPointObservations.sort(retentionComparator);
+                dataPointObservations = dataPointObservations.subList(0, retainedObservationsPerDataPoint);
+            }
+            for (RetainedObservation<CandidateType> retainedObservation : dataPointObservations) {
+                if (retainedObservationsPerItemset > 0) {
+                    retainedObservations.add(retainedObservation);
+                    if (retainedObservations.size() > retainedObservationsPerItemset) {
+                        retainedObservations.poll();
+                    }
+                } else {
+                    uncappedObservations.add(retainedObservation);
+                }
+            }
+            dataPointObservations = new ArrayList<>();
+        }
+
+        /**
+         * Returns the retained candidates in the order of their observation.
+         *
+         * @return The retained candidates.
+         */
+        List<CandidateType> getRetainedCandidates() {
+            List<RetainedObservation<CandidateType>> orderedObservations = new ArrayList<>(uncappedObservations);
+            orderedObservations.addAll(retainedObservations);
+            orderedObservations.sort(Comparator.comparingInt(retainedObservation -> retainedObservation.sequenceNumber));
+            return orderedObservations.stream()
+                                      .map(retainedObservation -> retainedObservation.candidate)
+                                      .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * An observation of an {@link Itemset} that is a candidate to be retained.
+     */
+    private static class RetainedObservation<CandidateType> {
+
+        private final CandidateType candidate;
+        private final double extent;
+        private final int sequenceNumber;
+
+        private RetainedObservation(CandidateType candidate, double extent, int sequenceNumber) {
+            this.candidate = candidate;
+            this.extent = extent;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+
     private class AdherenceCalculator implements Callable<Void> {
+
         private List<Itemset<LabelType>> itemsets;
 
         public AdherenceCalculator(List<Itemset<LabelType>> itemsets) {
@@ -146,6 +257,11 @@ public class AdherenceMetric<LabelType extends Comparable<LabelType>> extends Ab
 
             for (Itemset<LabelType> itemset : itemsets) {
 
+                // streaming summary of all observed extents, extracted observations are only retained up to the caps
+                Distribution extents = new Distribution(AdherenceMetric.class, false);
+                ObservationRetainer<Itemset<LabelType>> observationRetainer = new ObservationRetainer<>(desiredExtent, retainedObservationsPerDataPoint,
+                                                                                                        retainedObservationsPerItemset);
+
                 for (DataPoint<LabelType> dataPoint : dataPoints) {
 
                     // generate candidates
@@ -161,18 +277,24 @@ public class AdherenceMetric<LabelType extends Comparable<LabelType>> extends Ab
 
                             // if candidate extent fulfills constraints
                             if ((candidateSquaredExtent > (desiredSquaredExtent - squaredExtentDelta)) && candidateSquaredExtent < ((desiredSquaredExtent + squaredExtentDelta))) {
-                                addToExtractedItemsets(itemset, candidate);
-                                // store extent for probability distribution
-                                addObservationForItemset(itemset, Math.sqrt(candidateSquaredExtent));
+                                double candidateExtent = Math.sqrt(candidateSquaredExtent);
+                                extents.addObservationValue(candidateExtent);
+                                observationRetainer.addObservation(candidate, candidateExtent);
                             }
                         }
+                        observationRetainer.completeDataPoint();
                     } else {
                         logger.debug("no candidates found for itemset {} in data point {}", itemset, dataPoint);
                     }
                 }
+
+                observationRetainer.getRetainedCandidates().forEach(candidate -> addToExtractedItemsets(itemset, candidate));
+                if (extents.size() > 0) {
+                    distributions.put(itemset, extents);
+                }
             }
 
             return null;
         }
     }
-}
\ No newline at end of file
+}
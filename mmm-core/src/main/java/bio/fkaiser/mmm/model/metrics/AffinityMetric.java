@@ -3,6 +3,7 @@ package bio.fkaiser.mmm.model.metrics;
 import bio.fkaiser.mmm.model.Distribution;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.metrics.AffinityMetricConfiguration;
+import bio.fkaiser.mmm.model.metrics.affinity.SparseAffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
 import de.bioforscher.singa.structure.model.interfaces.Atom;
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -33,8 +35,10 @@ public class AffinityMetric<LabelType extends Comparable<LabelType>> extends Abs
     private final RepresentationSchemeType representationSchemeType;
     private final Predicate<Atom> atomFilter;
     private final boolean alignWithinClusters;
+    private final int nearestNeighbors;
     private final Map<Itemset<LabelType>, Distribution> distributions;
     private final Map<Itemset<LabelType>, AffinityAlignment> affinityItemsets;
+    private final Map<Itemset<LabelType>, SparseAffinityAlignment> sparseAffinityItemsets;
 
     public AffinityMetric(AffinityMetricConfiguration<LabelType> affinityMetricConfiguration) {
         maximalAffinity = affinityMetricConfiguration.getMaximalAffinity();
@@ -43,9 +47,14 @@ public class AffinityMetric<LabelType extends Comparable<LabelType>> extends Abs
         representationSchemeType = affinityMetricConfiguration.getRepresentationSchemeType();
         atomFilter = affinityMetricConfiguration.getAtomFilterType().getFilter();
         alignWithinClusters = affinityMetricConfiguration.isAlignWithinClusters();
+        nearestNeighbors = affinityMetricConfiguration.getNearestNeighbors();
+        if (nearestNeighbors > 0 && alignWithinClusters) {
+            throw new IllegalArgumentException("alignment within clusters is not supported for sparse affinity propagation");
+        }
 
         distributions = new HashMap<>();
         affinityItemsets = new HashMap<>();
+        sparseAffinityItemsets = new ConcurrentHashMap<>();
     }
 
     /**
@@ -97,10 +106,24 @@ public class AffinityMetric<LabelType extends Comparable<LabelType>> extends Abs
         return affinityAlignment.getSilhouetteCoefficient();
     }
 
+    /**
+     * Calculates the affinity score for the given {@link SparseAffinityAlignment}.
+     *
+     * @param sparseAffinityAlignment The {@link SparseAffinityAlignment} for which the score should be calculated.
+     * @return The affinity score.
+     */
+    public static double calculateAffinity(SparseAffinityAlignment sparseAffinityAlignment) {
+        return sparseAffinityAlignment.getSilhouetteCoefficient();
+    }
+
     public Map<Itemset<LabelType>, AffinityAlignment> getAffinityItemsets() {
         return affinityItemsets;
     }
 
+    public Map<Itemset<LabelType>, SparseAffinityAlignment> getSparseAffinityItemsets() {
+        return sparseAffinityItemsets;
+    }
+
     @Override
     public Map<Itemset<LabelType>, Distribution> getDistributions() {
         return distributions;
@@ -177,6 +200,15 @@ public class AffinityMetric<LabelType extends Comparable<LabelType>> extends Abs
                                                                           .filter(Optional::isPresent)
                                                                           .map(Optional::get)
                                                                           .collect(Collectors.toList());
+                // perform sparse affinity propagation for large observation sets
+                if (nearestNeighbors > 0 && structuralMotifs.size() > nearestNeighbors + 1) {
+                    SparseAffinityAlignment sparseAffinityAlignment = new SparseAffinityAlignment(structuralMotifs, nearestNeighbors, representationSchemeType, atomFilter,
+                                                                                                  levelOfParallelism);
+                    sparseAffinityItemsets.put(itemset, sparseAffinityAlignment);
+                    itemset.setAffinity(calculateAffinity(sparseAffinityAlignment));
+                    continue;
+                }
+
                 // perform consensus alignment
                 AffinityAlignment affinityAlignment;
                 if (representationSchemeType != null) {
@@ -90,6 +90,9 @@ public class CohesionMetric<LabelType extends Comparable<LabelType>> extends Abs
             logger.error("parallel cohesion execution of {} failed", this, e);
         }
 
+        // assign scores of fused observation metrics
+        assignObservationScores();
+
         // normalize cohesion
         itemsets.forEach(itemset -> {
             if (itemsetObservationsCounts.containsKey(itemset)) {
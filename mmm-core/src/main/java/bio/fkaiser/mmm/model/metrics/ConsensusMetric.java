@@ -1,11 +1,16 @@
 package bio.fkaiser.mmm.model.metrics;
 
 import bio.fkaiser.mmm.model.Distribution;
+import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
+import de.bioforscher.singa.mathematics.graphs.trees.BinaryTree;
+import de.bioforscher.singa.mathematics.graphs.trees.BinaryTreeNode;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusAlignment;
 import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusBuilder;
+import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusContainer;
 import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
 import de.bioforscher.singa.structure.model.interfaces.Atom;
 import de.bioforscher.singa.structure.model.oak.StructuralMotif;
 import org.slf4j.Logger;
@@ -13,6 +18,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -32,14 +38,16 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
 
     private static final Logger logger = LoggerFactory.getLogger(ConsensusMetric.class);
 
-    private final Map<Itemset<LabelType>, ConsensusAlignment> clusteredItemsets;
+    private final Map<Itemset<LabelType>, List<ConsensusAlignment>> clusteredItemsets;
     private final double maximalConsensus;
     private final double clusterCutoff;
     private final Predicate<Atom> atomFilter;
     private final int levelOfParallelism;
     private final ExecutorService executorService;
     private final boolean alignWithinClusters;
+    private final boolean incremental;
     private final RepresentationSchemeType representationSchemeType;
+    private final Map<Itemset<LabelType>, SeedClusters> seedClusterAssignments;
     private Map<Itemset<LabelType>, Distribution> distributions;
 
     public ConsensusMetric(ConsensusMetricConfiguration<LabelType> consensusMetricConfiguration) {
@@ -50,9 +58,11 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
         atomFilter = consensusMetricConfiguration.getAtomFilter() == null ? consensusMetricConfiguration.getAtomFilterType().getFilter() : consensusMetricConfiguration.getAtomFilter();
         representationSchemeType = consensusMetricConfiguration.getRepresentationSchemeType();
         alignWithinClusters = consensusMetricConfiguration.isAlignWithinClusters();
+        incremental = consensusMetricConfiguration.isIncremental();
 
         distributions = new HashMap<>();
         clusteredItemsets = new HashMap<>();
+        seedClusterAssignments = new ConcurrentHashMap<>();
     }
 
     /**
@@ -65,6 +75,18 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
         return consensusAlignment.getNormalizedConsensusScore();
     }
 
+    /**
+     * Determines the origin of the given {@link StructuralMotif} based on the identifier of its first leaf. This is stable against copies of the {@link StructuralMotif} that are created during
+     * consensus alignment.
+     *
+     * @param structuralMotif The {@link StructuralMotif} for which the origin should be determined.
+     * @return The origin in the format [PDB-ID]_[chain-ID].
+     */
+    private static String determineOrigin(StructuralMotif structuralMotif) {
+        LeafIdentifier leafIdentifier = structuralMotif.getAllLeafSubstructures().get(0).getIdentifier();
+        return leafIdentifier.getPdbIdentifier() + "_" + leafIdentifier.getChainIdentifier();
+    }
+
     @Override
     public Set<Itemset<LabelType>> filterItemsets(Set<Itemset<LabelType>> itemsets, Map<Itemset<LabelType>, List<Itemset<LabelType>>> extractedItemsets) {
         this.extractedItemsets = extractedItemsets;
@@ -82,6 +104,10 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
 
     private Set<Itemset<LabelType>> calculateConsensus(Set<Itemset<LabelType>> itemsets) {
 
+        if (itemsets.isEmpty()) {
+            return itemsets;
+        }
+
         // create chunks for parallel execution
         List<List<Itemset<LabelType>>> partitions = partition(new ArrayList<>(itemsets), (levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism);
 
@@ -105,6 +131,10 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
             logger.error("parallel execution of {} failed", this, e);
         }
 
+        // seeds of parents are no longer needed once all children of the current epoch are aligned
+        int itemsetSize = itemsets.iterator().next().getItems().size();
+        seedClusterAssignments.keySet().removeIf(itemset -> itemset.getItems().size() < itemsetSize);
+
         return itemsets;
     }
 
@@ -113,7 +143,13 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
         extractedItemsets.entrySet().removeIf(entry -> entry.getKey().getConsensus() > maximalConsensus);
     }
 
-    public Map<Itemset<LabelType>, ConsensusAlignment> getClusteredItemsets() {
+    /**
+     * Returns the {@link ConsensusAlignment}s of all clustered {@link Itemset}s. In incremental mode, an {@link Itemset} may be aligned in several seeded partitions, each of which results in
+     * its own {@link ConsensusAlignment}. Together, they cover all observations of the {@link Itemset}.
+     *
+     * @return The {@link ConsensusAlignment}s of each clustered {@link Itemset}.
+     */
+    public Map<Itemset<LabelType>, List<ConsensusAlignment>> getClusteredItemsets() {
         return clusteredItemsets;
     }
 
@@ -126,7 +162,21 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
         return 2;
     }
 
-    private class ConsensusCalculator implements Callable<Map<Itemset<LabelType>, ConsensusAlignment>> {
+    /**
+     * The cluster assignments of the observations of an aligned {@link Itemset} along with its consensus score.
+     */
+    private static class SeedClusters {
+
+        private final Map<String, Integer> clusterIndices;
+        private final double consensus;
+
+        private SeedClusters(Map<String, Integer> clusterIndices, double consensus) {
+            this.clusterIndices = clusterIndices;
+            this.consensus = consensus;
+        }
+    }
+
+    private class ConsensusCalculator implements Callable<Map<Itemset<LabelType>, List<ConsensusAlignment>>> {
         private final List<Itemset<LabelType>> itemsets;
 
         public ConsensusCalculator(List<Itemset<LabelType>> itemsets) {
@@ -134,8 +184,8 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
         }
 
         @Override
-        public Map<Itemset<LabelType>, ConsensusAlignment> call() throws Exception {
-            Map<Itemset<LabelType>, ConsensusAlignment> clusteredItemsets = new HashMap<>();
+        public Map<Itemset<LabelType>, List<ConsensusAlignment>> call() throws Exception {
+            Map<Itemset<LabelType>, List<ConsensusAlignment>> clusteredItemsets = new HashMap<>();
             for (Itemset<LabelType> itemset : itemsets) {
 
                 // get structural motifs for current itemset
@@ -145,33 +195,132 @@ public class ConsensusMetric<LabelType extends Comparable<LabelType>> extends Ab
                                                                           .map(Optional::get)
                                                                           .collect(Collectors.toList());
 
-                // perform consensus alignment
-                ConsensusAlignment consensusAlignment;
-                if (representationSchemeType != null) {
-                    consensusAlignment = ConsensusBuilder.create()
-                                                         .inputStructuralMotifs(structuralMotifs)
-                                                         .representationSchemeType(representationSchemeType)
-                                                         .clusterCutoff(clusterCutoff)
-                                                         .alignWithinClusters(alignWithinClusters)
-                                                         .idealSuperimposition(false)
-                                                         .run();
+                // perform consensus alignment, seeded by clusters of the best-scoring parent if possible
+                Optional<Map<String, Integer>> seedClusters = incremental && !structuralMotifs.isEmpty() ? determineSeedClusters(itemset) : Optional.empty();
+                List<ConsensusAlignment> consensusAlignments;
+                if (seedClusters.isPresent()) {
+                    consensusAlignments = alignIncrementally(itemset, structuralMotifs, seedClusters.get());
                 } else {
-                    consensusAlignment = ConsensusBuilder.create()
-                                                         .inputStructuralMotifs(structuralMotifs)
-                                                         .atomFilter(atomFilter)
-                                                         .clusterCutoff(clusterCutoff)
-                                                         .alignWithinClusters(alignWithinClusters)
-                                                         .idealSuperimposition(false)
-                                                         .run();
+                    ConsensusAlignment consensusAlignment = align(structuralMotifs);
+                    consensusAlignment.getAlignmentTrace().forEach(observationValue -> addObservationForItemset(itemset, observationValue));
+                    // store consensus score
+                    itemset.setConsensus(calculateConsensus(consensusAlignment));
+                    consensusAlignments = Collections.singletonList(consensusAlignment);
                 }
 
-                consensusAlignment.getAlignmentTrace().forEach(observationValue -> addObservationForItemset(itemset, observationValue));
-
-                // store consensus score
-                itemset.setConsensus(calculateConsensus(consensusAlignment));
-                clusteredItemsets.put(itemset, consensusAlignment);
+                if (incremental) {
+                    storeSeedClusters(itemset, consensusAlignments);
+                }
+                clusteredItemsets.put(itemset, consensusAlignments);
             }
             return clusteredItemsets;
         }
+
+        private ConsensusAlignment align(List<StructuralMotif> structuralMotifs) {
+            if (representationSchemeType != null) {
+                return ConsensusBuilder.create()
+                                       .inputStructuralMotifs(structuralMotifs)
+                                       .representationSchemeType(representationSchemeType)
+                                       .clusterCutoff(clusterCutoff)
+                                       .alignWithinClusters(alignWithinClusters)
+                                       .idealSuperimposition(false)
+                                       .run();
+            }
+            return ConsensusBuilder.create()
+                                   .inputStructuralMotifs(structuralMotifs)
+                                   .atomFilter(atomFilter)
+                                   .clusterCutoff(clusterCutoff)
+                                   .alignWithinClusters(alignWithinClusters)
+                                   .idealSuperimposition(false)
+                                   .run();
+        }
+
+        /**
+         * Determines the cluster assignments of the best-scoring parent (k-subset) of the given {@link Itemset}, which was aligned in the previous epoch.
+         *
+         * @param itemset The {@link Itemset} for which seed clusters should be determined.
+         * @return The cluster index for each origin of the parent observations if any parent is available.
+         */
+        private Optional<Map<String, Integer>> determineSeedClusters(Itemset<LabelType> itemset) {
+            Map<String, Integer> bestSeedClusters = null;
+            double bestParentConsensus = Double.MAX_VALUE;
+            for (Item<LabelType> item : itemset.getItems()) {
+                Set<Item<LabelType>> parentItems = new TreeSet<>(itemset.getItems());
+                parentItems.remove(item);
+                Itemset<LabelType> parent = Itemset.of(parentItems);
+                SeedClusters parentSeedClusters = seedClusterAssignments.get(parent);
+                if (parentSeedClusters != null && parentSeedClusters.consensus < bestParentConsensus) {
+                    bestParentConsensus = parentSeedClusters.consensus;
+                    bestSeedClusters = parentSeedClusters.clusterIndices;
+                }
+            }
+            return Optional.ofNullable(bestSeedClusters);
+        }
+
+        /**
+         * Stores the cluster index of each observation origin of the given {@link ConsensusAlignment}s to seed the alignment of child {@link Itemset}s. Clusters of different
+         * {@link ConsensusAlignment}s are numbered consecutively.
+         *
+         * @param itemset             The {@link Itemset} that was aligned.
+         * @param consensusAlignments The resulting {@link ConsensusAlignment}s.
+         */
+        private void storeSeedClusters(Itemset<LabelType> itemset, List<ConsensusAlignment> consensusAlignments) {
+            Map<String, Integer> clusterIndices = new HashMap<>();
+            int clusterIndex = 0;
+            for (ConsensusAlignment consensusAlignment : consensusAlignments) {
+                for (BinaryTree<ConsensusContainer> cluster : consensusAlignment.getClusters()) {
+                    for (BinaryTreeNode<ConsensusContainer> leafNode : cluster.getLeafNodes()) {
+                        clusterIndices.putIfAbsent(determineOrigin(leafNode.getData().getStructuralMotif()), clusterIndex);
+                    }
+                    clusterIndex++;
+                }
+            }
+            seedClusterAssignments.put(itemset, new SeedClusters(clusterIndices, itemset.getConsensus()));
+        }
+
+        /**
+         * Aligns the given {@link StructuralMotif}s within the partitions defined by the seed clusters of the parent. Partitions with less than two observations are merged into the most
+         * populated one.
+         *
+         * @param itemset          The {@link Itemset} to be aligned.
+         * @param structuralMotifs The observations of the {@link Itemset}.
+         * @param seedClusters     The cluster index for each observation origin of the parent.
+         * @return The {@link ConsensusAlignment}s of all partitions, starting with the most populated one.
+         */
+        private List<ConsensusAlignment> alignIncrementally(Itemset<LabelType> itemset, List<StructuralMotif> structuralMotifs, Map<String, Integer> seedClusters) {
+
+            // partition observations according to seed clusters, unknown origins are collected separately
+            Map<Integer, List<StructuralMotif>> partitions = new TreeMap<>();
+            for (StructuralMotif structuralMotif : structuralMotifs) {
+                int clusterIndex = seedClusters.getOrDefault(determineOrigin(structuralMotif), -1);
+                partitions.computeIfAbsent(clusterIndex, key -> new ArrayList<>()).add(structuralMotif);
+            }
+            List<List<StructuralMotif>> sortedPartitions = new ArrayList<>(partitions.values());
+            sortedPartitions.sort(Comparator.comparingInt((List<StructuralMotif> partition) -> partition.size()).reversed());
+            List<StructuralMotif> largestPartition = sortedPartitions.get(0);
+            sortedPartitions.removeIf(partition -> {
+                if (partition != largestPartition && partition.size() < 2) {
+                    largestPartition.addAll(partition);
+                    return true;
+                }
+                return false;
+            });
+
+            logger.debug("aligning itemset {} incrementally in {} seeded partitions", itemset, sortedPartitions.size());
+
+            // align within partitions and combine normalized scores
+            List<ConsensusAlignment> consensusAlignments = new ArrayList<>();
+            double consensusScore = 0.0;
+            int mergeCount = 0;
+            for (List<StructuralMotif> partition : sortedPartitions) {
+                ConsensusAlignment consensusAlignment = align(partition);
+                consensusAlignment.getAlignmentTrace().forEach(observationValue -> addObservationForItemset(itemset, observationValue));
+                consensusScore += consensusAlignment.getConsensusScore();
+                mergeCount += consensusAlignment.getAlignmentTrace().size();
+                consensusAlignments.add(consensusAlignment);
+            }
+            itemset.setConsensus(mergeCount == 0 ? 0.0 : consensusScore / (mergeCount * structuralMotifs.get(0).size()));
+            return consensusAlignments;
+        }
     }
 }
@@ -31,5 +31,11 @@ public interface ExtractionMetric<LabelType extends Comparable<LabelType>> exten
      */
     Set<Itemset<LabelType>> filterItemsets(Set<Itemset<LabelType>> itemsets);
 
+    /**
+     * Fuses the given {@link ObservationMetric} into the extraction, i.e. every extracted observation is scored directly by the worker that produced it.
+     *
+     * @param observationMetric The {@link ObservationMetric} to be fused.
+     */
+    void addObservationMetric(ObservationMetric<LabelType> observationMetric);
 
 }
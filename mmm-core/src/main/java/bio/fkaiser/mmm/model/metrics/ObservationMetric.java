@@ -0,0 +1,40 @@
+package bio.fkaiser.mmm.model.metrics;
+
+import bio.fkaiser.mmm.model.Itemset;
+
+import java.util.function.Predicate;
+
+/**
+ * An {@link ExtractionDependentMetric} whose score is the mean of independent scores of single {@link Itemset} observations. Such metrics can be fused into the extraction of an
+ * {@link ExtractionMetric}, i.e. each observation is scored as soon as it is extracted and no additional pass over the extracted {@link Itemset}s is required.
+ *
+ * @author fk
+ */
+public interface ObservationMetric<LabelType extends Comparable<LabelType>> extends ExtractionDependentMetric<LabelType> {
+
+    Predicate<EvaluationMetric<?>> OBSERVATION_METRIC_FILTER = evaluationMetric -> evaluationMetric instanceof ObservationMetric;
+
+    /**
+     * Calculates the score of a single observation of the given {@link Itemset}.
+     *
+     * @param itemset            The {@link Itemset} that was observed.
+     * @param itemsetObservation The observation of the {@link Itemset}.
+     * @return The score of the observation.
+     */
+    double calculateObservationScore(Itemset<LabelType> itemset, Itemset<LabelType> itemsetObservation);
+
+    /**
+     * Assigns the mean score over all observations to the given {@link Itemset}.
+     *
+     * @param itemset The {@link Itemset} to which the score should be assigned.
+     * @param score   The mean score over all observations.
+     */
+    void assignScore(Itemset<LabelType> itemset, double score);
+
+    /**
+     * Marks this metric as fused into extraction. Fused metrics do not traverse the extracted {@link Itemset}s again but rely on the scores assigned during extraction.
+     *
+     * @param fused True if scores are assigned during extraction.
+     */
+    void setFused(boolean fused);
+}
@@ -3,8 +3,6 @@ package bio.fkaiser.mmm.model.metrics;
 import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.metrics.SeparationMetricConfiguration;
-import de.bioforscher.singa.structure.model.interfaces.AminoAcid;
-import de.bioforscher.singa.structure.model.interfaces.Nucleotide;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,7 +16,7 @@ import java.util.stream.Collectors;
  *
  * @author fk
  */
-public class SeparationMetric<LabelType extends Comparable<LabelType>> extends AbstractExtractionDependentMetric<LabelType> {
+public class SeparationMetric<LabelType extends Comparable<LabelType>> extends AbstractExtractionDependentMetric<LabelType> implements ObservationMetric<LabelType> {
 
     public static final Comparator<Itemset<?>> COMPARATOR = Comparator.comparing(Itemset::getSeparation);
     private static final Logger logger = LoggerFactory.getLogger(SeparationMetric.class);
@@ -26,12 +24,13 @@ public class SeparationMetric<LabelType extends Comparable<LabelType>> extends A
      * the range for which discrete values of Morse potential function should be calculated
      */
     private static final int MORSE_POTENTIAL_DISCRETE_RANGE = 10000;
-    private final HashMap<Integer, Double> morsePotentialDiscrete;
+    private final double[] morsePotentialDiscrete;
 
     private final double maximalSeparation;
     private final double optimalSeparation;
     private final double morseWellDepth;
     private final double morseShape;
+    private boolean fused;
 
     public SeparationMetric(SeparationMetricConfiguration<LabelType> separationMetricConfiguration) {
         this.maximalSeparation = separationMetricConfiguration.getMaximalSeparation();
@@ -39,9 +38,9 @@ public class SeparationMetric<LabelType extends Comparable<LabelType>> extends A
         this.morseWellDepth = separationMetricConfiguration.getMorseWellDepth();
         this.morseShape = separationMetricConfiguration.getMorseShape();
         // initialize Morse potential function with discrete values
-        morsePotentialDiscrete = new HashMap<>();
+        morsePotentialDiscrete = new double[MORSE_POTENTIAL_DISCRETE_RANGE];
         for (int i = 0; i < MORSE_POTENTIAL_DISCRETE_RANGE; i++) {
-            morsePotentialDiscrete.put(i, calculateMorsePotential(morseWellDepth, morseShape, optimalSeparation, i));
+            morsePotentialDiscrete[i] = calculateMorsePotential(morseWellDepth, morseShape, optimalSeparation, i);
         }
     }
 
@@ -68,39 +67,63 @@ public class SeparationMetric<LabelType extends Comparable<LabelType>> extends A
                '}';
     }
 
+    @Override
+    public void setFused(boolean fused) {
+        this.fused = fused;
+    }
+
+    @Override
+    public void assignScore(Itemset<LabelType> itemset, double score) {
+        itemset.setSeparation(score);
+    }
+
+    @Override
+    public double calculateObservationScore(Itemset<LabelType> itemset, Itemset<LabelType> itemsetObservation) {
+
+        // collect positions of amino acids or nucleotides, interaction items are not considered for the separation calculation
+        int[] sequencePositions = new int[itemsetObservation.getItems().size()];
+        int positionCount = 0;
+        for (Item<LabelType> item : itemsetObservation.getItems()) {
+            if (item.isPolymer()) {
+                sequencePositions[positionCount++] = item.getSequencePosition();
+            }
+        }
+        // sort positions ascending
+        Arrays.sort(sequencePositions, 0, positionCount);
+
+        // calculate separation of single observation
+        double observationSeparation = 0.0;
+        for (int i = 0; i < positionCount - 1; i++) {
+            int gapLength = sequencePositions[i + 1] - sequencePositions[i];
+            // cannot decide due to ambiguous position
+            if (gapLength < 0) {
+                logger.warn("found ambiguous position for observation {}", itemsetObservation);
+            } else if (gapLength < MORSE_POTENTIAL_DISCRETE_RANGE) {
+                observationSeparation += morsePotentialDiscrete[gapLength];
+            } else {
+                observationSeparation += calculateMorsePotential(morseWellDepth, morseShape, optimalSeparation, gapLength);
+            }
+        }
+        // normalize separation of single observation
+        return observationSeparation / itemset.getItems().size();
+    }
+
     private Set<Itemset<LabelType>> calculateSeparation(Set<Itemset<LabelType>> itemsets) {
 
-        for (Itemset<LabelType> itemset : extractedItemsets.keySet()) {
+        // scores were already assigned during extraction
+        if (fused) {
+            return itemsets;
+        }
+
+        for (Map.Entry<Itemset<LabelType>, List<Itemset<LabelType>>> entry : extractedItemsets.entrySet()) {
 
-            List<Itemset<LabelType>> itemsetObservations = extractedItemsets.get(itemset);
+            Itemset<LabelType> itemset = entry.getKey();
+            List<Itemset<LabelType>> itemsetObservations = entry.getValue();
 
+            // sum up itemset separation
             double itemsetSeparation = 0.0;
             for (Itemset<LabelType> itemsetObservation : itemsetObservations) {
-
-                // sort items according to their ascending position and exclude interaction items
-                List<Item<LabelType>> sortedItems = itemsetObservation.getItems().stream()
-                                                                      // only consider amino acids or nucleotides for the separation calculation
-                                                                      .filter(item -> item.getLeafSubstructure().isPresent() &&
-                                                                                      (item.getLeafSubstructure().get() instanceof AminoAcid || item.getLeafSubstructure().get() instanceof Nucleotide))
-                                                                      .sorted(Comparator.comparingInt(Item::getSequencePosition))
-                                                                      .collect(Collectors.toList());
-
-                // calculate separation of single observation
-                double observationSeparation = 0.0;
-                for (int i = 0; i < sortedItems.size() - 1; i++) {
-                    int gapLength = sortedItems.get(i + 1).getSequencePosition() - sortedItems.get(i).getSequencePosition();
-                    // cannot decide due to ambiguous position
-                    if (gapLength < 0) {
-                        logger.warn("found ambiguous position for observation {}", itemsetObservation);
-                    } else {
-                        observationSeparation += morsePotentialDiscrete.get(gapLength);
-                    }
-                }
-                // normalize separation of single observation
-                observationSeparation /= itemset.getItems().size();
-
-                // sum up itemset separation
-                itemsetSeparation += observationSeparation;
+                itemsetSeparation += calculateObservationScore(itemset, itemsetObservation);
             }
 
             // set normalized separation
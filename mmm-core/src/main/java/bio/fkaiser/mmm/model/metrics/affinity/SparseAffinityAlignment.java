@@ -0,0 +1,433 @@
+package bio.fkaiser.mmm.model.metrics.affinity;
+
+import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimposer;
+import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimposition;
+import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimpositionException;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationScheme;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeFactory;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.interfaces.Atom;
+import de.bioforscher.singa.structure.model.oak.StructuralMotif;
+import de.bioforscher.singa.structure.parser.pdb.structures.StructureWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Affinity propagation of {@link StructuralMotif}s on a sparse k-nearest-neighbor graph. In contrast to the dense
+ * {@link de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment}, only the distances to the k nearest neighbors of each observation are retained, thus memory
+ * grows with n*k instead of n^2. The pairwise distances are still computed exhaustively to determine the nearest neighbors, but in parallel.
+ * <p>
+ * The quality of the clustering is given by the simplified silhouette coefficient, which compares the distance of each observation to its own exemplar with the distance to the closest
+ * foreign exemplar. This differs from the silhouette coefficient of the dense alignment, which compares the average distances to all members of the own and the closest foreign
+ * cluster, because these distances are not retained. Both coefficients range from -1 to 1 and agree in sign for well separated clusters, but their values are not interchangeable.
+ *
+ * @author fk
+ */
+public class SparseAffinityAlignment {
+
+    private static final Logger logger = LoggerFactory.getLogger(SparseAffinityAlignment.class);
+
+    private static final int MAXIMAL_EPOCHS = 1000;
+    private static final int CONVERGENCE_EPOCHS = 10;
+    private static final double LAMBDA = 0.5;
+    private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
+    /**
+     * orders neighbors (index, distance) descending by distance and index, such that the head is the neighbor to be evicted first
+     */
+    private static final Comparator<double[]> EVICTION_ORDER = Comparator.<double[]>comparingDouble(neighbor -> neighbor[1])
+                                                                             .thenComparingDouble(neighbor -> neighbor[0])
+                                                                             .reversed();
+
+    private final List<StructuralMotif> input;
+    private final int nearestNeighbors;
+    private final Predicate<Atom> atomFilter;
+    private final RepresentationScheme representationScheme;
+    private final int levelOfParallelism;
+
+    private int[][] neighbors;
+    private double[][] similarities;
+    private double selfSimilarity;
+    private Map<StructuralMotif, List<StructuralMotif>> clusters;
+    private double silhouetteCoefficient;
+
+    /**
+     * Creates a new {@link SparseAffinityAlignment} and directly computes the clustering.
+     *
+     * @param input                    The {@link StructuralMotif}s to be clustered.
+     * @param nearestNeighbors         The number of nearest neighbors retained for each observation.
+     * @param representationSchemeType The {@link RepresentationSchemeType} to be used or null if the atom filter should be used.
+     * @param atomFilter               The filter for {@link Atom}s that should be used for superimposition.
+     * @param levelOfParallelism       The number of concurrent distance computations or -1 to use all available processors.
+     */
+    public SparseAffinityAlignment(List<StructuralMotif> input, int nearestNeighbors, RepresentationSchemeType representationSchemeType, Predicate<Atom> atomFilter,
+                                   int levelOfParallelism) {
+        this.input = input;
+        this.nearestNeighbors = Math.min(nearestNeighbors, input.size() - 1);
+        this.atomFilter = atomFilter;
+        this.levelOfParallelism = levelOfParallelism;
+        representationScheme = representationSchemeType != null ? RepresentationSchemeFactory.createRepresentationScheme(representationSchemeType) : null;
+
+        logger.debug("computing sparse affinity propagation for {} observations and {} nearest neighbors", input.size(), this.nearestNeighbors);
+        calculateNearestNeighbors();
+        determineSelfSimilarity();
+        computeClustering();
+        calculateSilhouetteCoefficient();
+    }
+
+    public Map<StructuralMotif, List<StructuralMotif>> getClusters() {
+        return clusters;
+    }
+
+    public double getSelfSimilarity() {
+        return selfSimilarity;
+    }
+
+    public double getSilhouetteCoefficient() {
+        return silhouetteCoefficient;
+    }
+
+    /**
+     * Writes all clusters to the given location. Each member is superimposed onto the exemplar of its cluster.
+     *
+     * @param clusterBaseLocation The base location for the clusters.
+     * @throws IOException If the clusters cannot be written.
+     */
+    public void writeClusters(Path clusterBaseLocation) throws IOException {
+        int clusterCounter = 0;
+        for (Map.Entry<StructuralMotif, List<StructuralMotif>> cluster : clusters.entrySet()) {
+            clusterCounter++;
+            StructuralMotif exemplar = cluster.getKey();
+            Path clusterLocation = clusterBaseLocation.resolve("cluster_" + clusterCounter);
+            StructureWriter.writeLeafSubstructureContainer(exemplar, clusterLocation.resolve("exemplar_" + exemplar + ".pdb"));
+            for (StructuralMotif structuralMotif : cluster.getValue()) {
+                if (structuralMotif == exemplar) {
+                    continue;
+                }
+                SubstructureSuperimposition superimposition = superimpose(exemplar, structuralMotif);
+                StructureWriter.writeLeafSubstructures(superimposition.applyTo(structuralMotif.getCopy().getAllLeafSubstructures()),
+                                                       clusterLocation.resolve(structuralMotif + ".pdb"));
+            }
+        }
+    }
+
+    private SubstructureSuperimposition superimpose(StructuralMotif reference, StructuralMotif candidate) {
+        try {
+            if (representationScheme != null) {
+                return SubstructureSuperimposer.calculateSubstructureSuperimposition(reference.getAllLeafSubstructures(), candidate.getAllLeafSubstructures(), representationScheme);
+            }
+            return SubstructureSuperimposer.calculateSubstructureSuperimposition(reference.getAllLeafSubstructures(), candidate.getAllLeafSubstructures(), atomFilter);
+        } catch (SubstructureSuperimpositionException e) {
+            throw new IllegalStateException("failed to superimpose " + candidate + " onto " + reference, e);
+        }
+    }
+
+    private double calculateDistance(StructuralMotif reference, StructuralMotif candidate) {
+        return superimpose(reference, candidate).getRmsd();
+    }
+
+    /**
+     * Determines the k nearest neighbors of each observation. Every pairwise distance is computed exactly once but only the k smallest distances per observation are retained, ties are
+     * broken by the index of the neighbor. The rows of the distance matrix are distributed in an interleaved manner to balance the triangular workload. The resulting graph is
+     * symmetrized, i.e. an edge is present if one of both observations is among the k nearest neighbors of the other.
+     */
+    private void calculateNearestNeighbors() {
+        int size = input.size();
+        int workers = Math.max(1, Math.min((levelOfParallelism == -1) ? AVAILABLE_PROCESSORS : levelOfParallelism, size - 1));
+        List<NearestNeighborCalculator> jobs = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            jobs.add(new NearestNeighborCalculator(i, workers));
+        }
+        List<List<PriorityQueue<double[]>>> partialNearestNeighborQueues = new ArrayList<>(workers);
+        if (workers == 1) {
+            partialNearestNeighborQueues.add(jobs.get(0).call());
+        } else {
+            ExecutorService executorService = Executors.newWorkStealingPool(workers);
+            try {
+                for (Future<List<PriorityQueue<double[]>>> future : executorService.invokeAll(jobs)) {
+                    partialNearestNeighborQueues.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted during computation of nearest neighbors", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("failed to compute nearest neighbors", e.getCause());
+            } finally {
+                executorService.shutdown();
+            }
+        }
+
+        // merge the nearest neighbors found by each job
+        List<PriorityQueue<double[]>> nearestNeighborQueues = createNearestNeighborQueues(size);
+        for (List<PriorityQueue<double[]>> partialQueues : partialNearestNeighborQueues) {
+            for (int i = 0; i < size; i++) {
+                for (double[] neighbor : partialQueues.get(i)) {
+                    offerNeighbor(nearestNeighborQueues.get(i), neighbor);
+                }
+            }
+        }
+        partialNearestNeighborQueues.clear();
+
+        // symmetrize the graph
+        List<Map<Integer, Double>> adjacency = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            adjacency.add(new TreeMap<>());
+        }
+        for (int i = 0; i < size; i++) {
+            for (double[] neighbor : nearestNeighborQueues.get(i)) {
+                int j = (int) neighbor[0];
+                adjacency.get(i).put(j, -neighbor[1]);
+                adjacency.get(j).put(i, -neighbor[1]);
+            }
+            nearestNeighborQueues.set(i, null);
+        }
+
+        // the first entry of each row is the observation itself
+        neighbors = new int[size][];
+        similarities = new double[size][];
+        for (int i = 0; i < size; i++) {
+            Map<Integer, Double> row = adjacency.get(i);
+            neighbors[i] = new int[row.size() + 1];
+            similarities[i] = new double[row.size() + 1];
+            neighbors[i][0] = i;
+            int position = 1;
+            for (Map.Entry<Integer, Double> entry : row.entrySet()) {
+                neighbors[i][position] = entry.getKey();
+                similarities[i][position] = entry.getValue();
+                position++;
+            }
+            adjacency.set(i, null);
+        }
+    }
+
+    private List<PriorityQueue<double[]>> createNearestNeighborQueues(int size) {
+        List<PriorityQueue<double[]>> nearestNeighborQueues = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            nearestNeighborQueues.add(new PriorityQueue<>(nearestNeighbors + 1, EVICTION_ORDER));
+        }
+        return nearestNeighborQueues;
+    }
+
+    private void offerNeighbor(PriorityQueue<double[]> nearestNeighborQueue, double[] neighbor) {
+        if (nearestNeighborQueue.size() < nearestNeighbors) {
+            nearestNeighborQueue.add(neighbor);
+        } else if (EVICTION_ORDER.compare(neighbor, nearestNeighborQueue.peek()) > 0) {
+            nearestNeighborQueue.poll();
+            nearestNeighborQueue.add(neighbor);
+        }
+    }
+
+    /**
+     * Determines the self-similarity (preference) as the median of the retained similarities, where each edge is counted once and each observation contributes the zero similarity to
+     * itself. For a complete graph, this equals the median of the dense distance matrix.
+     */
+    private void determineSelfSimilarity() {
+        int elementCount = 0;
+        for (int i = 0; i < similarities.length; i++) {
+            for (int position = 0; position < neighbors[i].length; position++) {
+                if (neighbors[i][position] <= i) {
+                    elementCount++;
+                }
+            }
+        }
+        // the first entry of each row is still zero and represents the observation itself
+        double[] retainedSimilarities = new double[elementCount];
+        int elementIndex = 0;
+        for (int i = 0; i < similarities.length; i++) {
+            for (int position = 0; position < neighbors[i].length; position++) {
+                if (neighbors[i][position] <= i) {
+                    retainedSimilarities[elementIndex++] = similarities[i][position];
+                }
+            }
+        }
+        Arrays.sort(retainedSimilarities);
+        if (elementCount % 2 == 0) {
+            selfSimilarity = (retainedSimilarities[elementCount / 2 - 1] + retainedSimilarities[elementCount / 2]) / 2.0;
+        } else {
+            selfSimilarity = retainedSimilarities[elementCount / 2];
+        }
+        for (double[] row : similarities) {
+            row[0] = selfSimilarity;
+        }
+    }
+
+    /**
+     * Performs affinity propagation where responsibilities and availabilities are only exchanged along the edges of the nearest neighbor graph.
+     */
+    private void computeClustering() {
+        int size = input.size();
+        double[][] responsibilities = new double[size][];
+        double[][] availabilities = new double[size][];
+        for (int i = 0; i < size; i++) {
+            responsibilities[i] = new double[neighbors[i].length];
+            availabilities[i] = new double[neighbors[i].length];
+        }
+
+        double[] positiveResponsibilitySums = new double[size];
+        boolean[] exemplars = new boolean[size];
+        // converged once the exemplar decisions of the last epochs are equal, as for the dense affinity propagation
+        int equalDecisions = 0;
+        for (int epoch = 0; epoch < MAXIMAL_EPOCHS && equalDecisions < CONVERGENCE_EPOCHS; epoch++) {
+
+            // update responsibilities
+            for (int i = 0; i < size; i++) {
+                double firstMaximum = Double.NEGATIVE_INFINITY;
+                double secondMaximum = Double.NEGATIVE_INFINITY;
+                int firstMaximumPosition = -1;
+                for (int position = 0; position < neighbors[i].length; position++) {
+                    double value = availabilities[i][position] + similarities[i][position];
+                    if (value > firstMaximum) {
+                        secondMaximum = firstMaximum;
+                        firstMaximum = value;
+                        firstMaximumPosition = position;
+                    } else if (value > secondMaximum) {
+                        secondMaximum = value;
+                    }
+                }
+                for (int position = 0; position < neighbors[i].length; position++) {
+                    double responsibility = similarities[i][position] - (position == firstMaximumPosition ? secondMaximum : firstMaximum);
+                    responsibilities[i][position] = LAMBDA * responsibilities[i][position] + (1.0 - LAMBDA) * responsibility;
+                }
+            }
+
+            // update availabilities
+            Arrays.fill(positiveResponsibilitySums, 0.0);
+            for (int i = 0; i < size; i++) {
+                for (int position = 1; position < neighbors[i].length; position++) {
+                    positiveResponsibilitySums[neighbors[i][position]] += Math.max(0.0, responsibilities[i][position]);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                availabilities[i][0] = LAMBDA * availabilities[i][0] + (1.0 - LAMBDA) * positiveResponsibilitySums[i];
+                for (int position = 1; position < neighbors[i].length; position++) {
+                    int k = neighbors[i][position];
+                    double availability = Math.min(0.0, responsibilities[k][0] + positiveResponsibilitySums[k] - Math.max(0.0, responsibilities[i][position]));
+                    availabilities[i][position] = LAMBDA * availabilities[i][position] + (1.0 - LAMBDA) * availability;
+                }
+            }
+
+            // check convergence of exemplars
+            boolean changed = epoch == 0;
+            for (int k = 0; k < size; k++) {
+                boolean exemplar = responsibilities[k][0] + availabilities[k][0] > 0.0;
+                if (exemplar != exemplars[k]) {
+                    exemplars[k] = exemplar;
+                    changed = true;
+                }
+            }
+            equalDecisions = changed ? 1 : equalDecisions + 1;
+        }
+
+        // fall back to single exemplar with maximal evidence
+        List<Integer> exemplarIndices = new ArrayList<>();
+        for (int k = 0; k < size; k++) {
+            if (exemplars[k]) {
+                exemplarIndices.add(k);
+            }
+        }
+        if (exemplarIndices.isEmpty()) {
+            int bestExemplar = 0;
+            for (int k = 1; k < size; k++) {
+                if (responsibilities[k][0] + availabilities[k][0] > responsibilities[bestExemplar][0] + availabilities[bestExemplar][0]) {
+                    bestExemplar = k;
+                }
+            }
+            exemplars[bestExemplar] = true;
+            exemplarIndices.add(bestExemplar);
+        }
+
+        // assign observations to most similar exemplar in their neighborhood or to the closest exemplar overall
+        clusters = new LinkedHashMap<>();
+        exemplarIndices.forEach(k -> clusters.put(input.get(k), new ArrayList<>()));
+        for (int i = 0; i < size; i++) {
+            int assignedExemplar = -1;
+            if (exemplars[i]) {
+                assignedExemplar = i;
+            } else {
+                double maximalSimilarity = Double.NEGATIVE_INFINITY;
+                for (int position = 1; position < neighbors[i].length; position++) {
+                    int k = neighbors[i][position];
+                    if (exemplars[k] && similarities[i][position] > maximalSimilarity) {
+                        maximalSimilarity = similarities[i][position];
+                        assignedExemplar = k;
+                    }
+                }
+                if (assignedExemplar == -1) {
+                    double minimalDistance = Double.MAX_VALUE;
+                    for (int k : exemplarIndices) {
+                        double distance = calculateDistance(input.get(k), input.get(i));
+                        if (distance < minimalDistance) {
+                            minimalDistance = distance;
+                            assignedExemplar = k;
+                        }
+                    }
+                }
+            }
+            clusters.get(input.get(assignedExemplar)).add(input.get(i));
+        }
+        logger.debug("sparse affinity propagation resulted in {} clusters", clusters.size());
+    }
+
+    /**
+     * Calculates the simplified silhouette coefficient, i.e. the distance to the own exemplar is compared to the distance to the closest foreign exemplar. Observations in singleton clusters
+     * contribute a silhouette of zero.
+     */
+    private void calculateSilhouetteCoefficient() {
+        if (clusters.size() < 2) {
+            silhouetteCoefficient = 0.0;
+            return;
+        }
+        double silhouetteSum = 0.0;
+        for (Map.Entry<StructuralMotif, List<StructuralMotif>> cluster : clusters.entrySet()) {
+            if (cluster.getValue().size() < 2) {
+                continue;
+            }
+            for (StructuralMotif structuralMotif : cluster.getValue()) {
+                double ownDistance = structuralMotif == cluster.getKey() ? 0.0 : calculateDistance(cluster.getKey(), structuralMotif);
+                double foreignDistance = Double.MAX_VALUE;
+                for (StructuralMotif exemplar : clusters.keySet()) {
+                    if (exemplar != cluster.getKey()) {
+                        foreignDistance = Math.min(foreignDistance, calculateDistance(exemplar, structuralMotif));
+                    }
+                }
+                double maximalDistance = Math.max(ownDistance, foreignDistance);
+                silhouetteSum += maximalDistance == 0.0 ? 0.0 : (foreignDistance - ownDistance) / maximalDistance;
+            }
+        }
+        silhouetteCoefficient = silhouetteSum / input.size();
+    }
+
+    /**
+     * Computes the distances of every row of the distance matrix with the given offset and stride to all observations with a larger index and keeps the k nearest neighbors of each
+     * observation among them.
+     */
+    private class NearestNeighborCalculator implements Callable<List<PriorityQueue<double[]>>> {
+
+        private final int offset;
+        private final int stride;
+
+        private NearestNeighborCalculator(int offset, int stride) {
+            this.offset = offset;
+            this.stride = stride;
+        }
+
+        @Override
+        public List<PriorityQueue<double[]>> call() {
+            int size = input.size();
+            List<PriorityQueue<double[]>> nearestNeighborQueues = createNearestNeighborQueues(size);
+            for (int i = offset; i < size; i += stride) {
+                for (int j = i + 1; j < size; j++) {
+                    double distance = calculateDistance(input.get(i), input.get(j));
+                    offerNeighbor(nearestNeighborQueues.get(i), new double[]{j, distance});
+                    offerNeighbor(nearestNeighborQueues.get(j), new double[]{i, distance});
+                }
+            }
+            return nearestNeighborQueues;
+        }
+    }
+}
@@ -5,7 +5,6 @@ import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import de.bioforscher.singa.mathematics.matrices.LabeledSymmetricMatrix;
 import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
-import de.bioforscher.singa.structure.model.oak.StructuralMotif;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,17 +36,26 @@ public class VertexCandidateGenerator<LabelType extends Comparable<LabelType>> {
         this.vertexOne = vertexOne;
     }
 
-    private static <LabelType extends Comparable<LabelType>> boolean isRedundant(Itemset<LabelType> candidate, List<Itemset<LabelType>> candidates) {
-        List<LeafSubstructure<?>> candidateLeafSubstructures = candidate.getStructuralMotif()
-                                                                        .orElseThrow(() -> new VertexCandidateGeneratorException("no structural motif found during redundancy check"))
-                                                                        .getAllLeafSubstructures();
-        for (Itemset<LabelType> reference : candidates) {
-            List<LeafSubstructure<?>> referenceLeafSubstructures = reference.getStructuralMotif()
-                                                                            .orElseThrow(() -> new VertexCandidateGeneratorException("no structural motif found during redundancy check"))
-                                                                            .getAllLeafSubstructures();
-            if (candidateLeafSubstructures.equals(referenceLeafSubstructures)) {
-                return true;
+    /**
+     * Checks whether a candidate consisting of the same data point {@link Item}s was already generated. As each data point {@link Item} refers to its own {@link LeafSubstructure}, this
+     * is equivalent to comparing the {@link LeafSubstructure}s of the candidates but does not require them to be materialized.
+     *
+     * @param orderedCandidateItems The {@link Item}s of the candidate ordered by their labels.
+     * @param candidateItemLists    The ordered {@link Item}s of all previous candidates.
+     * @return True if the candidate is redundant.
+     */
+    private static <LabelType extends Comparable<LabelType>> boolean isRedundant(List<Item<LabelType>> orderedCandidateItems, List<List<Item<LabelType>>> candidateItemLists) {
+        outerLoop:
+        for (List<Item<LabelType>> referenceItems : candidateItemLists) {
+            if (referenceItems.size() != orderedCandidateItems.size()) {
+                continue;
             }
+            for (int i = 0; i < referenceItems.size(); i++) {
+                if (referenceItems.get(i) != orderedCandidateItems.get(i)) {
+                    continue outerLoop;
+                }
+            }
+            return true;
         }
         return false;
     }
@@ -68,6 +76,7 @@ public class VertexCandidateGenerator<LabelType extends Comparable<LabelType>> {
 
         // initialize empty candidate list
         List<Itemset<LabelType>> candidates = new ArrayList<>();
+        List<List<Item<LabelType>>> candidateItemLists = new ArrayList<>();
 
         // iterate over all matching data point items
         for (int i = 0; i < matchingDataPointItems.size(); i++) {
@@ -93,31 +102,25 @@ public class VertexCandidateGenerator<LabelType extends Comparable<LabelType>> {
                     candidateItems.add(closestItem);
                 }
 
-                // create new candidate
-                List<LeafSubstructure<?>> leafSubstructures = candidateItems.stream()
-                                                                            .map(Item::getLeafSubstructure)
-                                                                            .filter(Optional::isPresent)
-                                                                            .map(Optional::get)
-                                                                            .collect(Collectors.toList());
-
+                // create new candidate, the structural motif is only built if requested
                 // leaf substructures are sorted based on the natural ordering of their labels
-                TreeMap<LabelType, LeafSubstructure<?>> labelMap = new TreeMap<>();
-                for (int k = 0; k < candidateItems.size(); k++) {
-                    labelMap.put(candidateItems.get(k).getLabel(), leafSubstructures.get(k));
+                TreeMap<LabelType, Item<LabelType>> labelMap = new TreeMap<>();
+                for (Item<LabelType> candidateItem : candidateItems) {
+                    if (candidateItem.isCoordinateOnly() || candidateItem.getLeafSubstructure().isPresent()) {
+                        labelMap.put(candidateItem.getLabel(), candidateItem);
+                    }
                 }
-                List<LeafSubstructure<?>> orderedLeafSubstructures = labelMap.entrySet().stream()
-                                                                             .map(Map.Entry::getValue)
-                                                                             .collect(Collectors.toList());
+                List<Item<LabelType>> orderedCandidateItems = new ArrayList<>(labelMap.values());
                 // sort leaves based on three letter code
                 // FIXME this has to be adapted when mapping rule is used such that sorting is based on mapped labels
 //                leafSubstructures.sort(Comparator.comparing(leafSubstructure -> leafSubstructure.getFamily().getThreeLetterCode()));
-                StructuralMotif structuralMotif = StructuralMotif.fromLeafSubstructures(orderedLeafSubstructures);
 
-                Itemset<LabelType> candidate = new Itemset<>(new TreeSet<>(candidateItems), structuralMotif, dataPoint.getDataPointIdentifier());
+                Itemset<LabelType> candidate = new Itemset<>(new TreeSet<>(candidateItems), orderedCandidateItems, dataPoint.getDataPointIdentifier());
                 logger.trace("generated candidate {}", candidate);
 
-                if (!isRedundant(candidate, candidates)) {
+                if (!isRedundant(orderedCandidateItems, candidateItemLists)) {
                     candidates.add(candidate);
+                    candidateItemLists.add(orderedCandidateItems);
                 }
             }
 
@@ -1,12 +1,14 @@
 package bio.fkaiser.mmm.model.plip;
 
-import de.bioforscher.singa.core.utility.Resources;
 import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
+import de.bioforscher.singa.structure.parser.plip.PlipParser;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URLConnection;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -16,12 +18,25 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractPlipRequest {
 
+    /**
+     * the location of the public PLIP REST service
+     */
+    public static final String DEFAULT_PLIP_REST_PROVIDER_URL = "https://biosciences.hs-mittweida.de/plip";
+    /**
+     * the timeout for connecting to the PLIP REST service in milliseconds
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+    /**
+     * the timeout for reading the response of the PLIP REST service in milliseconds, such that abandoned requests eventually terminate
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 300000;
+
     protected static String PLIP_REST_PROVIDER_CREDENTIALS;
 
     static {
         try {
-            // load PLIP credentials
-            InputStream baseConfigurationResource = Resources.getResourceAsStream("plip_credentials.txt");
+            // load PLIP credentials, which are optional e.g. for a local PLIP REST service
+            InputStream baseConfigurationResource = Thread.currentThread().getContextClassLoader().getResourceAsStream("plip_credentials.txt");
             if (baseConfigurationResource != null) {
                 try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(baseConfigurationResource))) {
                     List<String> fileContent = bufferedReader.lines().collect(Collectors.toList());
@@ -39,10 +54,61 @@ public abstract class AbstractPlipRequest {
     }
 
     protected final String plipUrl;
+    protected final String pdbIdentifier;
 
-    public AbstractPlipRequest(String plipUrl) {
+    public AbstractPlipRequest(String plipUrl, String pdbIdentifier) {
         this.plipUrl = plipUrl;
+        this.pdbIdentifier = pdbIdentifier;
+    }
+
+    /**
+     * Sets the timeouts of the given connection and adds the PLIP credentials if they are provided.
+     *
+     * @param connection The connection to the PLIP REST service.
+     */
+    static void configureConnection(URLConnection connection) {
+        connection.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT);
+        connection.setReadTimeout(DEFAULT_READ_TIMEOUT);
+        if (PLIP_REST_PROVIDER_CREDENTIALS != null) {
+            String encoding = Base64.getEncoder().encodeToString(PLIP_REST_PROVIDER_CREDENTIALS.getBytes());
+            connection.setRequestProperty("Authorization", "Basic " + encoding);
+        }
+    }
+
+    public String getPdbIdentifier() {
+        return pdbIdentifier;
     }
 
-    public abstract Optional<InteractionContainer> queryInteractions();
+    /**
+     * Returns the key of this request for the {@link PlipInteractionCache}. Requests with equal keys yield the same PLIP report.
+     *
+     * @return The key.
+     */
+    public abstract String getCacheKey();
+
+    /**
+     * Queries the PLIP REST service for the XML report of this request.
+     *
+     * @return The report or {@link Optional#empty()} if the query failed.
+     */
+    public abstract Optional<String> queryReport();
+
+    /**
+     * Queries the PLIP REST service for interactions.
+     *
+     * @return The interactions or {@link Optional#empty()} if the query failed.
+     */
+    public Optional<InteractionContainer> queryInteractions() {
+        return queryReport().map(report -> PlipParser.parse(pdbIdentifier, report));
+    }
+
+    /**
+     * Queries interactions from the given {@link PlipInteractionCache} or directly from the PLIP REST service if no cache is given.
+     *
+     * @param plipInteractionCache The {@link PlipInteractionCache} or null.
+     * @return The interactions or {@link Optional#empty()} if the query failed.
+     */
+    public Optional<InteractionContainer> queryInteractions(PlipInteractionCache plipInteractionCache) {
+        return plipInteractionCache != null ? plipInteractionCache.queryInteractions(this) : queryInteractions();
+    }
 }
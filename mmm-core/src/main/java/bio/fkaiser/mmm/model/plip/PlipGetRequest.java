@@ -1,16 +1,17 @@
 package bio.fkaiser.mmm.model.plip;
 
-import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
-import de.bioforscher.singa.structure.parser.plip.PlipParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * @author fk
@@ -19,32 +20,35 @@ public class PlipGetRequest extends AbstractPlipRequest {
 
     private static final Logger logger = LoggerFactory.getLogger(PlipGetRequest.class);
 
-    private final String pdbIdentifier;
     private final String chainIdentifier;
 
     public PlipGetRequest(String plipUrl, String pdbIdentifier, String chainIdentifier) {
-        super(plipUrl);
-        this.pdbIdentifier = pdbIdentifier;
+        super(plipUrl, pdbIdentifier);
         this.chainIdentifier = chainIdentifier;
     }
 
+    @Override
+    public String getCacheKey() {
+        return plipUrl + ":" + pdbIdentifier.toLowerCase() + ":" + chainIdentifier;
+    }
+
     /**
      * Queries the PLIP REST server for interactions for a given PDB chain.
      *
-     * @return Map of interactions or {@link Optional#empty()} if no interactions were found or the query failed.
+     * @return The XML report or {@link Optional#empty()} if the query failed.
      */
     @Override
-    public Optional<InteractionContainer> queryInteractions() {
+    public Optional<String> queryReport() {
         try {
             // connect to the PLIP REST API and obtain interaction data
             URL url = new URL(plipUrl + "/" + pdbIdentifier + "/" + chainIdentifier);
             logger.debug("querying PLIP REST service: {}", url);
-            String encoding = Base64.getEncoder().encodeToString(PLIP_REST_PROVIDER_CREDENTIALS.getBytes());
             URLConnection connection = url.openConnection();
-            connection.setRequestProperty("Authorization", "Basic " + encoding);
+            configureConnection(connection);
             connection.connect();
-            try (InputStream inputStream = connection.getInputStream()) {
-                return Optional.of(PlipParser.parse(pdbIdentifier, inputStream));
+            try (InputStream inputStream = connection.getInputStream();
+                 BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                return Optional.of(bufferedReader.lines().collect(Collectors.joining("\n")));
             }
         } catch (IOException e) {
             logger.warn("failed to obtain PLIP results from server {} for {}_{}", plipUrl, pdbIdentifier, chainIdentifier, e);
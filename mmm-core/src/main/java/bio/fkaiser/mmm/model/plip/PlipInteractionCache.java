@@ -0,0 +1,85 @@
+package bio.fkaiser.mmm.model.plip;
+
+import bio.fkaiser.mmm.io.Hashes;
+import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
+import de.bioforscher.singa.structure.parser.plip.PlipParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * An on-disk cache of PLIP reports that is consulted before any {@link AbstractPlipRequest} is sent to the PLIP REST service. Entries are stored as plain XML reports under the SHA-256
+ * digest of {@link AbstractPlipRequest#getCacheKey()}, i.e. the endpoint, the PDB identifier and either the chain or the digest of the submitted structure. Reports are parsed again on every
+ * hit because {@link InteractionContainer}s have no serialized form and are modified during validation. Failed requests are not cached.
+ *
+ * @author fk
+ */
+public class PlipInteractionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlipInteractionCache.class);
+    private static final String ENTRY_EXTENSION = ".xml";
+
+    private final Path cachePath;
+
+    public PlipInteractionCache(Path cachePath) {
+        this.cachePath = cachePath;
+        try {
+            Files.createDirectories(cachePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to create PLIP interaction cache at " + cachePath, e);
+        }
+    }
+
+    public Path getCachePath() {
+        return cachePath;
+    }
+
+    /**
+     * Returns the interactions of the given {@link AbstractPlipRequest} from the cache or queries them and stores the report if they are not cached yet.
+     *
+     * @param plipRequest The {@link AbstractPlipRequest}.
+     * @return The interactions or {@link Optional#empty()} if the query failed.
+     */
+    public Optional<InteractionContainer> queryInteractions(AbstractPlipRequest plipRequest) {
+        return queryReport(plipRequest).map(report -> PlipParser.parse(plipRequest.getPdbIdentifier(), report));
+    }
+
+    /**
+     * Returns the report of the given {@link AbstractPlipRequest} from the cache or queries it and stores it if it is not cached yet.
+     *
+     * @param plipRequest The {@link AbstractPlipRequest}.
+     * @return The report or {@link Optional#empty()} if the query failed.
+     */
+    public Optional<String> queryReport(AbstractPlipRequest plipRequest) {
+        Path entryPath = cachePath.resolve(Hashes.sha256(plipRequest.getCacheKey()) + ENTRY_EXTENSION);
+        if (Files.exists(entryPath)) {
+            try {
+                logger.debug("using cached PLIP report {} for {}", entryPath, plipRequest.getCacheKey());
+                return Optional.of(new String(Files.readAllBytes(entryPath), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                logger.warn("failed to read cached PLIP report {}, querying again", entryPath, e);
+            }
+        }
+        Optional<String> report = plipRequest.queryReport();
+        report.ifPresent(content -> writeEntry(entryPath, content));
+        return report;
+    }
+
+    private void writeEntry(Path entryPath, String report) {
+        try {
+            // write to a temporary file first such that concurrent readers never see partial entries
+            Path temporaryPath = Files.createTempFile(cachePath, "plip_", ".tmp");
+            Files.write(temporaryPath, report.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("failed to cache PLIP report {}", entryPath, e);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package bio.fkaiser.mmm.model.plip;
 
-import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
-import de.bioforscher.singa.structure.parser.plip.PlipParser;
+import bio.fkaiser.mmm.io.Hashes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,9 +8,9 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
 import java.util.Optional;
 
 /**
@@ -22,33 +21,50 @@ public class PlipPostRequest extends AbstractPlipRequest {
     private static final Logger logger = LoggerFactory.getLogger(PlipPostRequest.class);
     private static final String CHARSET = "UTF-8";
 
-    private final String pdbIdentifier;
-    private final Path pdbFilePath;
+    private final byte[] pdbContent;
+    private final String pdbFileName;
 
     public PlipPostRequest(String plipUrl, String pdbIdentifier, Path pdbFilePath) {
-        super(plipUrl);
-        this.pdbIdentifier = pdbIdentifier;
-        this.pdbFilePath = pdbFilePath;
+        super(plipUrl, pdbIdentifier);
+        try {
+            this.pdbContent = Files.readAllBytes(pdbFilePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read PDB file " + pdbFilePath, e);
+        }
+        this.pdbFileName = pdbFilePath.getFileName().toString();
         logger.info("creating PLIP POST for PDB file {}", pdbFilePath);
     }
 
+    /**
+     * Creates a PLIP POST that submits the given PDB content without writing it to a file.
+     *
+     * @param plipUrl       The URL of the PLIP REST service.
+     * @param pdbIdentifier The PDB identifier of the submitted structure.
+     * @param pdbContent    The structure in PDB format.
+     */
+    public PlipPostRequest(String plipUrl, String pdbIdentifier, String pdbContent) {
+        super(plipUrl, pdbIdentifier);
+        this.pdbContent = pdbContent.getBytes(StandardCharsets.UTF_8);
+        this.pdbFileName = pdbIdentifier + ".pdb";
+        logger.debug("creating PLIP POST for PDB content of {}", pdbIdentifier);
+    }
+
     private String doPlipPost() throws IOException {
         String boundary = Long.toHexString(System.currentTimeMillis());
         String crlf = "\r\n";
 
-        String login = Base64.getEncoder().encodeToString(PLIP_REST_PROVIDER_CREDENTIALS.getBytes());
         URLConnection connection = new URL(plipUrl).openConnection();
         connection.setDoOutput(true);
         connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-        connection.setRequestProperty("Authorization", "Basic " + login);
+        configureConnection(connection);
 
         OutputStream output = connection.getOutputStream();
         PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, CHARSET), true);
         writer.append("--").append(boundary).append(crlf);
-        writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(pdbFilePath.getFileName().toString()).append("\"").append(crlf);
+        writer.append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(pdbFileName).append("\"").append(crlf);
         writer.append("Content-Type: text/plain; charset=" + CHARSET).append(crlf); // Text file itself must be saved in this charset!
         writer.append(crlf).flush();
-        Files.copy(pdbFilePath, output);
+        output.write(pdbContent);
         output.flush();
         writer.append(crlf).flush();
         writer.append("--").append(boundary).append("--").append(crlf).flush();
@@ -68,14 +84,23 @@ public class PlipPostRequest extends AbstractPlipRequest {
         return response.toString();
     }
 
+    /**
+     * Returns the key of this request, which covers the SHA-256 digest of the submitted PDB content.
+     *
+     * @return The key.
+     */
+    @Override
+    public String getCacheKey() {
+        return plipUrl + ":" + pdbIdentifier.toLowerCase() + ":" + Hashes.sha256(pdbContent);
+    }
+
     @Override
-    public Optional<InteractionContainer> queryInteractions() {
+    public Optional<String> queryReport() {
 
         try {
-            String xml = doPlipPost();
-            return Optional.of(PlipParser.parse(pdbIdentifier, xml));
+            return Optional.of(doPlipPost());
         } catch (IOException e) {
-            logger.warn("failed to obtain PLIP results for {} and file {}", pdbIdentifier, pdbFilePath, e);
+            logger.warn("failed to obtain PLIP results for {} and file {}", pdbIdentifier, pdbFileName, e);
         }
         return Optional.empty();
     }
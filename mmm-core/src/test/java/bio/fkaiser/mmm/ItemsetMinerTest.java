@@ -3,22 +3,58 @@ package bio.fkaiser.mmm;
 import bio.fkaiser.mmm.model.DataPoint;
 import bio.fkaiser.mmm.model.DataPointIdentifier;
 import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
 import bio.fkaiser.mmm.model.configurations.metrics.SupportMetricConfiguration;
 import bio.fkaiser.mmm.model.metrics.EvaluationMetric;
+import bio.fkaiser.mmm.model.metrics.SimpleEvaluationMetric;
 import bio.fkaiser.mmm.model.metrics.SupportMetric;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class ItemsetMinerTest {
 
+    private static List<String> mineWithRecordedMetricOrder(boolean adaptiveMetricOrdering) {
+        List<Item<String>> items = Stream.of("A", "B", "C", "D", "E")
+                                         .map(Item::new)
+                                         .collect(Collectors.toList());
+        List<DataPoint<String>> dataPoints = new ArrayList<>();
+        dataPoints.add(new DataPoint<>(items, new DataPointIdentifier("1xxx")));
+
+        // the expensive metric is configured first although it never rejects a candidate
+        List<String> evaluatedMetrics = new ArrayList<>();
+        List<EvaluationMetric<String>> evaluationMetrics = new ArrayList<>();
+        evaluationMetrics.add(new RecordingMetric("expensive", 20, null, evaluatedMetrics));
+        evaluationMetrics.add(new RecordingMetric("cheap", 0, new Item<>("E"), evaluatedMetrics));
+
+        ItemsetMinerConfiguration<String> itemsetMinerConfiguration = new ItemsetMinerConfiguration<>();
+        itemsetMinerConfiguration.setMaximalEpochs(3);
+        itemsetMinerConfiguration.setAdaptiveMetricOrdering(adaptiveMetricOrdering);
+        new ItemsetMiner<>(dataPoints, evaluationMetrics, itemsetMinerConfiguration).start();
+        return evaluatedMetrics;
+    }
+
+    @Test
+    public void shouldOrderMetricsByCostOfRejection() {
+        // the configured order is used until statistics are available for both metrics
+        assertEquals(Arrays.asList("expensive", "cheap", "cheap", "expensive", "cheap", "expensive"), mineWithRecordedMetricOrder(true));
+    }
+
+    @Test
+    public void shouldRetainConfiguredMetricOrder() {
+        assertEquals(Arrays.asList("expensive", "cheap", "expensive", "cheap", "expensive", "cheap"), mineWithRecordedMetricOrder(false));
+    }
+
     @Test
     public void shouldCorrectlyGenerateCandidates() {
 
@@ -59,4 +95,40 @@ public class ItemsetMinerTest {
                                .filter(itemset -> itemset.getItems().size() == 2)
                                .anyMatch(itemset -> itemset.getItems().contains(new Item<String>("A"))));
     }
-}
\ No newline at end of file
+
+    /**
+     * A {@link SimpleEvaluationMetric} that records its evaluation, takes a fixed time and rejects all {@link Itemset}s containing a given {@link Item}.
+     */
+    private static class RecordingMetric implements SimpleEvaluationMetric<String> {
+
+        private final String name;
+        private final long delay;
+        private final Item<String> rejectedItem;
+        private final List<String> evaluatedMetrics;
+
+        RecordingMetric(String name, long delay, Item<String> rejectedItem, List<String> evaluatedMetrics) {
+            this.name = name;
+            this.delay = delay;
+            this.rejectedItem = rejectedItem;
+            this.evaluatedMetrics = evaluatedMetrics;
+        }
+
+        @Override
+        public Set<Itemset<String>> filterItemsets(Set<Itemset<String>> itemsets) {
+            evaluatedMetrics.add(name);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return itemsets.stream()
+                           .filter(itemset -> rejectedItem == null || !itemset.getItems().contains(rejectedItem))
+                           .collect(Collectors.toSet());
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bio.fkaiser.mmm;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class ItemsetsTest {
+
+    @Test
+    public void shouldSampleObservationsReproducibly() {
+        List<Integer> observations = IntStream.range(0, 1000)
+                                              .boxed()
+                                              .collect(Collectors.toList());
+
+        List<Integer> sample = Itemsets.sampleObservations(observations, 50, new Random(42));
+        assertEquals(50, sample.size());
+        // sampled observations keep their original order
+        for (int i = 0; i < sample.size() - 1; i++) {
+            assertTrue(sample.get(i) < sample.get(i + 1));
+        }
+        assertEquals(sample, Itemsets.sampleObservations(observations, 50, new Random(42)));
+
+        // small inputs are not sampled at all
+        assertSame(observations, Itemsets.sampleObservations(observations, 1000, new Random(42)));
+    }
+}
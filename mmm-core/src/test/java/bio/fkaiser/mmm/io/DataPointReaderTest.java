@@ -0,0 +1,142 @@
+package bio.fkaiser.mmm.io;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class DataPointReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Path> listStructurePaths() throws IOException {
+        try (Stream<Path> paths = Files.list(Paths.get("src/test/resources/PF00127"))) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<DataPoint<String>> readDataPoints(DataPointReaderConfiguration dataPointReaderConfiguration) throws IOException {
+        return readDataPoints(dataPointReaderConfiguration, null);
+    }
+
+    private static List<DataPoint<String>> readDataPoints(DataPointReaderConfiguration dataPointReaderConfiguration, StructureCache structureCache) throws IOException {
+        DataPointReader dataPointReader = new DataPointReader(dataPointReaderConfiguration, listStructurePaths());
+        dataPointReader.setStructureCache(structureCache);
+        return dataPointReader.readDataPoints();
+    }
+
+    private static void assertSameDataPoints(List<DataPoint<String>> expectedDataPoints, List<DataPoint<String>> actualDataPoints) {
+        assertEquals(expectedDataPoints.size(), actualDataPoints.size());
+        for (int i = 0; i < expectedDataPoints.size(); i++) {
+            assertSameDataPoint(expectedDataPoints.get(i), actualDataPoints.get(i));
+        }
+    }
+
+    private static void assertSameDataPoint(DataPoint<String> expectedDataPoint, DataPoint<String> actualDataPoint) {
+        assertEquals(expectedDataPoint.getDataPointIdentifier().toString(), actualDataPoint.getDataPointIdentifier().toString());
+        List<Item<String>> expectedItems = expectedDataPoint.getItems();
+        List<Item<String>> actualItems = actualDataPoint.getItems();
+        assertEquals(expectedItems.size(), actualItems.size());
+        for (int j = 0; j < expectedItems.size(); j++) {
+            assertEquals(expectedItems.get(j).getLabel(), actualItems.get(j).getLabel());
+            assertEquals(expectedItems.get(j).getSequencePosition(), actualItems.get(j).getSequencePosition());
+            assertEquals(expectedItems.get(j).getLeafIdentifier(), actualItems.get(j).getLeafIdentifier());
+            assertEquals(expectedItems.get(j).getPosition(), actualItems.get(j).getPosition());
+        }
+    }
+
+    @Test
+    public void shouldReadSameDataPointsWithParallelWorkers() throws IOException {
+        DataPointReaderConfiguration dataPointReaderConfiguration = new DataPointReaderConfiguration();
+        dataPointReaderConfiguration.setLevelOfParallelism(1);
+        List<DataPoint<String>> sequentialDataPoints = readDataPoints(dataPointReaderConfiguration);
+        dataPointReaderConfiguration.setLevelOfParallelism(4);
+        assertSameDataPoints(sequentialDataPoints, readDataPoints(dataPointReaderConfiguration));
+    }
+
+    @Test
+    public void shouldReadSameDataPointsFromStreamedAtomRecords() throws IOException {
+        DataPointReaderConfiguration dataPointReaderConfiguration = new DataPointReaderConfiguration();
+        List<DataPoint<String>> parsedDataPoints = readDataPoints(dataPointReaderConfiguration);
+        dataPointReaderConfiguration.setStreamAtomRecords(true);
+        Map<String, DataPoint<String>> streamedDataPoints = readDataPoints(dataPointReaderConfiguration).stream()
+                                                                                                      .collect(Collectors.toMap(dataPoint -> dataPoint.getDataPointIdentifier().toString(),
+                                                                                                                                Function.identity()));
+        // the parser needs to fetch definitions of unknown ligands, thus it may skip structures the atom record reader reads
+        assertFalse(parsedDataPoints.isEmpty());
+        for (DataPoint<String> parsedDataPoint : parsedDataPoints) {
+            DataPoint<String> streamedDataPoint = streamedDataPoints.get(parsedDataPoint.getDataPointIdentifier().toString());
+            assertNotNull(streamedDataPoint);
+            assertSameDataPoint(parsedDataPoint, streamedDataPoint);
+        }
+    }
+
+    @Test
+    public void shouldReadSameDataPointsFromStructureCache() throws IOException {
+        DataPointReaderConfiguration dataPointReaderConfiguration = new DataPointReaderConfiguration();
+        List<DataPoint<String>> parsedDataPoints = readDataPoints(dataPointReaderConfiguration);
+
+        StructureCache structureCache = StructureCache.of(folder.getRoot().toPath(), 64 * 1024 * 1024);
+        assertSameDataPoints(parsedDataPoints, readDataPoints(dataPointReaderConfiguration, structureCache));
+        try (Stream<Path> entries = Files.list(structureCache.getCachePath())) {
+            assertEquals(parsedDataPoints.size(), entries.count());
+        }
+        // second read is served from the cache
+        assertSameDataPoints(parsedDataPoints, readDataPoints(dataPointReaderConfiguration, structureCache));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyMaterializedStructure() {
+        assertEquals(DataPointReaderConfiguration.DEFAULT_MATERIALIZED_STRUCTURES, new DataPointReaderConfiguration().getMaterializedStructures());
+        Map<StructureLeafSubstructureProvider, Map<LeafIdentifier, LeafSubstructure<?>>> materializedStructures =
+                Collections.synchronizedMap(new DataPointReader.MaterializedStructures(2));
+        int[] reads = new int[3];
+        List<StructureLeafSubstructureProvider> providers = new ArrayList<>();
+        for (int i = 0; i < reads.length; i++) {
+            int inputIndex = i;
+            providers.add(new StructureLeafSubstructureProvider(inputIndex, () -> {
+                reads[inputIndex]++;
+                return Collections.emptyList();
+            }, materializedStructures));
+        }
+        LeafIdentifier leafIdentifier = new LeafIdentifier(1);
+        providers.get(0).provideLeafSubstructure(leafIdentifier);
+        providers.get(1).provideLeafSubstructure(leafIdentifier);
+        // kept structures are not read again and become most recently used
+        providers.get(0).provideLeafSubstructure(leafIdentifier);
+        assertArrayEquals(new int[]{1, 1, 0}, reads);
+        // the least recently used structure is evicted
+        providers.get(2).provideLeafSubstructure(leafIdentifier);
+        assertEquals(2, materializedStructures.size());
+        providers.get(0).provideLeafSubstructure(leafIdentifier);
+        assertArrayEquals(new int[]{1, 1, 1}, reads);
+        providers.get(1).provideLeafSubstructure(leafIdentifier);
+        assertArrayEquals(new int[]{1, 2, 1}, reads);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyMaterializedStructures() {
+        new DataPointReader.MaterializedStructures(0);
+    }
+}
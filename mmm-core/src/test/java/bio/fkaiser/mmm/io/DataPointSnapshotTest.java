@@ -0,0 +1,136 @@
+package bio.fkaiser.mmm.io;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import bio.fkaiser.mmm.model.Item;
+import de.bioforscher.singa.structure.algorithms.superimposition.fit3d.representations.RepresentationSchemeType;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class DataPointSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Path> listStructurePaths() throws IOException {
+        try (Stream<Path> paths = Files.list(Paths.get("src/test/resources/PF00127"))) {
+            return paths.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void shouldRestoreDataPoints() throws IOException {
+        List<DataPoint<String>> dataPoints = new DataPointReader(new DataPointReaderConfiguration(), listStructurePaths()).readDataPoints();
+
+        DataPointSnapshot dataPointSnapshot = new DataPointSnapshot(folder.getRoot().toPath().resolve("snapshot.bin"), "key");
+        dataPointSnapshot.write(dataPoints);
+        List<DataPoint<String>> restoredDataPoints = dataPointSnapshot.load().orElseThrow(NoSuchElementException::new);
+
+        assertEquals(dataPoints.size(), restoredDataPoints.size());
+        for (int i = 0; i < dataPoints.size(); i++) {
+            List<Item<String>> items = dataPoints.get(i).getItems();
+            List<Item<String>> restoredItems = restoredDataPoints.get(i).getItems();
+            assertEquals(dataPoints.get(i).getDataPointIdentifier().toString(), restoredDataPoints.get(i).getDataPointIdentifier().toString());
+            assertEquals(items.size(), restoredItems.size());
+            for (int j = 0; j < items.size(); j++) {
+                Item<String> item = items.get(j);
+                Item<String> restoredItem = restoredItems.get(j);
+                LeafSubstructure<?> leafSubstructure = item.getLeafSubstructure().orElseThrow(NoSuchElementException::new);
+                LeafSubstructure<?> restoredLeafSubstructure = restoredItem.getLeafSubstructure().orElseThrow(NoSuchElementException::new);
+                assertEquals(item.getLabel(), restoredItem.getLabel());
+                assertEquals(item.getSequencePosition(), restoredItem.getSequencePosition());
+                assertEquals(leafSubstructure.getIdentifier(), restoredLeafSubstructure.getIdentifier());
+                assertEquals(leafSubstructure.getFamily(), restoredLeafSubstructure.getFamily());
+                assertEquals(leafSubstructure.getAllAtoms().size(), restoredLeafSubstructure.getAllAtoms().size());
+                assertEquals(item.getPosition(), restoredItem.getPosition());
+            }
+        }
+    }
+
+    @Test
+    public void shouldRestoreSequencePositionOfItemsWithoutLeafSubstructure() throws IOException {
+        DataPoint<String> dataPoint = new DataPoint<>(Collections.singletonList(new Item<>("A", null, 42)), new DataPointIdentifier("1abc", "A"));
+
+        DataPointSnapshot dataPointSnapshot = new DataPointSnapshot(folder.getRoot().toPath().resolve("snapshot.bin"), "key");
+        dataPointSnapshot.write(Collections.singletonList(dataPoint));
+        Item<String> restoredItem = dataPointSnapshot.load().orElseThrow(NoSuchElementException::new).get(0).getItems().get(0);
+
+        assertEquals("A", restoredItem.getLabel());
+        assertEquals(42, restoredItem.getSequencePosition());
+        assertFalse(restoredItem.getLeafSubstructure().isPresent());
+    }
+
+    @Test
+    public void shouldIgnoreDamagedSnapshot() throws IOException {
+        DataPoint<String> dataPoint = new DataPoint<>(Collections.singletonList(new Item<>("A", null, 42)), new DataPointIdentifier("1abc", "A"));
+
+        Path snapshotPath = folder.getRoot().toPath().resolve("snapshot.bin");
+        DataPointSnapshot dataPointSnapshot = new DataPointSnapshot(snapshotPath, "key");
+        dataPointSnapshot.write(Collections.singletonList(dataPoint));
+
+        // point the label of the item outside of the string table
+        try (FileChannel fileChannel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            ByteBuffer labelIndex = ByteBuffer.allocate(Integer.BYTES).putInt(Integer.MAX_VALUE);
+            labelIndex.flip();
+            fileChannel.write(labelIndex, fileChannel.size() - 9);
+        }
+        assertFalse(dataPointSnapshot.load().isPresent());
+    }
+
+    @Test
+    public void shouldRestoreCoordinateOnlyDataPoints() throws IOException {
+        DataPointReaderConfiguration dataPointReaderConfiguration = new DataPointReaderConfiguration();
+        dataPointReaderConfiguration.setCoordinatesOnly(true);
+        dataPointReaderConfiguration.setCoordinatesRepresentationSchemeType(RepresentationSchemeType.SIDE_CHAIN_CENTROID);
+        List<DataPoint<String>> dataPoints = new DataPointReader(dataPointReaderConfiguration, listStructurePaths()).readDataPoints();
+
+        DataPointSnapshot dataPointSnapshot = new DataPointSnapshot(folder.getRoot().toPath().resolve("snapshot.bin"), "key");
+        dataPointSnapshot.write(dataPoints);
+        DataPointReader dataPointReader = new DataPointReader(dataPointReaderConfiguration, listStructurePaths());
+        List<DataPoint<String>> restoredDataPoints = dataPointSnapshot.load(dataPointReader).orElseThrow(NoSuchElementException::new);
+
+        assertEquals(dataPoints.size(), restoredDataPoints.size());
+        for (int i = 0; i < dataPoints.size(); i++) {
+            List<Item<String>> items = dataPoints.get(i).getItems();
+            List<Item<String>> restoredItems = restoredDataPoints.get(i).getItems();
+            assertEquals(dataPoints.get(i).getDataPointIdentifier().toString(), restoredDataPoints.get(i).getDataPointIdentifier().toString());
+            assertEquals(items.size(), restoredItems.size());
+            for (int j = 0; j < items.size(); j++) {
+                Item<String> item = items.get(j);
+                Item<String> restoredItem = restoredItems.get(j);
+                assertTrue(restoredItem.isCoordinateOnly());
+                assertEquals(item.getLabel(), restoredItem.getLabel());
+                assertEquals(item.getSequencePosition(), restoredItem.getSequencePosition());
+                assertEquals(item.getLeafIdentifier(), restoredItem.getLeafIdentifier());
+                assertEquals(item.isPolymer(), restoredItem.isPolymer());
+                assertEquals(item.getPosition(), restoredItem.getPosition());
+                assertEquals(item.getPosition(RepresentationSchemeType.SIDE_CHAIN_CENTROID), restoredItem.getPosition(RepresentationSchemeType.SIDE_CHAIN_CENTROID));
+            }
+        }
+
+        // leaf substructures are materialized again from the input
+        Item<String> restoredItem = restoredDataPoints.get(0).getItems().get(0);
+        LeafSubstructure<?> leafSubstructure = restoredItem.getLeafSubstructure().orElseThrow(NoSuchElementException::new);
+        assertEquals(restoredItem.getLeafIdentifier().orElseThrow(NoSuchElementException::new), leafSubstructure.getIdentifier());
+    }
+}
@@ -0,0 +1,43 @@
+package bio.fkaiser.mmm.model;
+
+import bio.fkaiser.mmm.model.metrics.CohesionMetric;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author fk
+ */
+public class DistributionTest {
+
+    @Test
+    public void shouldMergeMomentsAndQuantiles() {
+        Random random = new Random(42);
+        Distribution distribution = new Distribution(CohesionMetric.class);
+        Distribution firstPart = new Distribution(CohesionMetric.class);
+        Distribution secondPart = new Distribution(CohesionMetric.class, false);
+        DescriptiveStatistics descriptiveStatistics = new DescriptiveStatistics();
+        for (int i = 0; i < 10000; i++) {
+            double value = 5.0 + random.nextGaussian();
+            distribution.addObservationValue(value);
+            (i % 2 == 0 ? firstPart : secondPart).addObservationValue(value);
+            descriptiveStatistics.addValue(value);
+        }
+        assertArrayEquals(descriptiveStatistics.getValues(), distribution.getObservationValues(), 0.0);
+        assertEquals(descriptiveStatistics.getMean(), distribution.getMean(), 1E-9);
+        assertEquals(descriptiveStatistics.getStandardDeviation(), distribution.getStandardDeviation(), 1E-9);
+        assertEquals(descriptiveStatistics.getPercentile(50), distribution.getQuantile(0.5), 0.1);
+
+        Distribution mergedDistribution = new Distribution(CohesionMetric.class, false);
+        mergedDistribution.merge(firstPart);
+        mergedDistribution.merge(secondPart);
+        assertEquals(distribution.size(), mergedDistribution.size());
+        assertEquals(distribution.getMean(), mergedDistribution.getMean(), 1E-9);
+        assertEquals(distribution.getVariance(), mergedDistribution.getVariance(), 1E-9);
+        assertEquals(distribution.getQuantile(0.9), mergedDistribution.getQuantile(0.9), 0.0);
+    }
+}
@@ -0,0 +1,31 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author fk
+ */
+public class AssociationRankingTest {
+
+    @Test
+    public void shouldKeepTiesAtLastRank() {
+        AssociationRanking<String> firstRanking = new AssociationRanking<>(0.1, 2);
+        AssociationRanking<String> secondRanking = new AssociationRanking<>(0.1, 2);
+        firstRanking.add(new ItemsetAssociation<>(null, null, 0, 1, 0.9));
+        firstRanking.add(new ItemsetAssociation<>(null, null, 0, 2, 0.5));
+        firstRanking.add(new ItemsetAssociation<>(null, null, 0, 3, 0.05));
+        secondRanking.add(new ItemsetAssociation<>(null, null, 1, 2, 0.5));
+        secondRanking.add(new ItemsetAssociation<>(null, null, 1, 3, 0.3));
+        firstRanking.merge(secondRanking);
+
+        List<ItemsetAssociation<String>> associations = firstRanking.toList();
+        assertEquals(3, associations.size());
+        assertEquals(0.9, associations.get(0).getScore(), 0.0);
+        assertEquals(2, associations.get(1).getSecondIndex());
+        assertEquals(1, associations.get(2).getFirstIndex());
+    }
+}
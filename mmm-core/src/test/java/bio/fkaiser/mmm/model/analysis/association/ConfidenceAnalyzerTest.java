@@ -0,0 +1,122 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author fk
+ */
+public class ConfidenceAnalyzerTest {
+
+    private ItemsetMiner<String> itemsetMiner;
+
+    private static Itemset<String> createItemset(double support, String... labels) {
+        Set<Item<String>> items = new TreeSet<>();
+        for (String label : labels) {
+            items.add(new Item<>(label));
+        }
+        Itemset<String> itemset = new Itemset<>(items);
+        itemset.setSupport(support);
+        return itemset;
+    }
+
+    @Before
+    public void setUp() {
+        itemsetMiner = new ItemsetMiner<>(new ArrayList<>(), new ArrayList<>(), new ItemsetMinerConfiguration<String>());
+    }
+
+    @Test
+    public void shouldGenerateRulesBetweenSingletons() {
+        Itemset<String> first = createItemset(0.8, "A");
+        Itemset<String> second = createItemset(0.5, "B");
+        itemsetMiner.getTotalItemsets().add(first);
+        itemsetMiner.getTotalItemsets().add(second);
+        itemsetMiner.getTotalItemsets().add(createItemset(0.4, "A", "B"));
+
+        List<ItemsetAssociation<String>> confidence = new ConfidenceAnalyzer<>(itemsetMiner, 0.0, 2).getConfidence();
+        assertEquals(2, confidence.size());
+        assertSame(second, confidence.get(0).getFirst());
+        assertSame(first, confidence.get(0).getSecond());
+        assertEquals(0.8, confidence.get(0).getScore(), 1E-9);
+        assertSame(first, confidence.get(1).getFirst());
+        assertEquals(0.5, confidence.get(1).getScore(), 1E-9);
+    }
+
+    @Test
+    public void shouldGenerateRulesOnlyBetweenCoveringSubsets() {
+        itemsetMiner.getTotalItemsets().add(createItemset(0.9, "A"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.9, "B"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.9, "C"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.8, "A", "B"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.8, "A", "C"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.8, "B", "C"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.4, "A", "B", "C"));
+
+        // three ordered pairs of 1-itemsets for each 2-itemset and six ordered pairs of 2-itemsets for the 3-itemset
+        List<ItemsetAssociation<String>> confidence = new ConfidenceAnalyzer<>(itemsetMiner, 0.0, 1).getConfidence();
+        assertEquals(12, confidence.size());
+        assertEquals(6, confidence.stream()
+                                  .filter(association -> association.getFirst().getItems().size() == 2)
+                                  .filter(association -> association.getScore() == 0.5)
+                                  .count());
+    }
+
+    @Test
+    public void shouldIgnoreDuplicateItemsets() {
+        itemsetMiner.getTotalItemsets().add(createItemset(0.8, "A"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.5, "B"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.4, "A", "B"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.4, "B", "A"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.5, "B"));
+
+        assertEquals(2, new ConfidenceAnalyzer<>(itemsetMiner, 0.0, 2).getConfidence().size());
+    }
+
+    @Test
+    public void shouldSkipItemsetsLargerThanMaximalSize() {
+        addCoveredItemset(ConfidenceAnalyzer.MAXIMAL_ITEMSET_SIZE);
+        assertEquals(2, new ConfidenceAnalyzer<>(itemsetMiner, 0.0, 2).getConfidence().size());
+
+        setUp();
+        addCoveredItemset(ConfidenceAnalyzer.MAXIMAL_ITEMSET_SIZE + 1);
+        assertEquals(0, new ConfidenceAnalyzer<>(itemsetMiner, 0.0, 2).getConfidence().size());
+    }
+
+    /**
+     * Adds an itemset of the given size together with two mined subsets of equal size that cover it.
+     */
+    private void addCoveredItemset(int size) {
+        String[] labels = new String[size];
+        for (int i = 0; i < size; i++) {
+            labels[i] = "L" + i;
+        }
+        int subsetSize = (size + 1) / 2;
+        itemsetMiner.getTotalItemsets().add(createItemset(0.1, labels));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.5, Arrays.copyOfRange(labels, 0, subsetSize)));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.5, Arrays.copyOfRange(labels, size - subsetSize, size)));
+    }
+
+    @Test
+    public void shouldApplyMinimalConfidence() {
+        itemsetMiner.getTotalItemsets().add(createItemset(0.8, "A"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.5, "B"));
+        itemsetMiner.getTotalItemsets().add(createItemset(0.4, "A", "B"));
+
+        List<ItemsetAssociation<String>> confidence = new ConfidenceAnalyzer<>(itemsetMiner, 0.6, 2).getConfidence();
+        assertEquals(1, confidence.size());
+        assertEquals(0.8, confidence.get(0).getScore(), 1E-9);
+    }
+}
@@ -0,0 +1,128 @@
+package bio.fkaiser.mmm.model.analysis.association;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.graphs.ItemsetGraphBuilder;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.families.LigandFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.oak.OakAminoAcid;
+import de.bioforscher.singa.structure.model.oak.OakAtom;
+import de.bioforscher.singa.structure.model.oak.OakLigand;
+import de.bioforscher.singa.structure.model.oak.StructuralMotif;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class ItemsetExtenderTest {
+
+    private static final LigandFamily LIGAND_FAMILY = new LigandFamily("LIG");
+    private static final double[][] LIGAND_COORDINATES = {{0.0, 0.0, 0.0}, {1.5, 0.0, 0.0}, {1.5, 1.5, 0.0}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ItemsetMiner<String> itemsetMiner;
+    private ItemsetGraphBuilder<String> itemsetGraphBuilder;
+
+    /**
+     * Creates an observation of an amino acid and the ligand, both translated by the given offset.
+     */
+    private static Itemset<String> createObservation(String pdbIdentifier, AminoAcidFamily aminoAcidFamily, double offset) {
+        OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier(pdbIdentifier, 0, "A", 1), aminoAcidFamily);
+        aminoAcid.addAtom(new OakAtom(1, ElementProvider.CARBON, "CA", new Vector3D(offset, 5.0, 0.0)));
+        OakLigand ligand = new OakLigand(new LeafIdentifier(pdbIdentifier, 0, "A", 100), LIGAND_FAMILY);
+        for (int i = 0; i < LIGAND_COORDINATES.length; i++) {
+            ligand.addAtom(new OakAtom(i + 2, ElementProvider.CARBON, "C" + (i + 1), new Vector3D(LIGAND_COORDINATES[i]).add(new Vector3D(offset, 0.0, 0.0))));
+        }
+        List<LeafSubstructure<?>> leafSubstructures = new ArrayList<>();
+        leafSubstructures.add(aminoAcid);
+        leafSubstructures.add(ligand);
+        return new Itemset<>(new TreeSet<>(Arrays.asList(new Item<>(aminoAcidFamily.getOneLetterCode(), aminoAcid), new Item<>("LIG", ligand))),
+                             StructuralMotif.fromLeafSubstructures(leafSubstructures), new DataPointIdentifier(pdbIdentifier, "A"));
+    }
+
+    private static List<Path> listMotifPaths(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(motifPath -> motifPath.toString().endsWith(".pdb"))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Vector3D> readLigandCoordinates(Path motifPath) throws IOException {
+        return Files.readAllLines(motifPath).stream()
+                    .filter(line -> line.length() > 54 && line.substring(17, 20).equals(LIGAND_FAMILY.getThreeLetterCode()))
+                    .map(line -> new Vector3D(Double.parseDouble(line.substring(30, 38).trim()),
+                                              Double.parseDouble(line.substring(38, 46).trim()),
+                                              Double.parseDouble(line.substring(46, 54).trim())))
+                    .collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() {
+        itemsetMiner = new ItemsetMiner<>(new ArrayList<>(), new ArrayList<>(), new ItemsetMinerConfiguration<String>());
+
+        // two disconnected itemsets, the first is observed in two data points with a displaced ligand
+        Itemset<String> itemsetOne = Itemset.of(new Item<>("G"), new Item<>("LIG"));
+        itemsetOne.setSupport(1.0);
+        Itemset<String> itemsetTwo = Itemset.of(new Item<>("A"), new Item<>("LIG"));
+        itemsetTwo.setSupport(0.5);
+        itemsetMiner.getTotalExtractedItemsets().put(itemsetOne, Arrays.asList(createObservation("1abc", AminoAcidFamily.GLYCINE, 0.0),
+                                                                               createObservation("2abc", AminoAcidFamily.GLYCINE, 10.0)));
+        itemsetMiner.getTotalExtractedItemsets().put(itemsetTwo, Collections.singletonList(createObservation("1abc", AminoAcidFamily.ALANINE, 0.0)));
+
+        itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        itemsetGraphBuilder.addNode(itemsetOne);
+        itemsetGraphBuilder.addNode(itemsetTwo);
+    }
+
+    @Test
+    public void shouldWriteMergedMotifsOfAllSubgraphs() throws IOException {
+        Path outputPath = folder.newFolder().toPath();
+        ItemsetExtender<String> itemsetExtender = new ItemsetExtender<>(itemsetMiner, itemsetGraphBuilder.build(), outputPath, null, 2);
+        // all motifs are written once the extender returns
+        assertEquals(3, itemsetExtender.getWrittenMotifCount());
+        assertEquals(2, listMotifPaths(outputPath.resolve("G-LIG")).size());
+        assertEquals(1, listMotifPaths(outputPath.resolve("A-LIG")).size());
+    }
+
+    @Test(timeout = 60000)
+    public void shouldAlignInLigandWithSingleWorker() throws IOException {
+        Path outputPath = folder.newFolder().toPath();
+        // superimpositions are waited on by the only subgraph worker
+        ItemsetExtender<String> itemsetExtender = new ItemsetExtender<>(itemsetMiner, itemsetGraphBuilder.build(), outputPath, LIGAND_FAMILY, 1);
+        assertEquals(3, itemsetExtender.getWrittenMotifCount());
+
+        List<Path> motifPaths = listMotifPaths(outputPath.resolve("G-LIG"));
+        assertEquals(2, motifPaths.size());
+        for (Path motifPath : motifPaths) {
+            List<Vector3D> ligandCoordinates = readLigandCoordinates(motifPath);
+            assertEquals(LIGAND_COORDINATES.length, ligandCoordinates.size());
+            // the displaced ligand is superimposed onto the ligand of the first data point
+            for (int i = 0; i < LIGAND_COORDINATES.length; i++) {
+                assertTrue(ligandCoordinates.get(i).distanceTo(new Vector3D(LIGAND_COORDINATES[i])) < 1E-2);
+            }
+        }
+    }
+}
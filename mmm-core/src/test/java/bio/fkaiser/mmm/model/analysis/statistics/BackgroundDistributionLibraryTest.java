@@ -0,0 +1,134 @@
+package bio.fkaiser.mmm.model.analysis.statistics;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.model.Distribution;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.AffinityMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.CohesionMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
+import bio.fkaiser.mmm.model.metrics.AffinityMetric;
+import bio.fkaiser.mmm.model.metrics.CohesionMetric;
+import bio.fkaiser.mmm.model.metrics.ConsensusMetric;
+import bio.fkaiser.mmm.model.metrics.EvaluationMetric;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class BackgroundDistributionLibraryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path libraryPath;
+    private Itemset<String> itemset;
+
+    private static ItemsetMiner<String> createItemsetMiner(CohesionMetricConfiguration<String> cohesionMetricConfiguration,
+                                                           ConsensusMetricConfiguration<String> consensusMetricConfiguration,
+                                                           AffinityMetricConfiguration<String> affinityMetricConfiguration) {
+        ItemsetMinerConfiguration<String> itemsetMinerConfiguration = new ItemsetMinerConfiguration<>();
+        itemsetMinerConfiguration.setExtractionMetricConfiguration(cohesionMetricConfiguration);
+        itemsetMinerConfiguration.addExtractionDependentMetricConfiguration(consensusMetricConfiguration);
+        itemsetMinerConfiguration.addExtractionDependentMetricConfiguration(affinityMetricConfiguration);
+        List<EvaluationMetric<String>> evaluationMetrics = new ArrayList<>();
+        evaluationMetrics.add(new CohesionMetric<>(new ArrayList<>(), cohesionMetricConfiguration));
+        return new ItemsetMiner<>(new ArrayList<>(), evaluationMetrics, itemsetMinerConfiguration);
+    }
+
+    private static Distribution createDistribution() {
+        Distribution distribution = new Distribution(ConsensusMetric.class);
+        distribution.addObservationValue(0.25);
+        distribution.addObservationValue(0.5);
+        return distribution;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        libraryPath = folder.newFolder("library").toPath();
+        Set<Item<String>> items = new TreeSet<>();
+        items.add(new Item<>("D"));
+        items.add(new Item<>("H"));
+        itemset = new Itemset<>(items);
+    }
+
+    @Test
+    public void shouldReuseDistributionForSameSettings() {
+        BackgroundDistributionLibrary<String> library = new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                                                             new ConsensusMetricConfiguration<>(),
+                                                                                                                             new AffinityMetricConfiguration<>()));
+        library.store(itemset, createDistribution(), 10);
+        BackgroundDistributionLibrary<String> otherLibrary = new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                                                                  new ConsensusMetricConfiguration<>(),
+                                                                                                                                  new AffinityMetricConfiguration<>()));
+        Optional<Distribution> distribution = otherLibrary.lookup(itemset, SignificanceEstimatorType.CONSENSUS.getDistributionMetric(), 10);
+        assertTrue(distribution.isPresent());
+        assertArrayEquals(new double[]{0.25, 0.5}, distribution.get().getObservationValues(), 0.0);
+        assertFalse(otherLibrary.lookup(itemset, SignificanceEstimatorType.CONSENSUS.getDistributionMetric(), 11).isPresent());
+    }
+
+    @Test
+    public void shouldSeparateDistributionsForDifferentSettings() {
+        BackgroundDistributionLibrary<String> library = new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                                                             new ConsensusMetricConfiguration<>(),
+                                                                                                                             new AffinityMetricConfiguration<>()));
+        library.store(itemset, createDistribution(), 10);
+
+        ConsensusMetricConfiguration<String> alignedConsensusMetricConfiguration = new ConsensusMetricConfiguration<>();
+        alignedConsensusMetricConfiguration.setAlignWithinClusters(true);
+        assertFalse(new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                        alignedConsensusMetricConfiguration,
+                                                                                        new AffinityMetricConfiguration<>()))
+                            .lookup(itemset, SignificanceEstimatorType.CONSENSUS.getDistributionMetric(), 10).isPresent());
+
+        CohesionMetricConfiguration<String> cohesionMetricConfiguration = new CohesionMetricConfiguration<>();
+        cohesionMetricConfiguration.setMaximalCohesion(cohesionMetricConfiguration.getMaximalCohesion() + 1.0);
+        assertFalse(new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(cohesionMetricConfiguration,
+                                                                                        new ConsensusMetricConfiguration<>(),
+                                                                                        new AffinityMetricConfiguration<>()))
+                            .lookup(itemset, SignificanceEstimatorType.CONSENSUS.getDistributionMetric(), 10).isPresent());
+
+        // the level of parallelism does not change the background values
+        ConsensusMetricConfiguration<String> parallelConsensusMetricConfiguration = new ConsensusMetricConfiguration<>();
+        parallelConsensusMetricConfiguration.setLevelOfParallelism(2);
+        assertTrue(new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                       parallelConsensusMetricConfiguration,
+                                                                                       new AffinityMetricConfiguration<>()))
+                           .lookup(itemset, SignificanceEstimatorType.CONSENSUS.getDistributionMetric(), 10).isPresent());
+    }
+
+    @Test
+    public void shouldSeparateAffinityDistributionsForDifferentSettings() {
+        BackgroundDistributionLibrary<String> library = new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                                                             new ConsensusMetricConfiguration<>(),
+                                                                                                                             new AffinityMetricConfiguration<>()));
+        Distribution distribution = new Distribution(AffinityMetric.class);
+        distribution.addObservationValue(1.0);
+        library.store(itemset, distribution, 10);
+
+        AffinityMetricConfiguration<String> affinityMetricConfiguration = new AffinityMetricConfiguration<>();
+        affinityMetricConfiguration.setNearestNeighbors(5);
+        assertFalse(new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                        new ConsensusMetricConfiguration<>(),
+                                                                                        affinityMetricConfiguration))
+                            .lookup(itemset, SignificanceEstimatorType.AFFINITY.getDistributionMetric(), 10).isPresent());
+
+        // consensus settings do not change the affinity background values
+        ConsensusMetricConfiguration<String> consensusMetricConfiguration = new ConsensusMetricConfiguration<>();
+        consensusMetricConfiguration.setIncremental(true);
+        assertTrue(new BackgroundDistributionLibrary<>(libraryPath, createItemsetMiner(new CohesionMetricConfiguration<>(),
+                                                                                       consensusMetricConfiguration,
+                                                                                       new AffinityMetricConfiguration<>()))
+                           .lookup(itemset, SignificanceEstimatorType.AFFINITY.getDistributionMetric(), 10).isPresent());
+    }
+}
@@ -0,0 +1,139 @@
+package bio.fkaiser.mmm.model.analysis.statistics;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.ItemsetMinerRunner;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.Distribution;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.CohesionMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.SupportMetricConfiguration;
+import bio.fkaiser.mmm.model.metrics.DistributionMetric;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class DistributionSamplerTest {
+
+    private static final int SAMPLE_SIZE = 10;
+    private static final long SAMPLING_SEED = 42L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ItemsetMiner<String> itemsetMiner;
+    private List<Itemset<String>> itemsets;
+
+    @Before
+    public void setUp() throws IOException, URISyntaxException {
+        ItemsetMinerConfiguration<String> itemsetMinerConfiguration = new ItemsetMinerConfiguration<>();
+        itemsetMinerConfiguration.setMaximalEpochs(2);
+        itemsetMinerConfiguration.setInputDirectoryLocation("src/test/resources/PF00127");
+        itemsetMinerConfiguration.setOutputLocation(folder.newFolder().toString());
+        itemsetMinerConfiguration.setDataPointReaderConfiguration(new DataPointReaderConfiguration());
+
+        SupportMetricConfiguration<String> supportMetricConfiguration = new SupportMetricConfiguration<>();
+        supportMetricConfiguration.setMinimalSupport(0.9);
+        itemsetMinerConfiguration.addSimpleMetricConfiguration(supportMetricConfiguration);
+
+        CohesionMetricConfiguration<String> cohesionMetricConfiguration = new CohesionMetricConfiguration<>();
+        cohesionMetricConfiguration.setMaximalCohesion(10.0);
+        cohesionMetricConfiguration.setVertexOne(false);
+        itemsetMinerConfiguration.setExtractionMetricConfiguration(cohesionMetricConfiguration);
+
+        ConsensusMetricConfiguration<String> consensusMetricConfiguration = new ConsensusMetricConfiguration<>();
+        consensusMetricConfiguration.setMaximalConsensus(1.0);
+        consensusMetricConfiguration.setClusterCutoffValue(0.5);
+        itemsetMinerConfiguration.addExtractionDependentMetricConfiguration(consensusMetricConfiguration);
+
+        itemsetMiner = new ItemsetMinerRunner(itemsetMinerConfiguration).getItemsetMiner();
+        List<Itemset<String>> totalItemsets = itemsetMiner.getTotalItemsets();
+        itemsets = new ArrayList<>(totalItemsets.subList(0, Math.min(4, totalItemsets.size())));
+        assertFalse(itemsets.isEmpty());
+    }
+
+    private Map<Itemset<String>, List<Double>> sample(List<Class<? extends DistributionMetric<?>>> distributionMetricTypes, Class<? extends DistributionMetric<?>> distributionMetricType,
+                                                      int levelOfParallelism) {
+        DistributionSampler<String> distributionSampler = new DistributionSampler<>(itemsetMiner, itemsets, distributionMetricTypes, levelOfParallelism, SAMPLE_SIZE, SAMPLING_SEED, null);
+        Map<Itemset<String>, List<Double>> sampleValues = new HashMap<>();
+        distributionSampler.getBackgroundDistributions(distributionMetricType)
+                           .forEach((itemset, distribution) -> sampleValues.put(itemset, Arrays.stream(distribution.getObservationValues())
+                                                                                             .boxed()
+                                                                                             .collect(Collectors.toList())));
+        return sampleValues;
+    }
+
+    @Test
+    public void shouldSampleReproduciblyIndependentOfParallelism() {
+        List<List<String>> originalLabels = itemsetMiner.getDataPoints().stream()
+                                                        .map(dataPoint -> dataPoint.getItems().stream()
+                                                                                   .map(Item::getLabel)
+                                                                                   .collect(Collectors.toList()))
+                                                        .collect(Collectors.toList());
+
+        Class<? extends DistributionMetric<?>> cohesionMetricType = SignificanceEstimatorType.COHESION.getDistributionMetric();
+        List<Class<? extends DistributionMetric<?>>> distributionMetricTypes = Collections.singletonList(cohesionMetricType);
+        Map<Itemset<String>, List<Double>> sequentialSampleValues = sample(distributionMetricTypes, cohesionMetricType, 1);
+        Map<Itemset<String>, List<Double>> parallelSampleValues = sample(distributionMetricTypes, cohesionMetricType, 4);
+
+        assertFalse(sequentialSampleValues.isEmpty());
+        assertEquals(sequentialSampleValues, parallelSampleValues);
+        sequentialSampleValues.values().forEach(values -> assertTrue(values.size() <= SAMPLE_SIZE));
+
+        // labels are permuted per round without modifying the data points
+        for (int i = 0; i < originalLabels.size(); i++) {
+            assertEquals(originalLabels.get(i), itemsetMiner.getDataPoints().get(i).getItems().stream()
+                                                            .map(Item::getLabel)
+                                                            .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void shouldSampleDifferentValuesForDifferentSeeds() {
+        Class<? extends DistributionMetric<?>> cohesionMetricType = SignificanceEstimatorType.COHESION.getDistributionMetric();
+        Map<Itemset<String>, Distribution> backgroundDistributions = new DistributionSampler<>(itemsetMiner, itemsets, Collections.singletonList(cohesionMetricType), 1,
+                                                                                               SAMPLE_SIZE, SAMPLING_SEED, null).getBackgroundDistributions();
+        Map<Itemset<String>, Distribution> otherBackgroundDistributions = new DistributionSampler<>(itemsetMiner, itemsets, Collections.singletonList(cohesionMetricType), 1,
+                                                                                                    SAMPLE_SIZE, SAMPLING_SEED + 1, null).getBackgroundDistributions();
+        assertTrue(backgroundDistributions.keySet().stream()
+                                          .anyMatch(itemset -> !Arrays.equals(backgroundDistributions.get(itemset).getObservationValues(),
+                                                                              otherBackgroundDistributions.get(itemset).getObservationValues())));
+    }
+
+    @Test
+    public void shouldSampleSeveralMetricsInSinglePass() {
+        Class<? extends DistributionMetric<?>> cohesionMetricType = SignificanceEstimatorType.COHESION.getDistributionMetric();
+        Class<? extends DistributionMetric<?>> consensusMetricType = SignificanceEstimatorType.CONSENSUS.getDistributionMetric();
+        DistributionSampler<String> distributionSampler = new DistributionSampler<>(itemsetMiner, itemsets, Arrays.asList(cohesionMetricType, consensusMetricType), 4, SAMPLE_SIZE,
+                                                                                    SAMPLING_SEED, null);
+
+        // values of a single pass are the same as of separate passes with the same seed
+        for (Class<? extends DistributionMetric<?>> distributionMetricType : Arrays.asList(cohesionMetricType, consensusMetricType)) {
+            Map<Itemset<String>, List<Double>> separateSampleValues = sample(Collections.singletonList(distributionMetricType), distributionMetricType, 4);
+            assertFalse(separateSampleValues.isEmpty());
+            Map<Itemset<String>, Distribution> backgroundDistributions = distributionSampler.getBackgroundDistributions(distributionMetricType);
+            assertEquals(separateSampleValues.keySet(), backgroundDistributions.keySet());
+            for (Map.Entry<Itemset<String>, List<Double>> entry : separateSampleValues.entrySet()) {
+                assertEquals(distributionMetricType, backgroundDistributions.get(entry.getKey()).getDistributionMetricType());
+                assertArrayEquals(entry.getValue().stream()
+                                       .mapToDouble(Double::doubleValue)
+                                       .toArray(), backgroundDistributions.get(entry.getKey()).getObservationValues(), 0.0);
+            }
+        }
+        // the first type is the default
+        assertSame(distributionSampler.getBackgroundDistributions(cohesionMetricType), distributionSampler.getBackgroundDistributions());
+    }
+}
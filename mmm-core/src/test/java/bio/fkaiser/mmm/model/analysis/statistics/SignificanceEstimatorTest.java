@@ -0,0 +1,55 @@
+package bio.fkaiser.mmm.model.analysis.statistics;
+
+import bio.fkaiser.mmm.model.analysis.statistics.SignificanceEstimator.Significance;
+import org.junit.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class SignificanceEstimatorTest {
+
+    @Test
+    public void shouldKeepItemsetsWithTiedPvalues() {
+        TreeMap<Significance, String> significantItemsets = new TreeMap<>();
+        significantItemsets.put(new Significance(1.0 / 1001.0, Double.NaN, "D-H-S"), "D-H-S");
+        significantItemsets.put(new Significance(1.0 / 1001.0, Double.NaN, "C-H-H"), "C-H-H");
+        significantItemsets.put(new Significance(1.0 / 2000.0, Double.NaN, "E-K"), "E-K");
+        assertEquals(3, significantItemsets.size());
+        assertEquals("E-K", significantItemsets.firstEntry().getValue());
+        assertEquals("D-H-S", significantItemsets.lastEntry().getValue());
+    }
+
+    @Test
+    public void shouldRaiseSequentialRoundsToReachCutoff() {
+        int sequentialRounds = SignificanceEstimator.determineSequentialRounds(30, 1E-3);
+        assertTrue(1.0 / (sequentialRounds + 1.0) < 1E-3);
+        assertTrue(1.0 / sequentialRounds >= 1E-3);
+        assertEquals(5000, SignificanceEstimator.determineSequentialRounds(5000, 1E-3));
+        assertEquals(30, SignificanceEstimator.determineSequentialRounds(30, 0.05));
+    }
+
+    @Test
+    public void shouldCalculateSequentialPvalue() {
+        // stopped after enough exceedances
+        assertEquals(10.0 / 40.0, SignificanceEstimator.calculateSequentialPvalue(10, 40, 10), 0.0);
+        // maximal number of rounds reached
+        assertEquals(1.0 / 1001.0, SignificanceEstimator.calculateSequentialPvalue(0, 1000, 10), 0.0);
+        assertEquals(4.0 / 1001.0, SignificanceEstimator.calculateSequentialPvalue(3, 1000, 10), 0.0);
+    }
+
+    @Test
+    public void shouldSettleSequentialSampling() {
+        // enough exceedances observed
+        assertTrue(SignificanceEstimator.isSettled(10, 25, 10, 1E-3, 0.01));
+        // no exceedances yet, the itemset may still be significant
+        assertFalse(SignificanceEstimator.isSettled(0, 500, 10, 1E-3, 0.01));
+        // three exceedances in 20 rounds are unlikely for a p-value at the cutoff
+        assertTrue(SignificanceEstimator.isSettled(3, 20, 10, 1E-3, 0.01));
+        // a single exceedance in 900 rounds is likely for a p-value at the cutoff
+        assertFalse(SignificanceEstimator.isSettled(1, 900, 10, 1E-3, 0.01));
+    }
+}
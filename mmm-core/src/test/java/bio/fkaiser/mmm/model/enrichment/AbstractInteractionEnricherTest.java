@@ -0,0 +1,84 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import bio.fkaiser.mmm.model.Item;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.oak.OakAminoAcid;
+import de.bioforscher.singa.structure.model.oak.OakAtom;
+import de.bioforscher.singa.structure.parser.plip.HydrogenBond;
+import de.bioforscher.singa.structure.parser.plip.Interaction;
+import de.bioforscher.singa.structure.parser.plip.InteractionType;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author fk
+ */
+public class AbstractInteractionEnricherTest {
+
+    private static Item<String> createItem(int serial, int atomIdentifier, int[] leafSubstructureRequests) {
+        OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier("1abc", 0, "A", serial), AminoAcidFamily.GLYCINE);
+        aminoAcid.addAtom(new OakAtom(atomIdentifier, ElementProvider.CARBON, "CA", new Vector3D(serial, 0.0, 0.0)));
+        return new Item<String>("G", aminoAcid) {
+            @Override
+            public Optional<LeafSubstructure<?>> getLeafSubstructure() {
+                leafSubstructureRequests[0]++;
+                return super.getLeafSubstructure();
+            }
+        };
+    }
+
+    private static List<Interaction> createInteractions(int count) {
+        List<Interaction> interactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HydrogenBond hydrogenBond = new HydrogenBond(i);
+            hydrogenBond.setLigandCoordinate(new double[]{i, 0.0, 0.0});
+            hydrogenBond.setProteinCoordinate(new double[]{i, 2.0, 0.0});
+            interactions.add(hydrogenBond);
+        }
+        return interactions;
+    }
+
+    @Test
+    public void shouldAssignIdentifiersOnceForBatch() {
+        int[] leafSubstructureRequests = new int[1];
+        List<Item<String>> items = new ArrayList<>();
+        // identifiers are neither ordered nor consecutive
+        items.add(createItem(12, 7, leafSubstructureRequests));
+        items.add(createItem(5, 40, leafSubstructureRequests));
+        DataPoint<String> dataPoint = new DataPoint<>(items, new DataPointIdentifier("1abc", "A"));
+
+        GeometricInteractionEnricher interactionEnricher = new GeometricInteractionEnricher();
+        interactionEnricher.addInteractionItems(createInteractions(3), dataPoint);
+        // the maxima are determined in a single pass over the existing items regardless of the number of interactions
+        assertEquals(2, leafSubstructureRequests[0]);
+
+        interactionEnricher.addInteractionItems(createInteractions(2), dataPoint);
+        interactionEnricher.addInteractionItems(Collections.emptyList(), dataPoint);
+
+        List<Item<String>> interactionItems = dataPoint.getItems().subList(2, dataPoint.getItems().size());
+        assertEquals(5, interactionItems.size());
+        Set<Integer> serials = new HashSet<>();
+        Set<Integer> atomIdentifiers = new HashSet<>();
+        for (int i = 0; i < interactionItems.size(); i++) {
+            Item<String> interactionItem = interactionItems.get(i);
+            LeafSubstructure<?> leafSubstructure = interactionItem.getLeafSubstructure().orElseThrow(IllegalStateException::new);
+            assertEquals(InteractionType.HYDROGEN_BOND.getThreeLetterCode(), interactionItem.getLabel());
+            // identifiers continue after the maxima of the data point and of previous batches
+            assertEquals(13 + i, leafSubstructure.getIdentifier().getSerial());
+            assertEquals(41 + i, leafSubstructure.getAllAtoms().get(0).getAtomIdentifier().intValue());
+            serials.add(leafSubstructure.getIdentifier().getSerial());
+            atomIdentifiers.add(leafSubstructure.getAllAtoms().get(0).getAtomIdentifier());
+        }
+        assertEquals(interactionItems.size(), serials.size());
+        assertEquals(interactionItems.size(), atomIdentifiers.size());
+    }
+}
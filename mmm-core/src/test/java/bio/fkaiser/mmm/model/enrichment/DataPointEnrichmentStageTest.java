@@ -0,0 +1,123 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import bio.fkaiser.mmm.io.DataPointReader;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.plip.PlipStandInServer;
+import de.bioforscher.singa.core.utility.Resources;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class DataPointEnrichmentStageTest {
+
+    private static List<DataPoint<String>> readDataPoints(Path structureDirectory) throws IOException {
+        List<Path> structurePaths = Files.list(structureDirectory).sorted().collect(Collectors.toList());
+        return new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints();
+    }
+
+    private static List<String> toItemStrings(List<DataPoint<String>> dataPoints) {
+        return dataPoints.stream()
+                         .map(dataPoint -> dataPoint.getDataPointIdentifier() + ":" + dataPoint.getItems().stream()
+                                                                                              .map(Item::toString)
+                                                                                              .collect(Collectors.joining(",")))
+                         .collect(Collectors.toList());
+    }
+
+    @Test
+    public void shouldEnrichConcurrentlyAndDeterministically() throws IOException {
+        Path structureDirectory = Paths.get(Resources.getResourceAsFileLocation("PF00127"));
+        try (PlipStandInServer plipStandInServer = new PlipStandInServer(structureDirectory, 0, 50)) {
+            LigandInteractionEnricher ligandInteractionEnricher = new LigandInteractionEnricher();
+            ligandInteractionEnricher.setPlipRestProviderUrl(plipStandInServer.getUrl());
+
+            List<DataPoint<String>> dataPoints = readDataPoints(structureDirectory);
+            List<DataPoint<String>> sequentialDataPoints = new DataPointEnrichmentStage<>(ligandInteractionEnricher, 1, 10000, 0, 0)
+                    .enrichDataPoints(readDataPoints(structureDirectory));
+            DataPointEnrichmentStage<String> dataPointEnrichmentStage = new DataPointEnrichmentStage<>(ligandInteractionEnricher, 8, 10000, 0, 0);
+            List<DataPoint<String>> concurrentDataPoints = dataPointEnrichmentStage.enrichDataPoints(dataPoints);
+
+            assertEquals(0, dataPointEnrichmentStage.getEnrichmentFailures().size());
+            assertEquals(2 * dataPoints.size(), plipStandInServer.getRequestCount());
+            assertEquals(toItemStrings(sequentialDataPoints), toItemStrings(concurrentDataPoints));
+        }
+    }
+
+    @Test
+    public void shouldRetryAndReportFailures() throws IOException {
+        Path structureDirectory = Paths.get(Resources.getResourceAsFileLocation("PF00127"));
+        List<DataPoint<String>> dataPoints = readDataPoints(structureDirectory);
+        String failingDataPoint = dataPoints.get(0).getDataPointIdentifier().toString();
+        String slowDataPoint = dataPoints.get(1).getDataPointIdentifier().toString();
+        Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+        // fails permanently for the first, times out for the second, and fails once for all other data points
+        DataPointEnricher<String> dataPointEnricher = dataPoint -> {
+            String dataPointIdentifier = dataPoint.getDataPointIdentifier().toString();
+            int attempt = attempts.computeIfAbsent(dataPointIdentifier, key -> new AtomicInteger()).incrementAndGet();
+            if (dataPointIdentifier.equals(failingDataPoint) || attempt == 1 && !dataPointIdentifier.equals(slowDataPoint)) {
+                throw new DataPointEnricherException("failed attempt " + attempt);
+            }
+            if (dataPointIdentifier.equals(slowDataPoint)) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            dataPoint.getItems().add(new Item<>("X"));
+        };
+
+        int itemCount = dataPoints.get(2).getItems().size();
+        DataPointEnrichmentStage<String> dataPointEnrichmentStage = new DataPointEnrichmentStage<>(dataPointEnricher, 4, 200, 2, 10);
+        List<DataPoint<String>> enrichedDataPoints = dataPointEnrichmentStage.enrichDataPoints(dataPoints);
+
+        assertEquals(dataPoints.size(), enrichedDataPoints.size());
+        assertEquals(2, dataPointEnrichmentStage.getEnrichmentFailures().size());
+        assertEquals(failingDataPoint, dataPointEnrichmentStage.getEnrichmentFailures().get(0).getDataPointIdentifier().toString());
+        assertEquals(3, dataPointEnrichmentStage.getEnrichmentFailures().get(0).getAttempts());
+        assertEquals(slowDataPoint, dataPointEnrichmentStage.getEnrichmentFailures().get(1).getDataPointIdentifier().toString());
+        // failed data points are kept unchanged
+        assertEquals(dataPoints.get(1).getItems().size(), enrichedDataPoints.get(1).getItems().size());
+        assertEquals(itemCount + 1, enrichedDataPoints.get(2).getItems().size());
+    }
+
+    @Test
+    public void shouldKeepRequestBoundForAbandonedAttempts() throws IOException {
+        List<DataPoint<String>> dataPoints = readDataPoints(Paths.get(Resources.getResourceAsFileLocation("PF00127")));
+        AtomicInteger inFlightRequests = new AtomicInteger();
+        AtomicInteger maximalInFlightRequests = new AtomicInteger();
+
+        // simulates blocking IO that ignores interruption and always exceeds the timeout
+        DataPointEnricher<String> dataPointEnricher = dataPoint -> {
+            maximalInFlightRequests.accumulateAndGet(inFlightRequests.incrementAndGet(), Math::max);
+            long end = System.currentTimeMillis() + 100;
+            while (System.currentTimeMillis() < end) {
+                Thread.interrupted();
+            }
+            inFlightRequests.decrementAndGet();
+        };
+
+        DataPointEnrichmentStage<String> dataPointEnrichmentStage = new DataPointEnrichmentStage<>(dataPointEnricher, 2, 20, 1, 0);
+        dataPointEnrichmentStage.enrichDataPoints(dataPoints.subList(0, 6));
+
+        assertEquals(6, dataPointEnrichmentStage.getEnrichmentFailures().size());
+        assertTrue(maximalInFlightRequests.get() <= 2);
+    }
+}
@@ -0,0 +1,108 @@
+package bio.fkaiser.mmm.model.enrichment;
+
+import bio.fkaiser.mmm.io.DataPointReader;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.DataPointIdentifier;
+import bio.fkaiser.mmm.model.Item;
+import de.bioforscher.singa.core.utility.Resources;
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.families.LigandFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.oak.OakAminoAcid;
+import de.bioforscher.singa.structure.model.oak.OakAtom;
+import de.bioforscher.singa.structure.model.oak.OakLigand;
+import de.bioforscher.singa.structure.parser.plip.InteractionType;
+import de.bioforscher.singa.structure.parser.plip.MetalComplex;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class GeometricInteractionEnricherTest {
+
+    private static List<String> enrich(List<DataPoint<String>> dataPoints) {
+        GeometricInteractionEnricher geometricInteractionEnricher = new GeometricInteractionEnricher();
+        List<String> interactionItems = new ArrayList<>();
+        for (DataPoint<String> dataPoint : dataPoints) {
+            int itemCount = dataPoint.getItems().size();
+            geometricInteractionEnricher.enrichDataPoint(dataPoint);
+            dataPoint.getItems().subList(itemCount, dataPoint.getItems().size()).stream()
+                     .map(item -> item.getLabel() + item.getLeafIdentifier().map(Object::toString).orElse("") + item.getPosition().map(Object::toString).orElse(""))
+                     .forEach(interactionItems::add);
+        }
+        return interactionItems;
+    }
+
+    @Test
+    public void shouldDetectInteractionsDeterministically() throws IOException {
+        Path structureDirectory = Paths.get(Resources.getResourceAsFileLocation("PF00127"));
+        List<Path> structurePaths = Files.list(structureDirectory).sorted().collect(Collectors.toList());
+        List<String> interactionItems = enrich(new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints());
+        List<String> repeatedInteractionItems = enrich(new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints());
+
+        Set<String> activeThreeLetterCodes = AbstractInteractionEnricher.ACTIVE_INTERACTIONS.stream()
+                                                                                           .map(InteractionType::getThreeLetterCode)
+                                                                                           .collect(Collectors.toSet());
+        assertTrue(interactionItems.stream().anyMatch(item -> item.startsWith(InteractionType.HYDROGEN_BOND.getThreeLetterCode())));
+        assertTrue(interactionItems.stream().allMatch(item -> activeThreeLetterCodes.contains(item.substring(0, 3))));
+        assertEquals(interactionItems, repeatedInteractionItems);
+    }
+
+    @Test
+    public void shouldDetectMetalComplex() {
+        OakAminoAcid histidine = new OakAminoAcid(new LeafIdentifier("1abc", 0, "A", 1), AminoAcidFamily.HISTIDINE);
+        histidine.addAtom(new OakAtom(1, ElementProvider.NITROGEN, "NE2", new Vector3D(0.0, 0.0, 0.0)));
+        OakLigand zinc = new OakLigand(new LeafIdentifier("1abc", 0, "A", 2), new LigandFamily("?", "ZN"));
+        zinc.addAtom(new OakAtom(2, ElementProvider.ZINC, "ZN", new Vector3D(2.1, 0.0, 0.0)));
+        List<Item<String>> items = new ArrayList<>();
+        items.add(new Item<>("H", histidine));
+        items.add(new Item<>("ZN", zinc));
+        DataPoint<String> dataPoint = new DataPoint<>(items, new DataPointIdentifier("1abc", "A"));
+
+        new GeometricInteractionEnricher().enrichDataPoint(dataPoint);
+
+        assertEquals(3, dataPoint.getItems().size());
+        Item<String> interactionItem = dataPoint.getItems().get(2);
+        assertEquals(InteractionType.getThreeLetterCode(MetalComplex.class), interactionItem.getLabel());
+        assertEquals(new Vector3D(1.05, 0.0, 0.0), interactionItem.getPosition().orElseThrow(IllegalStateException::new));
+        assertEquals(3, interactionItem.getLeafIdentifier().orElseThrow(IllegalStateException::new).getSerial());
+    }
+
+    private static DataPoint<String> createBackboneContact(String firstChainIdentifier, String secondChainIdentifier) {
+        OakAminoAcid firstGlycine = new OakAminoAcid(new LeafIdentifier("1abc", 0, firstChainIdentifier, 1), AminoAcidFamily.GLYCINE);
+        firstGlycine.addAtom(new OakAtom(1, ElementProvider.NITROGEN, "N", new Vector3D(0.0, 0.0, 0.0)));
+        OakAminoAcid secondGlycine = new OakAminoAcid(new LeafIdentifier("1abc", 0, secondChainIdentifier, 2), AminoAcidFamily.GLYCINE);
+        secondGlycine.addAtom(new OakAtom(2, ElementProvider.OXYGEN, "O", new Vector3D(2.9, 0.0, 0.0)));
+        List<Item<String>> items = new ArrayList<>();
+        items.add(new Item<>("G", firstGlycine));
+        items.add(new Item<>("G", secondGlycine));
+        return new DataPoint<>(items, new DataPointIdentifier("1abc", firstChainIdentifier));
+    }
+
+    @Test
+    public void shouldDetectBackboneHydrogenBondBetweenChains() {
+        DataPoint<String> sameChainDataPoint = createBackboneContact("A", "A");
+        new GeometricInteractionEnricher().enrichDataPoint(sameChainDataPoint);
+        assertEquals(2, sameChainDataPoint.getItems().size());
+
+        DataPoint<String> otherChainDataPoint = createBackboneContact("A", "B");
+        new GeometricInteractionEnricher().enrichDataPoint(otherChainDataPoint);
+        assertEquals(3, otherChainDataPoint.getItems().size());
+        assertEquals(InteractionType.HYDROGEN_BOND.getThreeLetterCode(), otherChainDataPoint.getItems().get(2).getLabel());
+    }
+}
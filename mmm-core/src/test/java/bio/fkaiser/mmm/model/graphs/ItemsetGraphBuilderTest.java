@@ -0,0 +1,85 @@
+package bio.fkaiser.mmm.model.graphs;
+
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.Itemset;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author fk
+ */
+public class ItemsetGraphBuilderTest {
+
+    private static Itemset<String> createItemset(String label) {
+        return Itemset.of(new Item<>(label));
+    }
+
+    @Test
+    public void shouldReuseNodesOfEqualItemsets() {
+        ItemsetGraphBuilder<String> itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        ItemsetNode<String> node = itemsetGraphBuilder.addNode(createItemset("A"));
+        itemsetGraphBuilder.addEdge(createItemset("A"), createItemset("B"));
+
+        ItemsetGraph<String> itemsetGraph = itemsetGraphBuilder.build();
+        assertEquals(2, itemsetGraph.getNodes().size());
+        assertSame(node, itemsetGraphBuilder.addNode(createItemset("A")));
+    }
+
+    @Test
+    public void shouldFindComponents() {
+        ItemsetGraphBuilder<String> itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        itemsetGraphBuilder.addNode(createItemset("A"));
+        itemsetGraphBuilder.addEdge(createItemset("B"), createItemset("C"))
+                           .addEdge(createItemset("D"), createItemset("E"))
+                           .addEdge(createItemset("E"), createItemset("C"))
+                           .addEdge(createItemset("C"), createItemset("B"))
+                           .addEdge(createItemset("F"), createItemset("F"));
+
+        List<List<ItemsetNode<String>>> components = itemsetGraphBuilder.build().getComponents();
+        assertEquals(3, components.size());
+        // singleton without edges
+        assertEquals(1, components.get(0).size());
+        assertEquals(createItemset("A"), components.get(0).get(0).getItemset());
+        assertEquals(4, components.get(1).size());
+        // self-edge does not join other components
+        assertEquals(1, components.get(2).size());
+        assertEquals(createItemset("F"), components.get(2).get(0).getItemset());
+    }
+
+    @Test
+    public void shouldFindComponentsOfLargeGraph() {
+        ItemsetGraphBuilder<String> itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        for (int i = 0; i < 100; i++) {
+            // connect even and odd nodes in two chains
+            if (i >= 2) {
+                itemsetGraphBuilder.addEdge(createItemset(String.valueOf(i - 2)), createItemset(String.valueOf(i)));
+            } else {
+                itemsetGraphBuilder.addNode(createItemset(String.valueOf(i)));
+            }
+        }
+
+        List<List<ItemsetNode<String>>> components = itemsetGraphBuilder.build().getComponents();
+        assertEquals(2, components.size());
+        assertEquals(50, components.get(0).size());
+        assertEquals(50, components.get(1).size());
+    }
+
+    @Test
+    public void shouldRebuildComponentsAfterRemoval() {
+        ItemsetGraphBuilder<String> itemsetGraphBuilder = new ItemsetGraphBuilder<>();
+        itemsetGraphBuilder.addEdge(createItemset("A"), createItemset("B"))
+                           .addEdge(createItemset("B"), createItemset("C"));
+        ItemsetGraph<String> itemsetGraph = itemsetGraphBuilder.build();
+        assertEquals(1, itemsetGraph.getComponents().size());
+
+        itemsetGraph.removeNode(itemsetGraphBuilder.addNode(createItemset("B")));
+        List<List<ItemsetNode<String>>> components = itemsetGraph.getComponents();
+        assertEquals(2, components.size());
+        assertEquals(1, components.get(0).size());
+        assertEquals(1, components.get(1).size());
+    }
+}
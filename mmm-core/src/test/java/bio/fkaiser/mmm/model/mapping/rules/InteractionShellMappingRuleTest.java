@@ -0,0 +1,110 @@
+package bio.fkaiser.mmm.model.mapping.rules;
+
+import bio.fkaiser.mmm.io.DataPointReader;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.mapping.DataPointLabelMapper;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.parser.plip.PlipShellGenerator.InteractionShell;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author fk
+ */
+public class InteractionShellMappingRuleTest {
+
+    private List<DataPoint<String>> dataPoints;
+
+    private static List<LeafSubstructure<?>> getLeafSubstructures(DataPoint<String> dataPoint, int fromIndex, int toIndex) {
+        return dataPoint.getItems().subList(fromIndex, toIndex).stream()
+                        .map(item -> item.getLeafSubstructure().orElseThrow(IllegalStateException::new))
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Assigns the first two items to the first shell and the second to the fourth item to the second shell, thus the second item occurs in both shells.
+     */
+    private static Map<LeafIdentifier, InteractionShell> createStubbedInteractionShells(DataPoint<?> dataPoint) {
+        @SuppressWarnings("unchecked")
+        DataPoint<String> stringDataPoint = (DataPoint<String>) dataPoint;
+        Map<InteractionShell, List<LeafSubstructure<?>>> shells = new EnumMap<>(InteractionShell.class);
+        // the outer shell is listed first to show that the order of shells does not matter
+        shells.put(InteractionShell.SECOND, getLeafSubstructures(stringDataPoint, 1, 4));
+        shells.put(InteractionShell.FIRST, getLeafSubstructures(stringDataPoint, 0, 2));
+        return InteractionShellMappingRule.assignInnermostShells(shells);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        List<Path> structurePaths;
+        try (Stream<Path> paths = Files.list(Paths.get("src/test/resources/PF00127"))) {
+            structurePaths = paths.sorted().collect(Collectors.toList());
+        }
+        dataPoints = new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints();
+    }
+
+    @Test
+    public void shouldAssignInnermostShell() {
+        DataPoint<String> dataPoint = dataPoints.get(0);
+        Map<LeafIdentifier, InteractionShell> interactionShells = createStubbedInteractionShells(dataPoint);
+        List<Item<String>> items = dataPoint.getItems();
+        assertEquals(4, interactionShells.size());
+        assertEquals(InteractionShell.FIRST, interactionShells.get(items.get(0).getLeafIdentifier().orElseThrow(IllegalStateException::new)));
+        assertEquals(InteractionShell.FIRST, interactionShells.get(items.get(1).getLeafIdentifier().orElseThrow(IllegalStateException::new)));
+        assertEquals(InteractionShell.SECOND, interactionShells.get(items.get(2).getLeafIdentifier().orElseThrow(IllegalStateException::new)));
+        assertNull(interactionShells.get(items.get(4).getLeafIdentifier().orElseThrow(IllegalStateException::new)));
+    }
+
+    @Test
+    public void shouldMapDataPointsConcurrently() {
+        Map<String, AtomicInteger> computations = new ConcurrentHashMap<>();
+        InteractionShellMappingRule interactionShellMappingRule = new InteractionShellMappingRule("HEM") {
+            @Override
+            protected Map<LeafIdentifier, InteractionShell> computeInteractionShells(DataPoint<?> dataPoint) {
+                computations.computeIfAbsent(dataPoint.getDataPointIdentifier().toString(), key -> new AtomicInteger()).incrementAndGet();
+                return createStubbedInteractionShells(dataPoint);
+            }
+        };
+        List<String> originalLabels = dataPoints.stream()
+                                                .map(dataPoint -> dataPoint.getItems().get(4).getLabel())
+                                                .collect(Collectors.toList());
+
+        // the same path as the runner, shells are precomputed in parallel and data points are mapped with a parallel stream
+        interactionShellMappingRule.precomputeInteractionShells(dataPoints, 4);
+        DataPointLabelMapper<String> dataPointLabelMapper = new DataPointLabelMapper<>(interactionShellMappingRule);
+        List<DataPoint<String>> mappedDataPoints = dataPoints.parallelStream()
+                                                             .map(dataPointLabelMapper::mapDataPoint)
+                                                             .collect(Collectors.toList());
+
+        assertEquals(dataPoints.size(), computations.size());
+        computations.values().forEach(count -> assertEquals(1, count.get()));
+        for (int i = 0; i < mappedDataPoints.size(); i++) {
+            List<Item<String>> items = mappedDataPoints.get(i).getItems();
+            assertTrue(items.get(0).getLabel().endsWith(".s0"));
+            assertTrue(items.get(1).getLabel().endsWith(".s0"));
+            assertTrue(items.get(2).getLabel().endsWith(".s1"));
+            assertTrue(items.get(3).getLabel().endsWith(".s1"));
+            assertEquals(originalLabels.get(i), items.get(4).getLabel());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldRejectMappingOfSingleItem() {
+        new InteractionShellMappingRule("HEM").mapItem(dataPoints.get(0).getItems().get(0));
+    }
+}
@@ -0,0 +1,70 @@
+package bio.fkaiser.mmm.model.metrics;
+
+import bio.fkaiser.mmm.model.metrics.AdherenceMetric.ObservationRetainer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author fk
+ */
+public class AdherenceMetricTest {
+
+    private static final double DESIRED_EXTENT = 5.0;
+
+    @Test
+    public void shouldRetainAllObservationsIfUncapped() {
+        ObservationRetainer<String> observationRetainer = new ObservationRetainer<>(DESIRED_EXTENT, 0, 0);
+        observationRetainer.addObservation("a", 7.0);
+        observationRetainer.addObservation("b", 5.5);
+        observationRetainer.completeDataPoint();
+        observationRetainer.addObservation("c", 4.0);
+        observationRetainer.completeDataPoint();
+        assertEquals(Arrays.asList("a", "b", "c"), observationRetainer.getRetainedCandidates());
+    }
+
+    @Test
+    public void shouldCapObservationsPerDataPoint() {
+        ObservationRetainer<String> observationRetainer = new ObservationRetainer<>(DESIRED_EXTENT, 2, 0);
+        observationRetainer.addObservation("a", 7.0);
+        observationRetainer.addObservation("b", 5.5);
+        // ties with b, which was observed earlier
+        observationRetainer.addObservation("c", 4.5);
+        observationRetainer.addObservation("d", 5.0);
+        observationRetainer.completeDataPoint();
+        // the cap does not apply across data points
+        observationRetainer.addObservation("e", 8.0);
+        observationRetainer.completeDataPoint();
+        assertEquals(Arrays.asList("b", "d", "e"), observationRetainer.getRetainedCandidates());
+    }
+
+    @Test
+    public void shouldCapObservationsPerItemset() {
+        ObservationRetainer<String> observationRetainer = new ObservationRetainer<>(DESIRED_EXTENT, 0, 2);
+        observationRetainer.addObservation("a", 5.5);
+        observationRetainer.addObservation("b", 6.0);
+        observationRetainer.completeDataPoint();
+        // ties with a, which was observed earlier
+        observationRetainer.addObservation("c", 4.5);
+        observationRetainer.addObservation("d", 5.0);
+        observationRetainer.completeDataPoint();
+        assertEquals(Arrays.asList("a", "d"), observationRetainer.getRetainedCandidates());
+    }
+
+    @Test
+    public void shouldCapObservationsPerDataPointBeforeItemset() {
+        ObservationRetainer<String> observationRetainer = new ObservationRetainer<>(DESIRED_EXTENT, 1, 2);
+        observationRetainer.addObservation("a", 5.1);
+        observationRetainer.addObservation("b", 5.0);
+        observationRetainer.completeDataPoint();
+        observationRetainer.addObservation("c", 4.75);
+        observationRetainer.completeDataPoint();
+        observationRetainer.addObservation("d", 5.5);
+        observationRetainer.addObservation("e", 4.875);
+        observationRetainer.completeDataPoint();
+        // a is closer than c and e but exceeds the cap of its data point
+        assertEquals(Arrays.asList("b", "e"), observationRetainer.getRetainedCandidates());
+    }
+}
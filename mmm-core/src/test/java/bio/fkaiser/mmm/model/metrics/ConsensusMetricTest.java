@@ -0,0 +1,92 @@
+package bio.fkaiser.mmm.model.metrics;
+
+import bio.fkaiser.mmm.ItemsetMiner;
+import bio.fkaiser.mmm.ItemsetMinerRunner;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.Itemset;
+import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.CohesionMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.ConsensusMetricConfiguration;
+import bio.fkaiser.mmm.model.configurations.metrics.SupportMetricConfiguration;
+import de.bioforscher.singa.structure.algorithms.superimposition.consensus.ConsensusAlignment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class ConsensusMetricTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ItemsetMiner<String> mine(double clusterCutoff, boolean incremental) throws IOException, URISyntaxException {
+        ItemsetMinerConfiguration<String> itemsetMinerConfiguration = new ItemsetMinerConfiguration<>();
+        itemsetMinerConfiguration.setMaximalEpochs(3);
+        itemsetMinerConfiguration.setInputDirectoryLocation("src/test/resources/PF00127");
+        itemsetMinerConfiguration.setOutputLocation(folder.newFolder().toString());
+        itemsetMinerConfiguration.setDataPointReaderConfiguration(new DataPointReaderConfiguration());
+
+        SupportMetricConfiguration<String> supportMetricConfiguration = new SupportMetricConfiguration<>();
+        supportMetricConfiguration.setMinimalSupport(0.9);
+        itemsetMinerConfiguration.addSimpleMetricConfiguration(supportMetricConfiguration);
+
+        CohesionMetricConfiguration<String> cohesionMetricConfiguration = new CohesionMetricConfiguration<>();
+        cohesionMetricConfiguration.setMaximalCohesion(10.0);
+        cohesionMetricConfiguration.setVertexOne(false);
+        itemsetMinerConfiguration.setExtractionMetricConfiguration(cohesionMetricConfiguration);
+
+        ConsensusMetricConfiguration<String> consensusMetricConfiguration = new ConsensusMetricConfiguration<>();
+        consensusMetricConfiguration.setMaximalConsensus(1.0);
+        consensusMetricConfiguration.setClusterCutoffValue(clusterCutoff);
+        consensusMetricConfiguration.setIncremental(incremental);
+        itemsetMinerConfiguration.addExtractionDependentMetricConfiguration(consensusMetricConfiguration);
+
+        return new ItemsetMinerRunner(itemsetMinerConfiguration).getItemsetMiner();
+    }
+
+    private static Map<String, Double> toConsensusScores(ItemsetMiner<String> itemsetMiner) {
+        Map<String, Double> consensusScores = new TreeMap<>();
+        itemsetMiner.getTotalClusteredItemsets().keySet().forEach(itemset -> consensusScores.put(itemset.toSimpleString(), itemset.getConsensus()));
+        return consensusScores;
+    }
+
+    @Test
+    public void shouldMatchNonIncrementalConsensusForSingleSeedCluster() throws IOException, URISyntaxException {
+        // a cluster cutoff that is never reached results in a single seed cluster and thus a single partition
+        Map<String, Double> consensusScores = toConsensusScores(mine(100.0, false));
+        Map<String, Double> incrementalConsensusScores = toConsensusScores(mine(100.0, true));
+
+        assertFalse(consensusScores.isEmpty());
+        assertEquals(consensusScores.keySet(), incrementalConsensusScores.keySet());
+        for (Map.Entry<String, Double> entry : consensusScores.entrySet()) {
+            assertEquals(entry.getValue(), incrementalConsensusScores.get(entry.getKey()), 1E-9);
+        }
+    }
+
+    @Test
+    public void shouldKeepAllObservationsOfSeededPartitions() throws IOException, URISyntaxException {
+        ItemsetMiner<String> itemsetMiner = mine(0.5, true);
+
+        boolean partitioned = false;
+        for (Map.Entry<Itemset<String>, List<ConsensusAlignment>> entry : itemsetMiner.getTotalClusteredItemsets().entrySet()) {
+            int observationCount = entry.getValue().stream()
+                                        .mapToInt(consensusAlignment -> consensusAlignment.getTopConsensusTree().getLeafNodes().size())
+                                        .sum();
+            assertEquals(itemsetMiner.getTotalExtractedItemsets().get(entry.getKey()).size(), observationCount);
+            partitioned |= entry.getValue().size() > 1;
+        }
+        assertTrue(partitioned);
+    }
+}
@@ -1,7 +1,10 @@
 package bio.fkaiser.mmm.model.metrics;
 
 import bio.fkaiser.mmm.ItemsetMinerRunner;
+import bio.fkaiser.mmm.io.DataPointReader;
 import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
 import bio.fkaiser.mmm.model.Itemset;
 import bio.fkaiser.mmm.model.ItemsetComparatorType;
 import bio.fkaiser.mmm.model.configurations.ItemsetMinerConfiguration;
@@ -16,8 +19,15 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 /**
  * @author fk
@@ -28,6 +38,15 @@ public class SeparationMetricTest {
     public TemporaryFolder folder = new TemporaryFolder();
     private ItemsetMinerConfiguration<String> itemsetMinerConfiguration;
 
+    private static Item<String> createItem(String label, boolean polymer, int sequencePosition) {
+        return new Item<>(label, null, polymer, sequencePosition, new double[3], null, null, leafIdentifier -> Optional.empty());
+    }
+
+    private static double calculateMorsePotential(SeparationMetricConfiguration<String> separationMetricConfiguration, int gapLength) {
+        double exponential = 1 - Math.exp(-separationMetricConfiguration.getMorseShape() * (gapLength - separationMetricConfiguration.getOptimalSeparation()));
+        return separationMetricConfiguration.getMorseWellDepth() * exponential * exponential - separationMetricConfiguration.getMorseWellDepth();
+    }
+
     @Before
     public void setUp() {
         itemsetMinerConfiguration = new ItemsetMinerConfiguration<>();
@@ -78,4 +97,60 @@ public class SeparationMetricTest {
         assertEquals(topScoringItemset.getSeparation(), topScoringConsecutiveItemset.getSeparation(), 1E-6);
         assertEquals(topScoringItemset.getConsensus(), topScoringConsecutiveItemset.getConsensus(), 1E-6);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldScoreObservationBeyondDiscreteRange() {
+        SeparationMetricConfiguration<String> separationMetricConfiguration = new SeparationMetricConfiguration<>();
+        SeparationMetric<String> separationMetric = new SeparationMetric<>(separationMetricConfiguration);
+        // unordered positions with a gap within and a gap beyond the range of precomputed values, the interaction item is ignored
+        Itemset<String> observation = new Itemset<>(new LinkedHashSet<>(Arrays.asList(createItem("A", true, 20012),
+                                                                                      createItem("B", true, 5),
+                                                                                      createItem("C", false, 7),
+                                                                                      createItem("D", true, 12))));
+        Itemset<String> itemset = new Itemset<>(new LinkedHashSet<>(Arrays.asList(new Item<>("A"), new Item<>("B"), new Item<>("C"), new Item<>("D"))));
+        double expectedScore = (calculateMorsePotential(separationMetricConfiguration, 7) + calculateMorsePotential(separationMetricConfiguration, 20000)) / 4;
+        assertEquals(expectedScore, separationMetric.calculateObservationScore(itemset, observation), 1E-9);
+    }
+
+    @Test
+    public void shouldAssignSameSeparationIfFused() throws IOException {
+        List<Path> structurePaths;
+        try (Stream<Path> paths = Files.list(Paths.get("src/test/resources/PF00127"))) {
+            structurePaths = paths.sorted().collect(Collectors.toList());
+        }
+        List<DataPoint<String>> dataPoints = new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints();
+
+        // pairs of the first items of a data point
+        List<Item<String>> items = dataPoints.get(0).getItems();
+        Set<Itemset<String>> itemsets = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            for (int j = i + 1; j < 5; j++) {
+                itemsets.add(new Itemset<>(new TreeSet<>(Arrays.asList(items.get(i).getCopy(), items.get(j).getCopy()))));
+            }
+        }
+
+        CohesionMetricConfiguration<String> cohesionMetricConfiguration = new CohesionMetricConfiguration<>();
+        cohesionMetricConfiguration.setMaximalCohesion(10.0);
+        cohesionMetricConfiguration.setVertexOne(false);
+        CohesionMetric<String> cohesionMetric = new CohesionMetric<>(dataPoints, cohesionMetricConfiguration);
+        SeparationMetricConfiguration<String> separationMetricConfiguration = new SeparationMetricConfiguration<>();
+        separationMetricConfiguration.setMaximalSeparation(100);
+        SeparationMetric<String> fusedSeparationMetric = new SeparationMetric<>(separationMetricConfiguration);
+        cohesionMetric.addObservationMetric(fusedSeparationMetric);
+
+        // scores are assigned during extraction
+        Set<Itemset<String>> extractedCandidates = cohesionMetric.filterItemsets(itemsets);
+        Map<Itemset<String>, List<Itemset<String>>> extractedItemsets = cohesionMetric.getExtractedItemsets();
+        assertFalse(extractedItemsets.isEmpty());
+        Set<Itemset<String>> fusedCandidates = fusedSeparationMetric.filterItemsets(extractedCandidates, extractedItemsets);
+        Map<Itemset<String>, Double> fusedSeparations = new HashMap<>();
+        extractedItemsets.keySet().forEach(itemset -> fusedSeparations.put(itemset, itemset.getSeparation()));
+
+        // scores of a separate pass over the extracted itemsets
+        Set<Itemset<String>> candidates = new SeparationMetric<>(separationMetricConfiguration).filterItemsets(extractedCandidates, extractedItemsets);
+        assertEquals(candidates, fusedCandidates);
+        for (Itemset<String> itemset : extractedItemsets.keySet()) {
+            assertEquals(itemset.getSeparation(), fusedSeparations.get(itemset), 1E-9);
+        }
+    }
+}
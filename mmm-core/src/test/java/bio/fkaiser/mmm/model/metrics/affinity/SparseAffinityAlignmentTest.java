@@ -0,0 +1,125 @@
+package bio.fkaiser.mmm.model.metrics.affinity;
+
+import de.bioforscher.singa.mathematics.vectors.Vector3D;
+import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimposer;
+import de.bioforscher.singa.structure.algorithms.superimposition.SubstructureSuperimpositionException;
+import de.bioforscher.singa.structure.algorithms.superimposition.affinity.AffinityAlignment;
+import de.bioforscher.singa.structure.elements.ElementProvider;
+import de.bioforscher.singa.structure.model.families.AminoAcidFamily;
+import de.bioforscher.singa.structure.model.identifiers.LeafIdentifier;
+import de.bioforscher.singa.structure.model.interfaces.LeafSubstructure;
+import de.bioforscher.singa.structure.model.oak.OakAminoAcid;
+import de.bioforscher.singa.structure.model.oak.OakAtom;
+import de.bioforscher.singa.structure.model.oak.StructuralEntityFilter;
+import de.bioforscher.singa.structure.model.oak.StructuralMotif;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class SparseAffinityAlignmentTest {
+
+    private static final double[][] SQUARE = {{0.0, 0.0, 0.0}, {3.8, 0.0, 0.0}, {3.8, 3.8, 0.0}, {0.0, 3.8, 0.0}};
+    private static final double[][] LINE = {{0.0, 0.0, 0.0}, {3.8, 0.0, 0.0}, {7.6, 0.5, 0.0}, {11.4, 0.0, 0.0}};
+
+    private static StructuralMotif createMotif(int index, double[][] shape) {
+        List<LeafSubstructure<?>> leafSubstructures = new ArrayList<>();
+        for (int i = 0; i < shape.length; i++) {
+            OakAminoAcid aminoAcid = new OakAminoAcid(new LeafIdentifier(String.format("1x%02d", index), 0, "A", i + 1), AminoAcidFamily.ALANINE);
+            // deterministic noise that keeps observations of the same shape close to each other
+            double noise = 0.1 * Math.sin(index * 7 + i);
+            aminoAcid.addAtom(new OakAtom(index * 10 + i, ElementProvider.CARBON, "CA", new Vector3D(shape[i][0] + noise, shape[i][1] - noise, shape[i][2] + noise / 2.0)));
+            leafSubstructures.add(aminoAcid);
+        }
+        return StructuralMotif.fromLeafSubstructures(leafSubstructures);
+    }
+
+    private static Set<Set<String>> toPartition(Map<StructuralMotif, List<StructuralMotif>> clusters) {
+        // dense alignments cluster copies of the input, thus members are compared by their origin
+        Set<Set<String>> partition = new HashSet<>();
+        for (List<StructuralMotif> cluster : clusters.values()) {
+            Set<String> members = new TreeSet<>();
+            for (StructuralMotif structuralMotif : cluster) {
+                members.add(structuralMotif.getAllLeafSubstructures().get(0).getIdentifier().getPdbIdentifier());
+            }
+            partition.add(members);
+        }
+        return partition;
+    }
+
+    private static double calculateDistance(StructuralMotif reference, StructuralMotif candidate) throws SubstructureSuperimpositionException {
+        return SubstructureSuperimposer.calculateSubstructureSuperimposition(reference.getAllLeafSubstructures(), candidate.getAllLeafSubstructures(),
+                                                                             StructuralEntityFilter.AtomFilter.isArbitrary())
+                                       .getRmsd();
+    }
+
+    /**
+     * Calculates the simplified silhouette coefficient from the distances of each observation to the exemplars.
+     */
+    private static double calculateSimplifiedSilhouetteCoefficient(Map<StructuralMotif, List<StructuralMotif>> clusters, int size) throws SubstructureSuperimpositionException {
+        double silhouetteSum = 0.0;
+        for (Map.Entry<StructuralMotif, List<StructuralMotif>> cluster : clusters.entrySet()) {
+            if (cluster.getValue().size() < 2) {
+                continue;
+            }
+            for (StructuralMotif structuralMotif : cluster.getValue()) {
+                double ownDistance = calculateDistance(cluster.getKey(), structuralMotif);
+                double foreignDistance = Double.MAX_VALUE;
+                for (StructuralMotif exemplar : clusters.keySet()) {
+                    if (exemplar != cluster.getKey()) {
+                        foreignDistance = Math.min(foreignDistance, calculateDistance(exemplar, structuralMotif));
+                    }
+                }
+                silhouetteSum += (foreignDistance - ownDistance) / Math.max(ownDistance, foreignDistance);
+            }
+        }
+        return silhouetteSum / size;
+    }
+
+    @Test
+    public void shouldMatchDenseClusteringForCompleteGraph() throws SubstructureSuperimpositionException {
+        List<StructuralMotif> structuralMotifs = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            structuralMotifs.add(createMotif(i, i % 2 == 0 ? SQUARE : LINE));
+        }
+
+        AffinityAlignment affinityAlignment = AffinityAlignment.create()
+                                                               .inputStructuralMotifs(structuralMotifs)
+                                                               .atomFilter(StructuralEntityFilter.AtomFilter.isArbitrary())
+                                                               .alignWithinClusters(false)
+                                                               .idealSuperimposition(false)
+                                                               .run();
+        Set<Set<String>> densePartition = toPartition(affinityAlignment.getClusters());
+
+        for (int nearestNeighbors : new int[]{structuralMotifs.size() - 1, structuralMotifs.size() + 5}) {
+            SparseAffinityAlignment sparseAffinityAlignment = new SparseAffinityAlignment(structuralMotifs, nearestNeighbors, null,
+                                                                                          StructuralEntityFilter.AtomFilter.isArbitrary(), 4);
+            assertEquals(densePartition, toPartition(sparseAffinityAlignment.getClusters()));
+            assertEquals(affinityAlignment.getSelfDissimilarity(), -sparseAffinityAlignment.getSelfSimilarity(), 1E-9);
+            // the simplified silhouette is based on exemplars only, thus it differs from the dense silhouette but agrees in sign for separated clusters
+            assertEquals(calculateSimplifiedSilhouetteCoefficient(sparseAffinityAlignment.getClusters(), structuralMotifs.size()),
+                         sparseAffinityAlignment.getSilhouetteCoefficient(), 1E-9);
+            assertTrue(sparseAffinityAlignment.getSilhouetteCoefficient() > 0.0);
+            assertTrue(affinityAlignment.getSilhouetteCoefficient() > 0.0);
+        }
+        assertTrue(densePartition.size() > 1);
+    }
+
+    @Test
+    public void shouldFindSameNeighborsInParallel() {
+        List<StructuralMotif> structuralMotifs = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            structuralMotifs.add(createMotif(i, i % 3 == 0 ? SQUARE : LINE));
+        }
+        SparseAffinityAlignment serialAffinityAlignment = new SparseAffinityAlignment(structuralMotifs, 3, null, StructuralEntityFilter.AtomFilter.isArbitrary(), 1);
+        SparseAffinityAlignment parallelAffinityAlignment = new SparseAffinityAlignment(structuralMotifs, 3, null, StructuralEntityFilter.AtomFilter.isArbitrary(), 4);
+        assertEquals(serialAffinityAlignment.getSelfSimilarity(), parallelAffinityAlignment.getSelfSimilarity(), 0.0);
+        assertEquals(toPartition(serialAffinityAlignment.getClusters()), toPartition(parallelAffinityAlignment.getClusters()));
+        assertEquals(serialAffinityAlignment.getSilhouetteCoefficient(), parallelAffinityAlignment.getSilhouetteCoefficient(), 0.0);
+    }
+}
@@ -0,0 +1,73 @@
+package bio.fkaiser.mmm.model.plip;
+
+import bio.fkaiser.mmm.io.DataPointReader;
+import bio.fkaiser.mmm.io.DataPointReaderConfiguration;
+import bio.fkaiser.mmm.model.DataPoint;
+import bio.fkaiser.mmm.model.Item;
+import bio.fkaiser.mmm.model.enrichment.LigandInteractionEnricher;
+import de.bioforscher.singa.core.utility.Resources;
+import de.bioforscher.singa.structure.parser.plip.InteractionContainer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fk
+ */
+public class PlipInteractionCacheTest {
+
+    private static List<String> toItemStrings(List<DataPoint<String>> dataPoints) {
+        return dataPoints.stream()
+                         .map(dataPoint -> dataPoint.getItems().stream()
+                                                    .map(item -> item.getLabel() + item.getPosition().map(Object::toString).orElse(""))
+                                                    .collect(Collectors.joining(",")))
+                         .collect(Collectors.toList());
+    }
+
+    private static List<DataPoint<String>> readDataPoints(Path structureDirectory) throws IOException {
+        List<Path> structurePaths = Files.list(structureDirectory).sorted().limit(3).collect(Collectors.toList());
+        return new DataPointReader(new DataPointReaderConfiguration(), structurePaths).readDataPoints();
+    }
+
+    @Test
+    public void shouldAnswerRepeatedRequestsFromCache() throws IOException {
+        Path structureDirectory = Paths.get(Resources.getResourceAsFileLocation("PF00127"));
+        Path cachePath = Files.createTempDirectory("mmm_plip_cache_");
+        try (PlipStandInServer plipStandInServer = new PlipStandInServer(structureDirectory)) {
+            PlipInteractionCache plipInteractionCache = new PlipInteractionCache(cachePath);
+
+            LigandInteractionEnricher ligandInteractionEnricher = new LigandInteractionEnricher();
+            ligandInteractionEnricher.setPlipRestProviderUrl(plipStandInServer.getUrl());
+            ligandInteractionEnricher.setPlipInteractionCache(plipInteractionCache);
+
+            List<DataPoint<String>> dataPoints = readDataPoints(structureDirectory);
+            dataPoints.forEach(ligandInteractionEnricher::enrichDataPoint);
+            int requestCount = plipStandInServer.getRequestCount();
+            assertEquals(dataPoints.size(), requestCount);
+            assertTrue(dataPoints.stream()
+                                 .map(DataPoint::getItems)
+                                 .flatMap(List::stream)
+                                 .map(Item::getLabel)
+                                 .anyMatch("HYB"::equals));
+
+            List<DataPoint<String>> cachedDataPoints = readDataPoints(structureDirectory);
+            cachedDataPoints.forEach(ligandInteractionEnricher::enrichDataPoint);
+            assertEquals(requestCount, plipStandInServer.getRequestCount());
+            assertEquals(toItemStrings(dataPoints), toItemStrings(cachedDataPoints));
+
+            Optional<InteractionContainer> interactions = new PlipGetRequest(plipStandInServer.getUrl() + "/interaction/plain", "1gy2", "A")
+                    .queryInteractions(plipInteractionCache);
+            assertTrue(interactions.isPresent());
+            assertTrue(!interactions.get().getInteractions().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package bio.fkaiser.mmm.model.plip;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A local stand-in for the PLIP REST service that allows to run and load-test interaction enrichment offline. It answers the endpoints used by the PLIP requests with synthetic
+ * hydrogen bonds between nitrogen and oxygen atoms of different residues. Structures of GET requests are read from a directory, which must contain a PDB file whose name starts with the
+ * PDB identifier and chain (e.g. {@code 1gy2_A_1.pdb}). The stand-in can be started with {@link #main(String[])} given the structure directory, the port and an artificial latency in
+ * milliseconds.
+ *
+ * @author fk
+ */
+public class PlipStandInServer implements AutoCloseable {
+
+    private static final double MINIMAL_HYDROGEN_BOND_DISTANCE = 2.6;
+    private static final double MAXIMAL_HYDROGEN_BOND_DISTANCE = 3.3;
+
+    private final HttpServer httpServer;
+    private final ExecutorService executorService;
+    private final Path structureDirectory;
+    private final long latency;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    public PlipStandInServer(Path structureDirectory, int port, long latency) throws IOException {
+        this.structureDirectory = structureDirectory;
+        this.latency = latency;
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        httpServer.createContext("/interaction/plain", this::handlePlainRequest);
+        httpServer.createContext("/interaction/calculate", this::handleCalculateRequest);
+        executorService = Executors.newCachedThreadPool();
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+    }
+
+    public PlipStandInServer(Path structureDirectory) throws IOException {
+        this(structureDirectory, 0, 0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: PlipStandInServer <structure directory> [port] [latency in ms]");
+            return;
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        PlipStandInServer plipStandInServer = new PlipStandInServer(Paths.get(args[0]), port, latency);
+        System.out.println("PLIP stand-in listening on " + plipStandInServer.getUrl());
+    }
+
+    private static List<PdbAtom> parseAtoms(String pdbContent) {
+        return Arrays.stream(pdbContent.split("\\r?\\n"))
+                     .filter(line -> line.startsWith("ATOM") || line.startsWith("HETATM"))
+                     .filter(line -> line.length() >= 54)
+                     .map(PdbAtom::new)
+                     .collect(Collectors.toList());
+    }
+
+    private static String composeReport(List<PdbAtom> atoms) {
+        StringBuilder report = new StringBuilder("<?xml version=\"1.0\" ?>\n<report>\n");
+        int interactionIdentifier = 1;
+        for (int i = 0; i < atoms.size(); i++) {
+            PdbAtom donor = atoms.get(i);
+            if (!donor.isPolar()) {
+                continue;
+            }
+            for (int j = i + 1; j < atoms.size(); j++) {
+                PdbAtom acceptor = atoms.get(j);
+                if (!acceptor.isPolar() || donor.serial == acceptor.serial && donor.chain.equals(acceptor.chain)) {
+                    continue;
+                }
+                double distance = donor.distance(acceptor);
+                if (distance < MINIMAL_HYDROGEN_BOND_DISTANCE || distance > MAXIMAL_HYDROGEN_BOND_DISTANCE) {
+                    continue;
+                }
+                report.append("<hydrogen_bond id=\"").append(interactionIdentifier++).append("\">\n")
+                      .append("<resnr>").append(donor.serial).append("</resnr>\n")
+                      .append("<reschain>").append(donor.chain).append("</reschain>\n")
+                      .append("<resnr_lig>").append(acceptor.serial).append("</resnr_lig>\n")
+                      .append("<reschain_lig>").append(acceptor.chain).append("</reschain_lig>\n")
+                      .append("<sidechain>False</sidechain>\n")
+                      .append("<protisdon>True</protisdon>\n")
+                      .append("<dist_h-a>").append(String.format(Locale.US, "%.2f", distance - 1.0)).append("</dist_h-a>\n")
+                      .append("<dist_d-a>").append(String.format(Locale.US, "%.2f", distance)).append("</dist_d-a>\n")
+                      .append("<don_angle>160.00</don_angle>\n")
+                      .append("<donoridx>").append(donor.atomSerial).append("</donoridx>\n")
+                      .append("<acceptoridx>").append(acceptor.atomSerial).append("</acceptoridx>\n")
+                      .append("<ligcoo>").append(acceptor.toCoordinates()).append("</ligcoo>\n")
+                      .append("<protcoo>").append(donor.toCoordinates()).append("</protcoo>\n")
+                      .append("</hydrogen_bond>\n");
+            }
+        }
+        return report.append("</report>\n").toString();
+    }
+
+    /**
+     * Extracts the content of the first part of a multipart/form-data body.
+     *
+     * @param body The request body.
+     * @return The content of the first part.
+     */
+    private static String extractMultipartContent(String body) {
+        int contentStart = body.indexOf("\r\n\r\n");
+        if (contentStart < 0) {
+            return body;
+        }
+        String boundary = body.substring(0, body.indexOf("\r\n"));
+        int contentEnd = body.indexOf("\r\n" + boundary, contentStart);
+        return body.substring(contentStart + 4, contentEnd < 0 ? body.length() : contentEnd);
+    }
+
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests this stand-in has answered.
+     *
+     * @return The number of requests.
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void handlePlainRequest(HttpExchange exchange) throws IOException {
+        // path is /interaction/plain/<pdb>/<chain>
+        String[] pathElements = exchange.getRequestURI().getPath().split("/");
+        String pdbIdentifier = pathElements[pathElements.length - 2];
+        String chainIdentifier = pathElements[pathElements.length - 1];
+        Optional<Path> structurePath;
+        try (Stream<Path> structurePaths = Files.list(structureDirectory)) {
+            structurePath = structurePaths.filter(path -> path.getFileName().toString().toLowerCase()
+                                                              .startsWith((pdbIdentifier + "_" + chainIdentifier).toLowerCase()))
+                                          .findFirst();
+        }
+        if (!structurePath.isPresent()) {
+            respond(exchange, 404, "no structure for " + pdbIdentifier + "_" + chainIdentifier);
+            return;
+        }
+        String pdbContent = new String(Files.readAllBytes(structurePath.get()), StandardCharsets.UTF_8);
+        respond(exchange, 200, composeReport(parseAtoms(pdbContent)));
+    }
+
+    private void handleCalculateRequest(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "POST required");
+            return;
+        }
+        String body = new String(readBody(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        respond(exchange, 200, composeReport(parseAtoms(extractMultipartContent(body))));
+    }
+
+    private void respond(HttpExchange exchange, int statusCode, String content) throws IOException {
+        requestCount.incrementAndGet();
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executorService.shutdownNow();
+    }
+
+    private static class PdbAtom {
+
+        private final int atomSerial;
+        private final String atomName;
+        private final String chain;
+        private final int serial;
+        private final double[] coordinates;
+
+        PdbAtom(String line) {
+            atomSerial = Integer.parseInt(line.substring(6, 11).trim());
+            atomName = line.substring(12, 16).trim();
+            chain = line.substring(21, 22);
+            serial = Integer.parseInt(line.substring(22, 26).trim());
+            coordinates = new double[]{Double.parseDouble(line.substring(30, 38).trim()),
+                                       Double.parseDouble(line.substring(38, 46).trim()),
+                                       Double.parseDouble(line.substring(46, 54).trim())};
+        }
+
+        boolean isPolar() {
+            return atomName.startsWith("N") || atomName.startsWith("O");
+        }
+
+        double distance(PdbAtom atom) {
+            double squaredDistance = 0.0;
+            for (int i = 0; i < 3; i++) {
+                squaredDistance += (coordinates[i] - atom.coordinates[i]) * (coordinates[i] - atom.coordinates[i]);
+            }
+            return Math.sqrt(squaredDistance);
+        }
+
+        String toCoordinates() {
+            List<String> elements = new ArrayList<>();
+            String[] tags = {"x", "y", "z"};
+            for (int i = 0; i < 3; i++) {
+                elements.add("<" + tags[i] + ">" + String.format(Locale.US, "%.3f", coordinates[i]) + "</" + tags[i] + ">");
+            }
+            return String.join("", elements);
+        }
+    }
+}